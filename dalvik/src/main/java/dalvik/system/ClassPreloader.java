@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dalvik.system;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records the classes loaded from dex files during startup, and loads them
+ * again ahead of time on later starts.
+ *
+ * <p>A trace is recorded by calling {@link #startTrace}, running the
+ * startup path, and calling {@link #stopTrace}; it holds the name of every
+ * class defined by a {@link BaseDexClassLoader} in the meantime, in load
+ * order. {@link #writeTrace} and {@link #readTrace} store it in a compact
+ * file, and {@link #preload} replays it on background threads.
+ *
+ * <p>Preloading loads and links classes but doesn't initialize them: static
+ * initializers still run on first use, on the thread that uses the class,
+ * because running them in parallel could deadlock on initializers that
+ * depend on each other. Classes are grouped by package, and each package
+ * is loaded by a single thread in trace order, so classes that are loaded
+ * together at startup are loaded together here too.
+ *
+ * @hide
+ */
+public final class ClassPreloader {
+    /** "CLT1" */
+    private static final int TRACE_MAGIC = 0x434c5431;
+
+    private static final Object traceLock = new Object();
+
+    /** Names of the classes loaded while tracing. Guarded by traceLock. */
+    private static LinkedHashSet<String> trace;
+
+    /** Whether a trace is being recorded; read without the lock. */
+    private static volatile boolean tracing;
+
+    private ClassPreloader() {
+    }
+
+    /**
+     * Starts recording the classes loaded from dex files, discarding any
+     * trace already being recorded.
+     */
+    public static void startTrace() {
+        synchronized (traceLock) {
+            trace = new LinkedHashSet<String>();
+            tracing = true;
+        }
+    }
+
+    /**
+     * Stops recording and returns the names of the classes loaded since
+     * {@link #startTrace}, in the order they were first loaded. Returns an
+     * empty list if no trace was being recorded.
+     */
+    public static List<String> stopTrace() {
+        synchronized (traceLock) {
+            tracing = false;
+            List<String> result = (trace != null) ? new ArrayList<String>(trace)
+                    : new ArrayList<String>();
+            trace = null;
+            return result;
+        }
+    }
+
+    /**
+     * Called by {@link DexPathList} when it defines a class.
+     */
+    static void classLoaded(String name) {
+        if (tracing) {
+            synchronized (traceLock) {
+                if (trace != null) {
+                    trace.add(name);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes {@code classNames} to {@code file}. Each name is stored as
+     * the length of the prefix it shares with the previous name followed by
+     * the rest, so the many names from the same package take little space.
+     */
+    public static void writeTrace(File file, List<String> classNames) throws IOException {
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(TRACE_MAGIC);
+            out.writeInt(classNames.size());
+            String previous = "";
+            for (String name : classNames) {
+                int shared = 0;
+                int max = Math.min(255, Math.min(previous.length(), name.length()));
+                while (shared < max && previous.charAt(shared) == name.charAt(shared)) {
+                    shared++;
+                }
+                out.writeByte(shared);
+                out.writeUTF(name.substring(shared));
+                previous = name;
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads the class names written by {@link #writeTrace}.
+     *
+     * @throws IOException if the file can't be read or isn't a trace
+     */
+    public static List<String> readTrace(File file) throws IOException {
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != TRACE_MAGIC) {
+                throw new IOException("Not a class trace: " + file);
+            }
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Corrupt class trace: " + file);
+            }
+            List<String> result = new ArrayList<String>(Math.min(count, 8192));
+            String previous = "";
+            for (int i = 0; i < count; i++) {
+                int shared = in.readUnsignedByte();
+                if (shared > previous.length()) {
+                    throw new IOException("Corrupt class trace: " + file);
+                }
+                previous = previous.substring(0, shared) + in.readUTF();
+                result.add(previous);
+            }
+            return result;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Starts loading {@code classNames} through {@code loader} on {@code
+     * threadCount} daemon threads, and returns immediately. Classes that
+     * can't be found or linked are skipped; they will fail again, with the
+     * usual exception, when the app uses them.
+     */
+    public static Preload preload(ClassLoader loader, List<String> classNames,
+            int threadCount) {
+        if (loader == null) {
+            throw new NullPointerException("loader == null");
+        }
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("threadCount < 1: " + threadCount);
+        }
+
+        LinkedHashMap<String, List<String>> packages = new LinkedHashMap<String, List<String>>();
+        for (String name : classNames) {
+            int lastDot = name.lastIndexOf('.');
+            String packageName = (lastDot == -1) ? "" : name.substring(0, lastDot);
+            List<String> names = packages.get(packageName);
+            if (names == null) {
+                names = new ArrayList<String>();
+                packages.put(packageName, names);
+            }
+            names.add(name);
+        }
+
+        @SuppressWarnings("unchecked")
+        List<String>[] groups = packages.values().toArray(new List[packages.size()]);
+        threadCount = Math.min(threadCount, Math.max(1, groups.length));
+        Preload preload = new Preload(loader, groups, threadCount);
+        preload.start();
+        return preload;
+    }
+
+    /**
+     * A preload in progress.
+     */
+    public static final class Preload {
+        private final ClassLoader loader;
+        private final List<String>[] groups;
+        private final int threadCount;
+        private final AtomicInteger nextGroup = new AtomicInteger();
+        private final AtomicInteger loaded = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger runningThreads;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final long startNanos = System.nanoTime();
+        private volatile long elapsedNanos = -1;
+        private volatile boolean cancelled;
+
+        private Preload(ClassLoader loader, List<String>[] groups, int threadCount) {
+            this.loader = loader;
+            this.groups = groups;
+            this.threadCount = threadCount;
+            this.runningThreads = new AtomicInteger(threadCount);
+        }
+
+        private void start() {
+            for (int i = 0; i < threadCount; i++) {
+                Thread thread = new Thread(new Runnable() {
+                    public void run() {
+                        work();
+                    }
+                }, "ClassPreloader-" + i);
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+
+        private void work() {
+            try {
+                int i;
+                while (!cancelled && (i = nextGroup.getAndIncrement()) < groups.length) {
+                    for (String name : groups[i]) {
+                        if (cancelled) {
+                            break;
+                        }
+                        try {
+                            Class.forName(name, false, loader);
+                            loaded.incrementAndGet();
+                        } catch (ClassNotFoundException e) {
+                            failed.incrementAndGet();
+                        } catch (LinkageError e) {
+                            failed.incrementAndGet();
+                        }
+                    }
+                }
+            } finally {
+                if (runningThreads.decrementAndGet() == 0) {
+                    elapsedNanos = System.nanoTime() - startNanos;
+                    System.logI("Preloaded " + loaded.get() + " classes (" + failed.get()
+                            + " failed) in " + (elapsedNanos / 1000000) + "ms");
+                    done.countDown();
+                }
+            }
+        }
+
+        /**
+         * Stops loading further classes. Classes being loaded are finished.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Waits until every class has been loaded, or the preload was
+         * cancelled.
+         */
+        public void await() throws InterruptedException {
+            done.await();
+        }
+
+        /**
+         * Returns the number of classes loaded so far.
+         */
+        public int getLoadedCount() {
+            return loaded.get();
+        }
+
+        /**
+         * Returns the number of classes that couldn't be loaded so far.
+         */
+        public int getFailedCount() {
+            return failed.get();
+        }
+
+        /**
+         * Returns how long the preload took, or -1 if it hasn't finished.
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+}
@@ -21,9 +21,12 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 /**
@@ -38,6 +41,12 @@ import java.util.zip.ZipFile;
  *
  * <p>This class also contains methods to use these lists to look up
  * classes and resources.</p>
+ *
+ * <p>When there is more than one path element, lookups go through an
+ * index from package (or resource directory) names to the elements that
+ * contain them, so a class or resource is only looked for in elements
+ * that might have it, and a name in a package no element has is rejected
+ * without touching any file. Each index is built on first use.</p>
  */
 /*package*/ final class DexPathList {
     private static final String DEX_SUFFIX = ".dex";
@@ -54,6 +63,20 @@ import java.util.zip.ZipFile;
     /** list of native library directory elements */
     private final File[] nativeLibraryDirectories;
 
+    /**
+     * Index from package name, such as {@code "java.lang"}, to the elements
+     * whose dex files define classes in that package; or null if not yet
+     * built. Only used when there is more than one element.
+     */
+    private volatile HashMap<String, Element[]> classIndex;
+
+    /**
+     * Index from resource directory name, such as {@code "java/lang"}, to
+     * the elements whose zip files have entries in that directory; or null
+     * if not yet built. Only used when there is more than one element.
+     */
+    private volatile HashMap<String, Element[]> resourceIndex;
+
     /**
      * Constructs an instance.
      *
@@ -308,12 +331,13 @@ import java.util.zip.ZipFile;
      * found in any of the dex files
      */
     public Class findClass(String name) {
-        for (Element element : dexElements) {
+        for (Element element : candidates(name, true)) {
             DexFile dex = element.dexFile;
 
             if (dex != null) {
                 Class clazz = dex.loadClassBinaryName(name, definingContext);
                 if (clazz != null) {
+                    ClassPreloader.classLoaded(name);
                     return clazz;
                 }
             }
@@ -331,7 +355,7 @@ import java.util.zip.ZipFile;
      * resource is not found in any of the zip/jar files
      */
     public URL findResource(String name) {
-        for (Element element : dexElements) {
+        for (Element element : candidates(name, false)) {
             URL url = element.findResource(name);
             if (url != null) {
                 return url;
@@ -349,7 +373,7 @@ import java.util.zip.ZipFile;
     public Enumeration<URL> findResources(String name) {
         ArrayList<URL> result = new ArrayList<URL>();
 
-        for (Element element : dexElements) {
+        for (Element element : candidates(name, false)) {
             URL url = element.findResource(name);
             if (url != null) {
                 result.add(url);
@@ -359,6 +383,94 @@ import java.util.zip.ZipFile;
         return Collections.enumeration(result);
     }
 
+    /**
+     * Returns the elements that may contain the named class (or resource),
+     * in path order.
+     */
+    private Element[] candidates(String name, boolean isClass) {
+        if (dexElements.length <= 1) {
+            return dexElements;
+        }
+        HashMap<String, Element[]> index = isClass ? classIndex : resourceIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = isClass ? classIndex : resourceIndex;
+                if (index == null) {
+                    index = buildIndex(isClass);
+                    if (isClass) {
+                        classIndex = index;
+                    } else {
+                        resourceIndex = index;
+                    }
+                }
+            }
+        }
+        Element[] result = index.get(parentName(name, isClass ? '.' : '/'));
+        return (result != null) ? result : NO_ELEMENTS;
+    }
+
+    private static final Element[] NO_ELEMENTS = new Element[0];
+
+    /**
+     * Builds the index of packages to elements with dex files if {@code
+     * isClass}, or of resource directories to elements with zip files
+     * otherwise.
+     */
+    private HashMap<String, Element[]> buildIndex(boolean isClass) {
+        HashMap<String, Element[]> index = new HashMap<String, Element[]>();
+        for (Element element : dexElements) {
+            // Shared by every key that only this element has so far.
+            Element[] justThis = { element };
+            if (isClass) {
+                if (element.dexFile == null) {
+                    continue;
+                }
+                Enumeration<String> classNames = element.dexFile.entries();
+                while (classNames.hasMoreElements()) {
+                    addToIndex(index, parentName(classNames.nextElement(), '.'), element, justThis);
+                }
+            } else {
+                if (element.zipFile == null) {
+                    continue;
+                }
+                Enumeration<? extends ZipEntry> entries = element.zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    String entryName = entries.nextElement().getName();
+                    addToIndex(index, parentName(entryName, '/'), element, justThis);
+                    if (entryName.endsWith("/")) {
+                        // ZipFile.getEntry("a/b") also finds the directory "a/b/".
+                        String directory = entryName.substring(0, entryName.length() - 1);
+                        addToIndex(index, parentName(directory, '/'), element, justThis);
+                    }
+                }
+            }
+        }
+        return index;
+    }
+
+    private static void addToIndex(HashMap<String, Element[]> index, String key,
+            Element element, Element[] justThis) {
+        Element[] elements = index.get(key);
+        if (elements == null) {
+            // A new string avoids pinning the whole class or entry name.
+            index.put(new String(key), justThis);
+        } else if (elements[elements.length - 1] != element) {
+            // Elements are added in path order, so appending keeps that order.
+            elements = Arrays.copyOf(elements, elements.length + 1);
+            elements[elements.length - 1] = element;
+            index.put(key, elements);
+        }
+    }
+
+    /**
+     * Returns the part of {@code name} before the last {@code separator},
+     * or the empty string if there is none.
+     */
+    private static String parentName(String name, char separator) {
+        int last = name.lastIndexOf(separator);
+        return (last == -1) ? "" : name.substring(0, last);
+    }
+
     /**
      * Finds the named native code library on any of the library
      * directories pointed at by this instance. This will find the
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package java.io;
+
+import java.lang.reflect.Field;
+import java.nio.ByteOrder;
+import libcore.io.Memory;
+
+/**
+ * A precomputed plan for transferring the serialized field values of one class
+ * descriptor. The reflective {@code Field} for each {@code ObjectStreamField}
+ * is resolved once, when the plan is built, rather than looked up per object.
+ *
+ * <p>The serialization format places primitive fields before object fields.
+ * The leading run of primitive fields is transferred through a single byte
+ * array, so that the stream sees one bulk read or write per object instead of
+ * one call per field. The remaining fields are handled one at a time by the
+ * streams, since object fields may recurse into the stream.
+ *
+ * <p>Plans are immutable once built and may be shared between threads.
+ */
+final class FieldAccessPlan {
+    private static final ByteOrder ORDER = ByteOrder.BIG_ENDIAN;
+
+    /** The fields in stream order. */
+    final ObjectStreamField[] fields;
+
+    /**
+     * The local reflective field for each entry in {@link #fields}, or null
+     * where the local class has no such field.
+     */
+    final Field[] accessors;
+
+    /**
+     * For each object field in {@link #fields}, the type that values read from
+     * the stream must be assignable to. Null for primitive fields.
+     */
+    final Class<?>[] objectTypes;
+
+    /** The number of leading primitive fields transferred in bulk. */
+    final int primitiveCount;
+
+    /** The number of bytes the leading primitive fields occupy in the stream. */
+    final int primitiveDataSize;
+
+    FieldAccessPlan(ObjectStreamClass classDesc, ObjectStreamField[] fields) {
+        this.fields = fields;
+        this.accessors = new Field[fields.length];
+        this.objectTypes = new Class<?>[fields.length];
+        boolean resolvable = classDesc.forClass() != null;
+        int count = 0;
+        int size = 0;
+        boolean inPrimitivePrefix = true;
+        for (int i = 0; i < fields.length; i++) {
+            ObjectStreamField fieldDesc = fields[i];
+            Field field = resolvable ? classDesc.getReflectionField(fieldDesc) : null;
+            accessors[i] = field;
+            Class<?> type = fieldDesc.getTypeInternal();
+            if (!type.isPrimitive()) {
+                ObjectStreamField declared = classDesc.getField(fieldDesc.getName());
+                objectTypes[i] = (declared != null) ? declared.getTypeInternal() : type;
+            }
+            if (inPrimitivePrefix && type.isPrimitive()) {
+                count++;
+                size += sizeOf(type);
+            } else {
+                inPrimitivePrefix = false;
+            }
+        }
+        this.primitiveCount = count;
+        this.primitiveDataSize = size;
+    }
+
+    private static int sizeOf(Class<?> type) {
+        if (type == byte.class || type == boolean.class) {
+            return 1;
+        } else if (type == char.class || type == short.class) {
+            return 2;
+        } else if (type == int.class || type == float.class) {
+            return 4;
+        } else {
+            return 8;
+        }
+    }
+
+    /**
+     * Encodes the leading primitive fields of {@code obj} into {@code dst},
+     * which must hold at least {@link #primitiveDataSize} bytes.
+     *
+     * @throws InvalidClassException if a field has no local counterpart.
+     */
+    void getPrimitiveValues(ObjectStreamClass classDesc, Object obj, byte[] dst)
+            throws IOException {
+        int offset = 0;
+        for (int i = 0; i < primitiveCount; i++) {
+            ObjectStreamField fieldDesc = fields[i];
+            Class<?> type = fieldDesc.getTypeInternal();
+            Field field = accessors[i];
+            if (field == null) {
+                throw new InvalidClassException(classDesc.getName() + " doesn't have a field "
+                        + fieldDesc.getName() + " of type " + type);
+            }
+            try {
+                if (type == byte.class) {
+                    dst[offset++] = field.getByte(obj);
+                } else if (type == boolean.class) {
+                    dst[offset++] = (byte) (field.getBoolean(obj) ? 1 : 0);
+                } else if (type == char.class) {
+                    Memory.pokeShort(dst, offset, (short) field.getChar(obj), ORDER);
+                    offset += 2;
+                } else if (type == short.class) {
+                    Memory.pokeShort(dst, offset, field.getShort(obj), ORDER);
+                    offset += 2;
+                } else if (type == int.class) {
+                    Memory.pokeInt(dst, offset, field.getInt(obj), ORDER);
+                    offset += 4;
+                } else if (type == float.class) {
+                    Memory.pokeInt(dst, offset, Float.floatToIntBits(field.getFloat(obj)), ORDER);
+                    offset += 4;
+                } else if (type == long.class) {
+                    Memory.pokeLong(dst, offset, field.getLong(obj), ORDER);
+                    offset += 8;
+                } else {
+                    Memory.pokeLong(dst, offset,
+                            Double.doubleToLongBits(field.getDouble(obj)), ORDER);
+                    offset += 8;
+                }
+            } catch (IllegalAccessException iae) {
+                // ObjectStreamField should have called setAccessible(true).
+                throw new AssertionError(iae);
+            } catch (NoSuchFieldError nsf) {
+                // See ObjectOutputStream.writeFieldValues.
+                throw new InvalidClassException(classDesc.getName());
+            }
+        }
+    }
+
+    /**
+     * Decodes the leading primitive fields from {@code src} and assigns them
+     * to {@code obj}. Fields without a local counterpart are skipped.
+     */
+    void setPrimitiveValues(Object obj, byte[] src) {
+        int offset = 0;
+        for (int i = 0; i < primitiveCount; i++) {
+            Class<?> type = fields[i].getTypeInternal();
+            Field field = accessors[i];
+            try {
+                if (type == byte.class) {
+                    byte b = src[offset++];
+                    if (field != null) {
+                        field.setByte(obj, b);
+                    }
+                } else if (type == boolean.class) {
+                    boolean z = src[offset++] != 0;
+                    if (field != null) {
+                        field.setBoolean(obj, z);
+                    }
+                } else if (type == char.class) {
+                    char c = (char) Memory.peekShort(src, offset, ORDER);
+                    offset += 2;
+                    if (field != null) {
+                        field.setChar(obj, c);
+                    }
+                } else if (type == short.class) {
+                    short s = Memory.peekShort(src, offset, ORDER);
+                    offset += 2;
+                    if (field != null) {
+                        field.setShort(obj, s);
+                    }
+                } else if (type == int.class) {
+                    int n = Memory.peekInt(src, offset, ORDER);
+                    offset += 4;
+                    if (field != null) {
+                        field.setInt(obj, n);
+                    }
+                } else if (type == float.class) {
+                    float f = Float.intBitsToFloat(Memory.peekInt(src, offset, ORDER));
+                    offset += 4;
+                    if (field != null) {
+                        field.setFloat(obj, f);
+                    }
+                } else if (type == long.class) {
+                    long j = Memory.peekLong(src, offset, ORDER);
+                    offset += 8;
+                    if (field != null) {
+                        field.setLong(obj, j);
+                    }
+                } else {
+                    double d = Double.longBitsToDouble(Memory.peekLong(src, offset, ORDER));
+                    offset += 8;
+                    if (field != null) {
+                        field.setDouble(obj, d);
+                    }
+                }
+            } catch (IllegalAccessException iae) {
+                // ObjectStreamField should have called setAccessible(true).
+                throw new AssertionError(iae);
+            } catch (NoSuchFieldError ignored) {
+            }
+        }
+    }
+}
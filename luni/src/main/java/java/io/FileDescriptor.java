@@ -50,6 +50,13 @@ public final class FileDescriptor {
      */
     private int descriptor = -1;
 
+    /**
+     * What libcore.io knows about {@link #typeDescriptor}, to save system
+     * calls; 0 if nothing. Only valid while the descriptor is unchanged.
+     */
+    private int type;
+    private int typeDescriptor = -1;
+
     static {
         in.descriptor = STDIN_FILENO;
         out.descriptor = STDOUT_FILENO;
@@ -101,6 +108,25 @@ public final class FileDescriptor {
         this.descriptor = fd;
     }
 
+    /**
+     * Returns what libcore.io recorded with {@link #setType$} about the
+     * current fd, or 0 if it recorded nothing.
+     * @hide internal use only
+     */
+    public final int getType$() {
+        return (typeDescriptor == descriptor) ? type : 0;
+    }
+
+    /**
+     * Records a libcore.io-specific type for the current fd. The type is
+     * forgotten when the fd changes.
+     * @hide internal use only
+     */
+    public final void setType$(int type) {
+        this.type = type;
+        this.typeDescriptor = descriptor;
+    }
+
     @Override public String toString() {
         return "FileDescriptor[" + descriptor + "]";
     }
@@ -65,6 +65,9 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
     // Where we read from
     private DataInputStream input;
 
+    // Scratch space for reading primitive field values in bulk
+    private byte[] primitiveDataBuffer;
+
     // Where we read primitive types from
     private DataInputStream primitiveTypes;
 
@@ -79,6 +82,13 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
      */
     private ArrayList<Object> objectsRead;
 
+    /**
+     * The handles of classes and class descriptors read since the last reset,
+     * in ascending order. They are the handles that survive endMessage.
+     */
+    private int[] classHandles = new int[16];
+    private int classHandleCount;
+
     // Used by defaultReadObject
     private Object currentObject;
 
@@ -486,6 +496,19 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
         return nextHandle++;
     }
 
+    /**
+     * Returns the next handle, to be used for a class or class descriptor.
+     * Unlike other handles, these survive {@link #endMessage}.
+     */
+    private int nextClassHandle() {
+        int handle = nextHandle();
+        if (classHandleCount == classHandles.length) {
+            classHandles = Arrays.copyOf(classHandles, classHandleCount * 2);
+        }
+        classHandles[classHandleCount++] = handle;
+        return handle;
+    }
+
     /**
      * Return the next token code (TC) from the receiver, which indicates what
      * kind of object follows
@@ -683,9 +706,11 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
                 return readNewClassDesc(false);
             case TC_PROXYCLASSDESC:
                 Class<?> proxyClass = readNewProxyClassDesc();
-                ObjectStreamClass streamClass = ObjectStreamClass.lookup(proxyClass);
+                // Not the cached descriptor: it is shared with other streams,
+                // and this stream sets its fields and superclass.
+                ObjectStreamClass streamClass = ObjectStreamClass.createClassDesc(proxyClass);
                 streamClass.setLoadFields(ObjectStreamClass.NO_FIELDS);
-                registerObjectRead(streamClass, nextHandle(), false);
+                registerObjectRead(streamClass, nextClassHandle(), false);
                 checkedSetSuperClassDesc(streamClass, readClassDesc());
                 return streamClass;
             case TC_REFERENCE:
@@ -1080,15 +1105,22 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
      */
     private void readFieldValues(Object obj, ObjectStreamClass classDesc) throws OptionalDataException, ClassNotFoundException, IOException {
         // Now we must read all fields and assign them to the receiver
-        ObjectStreamField[] fields = classDesc.getLoadFields();
-        fields = (fields == null) ? ObjectStreamClass.NO_FIELDS : fields;
         Class<?> declaringClass = classDesc.forClass();
         if (declaringClass == null && mustResolve) {
             throw new ClassNotFoundException(classDesc.getName());
         }
 
-        for (ObjectStreamField fieldDesc : fields) {
-            Field field = classDesc.getReflectionField(fieldDesc);
+        FieldAccessPlan plan = classDesc.getReadPlan();
+        if (plan.primitiveDataSize > 0) {
+            byte[] primitiveData = primitiveDataBuffer(plan.primitiveDataSize);
+            input.readFully(primitiveData, 0, plan.primitiveDataSize);
+            plan.setPrimitiveValues(obj, primitiveData);
+        }
+
+        ObjectStreamField[] fields = plan.fields;
+        for (int i = plan.primitiveCount; i < fields.length; i++) {
+            ObjectStreamField fieldDesc = fields[i];
+            Field field = plan.accessors[i];
             // We may not have been able to find the field, but we still need to read the value
             // and do the other checking, so there's no null check on 'field' here.
             try {
@@ -1114,9 +1146,9 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
                         field.setFloat(obj, f);
                     }
                 } else if (type == int.class) {
-                    int i = input.readInt();
+                    int n = input.readInt();
                     if (field != null) {
-                        field.setInt(obj, i);
+                        field.setInt(obj, n);
                     }
                 } else if (type == long.class) {
                     long j = input.readLong();
@@ -1136,16 +1168,12 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
                 } else {
                     Object toSet = fieldDesc.isUnshared() ? readUnshared() : readObject();
                     if (toSet != null) {
-                        // Get the field type from the local field rather than
-                        // from the stream's supplied data. That's the field
-                        // we'll be setting, so that's the one that needs to be
-                        // validated.
-                        String fieldName = fieldDesc.getName();
-                        ObjectStreamField localFieldDesc = classDesc.getField(fieldName);
-                        Class<?> fieldType = localFieldDesc.getTypeInternal();
+                        // The plan records the type declared for this field by
+                        // the class descriptor, which the value must match.
+                        Class<?> fieldType = plan.objectTypes[i];
                         Class<?> valueType = toSet.getClass();
                         if (!fieldType.isAssignableFrom(valueType)) {
-                            throw new ClassCastException(classDesc.getName() + "." + fieldName + " - " + fieldType + " not compatible with " + valueType);
+                            throw new ClassCastException(classDesc.getName() + "." + fieldDesc.getName() + " - " + fieldType + " not compatible with " + valueType);
                         }
                         if (field != null) {
                             field.set(obj, toSet);
@@ -1160,6 +1188,18 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
         }
     }
 
+    /**
+     * Returns a scratch buffer of at least {@code size} bytes for bulk reads of
+     * primitive field values. The buffer is reused for every object read by
+     * this stream; it is always fully consumed before any nested object is read.
+     */
+    private byte[] primitiveDataBuffer(int size) {
+        if (primitiveDataBuffer == null || primitiveDataBuffer.length < size) {
+            primitiveDataBuffer = new byte[Math.max(size, 64)];
+        }
+        return primitiveDataBuffer;
+    }
+
     /**
      * Reads a float (32 bit) from the source stream.
      *
@@ -1539,7 +1579,7 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
         }
         Class<?> localClass = classDesc.forClass();
         if (localClass != null) {
-            registerObjectRead(localClass, nextHandle(), unshared);
+            registerObjectRead(localClass, nextClassHandle(), unshared);
         }
         return localClass;
     }
@@ -1567,7 +1607,7 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
         ObjectStreamClass classDesc;
         primitiveData = input;
         int oldHandle = descriptorHandle;
-        descriptorHandle = nextHandle();
+        descriptorHandle = nextClassHandle();
         classDesc = readClassDescriptor();
         registerObjectRead(classDesc, descriptorHandle, false);
         descriptorHandle = oldHandle;
@@ -1649,7 +1689,7 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
         // subclasses during readClassDescriptor()
         primitiveData = input;
         int oldHandle = descriptorHandle;
-        descriptorHandle = nextHandle();
+        descriptorHandle = nextClassHandle();
         ObjectStreamClass newClassDesc = readClassDescriptor();
         registerObjectRead(newClassDesc, descriptorHandle, unshared);
         descriptorHandle = oldHandle;
@@ -2152,6 +2192,38 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
         return primitiveTypes.readUTF();
     }
 
+    /**
+     * Ends one message on a stream that is reused for many messages. This is
+     * the counterpart of {@link ObjectOutputStream#endMessage}: it releases
+     * the objects read so far, which the writer has promised not to refer to
+     * again, while keeping the classes and class descriptors that later
+     * messages will refer to by handle. These are renumbered to come first,
+     * as the writer does, so that the table only holds them and the current
+     * message's objects.
+     *
+     * @hide
+     */
+    public void endMessage() {
+        if (objectsRead == null) {
+            return;
+        }
+        // classHandles is ascending, so each kept object moves down or stays.
+        int size = objectsRead.size();
+        for (int i = 0; i < classHandleCount; i++) {
+            int index = classHandles[i] - baseWireHandle;
+            // a handle is past the end if reading its descriptor failed
+            Object o = (index < size) ? objectsRead.get(index) : null;
+            if (i < size) {
+                objectsRead.set(i, o);
+            } else {
+                objectsRead.add(o);
+            }
+            classHandles[i] = baseWireHandle + i;
+        }
+        objectsRead.subList(classHandleCount, objectsRead.size()).clear();
+        nextHandle = baseWireHandle + classHandleCount;
+    }
+
     /**
      * Returns the previously-read object corresponding to the given serialization handle.
      * @throws InvalidObjectException
@@ -2253,7 +2325,12 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
      * Reset the collection of objects already loaded by the receiver.
      */
     private void resetSeenObjects() {
-        objectsRead = new ArrayList<Object>();
+        if (objectsRead == null) {
+            objectsRead = new ArrayList<Object>();
+        } else {
+            objectsRead.clear();
+        }
+        classHandleCount = 0;
         nextHandle = baseWireHandle;
         primitiveData = emptyStream;
     }
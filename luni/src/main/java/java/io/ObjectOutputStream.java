@@ -23,6 +23,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.nio.ByteOrder;
 import java.nio.charset.ModifiedUtf8;
+import java.util.Arrays;
 import java.util.List;
 import libcore.io.Memory;
 import libcore.io.SizeOf;
@@ -56,6 +57,9 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput, Ob
      */
     private DataOutputStream output;
 
+    // Scratch space for writing primitive field values in bulk
+    private byte[] primitiveDataBuffer;
+
     /*
      * If object replacement is enabled or not
      */
@@ -76,11 +80,32 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput, Ob
      */
     private SerializationHandleMap objectsWritten;
 
+    /*
+     * The number of handles this stream held when its previous session ended
+     * with reset() or endMessage(), used to size its handle table for the
+     * next one.
+     */
+    private int handleTableSizeHint;
+
+    /*
+     * Upper bound on handleTableSizeHint, so that one unusually large session
+     * doesn't keep a large table for the rest of the stream.
+     */
+    private static final int MAX_HANDLE_TABLE_SIZE_HINT = 4096;
+
     /*
      * All objects are assigned an ID (integer handle)
      */
     private int currentHandle;
 
+    /*
+     * The handles of classes and class descriptors written since the last
+     * reset, in ascending order. They are the handles that survive
+     * endMessage.
+     */
+    private int[] classHandles = new int[16];
+    private int classHandleCount;
+
     /*
      * Used by defaultWriteObject
      */
@@ -338,6 +363,13 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput, Ob
         output.close();
     }
 
+    private void recordHandleTableSize() {
+        // Subclasses using the protected constructor have no handle table.
+        if (objectsWritten != null) {
+            handleTableSizeHint = Math.min(objectsWritten.size(), MAX_HANDLE_TABLE_SIZE_HINT);
+        }
+    }
+
     /**
      * Computes the collection of emulated fields that users can manipulate to
      * store a representation different than the one declared by the class of
@@ -486,6 +518,19 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput, Ob
         return currentHandle++;
     }
 
+    /**
+     * Returns the next handle, to be used for a class or class descriptor.
+     * Unlike other handles, these survive {@link #endMessage}.
+     */
+    private int nextClassHandle() {
+        int handle = nextHandle();
+        if (classHandleCount == classHandles.length) {
+            classHandles = Arrays.copyOf(classHandles, classHandleCount * 2);
+        }
+        classHandles[classHandleCount++] = handle;
+        return handle;
+    }
+
     /**
      * Gets this stream's {@code PutField} object. This object provides access
      * to the persistent fields that are eventually written to the output
@@ -577,6 +622,41 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput, Ob
         resetState();
     }
 
+    /**
+     * Ends one message on a stream that is reused for many messages, such as
+     * an RPC connection, and flushes it. Objects written so far are forgotten,
+     * so they will be written again if found in a later object graph, but
+     * classes and class descriptors are kept: later messages refer to them by
+     * handle instead of writing them again. Handles are renumbered so that
+     * the kept ones come first and the next message's objects follow them,
+     * which keeps the handle space and the reader's table from growing with
+     * the number of messages. Unlike {@link #reset}, nothing is written to the
+     * stream.
+     *
+     * <p>The reading side should call {@link ObjectInputStream#endMessage}
+     * after reading each message so that it too can release the objects.
+     *
+     * @throws IOException
+     *             if called during the serialization of an object.
+     * @hide
+     */
+    public void endMessage() throws IOException {
+        if (nestedLevels != 0) {
+            throw new IOException("endMessage() called during serialization");
+        }
+        recordHandleTableSize();
+        if (objectsWritten != null) {
+            objectsWritten.retainHandles(classHandles, classHandleCount, baseWireHandle);
+            objectsWritten.trim(handleTableSizeHint);
+        }
+        // The reader renumbers its classes and descriptors the same way.
+        for (int i = 0; i < classHandleCount; i++) {
+            classHandles[i] = baseWireHandle + i;
+        }
+        currentHandle = baseWireHandle + classHandleCount;
+        flush();
+    }
+
     /**
      * Reset the collection of objects already dumped by the receiver. If the
      * objects are found again in the object graph, the receiver will dump them
@@ -584,8 +664,15 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput, Ob
      *
      */
     private void resetSeenObjects() {
-        objectsWritten = new SerializationHandleMap();
+        if (objectsWritten == null) {
+            objectsWritten = new SerializationHandleMap();
+        } else {
+            recordHandleTableSize();
+            objectsWritten.clear();
+            objectsWritten.trim(handleTableSizeHint);
+        }
         currentHandle = baseWireHandle;
+        classHandleCount = 0;
     }
 
     /**
@@ -761,7 +848,8 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput, Ob
             }
             // If we got here, it is a new (non-null) classDesc that will have
             // to be registered as well
-            handle = registerObjectWritten(classDesc);
+            handle = nextClassHandle();
+            objectsWritten.put(classDesc, handle);
 
             if (classDesc.isProxy()) {
                 output.writeByte(TC_PROXYCLASSDESC);
@@ -947,10 +1035,22 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput, Ob
      * @see #writeObject(Object)
      */
     private void writeFieldValues(Object obj, ObjectStreamClass classDesc) throws IOException {
-        for (ObjectStreamField fieldDesc : classDesc.fields()) {
+        FieldAccessPlan plan = classDesc.getWritePlan();
+        if (plan.primitiveDataSize > 0) {
+            if (primitiveDataBuffer == null || primitiveDataBuffer.length < plan.primitiveDataSize) {
+                primitiveDataBuffer = new byte[Math.max(plan.primitiveDataSize, 64)];
+            }
+            // The buffer is written out before any nested object can reuse it.
+            plan.getPrimitiveValues(classDesc, obj, primitiveDataBuffer);
+            output.write(primitiveDataBuffer, 0, plan.primitiveDataSize);
+        }
+
+        ObjectStreamField[] fields = plan.fields;
+        for (int i = plan.primitiveCount; i < fields.length; i++) {
+            ObjectStreamField fieldDesc = fields[i];
             try {
                 Class<?> type = fieldDesc.getTypeInternal();
-                Field field = classDesc.getReflectionField(fieldDesc);
+                Field field = plan.accessors[i];
                 if (field == null) {
                     throw new InvalidClassException(classDesc.getName() + " doesn't have a field " + fieldDesc.getName() + " of type " + type);
                 }
@@ -1239,7 +1339,7 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput, Ob
             writeClassDesc(clDesc, unshared);
         }
 
-        int handle = nextHandle();
+        int handle = nextClassHandle();
         if (!unshared) {
             objectsWritten.put(object, handle);
         }
@@ -1679,8 +1779,7 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput, Ob
             throws IOException {
         // write classDesc, classDesc for enum is different
 
-        // set flag for enum, the flag is (SC_SERIALIZABLE | SC_ENUM)
-        classDesc.setFlags((byte) (SC_SERIALIZABLE | SC_ENUM));
+        // the descriptor's flags are already (SC_SERIALIZABLE | SC_ENUM)
         int previousHandle = -1;
         if (unshared) {
             previousHandle = objectsWritten.get(classDesc);
@@ -1693,7 +1792,7 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput, Ob
             Class<?> classToWrite = classDesc.forClass();
             // If we got here, it is a new (non-null) classDesc that will have
             // to be registered as well
-            registerObjectWritten(classDesc);
+            objectsWritten.put(classDesc, nextClassHandle());
 
             output.writeByte(TC_CLASSDESC);
             if (protocolVersion == PROTOCOL_VERSION_1) {
@@ -1713,7 +1812,6 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput, Ob
             ObjectStreamClass superClassDesc = classDesc.getSuperclass();
             if (superClassDesc != null) {
                 // super class is also enum
-                superClassDesc.setFlags((byte) (SC_SERIALIZABLE | SC_ENUM));
                 writeEnumDesc(superClassDesc.forClass(), superClassDesc, unshared);
             } else {
                 output.writeByte(TC_NULL);
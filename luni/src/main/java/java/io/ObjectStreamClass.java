@@ -174,6 +174,10 @@ public class ObjectStreamClass implements Serializable {
     private transient HashMap<ObjectStreamField, Field> reflectionFields =
             new HashMap<ObjectStreamField, Field>();
 
+    // Plans for transferring the values of fields() and of loadFields, built on first use
+    private transient volatile FieldAccessPlan writePlan;
+    private transient volatile FieldAccessPlan readPlan;
+
     // MethodID for deserialization constructor
     private transient long constructor = CONSTRUCTOR_IS_NOT_RESOLVED;
 
@@ -207,6 +211,30 @@ public class ObjectStreamClass implements Serializable {
         }
     }
 
+    /**
+     * Returns the plan for writing the values of {@link #fields}.
+     */
+    FieldAccessPlan getWritePlan() {
+        FieldAccessPlan result = writePlan;
+        if (result == null) {
+            writePlan = result = new FieldAccessPlan(this, fields());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the plan for reading the values of the fields described by the
+     * stream, as set by {@link #setLoadFields}.
+     */
+    FieldAccessPlan getReadPlan() {
+        FieldAccessPlan result = readPlan;
+        if (result == null) {
+            ObjectStreamField[] fields = (loadFields == null) ? NO_FIELDS : loadFields;
+            readPlan = result = new FieldAccessPlan(this, fields);
+        }
+        return result;
+    }
+
     /*
      * If an ObjectStreamClass describes an Externalizable class, it (the
      * descriptor) should not have field descriptors (ObjectStreamField) at all.
@@ -229,7 +257,7 @@ public class ObjectStreamClass implements Serializable {
      *            descriptor
      * @return the computer class descriptor
      */
-    private static ObjectStreamClass createClassDesc(Class<?> cl) {
+    static ObjectStreamClass createClassDesc(Class<?> cl) {
 
         ObjectStreamClass result = new ObjectStreamClass();
 
@@ -304,6 +332,11 @@ public class ObjectStreamClass implements Serializable {
         if (result.hasMethodWriteObject()) {
             flags |= ObjectStreamConstants.SC_WRITE_METHOD;
         }
+        if (result.isEnum()) {
+            // Set here rather than by ObjectOutputStream, because cached
+            // descriptors are shared by all streams.
+            flags = ObjectStreamConstants.SC_SERIALIZABLE | ObjectStreamConstants.SC_ENUM;
+        }
         result.setFlags(flags);
 
         return result;
@@ -1063,34 +1096,40 @@ public class ObjectStreamClass implements Serializable {
      * @return the corresponding descriptor
      */
     static ObjectStreamClass lookupStreamClass(Class<?> cl) {
-        WeakHashMap<Class<?>, ObjectStreamClass> tlc = getCache();
-        ObjectStreamClass cachedValue = tlc.get(cl);
-        if (cachedValue == null) {
-            cachedValue = createClassDesc(cl);
-            tlc.put(cl, cachedValue);
+        WeakHashMap<Class<?>, ObjectStreamClass> cache = getCache();
+        synchronized (cache) {
+            ObjectStreamClass cachedValue = cache.get(cl);
+            if (cachedValue != null) {
+                return cachedValue;
+            }
         }
-        return cachedValue;
-
+        // Create outside the lock: createClassDesc looks up the superclass descriptors.
+        ObjectStreamClass newValue = createClassDesc(cl);
+        synchronized (cache) {
+            ObjectStreamClass cachedValue = cache.get(cl);
+            if (cachedValue != null) {
+                return cachedValue;
+            }
+            cache.put(cl, newValue);
+        }
+        return newValue;
     }
 
     /**
-     * A ThreadLocal cache for lookupStreamClass, with the possibility of discarding the thread
-     * local storage content when the heap is exhausted.
+     * A cache for lookupStreamClass shared by all threads, so that each class's
+     * descriptor and field access plans are built once. The cache is held softly
+     * so that its content can be discarded when the heap is exhausted.
      */
-    private static SoftReference<ThreadLocal<WeakHashMap<Class<?>, ObjectStreamClass>>> storage =
-            new SoftReference<ThreadLocal<WeakHashMap<Class<?>, ObjectStreamClass>>>(null);
-
-    private static WeakHashMap<Class<?>, ObjectStreamClass> getCache() {
-        ThreadLocal<WeakHashMap<Class<?>, ObjectStreamClass>> tls = storage.get();
-        if (tls == null) {
-            tls = new ThreadLocal<WeakHashMap<Class<?>, ObjectStreamClass>>() {
-                public WeakHashMap<Class<?>, ObjectStreamClass> initialValue() {
-                    return new WeakHashMap<Class<?>, ObjectStreamClass>();
-                }
-            };
-            storage = new SoftReference<ThreadLocal<WeakHashMap<Class<?>, ObjectStreamClass>>>(tls);
+    private static SoftReference<WeakHashMap<Class<?>, ObjectStreamClass>> storage =
+            new SoftReference<WeakHashMap<Class<?>, ObjectStreamClass>>(null);
+
+    private static synchronized WeakHashMap<Class<?>, ObjectStreamClass> getCache() {
+        WeakHashMap<Class<?>, ObjectStreamClass> cache = storage.get();
+        if (cache == null) {
+            cache = new WeakHashMap<Class<?>, ObjectStreamClass>();
+            storage = new SoftReference<WeakHashMap<Class<?>, ObjectStreamClass>>(cache);
         }
-        return tls.get();
+        return cache;
     }
 
     /**
@@ -1213,6 +1252,7 @@ public class ObjectStreamClass implements Serializable {
      */
     void setFields(ObjectStreamField[] f) {
         fields = f;
+        writePlan = null;
     }
 
     /**
@@ -1225,6 +1265,7 @@ public class ObjectStreamClass implements Serializable {
      */
     void setLoadFields(ObjectStreamField[] f) {
         loadFields = f;
+        readPlan = null;
     }
 
     /**
@@ -16,15 +16,26 @@
 
 package java.io;
 
+import java.util.Arrays;
+
 /**
  * A specialization of IdentityHashMap<Object, int> for use when serializing objects.
  * We need to assign each object we write an int 'handle' (densely packed but not starting
  * at zero), and use the same handle any time we write the same object again.
+ *
+ * <p>This is an open-addressing table with linear probing over a power-of-two
+ * array, so that a stream can {@link #clear} it between sessions without
+ * reallocating, and can be presized for the number of handles it expects.
  */
 final class SerializationHandleMap {
     /* Default load factor of 0.75; */
     private static final int LOAD_FACTOR = 7500;
 
+    private static final int MINIMUM_CAPACITY = 32;
+
+    /* The largest power of two that can be used as an array length. */
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
     private Object[] keys;
     private int[] values;
 
@@ -35,10 +46,23 @@ final class SerializationHandleMap {
     private int threshold;
 
     public SerializationHandleMap() {
-        this.size = 0;
-        this.threshold = 21; // Copied from IdentityHashMap.
-        int arraySize = (int) (((long) threshold * 10000) / LOAD_FACTOR);
-        resizeArrays(arraySize);
+        this(21); // Copied from IdentityHashMap.
+    }
+
+    /**
+     * Creates a map that can hold {@code expectedSize} handles without rehashing.
+     */
+    public SerializationHandleMap(int expectedSize) {
+        resizeArrays(capacityFor(expectedSize));
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long minimumCapacity = ((long) expectedSize * 10000) / LOAD_FACTOR + 1;
+        int capacity = MINIMUM_CAPACITY;
+        while (capacity < minimumCapacity && capacity < MAXIMUM_CAPACITY) {
+            capacity <<= 1;
+        }
+        return capacity;
     }
 
     private void resizeArrays(int newSize) {
@@ -47,14 +71,16 @@ final class SerializationHandleMap {
 
         this.keys = new Object[newSize];
         this.values = new int[newSize];
+        this.threshold = (int) ((long) newSize * LOAD_FACTOR / 10000);
 
         if (oldKeys != null) {
             for (int i = 0; i < oldKeys.length; ++i) {
                 Object key = oldKeys[i];
-                int value = oldValues[i];
-                int index = findIndex(key, keys);
-                keys[index] = key;
-                values[index] = value;
+                if (key != null) {
+                    int index = findIndex(key, keys);
+                    keys[index] = key;
+                    values[index] = oldValues[i];
+                }
             }
         }
     }
@@ -69,90 +95,84 @@ final class SerializationHandleMap {
 
     /**
      * Returns the index where the key is found at, or the index of the next
-     * empty spot if the key is not found in this table.
+     * empty spot if the key is not found in this table. The table always has
+     * at least one empty spot.
      */
-    private int findIndex(Object key, Object[] array) {
-        int length = array.length;
-        int index = getModuloHash(key, length);
-        int last = (index + length - 1) % length;
-        while (index != last) {
-            if (array[index] == key || array[index] == null) {
+    private static int findIndex(Object key, Object[] array) {
+        int mask = array.length - 1;
+        int index = hash(key) & mask;
+        while (true) {
+            Object candidate = array[index];
+            if (candidate == key || candidate == null) {
                 /*
                  * Found the key, or the next empty spot (which means key is not
                  * in the table)
                  */
-                break;
+                return index;
             }
-            index = (index + 1) % length;
+            index = (index + 1) & mask;
         }
-        return index;
     }
 
-    private int getModuloHash(Object key, int length) {
-        return (System.identityHashCode(key) & 0x7FFFFFFF) % length;
+    /**
+     * Spreads the identity hash code so that objects allocated close together
+     * don't cluster in the low bits used to index the table.
+     */
+    private static int hash(Object key) {
+        int h = System.identityHashCode(key);
+        h ^= (h >>> 20) ^ (h >>> 12);
+        return h ^ (h >>> 7) ^ (h >>> 4);
     }
 
     public int put(Object key, int value) {
-        Object _key = key;
-        int _value = value;
-
-        int index = findIndex(_key, keys);
+        int index = findIndex(key, keys);
 
         // if the key doesn't exist in the table
-        if (keys[index] != _key) {
+        if (keys[index] != key) {
             if (++size > threshold) {
-                rehash();
-                index = findIndex(_key, keys);
+                resizeArrays(keys.length * 2);
+                index = findIndex(key, keys);
             }
             // insert the key and assign the value to -1 initially
-            keys[index] = _key;
+            keys[index] = key;
             values[index] = -1;
         }
 
         // insert value to where it needs to go, return the old value
         int result = values[index];
-        values[index] = _value;
+        values[index] = value;
         return result;
     }
 
-    private void rehash() {
-        int newSize = keys.length * 2;
-        resizeArrays(newSize);
-        threshold = (int) ((long) (keys.length) * LOAD_FACTOR / 10000);
-    }
-
     public int remove(Object key) {
-        boolean hashedOk;
-        int index, next, hash;
-        int result;
-        Object object;
-        index = next = findIndex(key, keys);
-
+        int index = findIndex(key, keys);
         if (keys[index] != key) {
             return -1;
         }
+        int result = values[index];
+        removeAt(index);
+        return result;
+    }
 
-        // store the value for this key
-        result = values[index];
-
-        // shift the following elements up if needed
-        // until we reach an empty spot
-        int length = keys.length;
+    /**
+     * Removes the entry at {@code index}, then shifts the following entries of
+     * its probe run back so that none of them becomes unreachable.
+     */
+    private void removeAt(int index) {
+        int mask = keys.length - 1;
+        int next = index;
         while (true) {
-            next = (next + 2) % length;
-            object = keys[next];
+            next = (next + 1) & mask;
+            Object object = keys[next];
             if (object == null) {
                 break;
             }
-
-            hash = getModuloHash(object, length);
-            hashedOk = hash > index;
-            if (next < index) {
-                hashedOk = hashedOk || (hash <= next);
-            } else {
-                hashedOk = hashedOk && (hash <= next);
-            }
-            if (!hashedOk) {
+            // Move object into the hole unless its home slot lies cyclically in (index, next].
+            int home = hash(object) & mask;
+            boolean reachable = (index <= next)
+                    ? (index < home && home <= next)
+                    : (index < home || home <= next);
+            if (!reachable) {
                 keys[index] = object;
                 values[index] = values[next];
                 index = next;
@@ -163,11 +183,58 @@ final class SerializationHandleMap {
         // clear both the key and the value
         keys[index] = null;
         values[index] = -1;
+    }
 
-        return result;
+    /**
+     * Removes every entry whose handle is not among the first {@code count}
+     * of {@code handles}, which are in ascending order, and renumbers the
+     * others so that {@code handles[i]} becomes {@code firstHandle + i}.
+     */
+    public void retainHandles(int[] handles, int count, int firstHandle) {
+        for (int i = 0; i < keys.length; ) {
+            if (keys[i] != null && Arrays.binarySearch(handles, 0, count, values[i]) < 0) {
+                // removeAt may shift a later entry into slot i, so examine it again.
+                removeAt(i);
+            } else {
+                i++;
+            }
+        }
+        // Renumber in a second pass: removeAt can move an entry that has
+        // already been examined, which must not be renumbered twice.
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                values[i] = firstHandle + Arrays.binarySearch(handles, 0, count, values[i]);
+            }
+        }
+    }
+
+    /**
+     * Shrinks the table if it is more than four times as large as {@code
+     * expectedSize} handles need, so that one unusually large session doesn't
+     * keep a large table for the rest of the stream.
+     */
+    public void trim(int expectedSize) {
+        int capacity = capacityFor(Math.max(expectedSize, size));
+        if (keys.length / 4 > capacity) {
+            resizeArrays(capacity);
+        }
+    }
+
+    /**
+     * Removes all entries while keeping the table's current capacity.
+     */
+    public void clear() {
+        if (size != 0) {
+            Arrays.fill(keys, null);
+            size = 0;
+        }
     }
 
     public boolean isEmpty() {
         return size == 0;
     }
+
+    public int size() {
+        return size;
+    }
 }
@@ -316,6 +316,22 @@ public final class Double extends Number implements Comparable<Double> {
         return StringToReal.parseDouble(string);
     }
 
+    /**
+     * Parses the characters of {@code string} between {@code start} and
+     * {@code end} as a double value, like {@code parseDouble(string.subSequence(start,
+     * end).toString())} but without copying the characters in the common case.
+     *
+     * @throws NumberFormatException
+     *             if the characters cannot be parsed as a double value.
+     * @throws IndexOutOfBoundsException
+     *             if {@code start < 0}, {@code start > end} or
+     *             {@code end > string.length()}.
+     * @hide
+     */
+    public static double parseDouble(CharSequence string, int start, int end) throws NumberFormatException {
+        return StringToReal.parseDouble(string, start, end);
+    }
+
     @Override
     public short shortValue() {
         return (short) value;
@@ -335,7 +351,7 @@ public final class Double extends Number implements Comparable<Double> {
      * @return a printable representation of {@code d}.
      */
     public static String toString(double d) {
-        return RealToString.getInstance().doubleToString(d);
+        return RealToString.doubleToString(d);
     }
 
     /**
@@ -321,6 +321,22 @@ public final class Float extends Number implements Comparable<Float> {
         return StringToReal.parseFloat(string);
     }
 
+    /**
+     * Parses the characters of {@code string} between {@code start} and
+     * {@code end} as a float value, like {@code parseFloat(string.subSequence(start,
+     * end).toString())} but without copying the characters in the common case.
+     *
+     * @throws NumberFormatException
+     *             if the characters cannot be parsed as a float value.
+     * @throws IndexOutOfBoundsException
+     *             if {@code start < 0}, {@code start > end} or
+     *             {@code end > string.length()}.
+     * @hide
+     */
+    public static float parseFloat(CharSequence string, int start, int end) throws NumberFormatException {
+        return StringToReal.parseFloat(string, start, end);
+    }
+
     @Override
     public short shortValue() {
         return (short) value;
@@ -340,7 +356,7 @@ public final class Float extends Number implements Comparable<Float> {
      * @return a printable representation of {@code f}.
      */
     public static String toString(float f) {
-        return RealToString.getInstance().floatToString(f);
+        return RealToString.floatToString(f);
     }
 
     /**
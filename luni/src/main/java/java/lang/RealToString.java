@@ -17,38 +17,68 @@
 
 package java.lang;
 
-import libcore.math.MathUtils;
-
 // begin WITH_TAINT_TRACKING
 import dalvik.system.Taint;
 // end WITH_TAINT_TRACKING
 
+/**
+ * Converts doubles and floats to the shortest decimal string that parses back
+ * to the same value, using the Ryu algorithm: Ulf Adams, "Ryu: Fast
+ * Float-to-String Conversion", PLDI 2018.
+ *
+ * <p>The binary value and the bounds of the interval of values that round to
+ * it are multiplied by a precomputed power of five, using 64-bit integer
+ * arithmetic only. Decimal digits are then removed while the bounds remain
+ * distinct. Of the shortest candidates, the one closest to the exact value is
+ * chosen, preferring an even last digit on ties.
+ */
 final class RealToString {
-    private static final ThreadLocal<RealToString> INSTANCE = new ThreadLocal<RealToString>() {
-        @Override protected RealToString initialValue() {
-            return new RealToString();
-        }
-    };
 
-    private static final double invLogOfTenBaseTwo = Math.log(2.0) / Math.log(10.0);
+    private static final int DOUBLE_MANTISSA_BITS = 52;
+    private static final int DOUBLE_BIAS = 1023;
+    private static final int DOUBLE_POW5_INV_BITCOUNT = 125;
+    private static final int DOUBLE_POW5_BITCOUNT = 125;
 
-    private int firstK;
+    private static final int FLOAT_MANTISSA_BITS = 23;
+    private static final int FLOAT_BIAS = 127;
+    private static final int FLOAT_POW5_INV_BITCOUNT = 59;
+    private static final int FLOAT_POW5_BITCOUNT = 61;
 
     /**
-     * An array of decimal digits, filled by longDigitGenerator or bigIntDigitGenerator.
+     * Zero and the smallest multiples of Float.MIN_VALUE. The latter get a second
+     * digit for precision, as in "1.4E-45" rather than "1.0E-45".
      */
-    private final int[] digits = new int[64];
+    private static final String[] SMALL_FLOATS = {
+        "0.0", "1.4E-45", "2.8E-45", "4.2E-45", "5.6E-45", "7.0E-45", "8.4E-45", "9.8E-45",
+    };
 
     /**
-     * Number of valid entries in 'digits'.
+     * Holds output before it is appended to a builder. The longest output is
+     * 24 chars, as in "-2.2250738585072014E-308".
      */
-    private int digitCount;
+    private static final ThreadLocal<char[]> BUFFER = new ThreadLocal<char[]>() {
+        @Override protected char[] initialValue() {
+            return new char[24];
+        }
+    };
 
     private RealToString() {
     }
 
-    public static RealToString getInstance() {
-        return INSTANCE.get();
+    public static String doubleToString(double d) {
+        return convertDouble(null, d);
+    }
+
+    public static void appendDouble(AbstractStringBuilder sb, double d) {
+        convertDouble(sb, d);
+    }
+
+    public static String floatToString(float f) {
+        return convertFloat(null, f);
+    }
+
+    public static void appendFloat(AbstractStringBuilder sb, float f) {
+        convertFloat(sb, f);
     }
 
     private static String resultOrSideEffect(AbstractStringBuilder sb, String s) {
@@ -59,36 +89,27 @@ final class RealToString {
         return s;
     }
 
-    public String doubleToString(double d) {
-        return convertDouble(null, d);
-    }
-
-    public void appendDouble(AbstractStringBuilder sb, double d) {
-        convertDouble(sb, d);
-    }
-
-    private String convertDouble(AbstractStringBuilder sb, double inputNumber) {
+    private static String convertDouble(AbstractStringBuilder sb, double inputNumber) {
 // begin WITH_TAINT_TRACKING
-    	int tag = Taint.getTaintDouble(inputNumber);
+        int tag = Taint.getTaintDouble(inputNumber);
 // end WITH_TAINT_TRACKING
-		
+
         long inputNumberBits = Double.doubleToRawLongBits(inputNumber);
         boolean positive = (inputNumberBits & Double.SIGN_MASK) == 0;
-        int e = (int) ((inputNumberBits & Double.EXPONENT_MASK) >> Double.MANTISSA_BITS);
-        long f = inputNumberBits & Double.MANTISSA_MASK;
-        boolean mantissaIsZero = f == 0;
+        int ieeeExponent = (int) ((inputNumberBits & Double.EXPONENT_MASK) >> Double.MANTISSA_BITS);
+        long ieeeMantissa = inputNumberBits & Double.MANTISSA_MASK;
 
         String quickResult = null;
-        if (e == 2047) {
-            if (mantissaIsZero) {
+        if (ieeeExponent == 2047) {
+            if (ieeeMantissa == 0) {
                 quickResult = positive ? "Infinity" : "-Infinity";
             } else {
                 quickResult = "NaN";
             }
-        } else if (e == 0) {
-            if (mantissaIsZero) {
+        } else if (ieeeExponent == 0) {
+            if (ieeeMantissa == 0) {
                 quickResult = positive ? "0.0" : "-0.0";
-            } else if (f == 1) {
+            } else if (ieeeMantissa == 1) {
                 // special case to increase precision even though 2 * Double.MIN_VALUE is 1.0e-323
                 quickResult = positive ? "4.9E-324" : "-4.9E-324";
             }
@@ -98,263 +119,833 @@ final class RealToString {
             if (tag != Taint.TAINT_CLEAR) {
                 Taint.addTaintString(quickResult, tag);
             }
-// end WITH_TAINT_TRACKING	
+// end WITH_TAINT_TRACKING
             return resultOrSideEffect(sb, quickResult);
         }
 
-        int p = Double.EXPONENT_BIAS + Double.MANTISSA_BITS; // the power offset (precision)
-        int pow;
-        int numBits = Double.MANTISSA_BITS;
-        if (e == 0) {
-            pow = 1 - p; // a denormalized number
-            long ff = f;
-            while ((ff & 0x0010000000000000L) == 0) {
-                ff = ff << 1;
-                numBits--;
-            }
-        } else {
-            // 0 < e < 2047
-            // a "normalized" number
-            f = f | 0x0010000000000000L;
-            pow = e - p;
-        }
-
-        firstK = digitCount = 0;
-        if (-59 < pow && pow < 6 || (pow == -59 && !mantissaIsZero)) {
-            longDigitGenerator(f, pow, e == 0, mantissaIsZero, numBits);
+        // The value is m2 * 2^e2. Two extra bits make room for the interval bounds.
+        int e2;
+        long m2;
+        if (ieeeExponent == 0) {
+            e2 = 1 - DOUBLE_BIAS - DOUBLE_MANTISSA_BITS - 2;
+            m2 = ieeeMantissa;
         } else {
-            bigIntDigitGenerator(f, pow, e == 0, numBits);
+            e2 = ieeeExponent - DOUBLE_BIAS - DOUBLE_MANTISSA_BITS - 2;
+            m2 = (1L << DOUBLE_MANTISSA_BITS) | ieeeMantissa;
         }
-        AbstractStringBuilder dst = (sb != null) ? sb : new StringBuilder(26);
-        if (inputNumber >= 1e7D || inputNumber <= -1e7D
-                || (inputNumber > -1e-3D && inputNumber < 1e-3D)) {
-            freeFormatExponential(dst, positive);
+        boolean acceptBounds = (m2 & 1) == 0;
+
+        // The interval of values that round to this one is [mm, mp] * 2^e2, with the
+        // lower bound closer when the mantissa is a power of two.
+        long mv = 4 * m2;
+        int mmShift = ieeeMantissa != 0 || ieeeExponent <= 1 ? 1 : 0;
+
+        // Scale by a power of ten to get decimal bounds vm, vr and vp times 10^e10.
+        long vr;
+        long vp;
+        long vm;
+        int e10;
+        boolean vmIsTrailingZeros = false;
+        boolean vrIsTrailingZeros = false;
+        if (e2 >= 0) {
+            int q = log10Pow2(e2) - (e2 > 3 ? 1 : 0);
+            e10 = q;
+            int k = DOUBLE_POW5_INV_BITCOUNT + pow5bits(q) - 1;
+            int i = -e2 + q + k;
+            long mulHigh = DOUBLE_POW5_INV_SPLIT[2 * q];
+            long mulLow = DOUBLE_POW5_INV_SPLIT[2 * q + 1];
+            vr = mulShift64(mv, mulHigh, mulLow, i);
+            vp = mulShift64(mv + 2, mulHigh, mulLow, i);
+            vm = mulShift64(mv - 1 - mmShift, mulHigh, mulLow, i);
+            if (q <= 21) {
+                // Only one of mp, mv, and mm can be a multiple of 5, if any.
+                if (mv % 5 == 0) {
+                    vrIsTrailingZeros = multipleOfPowerOf5(mv, q);
+                } else if (acceptBounds) {
+                    vmIsTrailingZeros = multipleOfPowerOf5(mv - 1 - mmShift, q);
+                } else if (multipleOfPowerOf5(mv + 2, q)) {
+                    vp--;
+                }
+            }
         } else {
-            freeFormat(dst, positive);
+            int q = log10Pow5(-e2) - (-e2 > 1 ? 1 : 0);
+            e10 = q + e2;
+            int i = -e2 - q;
+            int k = pow5bits(i) - DOUBLE_POW5_BITCOUNT;
+            int j = q - k;
+            long mulHigh = DOUBLE_POW5_SPLIT[2 * i];
+            long mulLow = DOUBLE_POW5_SPLIT[2 * i + 1];
+            vr = mulShift64(mv, mulHigh, mulLow, j);
+            vp = mulShift64(mv + 2, mulHigh, mulLow, j);
+            vm = mulShift64(mv - 1 - mmShift, mulHigh, mulLow, j);
+            if (q <= 1) {
+                // mv = 4 * m2 always has at least two trailing zero bits.
+                vrIsTrailingZeros = true;
+                if (acceptBounds) {
+                    vmIsTrailingZeros = mmShift == 1;
+                } else {
+                    vp--;
+                }
+            } else if (q < 63) {
+                vrIsTrailingZeros = (mv & ((1L << q) - 1)) == 0;
+            }
         }
-		
-// begin WITH_TAINT_TRACKING
-        if (tag != Taint.TAINT_CLEAR) {
-            String ts = dst.toString();
-            Taint.addTaintString(ts, tag);
-            return (sb != null) ? null : ts;
+
+        // Remove digits while the bounds differ.
+        int removed = 0;
+        int lastRemovedDigit = 0;
+        long output;
+        if (vmIsTrailingZeros || vrIsTrailingZeros) {
+            // The exact value may end in zeros, which affects rounding; this is rare.
+            while (vp / 10 > vm / 10) {
+                vmIsTrailingZeros &= vm % 10 == 0;
+                vrIsTrailingZeros &= lastRemovedDigit == 0;
+                lastRemovedDigit = (int) (vr % 10);
+                vr /= 10;
+                vp /= 10;
+                vm /= 10;
+                removed++;
+            }
+            if (vmIsTrailingZeros) {
+                while (vm % 10 == 0) {
+                    vrIsTrailingZeros &= lastRemovedDigit == 0;
+                    lastRemovedDigit = (int) (vr % 10);
+                    vr /= 10;
+                    vp /= 10;
+                    vm /= 10;
+                    removed++;
+                }
+            }
+            if (vrIsTrailingZeros && lastRemovedDigit == 5 && vr % 2 == 0) {
+                // Round to even if the exact value is .....50..0.
+                lastRemovedDigit = 4;
+            }
+            output = vr;
+            if ((vr == vm && (!acceptBounds || !vmIsTrailingZeros)) || lastRemovedDigit >= 5) {
+                output++;
+            }
         } else {
-            return (sb != null) ? null : dst.toString();
+            boolean roundUp = false;
+            if (vp / 100 > vm / 100) {
+                // Remove two digits at a time while possible.
+                roundUp = vr % 100 >= 50;
+                vr /= 100;
+                vp /= 100;
+                vm /= 100;
+                removed += 2;
+            }
+            while (vp / 10 > vm / 10) {
+                roundUp = vr % 10 >= 5;
+                vr /= 10;
+                vp /= 10;
+                vm /= 10;
+                removed++;
+            }
+            output = vr;
+            if (vr == vm || roundUp) {
+                output++;
+            }
         }
-// end WITH_TAINT_TRACKING
-    }
-
-    public String floatToString(float f) {
-        return convertFloat(null, f);
-    }
-
-    public void appendFloat(AbstractStringBuilder sb, float f) {
-        convertFloat(sb, f);
+        return format(sb, positive, output, e10 + removed, tag);
     }
 
-    public String convertFloat(AbstractStringBuilder sb, float inputNumber) {
+    private static String convertFloat(AbstractStringBuilder sb, float inputNumber) {
 // begin WITH_TAINT_TRACKING
         int tag = Taint.getTaintFloat(inputNumber);
 // end WITH_TAINT_TRACKING
-		
+
         int inputNumberBits = Float.floatToRawIntBits(inputNumber);
         boolean positive = (inputNumberBits & Float.SIGN_MASK) == 0;
-        int e = (inputNumberBits & Float.EXPONENT_MASK) >> Float.MANTISSA_BITS;
-        int f = inputNumberBits & Float.MANTISSA_MASK;
-        boolean mantissaIsZero = f == 0;
+        int ieeeExponent = (inputNumberBits & Float.EXPONENT_MASK) >> Float.MANTISSA_BITS;
+        int ieeeMantissa = inputNumberBits & Float.MANTISSA_MASK;
 
         String quickResult = null;
-        if (e == 255) {
-            if (mantissaIsZero) {
+        if (ieeeExponent == 255) {
+            if (ieeeMantissa == 0) {
                 quickResult = positive ? "Infinity" : "-Infinity";
             } else {
                 quickResult = "NaN";
             }
-        } else if (e == 0 && mantissaIsZero) {
-            quickResult = positive ? "0.0" : "-0.0";
+        } else if (ieeeExponent == 0 && ieeeMantissa < SMALL_FLOATS.length) {
+            quickResult = positive ? SMALL_FLOATS[ieeeMantissa] : "-" + SMALL_FLOATS[ieeeMantissa];
         }
         if (quickResult != null) {
 // begin WITH_TAINT_TRACKING
             if (tag != Taint.TAINT_CLEAR) {
                 Taint.addTaintString(quickResult, tag);
             }
-// end WITH_TAINT_TRACKING	
+// end WITH_TAINT_TRACKING
             return resultOrSideEffect(sb, quickResult);
         }
 
-        int p = Float.EXPONENT_BIAS + Float.MANTISSA_BITS; // the power offset (precision)
-        int pow;
-        int numBits = Float.MANTISSA_BITS;
-        if (e == 0) {
-            pow = 1 - p; // a denormalized number
-            if (f < 8) { // want more precision with smallest values
-                f = f << 2;
-                pow -= 2;
+        // As for doubles, but all intermediate values fit in 32 bits. They are
+        // held in longs to keep the arithmetic unsigned.
+        int e2;
+        long m2;
+        if (ieeeExponent == 0) {
+            e2 = 1 - FLOAT_BIAS - FLOAT_MANTISSA_BITS - 2;
+            m2 = ieeeMantissa;
+        } else {
+            e2 = ieeeExponent - FLOAT_BIAS - FLOAT_MANTISSA_BITS - 2;
+            m2 = (1L << FLOAT_MANTISSA_BITS) | ieeeMantissa;
+        }
+        boolean acceptBounds = (m2 & 1) == 0;
+
+        long mv = 4 * m2;
+        long mp = 4 * m2 + 2;
+        int mmShift = ieeeMantissa != 0 || ieeeExponent <= 1 ? 1 : 0;
+        long mm = 4 * m2 - 1 - mmShift;
+
+        long vr;
+        long vp;
+        long vm;
+        int e10;
+        boolean vmIsTrailingZeros = false;
+        boolean vrIsTrailingZeros = false;
+        int lastRemovedDigit = 0;
+        if (e2 >= 0) {
+            int q = log10Pow2(e2);
+            e10 = q;
+            int k = FLOAT_POW5_INV_BITCOUNT + pow5bits(q) - 1;
+            int i = -e2 + q + k;
+            vr = mulShift32(mv, FLOAT_POW5_INV_SPLIT[q], i);
+            vp = mulShift32(mp, FLOAT_POW5_INV_SPLIT[q], i);
+            vm = mulShift32(mm, FLOAT_POW5_INV_SPLIT[q], i);
+            if (q != 0 && (vp - 1) / 10 <= vm / 10) {
+                // The loop below won't remove a digit, but the rounding needs one.
+                int l = FLOAT_POW5_INV_BITCOUNT + pow5bits(q - 1) - 1;
+                lastRemovedDigit = (int) (mulShift32(mv, FLOAT_POW5_INV_SPLIT[q - 1],
+                        -e2 + q - 1 + l) % 10);
             }
-            int ff = f;
-            while ((ff & 0x00800000) == 0) {
-                ff = ff << 1;
-                numBits--;
+            if (q <= 9) {
+                // Only one of mp, mv, and mm can be a multiple of 5, if any.
+                if (mv % 5 == 0) {
+                    vrIsTrailingZeros = multipleOfPowerOf5(mv, q);
+                } else if (acceptBounds) {
+                    vmIsTrailingZeros = multipleOfPowerOf5(mm, q);
+                } else if (multipleOfPowerOf5(mp, q)) {
+                    vp--;
+                }
             }
         } else {
-            // 0 < e < 255
-            // a "normalized" number
-            f = f | 0x00800000;
-            pow = e - p;
+            int q = log10Pow5(-e2);
+            e10 = q + e2;
+            int i = -e2 - q;
+            int k = pow5bits(i) - FLOAT_POW5_BITCOUNT;
+            int j = q - k;
+            vr = mulShift32(mv, FLOAT_POW5_SPLIT[i], j);
+            vp = mulShift32(mp, FLOAT_POW5_SPLIT[i], j);
+            vm = mulShift32(mm, FLOAT_POW5_SPLIT[i], j);
+            if (q != 0 && (vp - 1) / 10 <= vm / 10) {
+                j = q - 1 - (pow5bits(i + 1) - FLOAT_POW5_BITCOUNT);
+                lastRemovedDigit = (int) (mulShift32(mv, FLOAT_POW5_SPLIT[i + 1], j) % 10);
+            }
+            if (q <= 1) {
+                vrIsTrailingZeros = true;
+                if (acceptBounds) {
+                    vmIsTrailingZeros = mmShift == 1;
+                } else {
+                    vp--;
+                }
+            } else if (q < 31) {
+                vrIsTrailingZeros = (mv & ((1L << (q - 1)) - 1)) == 0;
+            }
         }
 
-        firstK = digitCount = 0;
-        if (-59 < pow && pow < 35 || (pow == -59 && !mantissaIsZero)) {
-            longDigitGenerator(f, pow, e == 0, mantissaIsZero, numBits);
+        int removed = 0;
+        long output;
+        if (vmIsTrailingZeros || vrIsTrailingZeros) {
+            while (vp / 10 > vm / 10) {
+                vmIsTrailingZeros &= vm % 10 == 0;
+                vrIsTrailingZeros &= lastRemovedDigit == 0;
+                lastRemovedDigit = (int) (vr % 10);
+                vr /= 10;
+                vp /= 10;
+                vm /= 10;
+                removed++;
+            }
+            if (vmIsTrailingZeros) {
+                while (vm % 10 == 0) {
+                    vrIsTrailingZeros &= lastRemovedDigit == 0;
+                    lastRemovedDigit = (int) (vr % 10);
+                    vr /= 10;
+                    vp /= 10;
+                    vm /= 10;
+                    removed++;
+                }
+            }
+            if (vrIsTrailingZeros && lastRemovedDigit == 5 && vr % 2 == 0) {
+                lastRemovedDigit = 4;
+            }
+            output = vr;
+            if ((vr == vm && (!acceptBounds || !vmIsTrailingZeros)) || lastRemovedDigit >= 5) {
+                output++;
+            }
         } else {
-            bigIntDigitGenerator(f, pow, e == 0, numBits);
+            while (vp / 10 > vm / 10) {
+                lastRemovedDigit = (int) (vr % 10);
+                vr /= 10;
+                vp /= 10;
+                vm /= 10;
+                removed++;
+            }
+            output = vr;
+            if (vr == vm || lastRemovedDigit >= 5) {
+                output++;
+            }
+        }
+        return format(sb, positive, output, e10 + removed, tag);
+    }
+
+    /**
+     * Formats {@code digits * 10^exponent}: in scientific notation as in
+     * "1.234E-5" if the value is below 10^-3 or at least 10^7, and otherwise
+     * in plain notation as in "0.001234" or "1234.0".
+     */
+    private static String format(AbstractStringBuilder sb, boolean positive, long digits,
+            int exponent, int tag) {
+        int length = decimalLength(digits);
+        int scientificExponent = exponent + length - 1;
+        char[] buf = (sb != null) ? BUFFER.get() : new char[24];
+        int cursor = 0;
+        if (!positive) {
+            buf[cursor++] = '-';
         }
-        AbstractStringBuilder dst = (sb != null) ? sb : new StringBuilder(26);
-        if (inputNumber >= 1e7f || inputNumber <= -1e7f
-                || (inputNumber > -1e-3f && inputNumber < 1e-3f)) {
-            freeFormatExponential(dst, positive);
+
+        if (scientificExponent < -3 || scientificExponent >= 7) {
+            // d.dddEn or d.dddE-n, with at least one digit after the point.
+            int end = cursor + length + 1;
+            writeDigits(buf, end, digits, length - 1);
+            buf[cursor + 1] = '.';
+            cursor = end;
+            if (length == 1) {
+                buf[cursor++] = '0';
+            }
+            buf[cursor++] = 'E';
+            int e = scientificExponent;
+            if (e < 0) {
+                buf[cursor++] = '-';
+                e = -e;
+            }
+            if (e >= 100) {
+                buf[cursor++] = (char) ('0' + e / 100);
+                e %= 100;
+                buf[cursor++] = (char) ('0' + e / 10);
+            } else if (e >= 10) {
+                buf[cursor++] = (char) ('0' + e / 10);
+            }
+            buf[cursor++] = (char) ('0' + e % 10);
+        } else if (scientificExponent < 0) {
+            // 0.000ddd
+            buf[cursor++] = '0';
+            buf[cursor++] = '.';
+            for (int i = -1; i > scientificExponent; i--) {
+                buf[cursor++] = '0';
+            }
+            cursor += length;
+            writeDigits(buf, cursor, digits, length);
+        } else if (exponent >= 0) {
+            // ddd000.0
+            writeDigits(buf, cursor + length, digits, length);
+            cursor += length;
+            for (int i = 0; i < exponent; i++) {
+                buf[cursor++] = '0';
+            }
+            buf[cursor++] = '.';
+            buf[cursor++] = '0';
         } else {
-            freeFormat(dst, positive);
+            // ddd.ddd
+            int integerDigits = scientificExponent + 1;
+            int end = cursor + length + 1;
+            writeDigits(buf, end, digits, length - integerDigits);
+            buf[cursor + integerDigits] = '.';
+            cursor = end;
+        }
+
+        if (sb != null) {
+            sb.append0(buf, 0, cursor);
+            return null;
         }
-        
 // begin WITH_TAINT_TRACKING
+        String result = new String(0, cursor, buf);
         if (tag != Taint.TAINT_CLEAR) {
-            String ts = dst.toString();
-            Taint.addTaintString(ts, tag);
-            return (sb != null) ? null : ts;
-        } else {
-            return (sb != null) ? null : dst.toString();
+            Taint.addTaintString(result, tag);
         }
+        return result;
 // end WITH_TAINT_TRACKING
     }
 
-    private void freeFormatExponential(AbstractStringBuilder sb, boolean positive) {
-        int digitIndex = 0;
-        if (!positive) {
-            sb.append0('-');
-        }
-        sb.append0((char) ('0' + digits[digitIndex++]));
-        sb.append0('.');
-
-        int k = firstK;
-        int exponent = k;
-        while (true) {
-            k--;
-            if (digitIndex >= digitCount) {
-                break;
+    /**
+     * Writes the decimal digits of {@code value} to {@code buf}, ending before
+     * {@code end}. The first {@code split} digits from the right are written
+     * at their place; the rest are written one place further left, leaving a
+     * gap for a decimal point.
+     */
+    private static void writeDigits(char[] buf, int end, long value, int split) {
+        int cursor = end;
+        for (int i = 0; value != 0; i++) {
+            if (i == split) {
+                cursor--;
             }
-            sb.append0((char) ('0' + digits[digitIndex++]));
+            buf[--cursor] = (char) ('0' + (int) (value % 10));
+            value /= 10;
         }
+    }
 
-        if (k == exponent - 1) {
-            sb.append0('0');
+    private static int decimalLength(long v) {
+        int length = 1;
+        long limit = 10;
+        while (length < 17 && v >= limit) {
+            length++;
+            limit *= 10;
         }
-        sb.append0('E');
-        IntegralToString.appendInt(sb, exponent);
+        return length;
     }
 
-    private void freeFormat(AbstractStringBuilder sb, boolean positive) {
-        int digitIndex = 0;
-        if (!positive) {
-            sb.append0('-');
-        }
-        int k = firstK;
-        if (k < 0) {
-            sb.append0('0');
-            sb.append0('.');
-            for (int i = k + 1; i < 0; ++i) {
-                sb.append0('0');
-            }
-        }
-        int U = digits[digitIndex++];
-        do {
-            if (U != -1) {
-                sb.append0((char) ('0' + U));
-            } else if (k >= -1) {
-                sb.append0('0');
-            }
-            if (k == 0) {
-                sb.append0('.');
-            }
-            k--;
-            U = digitIndex < digitCount ? digits[digitIndex++] : -1;
-        } while (U != -1 || k >= -1);
+    /** Returns ceil(log2(5^e)), for 0 <= e <= 3528. */
+    private static int pow5bits(int e) {
+        return ((e * 1217359) >>> 19) + 1;
+    }
+
+    /** Returns floor(log10(2^e)), for 0 <= e <= 1650. */
+    private static int log10Pow2(int e) {
+        return (e * 78913) >>> 18;
     }
 
-    private native void bigIntDigitGenerator(long f, int e, boolean isDenormalized, int p);
+    /** Returns floor(log10(5^e)), for 0 <= e <= 2620. */
+    private static int log10Pow5(int e) {
+        return (e * 732923) >>> 20;
+    }
 
-    private void longDigitGenerator(long f, int e, boolean isDenormalized,
-            boolean mantissaIsZero, int p) {
-        long R, S, M;
-        if (e >= 0) {
-            M = 1l << e;
-            if (!mantissaIsZero) {
-                R = f << (e + 1);
-                S = 2;
-            } else {
-                R = f << (e + 2);
-                S = 4;
-            }
-        } else {
-            M = 1;
-            if (isDenormalized || !mantissaIsZero) {
-                R = f << 1;
-                S = 1l << (1 - e);
-            } else {
-                R = f << 2;
-                S = 1l << (2 - e);
+    private static boolean multipleOfPowerOf5(long value, int p) {
+        int count = 0;
+        while (value % 5 == 0) {
+            value /= 5;
+            if (++count >= p) {
+                return true;
             }
         }
+        return count >= p;
+    }
 
-        int k = (int) Math.ceil((e + p - 1) * invLogOfTenBaseTwo - 1e-10);
-
-        if (k > 0) {
-            S = S * MathUtils.LONG_POWERS_OF_TEN[k];
-        } else if (k < 0) {
-            long scale = MathUtils.LONG_POWERS_OF_TEN[-k];
-            R = R * scale;
-            M = M == 1 ? scale : M * scale;
+    /**
+     * Returns (m * (high * 2^64 + low)) >> j as an unsigned 128-bit product,
+     * for j >= 64. {@code high} and {@code m} are nonnegative; {@code low} is
+     * unsigned.
+     */
+    private static long mulShift64(long m, long high, long low, int j) {
+        long b0High = unsignedMultiplyHigh(m, low);
+        long b2Low = m * high;
+        long b2High = unsignedMultiplyHigh(m, high);
+        long sumLow = b0High + b2Low;
+        // Carry if the unsigned sum wrapped around.
+        long sumHigh = b2High + ((sumLow ^ Long.MIN_VALUE) < (b0High ^ Long.MIN_VALUE) ? 1 : 0);
+        int shift = j - 64;
+        if (shift == 0) {
+            return sumLow;
         }
+        return (sumLow >>> shift) | (sumHigh << (64 - shift));
+    }
 
-        if (R + M > S) { // was M_plus
-            firstK = k;
-        } else {
-            firstK = k - 1;
-            R = R * 10;
-            M = M * 10;
-        }
+    static long unsignedMultiplyHigh(long a, long b) {
+        long aLow = a & 0xffffffffL;
+        long aHigh = a >>> 32;
+        long bLow = b & 0xffffffffL;
+        long bHigh = b >>> 32;
+        long lowLow = aLow * bLow;
+        long lowHigh = aLow * bHigh;
+        long highLow = aHigh * bLow;
+        long cross = (lowLow >>> 32) + (highLow & 0xffffffffL) + lowHigh;
+        return aHigh * bHigh + (highLow >>> 32) + (cross >>> 32);
+    }
 
-        boolean low, high;
-        int U;
-        while (true) {
-            // Set U to floor(R/S) and R to the remainder, using *unsigned* 64-bit division
-            U = 0;
-            for (int i = 3; i >= 0; i--) {
-                long remainder = R - (S << i);
-                if (remainder >= 0) {
-                    R = remainder;
-                    U += 1 << i;
-                }
-            }
+    /** Returns (m * factor) >> shift, for 32 < shift and m < 2^32. */
+    private static long mulShift32(long m, long factor, int shift) {
+        long bits0 = m * (factor & 0xffffffffL);
+        long bits1 = m * (factor >>> 32);
+        return ((bits0 >>> 32) + bits1) >>> (shift - 32);
+    }
 
-            low = R < M; // was M_minus
-            high = R + M > S; // was M_plus
+    /**
+     * 2^(bitlength(5^q) - 1 + 125) / 5^q + 1 for 0 <= q < 342, as pairs of
+     * high and low 64-bit words.
+     */
+    private static final long[] DOUBLE_POW5_INV_SPLIT = {
+        0x2000000000000000L, 0x0000000000000001L, 0x1999999999999999L, 0x999999999999999aL,
+        0x147ae147ae147ae1L, 0x47ae147ae147ae15L, 0x10624dd2f1a9fbe7L, 0x6c8b4395810624deL,
+        0x1a36e2eb1c432ca5L, 0x7a786c226809d496L, 0x14f8b588e368f084L, 0x61f9f01b866e43abL,
+        0x10c6f7a0b5ed8d36L, 0xb4c7f34938583622L, 0x1ad7f29abcaf4857L, 0x87a6520ec08d236aL,
+        0x15798ee2308c39dfL, 0x9fb841a566d74f88L, 0x112e0be826d694b2L, 0xe62d01511f12a607L,
+        0x1b7cdfd9d7bdbab7L, 0xd6ae6881cb5109a4L, 0x15fd7fe17964955fL, 0xdef1ed34a2a73aeaL,
+        0x119799812dea1119L, 0x7f27f0f6e885c8bbL, 0x1c25c268497681c2L, 0x650cb4be40d60df8L,
+        0x16849b86a12b9b01L, 0xea70909833de7193L, 0x1203af9ee756159bL, 0x21f3a6e0297ec143L,
+        0x1cd2b297d889bc2bL, 0x6985d7cd0f313537L, 0x170ef54646d49689L, 0x2137dfd73f5a90f9L,
+        0x12725dd1d243aba0L, 0xe75fe645cc4873faL, 0x1d83c94fb6d2ac34L, 0xa5663d3c7a0d865dL,
+        0x179ca10c9242235dL, 0x511e976394d79eb1L, 0x12e3b40a0e9b4f7dL, 0xda7edf82dd794bc1L,
+        0x1e392010175ee596L, 0x2a6498d1625bac68L, 0x182db34012b25144L, 0xeeb6e0a781e2f053L,
+        0x1357c299a88ea76aL, 0x58924d52ce4f26a9L, 0x1ef2d0f5da7dd8aaL, 0x27507bb7b07ea441L,
+        0x18c240c4aecb13bbL, 0x52a6c95fc0655034L, 0x13ce9a36f23c0fc9L, 0x0eebd44c99eaa690L,
+        0x1fb0f6be50601941L, 0xb17953adc3110a80L, 0x195a5efea6b34767L, 0xc12ddc8b02740867L,
+        0x14484bfeebc29f86L, 0x3424b06f3529a052L, 0x1039d66589687f9eL, 0x901d59f290ee19dbL,
+        0x19f623d5a8a73297L, 0x4cfbc31db4b0295fL, 0x14c4e977ba1f5bacL, 0x3d9635b15d59bab2L,
+        0x109d8792fb4c4956L, 0x97ab5e277de16228L, 0x1a95a5b7f87a0ef0L, 0xf2abc9d8c9689d0dL,
+        0x154484932d2e725aL, 0x5bbca17a3aba173eL, 0x11039d428a8b8eaeL, 0xafca1ac82efb45cbL,
+        0x1b38fb9daa78e44aL, 0xb2dcf7a6b1920945L, 0x15c72fb1552d836eL, 0xf57d92ebc141a104L,
+        0x116c262777579c58L, 0xc46475896767b403L, 0x1be03d0bf225c6f4L, 0x6d6d88dbd8a5ecd2L,
+        0x164cfda3281e38c3L, 0x8abe071646eb23dbL, 0x11d7314f534b609cL, 0x6efe6c11d255b649L,
+        0x1c8b821885456760L, 0xb197134fb6ef8a0eL, 0x16d601ad376ab91aL, 0x27ac0f72f8bfa1a5L,
+        0x1244ce242c5560e1L, 0xb95672c260994e1eL, 0x1d3ae36d13bbce35L, 0xf5571e03cdc21695L,
+        0x17624f8a762fd82bL, 0x2aac18030b01ababL, 0x12b50c6ec4f31355L, 0xbbbce0026f348956L,
+        0x1dee7a4ad4b81eefL, 0x92c7ccd0b1eda889L, 0x17f1fb6f10934bf2L, 0xdbd30a408e57ba07L,
+        0x1327fc58da0f6ff5L, 0x7ca8d50071dfc806L, 0x1ea6608e29b24cbbL, 0xfaa7bb33e9660cd6L,
+        0x18851a0b548ea3c9L, 0x9552fc298784d711L, 0x139dae6f76d88307L, 0xaaa8c9bad2d0ac0eL,
+        0x1f62b0b257c0d1a5L, 0xdddadc5e1e1aace3L, 0x191bc08eac9a4151L, 0x7e48b04b4b488a4fL,
+        0x141633a556e1cddaL, 0xcb6d59d5d5d3a1d9L, 0x1011c2eaabe7d7e2L, 0x3c577b1177dc817bL,
+        0x19b604aaaca62636L, 0xc6f25e825960cf2aL, 0x14919d5556eb51c5L, 0x6bf518684780a5bbL,
+        0x10747ddddf22a7d1L, 0x232a79ed06008496L, 0x1a53fc9631d10c81L, 0xd1dd8fe1a3340756L,
+        0x150ffd44f4a73d34L, 0xa7e4731ae8f66c45L, 0x10d9976a5d52975dL, 0x531d28e253f8569eL,
+        0x1af5bf109550f22eL, 0xeb61db03b98d5762L, 0x159165a6ddda5b58L, 0xbc4e48cfc7a445e8L,
+        0x11411e1f17e1e2adL, 0x6371d3d96c836b20L, 0x1b9b6364f3030448L, 0x9f1c8628ad9f11cdL,
+        0x1615e91d8f359d06L, 0xe5b06b53be18db0bL, 0x11ab20e472914a6bL, 0xeaf3890fcb4715a2L,
+        0x1c45016d841baa46L, 0x44b8db4c7871bc37L, 0x169d9abe03495505L, 0x03c715d6c6c1635fL,
+        0x1217aefe69077737L, 0x3638de456bcde919L, 0x1cf2b1970e725858L, 0x56c163a2461641c1L,
+        0x17288e1271f51379L, 0xdf011c81d1ab67ceL, 0x1286d80ec190dc61L, 0x7f3416ce4155eca5L,
+        0x1da48ce468e7c702L, 0x6520247d3556476eL, 0x17b6d71d20b96c01L, 0xea801d30f7783925L,
+        0x12f8ac174d612334L, 0xbb99b0f3f92cfa84L, 0x1e5aacf215683854L, 0x5f5c4e532847f739L,
+        0x18488a5b44536043L, 0x7f7d0b75b9d32c2eL, 0x136d3b7c36a919cfL, 0x9930d5f7c7dc2358L,
+        0x1f152bf9f10e8fb2L, 0x8eb4898c72f9d226L, 0x18ddbcc7f40ba628L, 0x722a07a38f2e41b8L,
+        0x13e497065cd61e86L, 0xc1bb394fa5be9afaL, 0x1fd424d6faf030d7L, 0x9c5ec2190930f7f6L,
+        0x197683df2f268d79L, 0x49e56814075a5ff8L, 0x145ecfe5bf520ac7L, 0x6e51201005e1e660L,
+        0x104bd984990e6f05L, 0xf1da800cd181851aL, 0x1a12f5a0f4e3e4d6L, 0x4fc400148268d4f5L,
+        0x14dbf7b3f71cb711L, 0xd96999aa01ed772bL, 0x10aff95cc5b09274L, 0xadee1488018ac5bcL,
+        0x1ab328946f80ea54L, 0x497ceda668de092cL, 0x155c2076bf9a5510L, 0x3aca57b853e4d424L,
+        0x1116805effaeaa73L, 0x623b7960431d7683L, 0x1b5733cb32b110b8L, 0x9d2bf566d1c8bd9eL,
+        0x15df5ca28ef40d60L, 0x7dbcc452416d647fL, 0x117f7d4ed8c33de6L, 0xcafd69db678ab6ccL,
+        0x1bff2ee48e052fd7L, 0xab2f0fc572778adfL, 0x1665bf1d3e6a8cacL, 0x88f273045b92d580L,
+        0x11eaff4a98553d56L, 0xd3f528d049424466L, 0x1cab3210f3bb9557L, 0xb988414d4203a0a3L,
+        0x16ef5b40c2fc7779L, 0x6139cdd76802e6e9L, 0x125915cd68c9f92dL, 0xe761717920025254L,
+        0x1d5b561574765b7cL, 0xa568b58e999d5086L, 0x177c44ddf6c515fdL, 0x5120913ee14aa6d2L,
+        0x12c9d0b1923744caL, 0xa74d40ff1aa21f0eL, 0x1e0fb44f50586e11L, 0x0baece64f769cb4aL,
+        0x180c903f7379f1a7L, 0x3c8bd850c5ee3c3bL, 0x133d4032c2c7f485L, 0xca0979da37f1c9c9L,
+        0x1ec866b79e0cba6fL, 0xa9a8c2f6bfe942dbL, 0x18a0522c7e709526L, 0x2153cf2bccba9be3L,
+        0x13b374f06526ddb8L, 0x1aa9728970954982L, 0x1f8587e7083e2f8cL, 0xf775840f1a88759dL,
+        0x19379fec0698260aL, 0x5f9136727ba05e17L, 0x142c7ff0054684d5L, 0x1940f85b9619e4dfL,
+        0x1023998cd1053710L, 0xe100c6afab47ea4cL, 0x19d28f47b4d524e7L, 0xce67a44c453fdd47L,
+        0x14a8729fc3ddb71fL, 0xd852e9d69dccb106L, 0x1086c219697e2c19L, 0x79dbee454b0a2738L,
+        0x1a71368f0f30468fL, 0x295fe3a211a9d859L, 0x15275ed8d8f36ba5L, 0xbab31c81a7bb137aL,
+        0x10ec4be0ad8f8951L, 0x6228e39aec95a92fL, 0x1b13ac9aaf4c0ee8L, 0x9d0e38f7e0ef7517L,
+        0x15a956e225d67253L, 0xb0d82d931a592a79L, 0x11544581b7dec1dcL, 0x8d79be0f4847552eL,
+        0x1bba08cf8c979c94L, 0x158f967eda0bbb7cL, 0x162e6d72d6dfb076L, 0x77a611ff14d62f97L,
+        0x11bebdf578b2f391L, 0xf951a7ff43de8c79L, 0x1c6463225ab7ec1cL, 0xc21c3ffed2fdad8eL,
+        0x16b6b5b5155ff017L, 0x01b0333242648ad8L, 0x122bc490dde659acL, 0x0159c28e9b83a246L,
+        0x1d12d41afca3c2acL, 0xcef604175f3903a3L, 0x17424348ca1c9bbdL, 0x725e69ac4c2d9c83L,
+        0x129b69070816e2fdL, 0xf5185489d68ae39cL, 0x1dc574d80cf16b2fL, 0xee8d540fbdab05c6L,
+        0x17d12a4670c1228cL, 0xbed77672fe226b05L, 0x130dbb6b8d674ed6L, 0xff12c528cb4ebc04L,
+        0x1e7c5f127bd87e24L, 0xcb513b74787df9a0L, 0x18637f41fcad31b7L, 0x090dc929f9fe614dL,
+        0x1382cc34ca2427c5L, 0xa0d7d42194cb810aL, 0x1f37ad21436d0c6fL, 0x67bfb9cf5478ce77L,
+        0x18f9574dcf8a7059L, 0x1fcc94a5dd2d71f9L, 0x13faac3e3fa1f37aL, 0x7fd6dd517dbdf4c7L,
+        0x1ff779fd329cb8c3L, 0xffbe2ee8c92fee0bL, 0x1992c7fdc216fa36L, 0x6631bf20a0f324d6L,
+        0x14756ccb01abfb5eL, 0xb827cc1a1a5c1d78L, 0x105df0a267bcc918L, 0x935309ae7b7ce460L,
+        0x1a2fe76a3f9474f4L, 0x1eeb42b0c594a099L, 0x14f31f8832dd2a5cL, 0xe58902270476e6e1L,
+        0x10c27fa028b0eeb0L, 0xb7a0ce859d2bebe7L, 0x1ad0cc33744e4ab4L, 0x59014a6f61dfdfd8L,
+        0x1573d68f903ea229L, 0xe0cdd525e7e64cadL, 0x11297872d9cbb4eeL, 0x4d7177518651d6f1L,
+        0x1b758d848fac54b0L, 0x7be8bee8d6e957e8L, 0x15f7a46a0c89dd59L, 0xfcba3253df211320L,
+        0x1192e9ee706e4aaeL, 0x63c8284318e74280L, 0x1c1e43171a4a1117L, 0x060d0d3827d86a66L,
+        0x167e9c127b6e7412L, 0x6b3da42cecad21ebL, 0x11fee341fc585cdbL, 0x88fe1cf0bd574e56L,
+        0x1ccb0536608d615fL, 0x419694b462254a23L, 0x1708d0f84d3de77fL, 0x67abaa29e81dd4e9L,
+        0x126d73f9d764b932L, 0xb95621bb2017dd87L, 0x1d7becc2f23ac1eaL, 0xc223692b668c95a5L,
+        0x179657025b6234bbL, 0xce82ba891ed6de1dL, 0x12deac01e2b4f6fcL, 0xa53562074bdf1818L,
+        0x1e3113363787f194L, 0x3b889cd87964f359L, 0x18274291c6065adcL, 0xfc6d4a46c783f5e1L,
+        0x13529ba7d19eaf17L, 0x30576e9f06032b1aL, 0x1eea92a61c311825L, 0x1a257dcb3cd1de90L,
+        0x18bba884e35a79b7L, 0x481dfe3c30a7e540L, 0x13c9539d82aec7c5L, 0xd34b31c9c0865100L,
+        0x1fa885c8d117a609L, 0x5211e942cda3b4cdL, 0x19539e3a40dfb807L, 0x74db21023e1c90a4L,
+        0x1442e4fb67196005L, 0xf715b401cb4a0d50L, 0x103583fc527ab337L, 0xf8de299b09080aa7L,
+        0x19ef3993b72ab859L, 0x8e304291a80cddd7L, 0x14bf6142f8eef9e1L, 0x3e8d020e200a4b13L,
+        0x10991a9bfa58c7e7L, 0x653d9b3e80083c0fL, 0x1a8e90f9908e0ca5L, 0x6ec8f864000d2ce4L,
+        0x153eda614071a3b7L, 0x8bd3f9e999a423eaL, 0x10ff151a99f482f9L, 0x3ca994bae1501cbbL,
+        0x1b31bb5dc320d18eL, 0xc775bac49bb3612bL, 0x15c162b168e70e0bL, 0xd2c4956a16291a89L,
+        0x11678227871f3e6fL, 0xdbd0778811ba7ba1L, 0x1bd8d03f3e9863e6L, 0x2c80bf401c5d929bL,
+        0x16470cff6546b651L, 0xbd33cc3349e47549L, 0x11d270cc51055ea7L, 0xca8fd68f6e505dd4L,
+        0x1c83e7ad4e6efdd9L, 0x4419574be3b3c953L, 0x16cfec8aa52597e1L, 0x0347790982f63aa9L,
+        0x123ff06eea847980L, 0xcf6c60d468c4fbbaL, 0x1d331a4b10d3f59aL, 0xe57a34870e07f92aL,
+        0x175c1508da432ae2L, 0x512e906c0b399422L, 0x12b010d3e1cf5581L, 0xda8ba6bcd5c7a9b5L,
+        0x1de6815302e5559cL, 0x90df712e22d90f87L, 0x17eb9aa8cf1dde16L, 0xda4c5a8b4f140c6cL,
+        0x1322e220a5b17e78L, 0xaea37ba2a5a9a38aL, 0x1e9e369aa2b59727L, 0x7dd25f6aa2a905a9L,
+        0x187e92154ef7ac1fL, 0x97db7f888220d154L, 0x139874ddd8c6234cL, 0x797c6606ce80a777L,
+        0x1f5a549627a36badL, 0x8f2d700ae4010bf1L, 0x191510781fb5efbeL, 0x0c2459a25000d65aL,
+        0x1410d9f9b2f7f2feL, 0x701d1481d99a4515L, 0x100d7b2e28c65bfeL, 0xc017439b147b6a77L,
+        0x19af2b7d0e0a2ccaL, 0xccf205c4ed9243f2L, 0x148c22ca71a1bd6fL, 0x0a5b37d0be0e9cc2L,
+        0x10701bd527b4978cL, 0x0848f973cb3ee3ceL, 0x1a4cf9550c5425acL, 0xda0e5bec78649fb0L,
+        0x150a6110d6a9b7bdL, 0x7b3eaff060507fc0L, 0x10d51a73deee2c97L, 0x95cbbff380406633L,
+        0x1aee90b964b04758L, 0xefac665266cd7052L, 0x158ba6fab6f36c47L, 0x2623850eb8a459dbL,
+        0x113c85955f29236cL, 0x1e82d0d893b6ae49L, 0x1b9408eefea838acL, 0xfd9e1af41f8ab075L,
+        0x16100725988693bdL, 0x97b1af29b2d559f7L, 0x11a66c1e139edc97L, 0xac8e25baf5777b2cL,
+        0x1c3d79c9b8fe2dbfL, 0x7a7d092b2258c513L, 0x169794a160cb57ccL, 0x61fda0ef4ead6a76L,
+        0x1212dd4de7091309L, 0xe7fe1a590bbdeec5L, 0x1ceafbafd80e84dcL, 0xa6635d5b45fcb13aL,
+        0x172262f3133ed0b0L, 0x851c4aaf6b308dc8L, 0x1281e8c275cbda26L, 0xd0e36ef2bc26d7d4L,
+        0x1d9ca79d894629d7L, 0xb49f17eac6a48c86L, 0x17b08617a104ee46L, 0x2a18dfef0550706bL,
+        0x12f39e794d9d8b6bL, 0x54e0b3259dd9f389L, 0x1e5297287c2f4578L, 0x87cdeb6f62f65274L,
+        0x18421286c9bf6ac6L, 0xd30b22bf825ea85dL, 0x13680ed23aff889fL, 0x0f3c1bcc684bb9e4L,
+        0x1f0ce4839198da98L, 0x18602c7a4079296dL, 0x18d71d360e13e213L, 0x46b356c833942124L,
+        0x13df4a91a4dcb4dcL, 0x388f78a029434db6L, 0x1fcbaa82a1612160L, 0x5a7f2766a86baf8aL,
+        0x196fbb9bb44db44dL, 0x153285ebb9efbfa2L, 0x145962e2f6a4903dL, 0xaa8ed189618c994eL,
+        0x1047824f2bb6d9caL, 0xeed8a7a11ad6e10cL, 0x1a0c03b1df8af611L, 0x7e27729b5e249b45L,
+        0x14d6695b193bf80dL, 0xfe85f549181d4904L, 0x10ab877c142ff9a4L, 0xcb9e5dd4134aa0d0L,
+        0x1aac0bf9b9e65c3aL, 0xdf63c9535211014dL, 0x15566ffafb1eb02fL, 0x191ca10f74da6771L,
+        0x1111f32f2f4bc025L, 0xadb080d92a4852c1L, 0x1b4feb7eb212cd09L, 0x15e7348eaa0d5134L,
+        0x15d98932280f0a6dL, 0xab1f5d3eee710dc4L, 0x117ad428200c0857L, 0xbc1917658b8da49dL,
+        0x1bf7b9d9cce00d59L, 0x2cf4f23c127c3a94L, 0x165fc7e170b33de0L, 0xf0c3f4fcdb969543L,
+        0x11e6398126f5cb1aL, 0x5a365d9716121103L, 0x1ca38f350b22de90L, 0x9056fc24f01ce804L,
+        0x16e93f5da2824ba6L, 0xd9df301d8ce3ecd0L, 0x125432b14ecea2ebL, 0xe17f59b13d8323daL,
+        0x1d53844ee47dd179L, 0x68cbc2b52f38395cL, 0x177603725064a794L, 0x53d6355dbf602de3L,
+        0x12c4cf8ea6b6ec76L, 0xa9782ab165e68b1cL, 0x1e07b27dd78b13f1L, 0x0f26aab56fd744faL,
+        0x18062864ac6f4327L, 0x3f52222abfdf6a62L, 0x1338205089f29c1fL, 0x65db4e88997f884eL,
+        0x1ec033b40fea9365L, 0x6fc54a7428cc0d4aL, 0x1899c2f673220f84L, 0x596aa1f68709a43bL,
+        0x13ae3591f5b4d936L, 0xadeee7f86c07b696L, 0x1f7d228322baf524L, 0x497e3ff3e00c5756L,
+        0x1930e868e89590e9L, 0xd464fff64cd6ac45L, 0x14272053ed4473eeL, 0x4383fff83d7889d1L,
+        0x101f4d0ff1038ff1L, 0xcf9cccc69793a174L, 0x19cbae7fe805b31cL, 0x7f6147a425b90252L,
+        0x14a2f1ffecd15c16L, 0xcc4dd2e9b7c7350fL, 0x10825b3323dab012L, 0x3d0b0f215fd290d9L,
+        0x1a6a2b85062ab350L, 0x61ab4b689950e7c1L, 0x1521bc6a6b555c40L, 0x4e22a2ba1440b967L,
+        0x10e7c9eebc4449cdL, 0x0b4ee894dd009453L, 0x1b0c764ac6d3a948L, 0x1217da87c800ed51L,
+        0x15a391d56bdc876cL, 0xdb46486ca000bddaL, 0x114fa7ddefe39f8aL, 0x490506bd4ccd64afL,
+        0x1bb2a62fe638ff43L, 0xa8080ac87ae23ab1L, 0x162884f31e93ff69L, 0x5339a239fbe82ef4L,
+        0x11ba03f5b20fff87L, 0x75c7b4fb2fecf25dL, 0x1c5cd322b67fff3fL, 0x22d92191e647ea2eL,
+        0x16b0a8e891ffff65L, 0xb57a8141850654f2L, 0x1226ed86db3332b7L, 0xc4620101373843f5L,
+        0x1d0b15a491eb8459L, 0x3a366801f1f39feeL, 0x173c115074bc69e0L, 0xfb5eb99b27f6198bL,
+        0x129674405d6387e7L, 0x2f7efae2865e7ad6L, 0x1dbd86cd6238d971L, 0xe597f7d0d6fd9156L,
+        0x17cad23de82d7ac1L, 0x8479930d78cadaabL, 0x1308a831868ac89aL, 0xd06142712d6f1556L,
+        0x1e74404f3daada91L, 0x4d686a4eaf182222L, 0x185d003f6488aedaL, 0xa453883ef279b4e8L,
+        0x137d99cc506d58aeL, 0xe9dc6cff28615d87L, 0x1f2f5c7a1a488de4L, 0xa960ae650d6895a4L,
+        0x18f2b061aea07183L, 0xbab3beb73ded4483L, 0x13f559e7bee6c136L, 0x2ef6322c318a9d36L,
+        0x1feef63f97d79b89L, 0xe4bd1d13827761f0L, 0x198bf832dfdfafa1L, 0x83ca7da9352c4e5aL,
+        0x146ff9c24cb2f2e7L, 0x9ca1fe20f756a515L, 0x1059949b708f28b9L, 0x4a1b31b3f9121daaL,
+        0x1a28edc580e50df5L, 0x435eb5ecc1b695ddL, 0x14ed8b04671da4c4L, 0x35e55e57015ede4aL,
+        0x10be08d0527e1d69L, 0xc4b77eac0118b1d5L, 0x1ac9a7b3b7302f0fL, 0xa12597799b5ab622L,
+        0x156e1fc2f8f358d9L, 0x4db7ac6149155e81L, 0x1124e63593f5e0adL, 0xd7c6238107444b9bL,
+        0x1b6e3d2286563449L, 0x593d059b3ed3ac2bL, 0x15f1ca820511c36dL, 0xe0fd9e15cbdc89bcL,
+        0x118e3b9b37416924L, 0xb3fe18116fe3a163L, 0x1c16c5c525357507L, 0x866359b57fd29bd1L,
+        0x16789e3750f790d2L, 0xd1e91491330ee30eL, 0x11fa182c40c60d75L, 0x74ba76da8f3f1c0bL,
+        0x1cc359e067a348bbL, 0xedf72490e531c678L, 0x1702ae4d1fb5d3c9L, 0x8b2c1d40b75b052dL,
+        0x12688b70e62b0fd4L, 0x6f567dcd5f7c0424L, 0x1d74124e3d11b2edL, 0x7ef0c94898c66d06L,
+        0x17900ea4fda7c257L, 0x98c0a106e09ebd9fL, 0x12d9a550caec9b79L, 0x470080d24d4bcae6L,
+        0x1e29088144adc58eL, 0xd800ce1d487944a2L, 0x1820d39a9d57d13fL, 0x1333d8176d2dd082L,
+        0x134d76154aaca765L, 0xa8f646792424a6ceL, 0x1ee25688777aa56fL, 0x74bd3d8ea03aa47dL,
+        0x18b51206c5fbb78cL, 0x5d64313ee6955064L, 0x13c40e6bd1962c70L, 0x4ab68dcbebaaa6b7L,
+        0x1fa01712e8f0471aL, 0x1124161312aaa457L, 0x194cdf4253f36c14L, 0xda8344dc0eeee9dfL,
+        0x143d7f6843292343L, 0xe2029d7cd8bf2180L, 0x103132b9cf541c36L, 0x4e687dfd7a328133L,
+        0x19e851294bb9c6bdL, 0x4a40c9959050ceb8L, 0x14b9da876fc7d231L, 0x0833d477a6a70bc6L,
+        0x1094aed2bfd30e8dL, 0xa02976c61eec096bL, 0x1a877e1dffb81749L, 0x004257a364acdbdfL,
+        0x153931b1996012a0L, 0xcd01dfb5ea23e319L, 0x10fa8e27ade6754dL, 0x70ce4c91881cb5aeL,
+        0x1b2a7d0c4970bbafL, 0x1ae3adb5a69455e2L, 0x15bb973d078d62f2L, 0x7be957c4854377e8L,
+        0x1162df64060ab58eL, 0xc987796a0435f987L, 0x1bd1656cd67788e4L, 0x75a58f1006bcc271L,
+        0x16411df0ab92d3e9L, 0xf7b7a5a66bca3527L, 0x11cdb18d560f0feeL, 0x5fc61e1ebca1c41fL,
+        0x1c7c4f4889b1b316L, 0xffa363646102d365L, 0x16c9d906d48e28dfL, 0x32e91c504d9bdc51L,
+        0x123b140576d820b2L, 0x8f20e37371497d0eL, 0x1d2b533bf159cdeaL, 0x7e9b0585820f2e7cL,
+        0x1755dc2ff447d7eeL, 0xcbaf379e01a5becaL, 0x12ab168cc36cacbfL, 0x0958f94b348498a1L
+    };
 
-            if (low || high) {
-                break;
-            }
-            R = R * 10;
-            M = M * 10;
-            digits[digitCount++] = U;
-        }
-        if (low && !high) {
-            digits[digitCount++] = U;
-        } else if (high && !low) {
-            digits[digitCount++] = U + 1;
-        } else if ((R << 1) < S) {
-            digits[digitCount++] = U;
-        } else {
-            digits[digitCount++] = U + 1;
-        }
-    }
+    /**
+     * 5^i scaled to 125 bits for 0 <= i < 326, as pairs of high and low 64-bit
+     * words.
+     */
+    private static final long[] DOUBLE_POW5_SPLIT = {
+        0x1000000000000000L, 0x0000000000000000L, 0x1400000000000000L, 0x0000000000000000L,
+        0x1900000000000000L, 0x0000000000000000L, 0x1f40000000000000L, 0x0000000000000000L,
+        0x1388000000000000L, 0x0000000000000000L, 0x186a000000000000L, 0x0000000000000000L,
+        0x1e84800000000000L, 0x0000000000000000L, 0x1312d00000000000L, 0x0000000000000000L,
+        0x17d7840000000000L, 0x0000000000000000L, 0x1dcd650000000000L, 0x0000000000000000L,
+        0x12a05f2000000000L, 0x0000000000000000L, 0x174876e800000000L, 0x0000000000000000L,
+        0x1d1a94a200000000L, 0x0000000000000000L, 0x12309ce540000000L, 0x0000000000000000L,
+        0x16bcc41e90000000L, 0x0000000000000000L, 0x1c6bf52634000000L, 0x0000000000000000L,
+        0x11c37937e0800000L, 0x0000000000000000L, 0x16345785d8a00000L, 0x0000000000000000L,
+        0x1bc16d674ec80000L, 0x0000000000000000L, 0x1158e460913d0000L, 0x0000000000000000L,
+        0x15af1d78b58c4000L, 0x0000000000000000L, 0x1b1ae4d6e2ef5000L, 0x0000000000000000L,
+        0x10f0cf064dd59200L, 0x0000000000000000L, 0x152d02c7e14af680L, 0x0000000000000000L,
+        0x1a784379d99db420L, 0x0000000000000000L, 0x108b2a2c28029094L, 0x0000000000000000L,
+        0x14adf4b7320334b9L, 0x0000000000000000L, 0x19d971e4fe8401e7L, 0x4000000000000000L,
+        0x1027e72f1f128130L, 0x8800000000000000L, 0x1431e0fae6d7217cL, 0xaa00000000000000L,
+        0x193e5939a08ce9dbL, 0xd480000000000000L, 0x1f8def8808b02452L, 0xc9a0000000000000L,
+        0x13b8b5b5056e16b3L, 0xbe04000000000000L, 0x18a6e32246c99c60L, 0xad85000000000000L,
+        0x1ed09bead87c0378L, 0xd8e6400000000000L, 0x13426172c74d822bL, 0x878fe80000000000L,
+        0x1812f9cf7920e2b6L, 0x6973e20000000000L, 0x1e17b84357691b64L, 0x03d0da8000000000L,
+        0x12ced32a16a1b11eL, 0x8262889000000000L, 0x178287f49c4a1d66L, 0x22fb2ab400000000L,
+        0x1d6329f1c35ca4bfL, 0xabb9f56100000000L, 0x125dfa371a19e6f7L, 0xcb54395ca0000000L,
+        0x16f578c4e0a060b5L, 0xbe2947b3c8000000L, 0x1cb2d6f618c878e3L, 0x2db399a0ba000000L,
+        0x11efc659cf7d4b8dL, 0xfc90400474400000L, 0x166bb7f0435c9e71L, 0x7bb4500591500000L,
+        0x1c06a5ec5433c60dL, 0xdaa16406f5a40000L, 0x118427b3b4a05bc8L, 0xa8a4de8459868000L,
+        0x15e531a0a1c872baL, 0xd2ce16256fe82000L, 0x1b5e7e08ca3a8f69L, 0x87819baecbe22800L,
+        0x111b0ec57e6499a1L, 0xf4b1014d3f6d5900L, 0x1561d276ddfdc00aL, 0x71dd41a08f48af40L,
+        0x1aba4714957d300dL, 0x0e549208b31adb10L, 0x10b46c6cdd6e3e08L, 0x28f4db456ff0c8eaL,
+        0x14e1878814c9cd8aL, 0x33321216cbecfb24L, 0x1a19e96a19fc40ecL, 0xbffe969c7ee839edL,
+        0x105031e2503da893L, 0xf7ff1e21cf512434L, 0x14643e5ae44d12b8L, 0xf5fee5aa43256d41L,
+        0x197d4df19d605767L, 0x337e9f14d3eec892L, 0x1fdca16e04b86d41L, 0x005e46da08ea7ab6L,
+        0x13e9e4e4c2f34448L, 0xa03aec4845928cb2L, 0x18e45e1df3b0155aL, 0xc849a75a56f72fdeL,
+        0x1f1d75a5709c1ab1L, 0x7a5c1130ecb4fbd6L, 0x13726987666190aeL, 0xec798abe93f11d65L,
+        0x184f03e93ff9f4daL, 0xa797ed6e38ed64bfL, 0x1e62c4e38ff87211L, 0x517de8c9c728bdefL,
+        0x12fdbb0e39fb474aL, 0xd2eeb17e1c7976b5L, 0x17bd29d1c87a191dL, 0x87aa5ddda397d462L,
+        0x1dac74463a989f64L, 0xe994f5550c7dc97bL, 0x128bc8abe49f639fL, 0x11fd195527ce9dedL,
+        0x172ebad6ddc73c86L, 0xd67c5faa71c24568L, 0x1cfa698c95390ba8L, 0x8c1b77950e32d6c2L,
+        0x121c81f7dd43a749L, 0x57912abd28dfc639L, 0x16a3a275d494911bL, 0xad75756c7317b7c8L,
+        0x1c4c8b1349b9b562L, 0x98d2d2c78fdda5baL, 0x11afd6ec0e14115dL, 0x9f83c3bcb9ea8794L,
+        0x161bcca7119915b5L, 0x0764b4abe8652979L, 0x1ba2bfd0d5ff5b22L, 0x493de1d6e27e73d7L,
+        0x1145b7e285bf98f5L, 0x6dc6ad264d8f0866L, 0x159725db272f7f32L, 0xc938586fe0f2ca80L,
+        0x1afcef51f0fb5effL, 0x7b866e8bd92f7d20L, 0x10de1593369d1b5fL, 0xad34051767bdae34L,
+        0x15159af804446237L, 0x9881065d41ad19c1L, 0x1a5b01b605557ac5L, 0x7ea147f492186032L,
+        0x1078e111c3556cbbL, 0x6f24ccf8db4f3c1fL, 0x14971956342ac7eaL, 0x4aee003712230b27L,
+        0x19bcdfabc13579e4L, 0xdda98044d6abcdf0L, 0x10160bcb58c16c2fL, 0x0a89f02b062b60b6L,
+        0x141b8ebe2ef1c73aL, 0xcd2c6c35c7b638e4L, 0x1922726dbaae3909L, 0x8077874339a3c71dL,
+        0x1f6b0f092959c74bL, 0xe0956914080cb8e4L, 0x13a2e965b9d81c8fL, 0x6c5d61ac8507f38eL,
+        0x188ba3bf284e23b3L, 0x4774ba17a649f072L, 0x1eae8caef261aca0L, 0x1951e89d8fdc6c8fL,
+        0x132d17ed577d0be4L, 0x0fd3316279e9c3d9L, 0x17f85de8ad5c4eddL, 0x13c7fdbb186434cfL,
+        0x1df67562d8b36294L, 0x58b9fd29de7d4203L, 0x12ba095dc7701d9cL, 0xb7743e3a2b0e4942L,
+        0x17688bb5394c2503L, 0xe5514dc8b5d1db92L, 0x1d42aea2879f2e44L, 0xdea5a13ae3465277L,
+        0x1249ad2594c37cebL, 0x0b2784c4ce0bf38aL, 0x16dc186ef9f45c25L, 0xcdf165f6018ef06dL,
+        0x1c931e8ab871732fL, 0x416dbf7381f2ac88L, 0x11dbf316b346e7fdL, 0x88e497a83137abd5L,
+        0x1652efdc6018a1fcL, 0xeb1dbd923d8596caL, 0x1be7abd3781eca7cL, 0x25e52cf6cce6fc7dL,
+        0x1170cb642b133e8dL, 0x97af3c1a40105dceL, 0x15ccfe3d35d80e30L, 0xfd9b0b20d0147542L,
+        0x1b403dcc834e11bdL, 0x3d01cde904199292L, 0x1108269fd210cb16L, 0x462120b1a28ffb9bL,
+        0x154a3047c694fddbL, 0xd7a968de0b33fa82L, 0x1a9cbc59b83a3d52L, 0xcd93c3158e00f923L,
+        0x10a1f5b813246653L, 0xc07c59ed78c09bb6L, 0x14ca732617ed7fe8L, 0xb09b7068d6f0c2a3L,
+        0x19fd0fef9de8dfe2L, 0xdcc24c830cacf34cL, 0x103e29f5c2b18bedL, 0xc9f96fd1e7ec180fL,
+        0x144db473335deee9L, 0x3c77cbc661e71e13L, 0x1961219000356aa3L, 0x8b95beb7fa60e598L,
+        0x1fb969f40042c54cL, 0x6e7b2e65f8f91efeL, 0x13d3e2388029bb4fL, 0xc50cfcffbb9bb35fL,
+        0x18c8dac6a0342a23L, 0xb6503c3faa82a037L, 0x1efb1178484134acL, 0xa3e44b4f95234844L,
+        0x135ceaeb2d28c0ebL, 0xe66eaf11bd360d2bL, 0x183425a5f872f126L, 0xe00a5ad62c839075L,
+        0x1e412f0f768fad70L, 0x980cf18bb7a47493L, 0x12e8bd69aa19cc66L, 0x5f0816f752c6c8dcL,
+        0x17a2ecc414a03f7fL, 0xf6ca1cb527787b13L, 0x1d8ba7f519c84f5fL, 0xf47ca3e2715699d7L,
+        0x127748f9301d319bL, 0xf8cde66d86d62026L, 0x17151b377c247e02L, 0xf7016008e88ba830L,
+        0x1cda62055b2d9d83L, 0xb4c1b80b22ae923cL, 0x12087d4358fc8272L, 0x50f91306f5ad1b65L,
+        0x168a9c942f3ba30eL, 0xe53757c8b318623fL, 0x1c2d43b93b0a8bd2L, 0x9e852dbadfde7acfL,
+        0x119c4a53c4e69763L, 0xa3133c94cbeb0cc1L, 0x16035ce8b6203d3cL, 0x8bd80bb9fee5cff1L,
+        0x1b843422e3a84c8bL, 0xaece0ea87e9f43eeL, 0x1132a095ce492fd7L, 0x4d40c9294f238a75L,
+        0x157f48bb41db7bcdL, 0x2090fb73a2ec6d12L, 0x1adf1aea12525ac0L, 0x68b53a508ba78856L,
+        0x10cb70d24b7378b8L, 0x417144725748b536L, 0x14fe4d06de5056e6L, 0x51cd958eed1ae283L,
+        0x1a3de04895e46c9fL, 0xe640faf2a8619b24L, 0x1066ac2d5daec3e3L, 0xefe89cd7a93d00f7L,
+        0x14805738b51a74dcL, 0xebe2c40d938c4134L, 0x19a06d06e2611214L, 0x26db7510f86f5181L,
+        0x100444244d7cab4cL, 0x9849292a9b4592f1L, 0x1405552d60dbd61fL, 0xbe5b73754216f7adL,
+        0x1906aa78b912cba7L, 0xadf25052929cb598L, 0x1f485516e7577e91L, 0x996ee4673743e2ffL,
+        0x138d352e5096af1aL, 0xffe54ec0828a6ddfL, 0x18708279e4bc5ae1L, 0xbfdea270a32d0957L,
+        0x1e8ca3185deb719aL, 0x2fd64b0ccbf84badL, 0x1317e5ef3ab32700L, 0x5de5eee7ff7b2f4cL,
+        0x17dddf6b095ff0c0L, 0x755f6aa1ff59fb1fL, 0x1dd55745cbb7ecf0L, 0x92b7454a7f3079e7L,
+        0x12a5568b9f52f416L, 0x5bb28b4e8f7e4c30L, 0x174eac2e8727b11bL, 0xf29f2e22335ddf3cL,
+        0x1d22573a28f19d62L, 0xef46f9aac035570bL, 0x123576845997025dL, 0xd58c5c0ab8215667L,
+        0x16c2d4256ffcc2f5L, 0x4aef730d6629ac01L, 0x1c73892ecbfbf3b2L, 0x9dab4fd0bfb41701L,
+        0x11c835bd3f7d784fL, 0xa28b11e277d08e60L, 0x163a432c8f5cd663L, 0x8b2dd65b15c4b1f9L,
+        0x1bc8d3f7b3340bfcL, 0x6df94bf1db35de77L, 0x115d847ad000877dL, 0xc4bbcf772901ab0aL,
+        0x15b4e5998400a95dL, 0x35eac354f34215cdL, 0x1b221effe500d3b4L, 0x8365742a30129b40L,
+        0x10f5535fef208450L, 0xd21f689a5e0ba108L, 0x1532a837eae8a565L, 0x06a742c0f58e894aL,
+        0x1a7f5245e5a2cebeL, 0x4851137132f22b9dL, 0x108f936baf85c136L, 0xed32ac26bfd75b42L,
+        0x14b378469b673184L, 0xa87f57306fcd3212L, 0x19e056584240fde5L, 0xd29f2cfc8bc07e97L,
+        0x102c35f729689eafL, 0xa3a37c1dd7584f1eL, 0x14374374f3c2c65bL, 0x8c8c5b254d2e62e6L,
+        0x1945145230b377f2L, 0x6faf71eea079fb9fL, 0x1f965966bce055efL, 0x0b9b4e6a48987a87L,
+        0x13bdf7e0360c35b5L, 0x674111026d5f4c94L, 0x18ad75d8438f4322L, 0xc111554308b71fbaL,
+        0x1ed8d34e547313ebL, 0x7155aa93cae4e7a8L, 0x13478410f4c7ec73L, 0x26d58a9c5ecf10c9L,
+        0x1819651531f9e78fL, 0xf08aed437682d4fbL, 0x1e1fbe5a7e786173L, 0xecada89454238a3aL,
+        0x12d3d6f88f0b3ce8L, 0x73ec895cb4963664L, 0x1788ccb6b2ce0c22L, 0x90e7abb3e1bbc3fdL,
+        0x1d6affe45f818f2bL, 0x352196a0da2ab4fdL, 0x1262dfeebbb0f97bL, 0x0134fe24885ab11eL,
+        0x16fb97ea6a9d37d9L, 0xc1823dadaa715d65L, 0x1cba7de5054485d0L, 0x31e2cd19150db4bfL,
+        0x11f48eaf234ad3a2L, 0x1f2dc02fad2890f7L, 0x1671b25aec1d888aL, 0xa6f9303b9872b535L,
+        0x1c0e1ef1a724eaadL, 0x50b77c4a7e8f6282L, 0x1188d357087712acL, 0x5272adae8f199d91L,
+        0x15eb082cca94d757L, 0x670f591a32e004f6L, 0x1b65ca37fd3a0d2dL, 0x40d32f60bf980633L,
+        0x111f9e62fe44483cL, 0x4883fd9c77bf03e0L, 0x156785fbbdd55a4bL, 0x5aa4fd0395aec4d8L,
+        0x1ac1677aad4ab0deL, 0x314e3c447b1a760eL, 0x10b8e0acac4eae8aL, 0xded0e5aaccf089c9L,
+        0x14e718d7d7625a2dL, 0x96851f15802cac3bL, 0x1a20df0dcd3af0b8L, 0xfc2666dae037d74aL,
+        0x10548b68a044d673L, 0x9d980048cc22e68eL, 0x1469ae42c8560c10L, 0x84fe005aff2ba032L,
+        0x198419d37a6b8f14L, 0xa63d8071bef6883eL, 0x1fe52048590672d9L, 0xcfcce08e2eb42a4eL,
+        0x13ef342d37a407c8L, 0x21e00c58dd309a70L, 0x18eb0138858d09baL, 0x2a580f6f147cc10dL,
+        0x1f25c186a6f04c28L, 0xb4ee134ad99bf150L, 0x137798f428562f99L, 0x7114cc0ec80176d2L,
+        0x18557f31326bbb7fL, 0xcd59ff127a01d486L, 0x1e6adefd7f06aa5fL, 0xc0b07ed7188249a8L,
+        0x1302cb5e6f642a7bL, 0xd86e4f466f516e09L, 0x17c37e360b3d351aL, 0xce89e3180b25c98bL,
+        0x1db45dc38e0c8261L, 0x822c5bde0def3beeL, 0x1290ba9a38c7d17cL, 0xf15bb96ac8b58575L,
+        0x1734e940c6f9c5dcL, 0x2db2a7c57ae2e6d2L, 0x1d022390f8b83753L, 0x391f51b6d99ba086L,
+        0x1221563a9b732294L, 0x03b3931248014454L, 0x16a9abc9424feb39L, 0x04a077d6da019569L,
+        0x1c5416bb92e3e607L, 0x45c895cc9081fac3L, 0x11b48e353bce6fc4L, 0x8b9d5d9fda513cbaL,
+        0x1621b1c28ac20bb5L, 0xae84b507d0e58be8L, 0x1baa1e332d728ea3L, 0x1a25e249c51eeee3L,
+        0x114a52dffc679925L, 0xf057ad6e1b33554dL, 0x159ce797fb817f6fL, 0x6c6d98c9a2002aa1L,
+        0x1b04217dfa61df4bL, 0x4788fefc0a803549L, 0x10e294eebc7d2b8fL, 0x0cb59f5d8690214eL,
+        0x151b3a2a6b9c7672L, 0xcfe30734e83429a1L, 0x1a6208b50683940fL, 0x83dbc9022241340aL,
+        0x107d457124123c89L, 0xb2695da15568c086L, 0x149c96cd6d16cbacL, 0x1f03b509aac2f0a7L,
+        0x19c3bc80c85c7e97L, 0x26c4a24c1573acd1L, 0x101a55d07d39cf1eL, 0x783ae56f8d684c03L,
+        0x1420eb449c8842e6L, 0x16499ecb70c25f03L, 0x19292615c3aa539fL, 0x9bdc067e4cf2f6c4L,
+        0x1f736f9b3494e887L, 0x82d3081de02fb476L, 0x13a825c100dd1154L, 0xb1c3e512ac1dd0c9L,
+        0x18922f31411455a9L, 0xde34de57572544fcL, 0x1eb6bafd91596b14L, 0x55c215ed2cee963bL,
+        0x133234de7ad7e2ecL, 0xb5994db43c151de5L, 0x17fec216198ddba7L, 0xe2ffa1214b1a655eL,
+        0x1dfe729b9ff15291L, 0xdbbf89699de0feb6L, 0x12bf07a143f6d39bL, 0x2957b5e202ac9f31L,
+        0x176ec98994f48881L, 0xf3ada35a8357c6feL, 0x1d4a7bebfa31aaa2L, 0x70990c31242db8bdL,
+        0x124e8d737c5f0aa5L, 0x865fa79eb69c9376L, 0x16e230d05b76cd4eL, 0xe7f791866443b854L,
+        0x1c9abd04725480a2L, 0xa1f575e7fd54a669L, 0x11e0b622c774d065L, 0xa53969b0fe54e801L,
+        0x1658e3ab7952047fL, 0x0e87c41d3dea2202L, 0x1bef1c9657a6859eL, 0xd229b5248d64aa82L,
+        0x117571ddf6c81383L, 0x435a1136d85eea91L, 0x15d2ce55747a1864L, 0x143095848e76a536L,
+        0x1b4781ead1989e7dL, 0x193cbae5b2144e83L, 0x110cb132c2ff630eL, 0x2fc5f4cf8f4cb112L,
+        0x154fdd7f73bf3bd1L, 0xbbb77203731fdd56L, 0x1aa3d4df50af0ac6L, 0x2aa54e844fe7d4acL,
+        0x10a6650b926d66bbL, 0xdaa75112b1f0e4ebL, 0x14cffe4e7708c06aL, 0xd15125575e6d1e26L,
+        0x1a03fde214caf085L, 0x85a56ead360865b0L, 0x10427ead4cfed653L, 0x7387652c41c53f8eL,
+        0x14531e58a03e8be8L, 0x50693e7752368f71L, 0x1967e5eec84e2ee2L, 0x64838e1526c4334eL,
+        0x1fc1df6a7a61ba9aL, 0xfda4719a70754022L, 0x13d92ba28c7d14a0L, 0xde86c70086494815L,
+        0x18cf768b2f9c59c9L, 0x162878c0a7db9a1aL, 0x1f03542dfb83703bL, 0x5bb296f0d1d280a1L,
+        0x1362149cbd322625L, 0x194f9e5683239064L, 0x183a99c3ec7eafaeL, 0x5fa385ec23ec747eL,
+        0x1e494034e79e5b99L, 0xf78c67672ce7919dL, 0x12edc82110c2f940L, 0x3ab7c0a07c10bb02L,
+        0x17a93a2954f3b790L, 0x4965b0c89b14e9c3L, 0x1d9388b3aa30a574L, 0x5bbf1cfac1da2433L,
+        0x127c35704a5e6768L, 0xb957721cb92856a0L, 0x171b42cc5cf60142L, 0xe7ad4ea3e7726c48L,
+        0x1ce2137f74338193L, 0xa198a24ce14f075aL, 0x120d4c2fa8a030fcL, 0x44ff65700cd16498L,
+        0x16909f3b92c83d3bL, 0x563f3ecc1005bdbeL, 0x1c34c70a777a4c8aL, 0x2bcf0e7f14072d2eL,
+        0x11a0fc668aac6fd6L, 0x5b61690f6c847c3dL, 0x16093b802d578bcbL, 0xf239c35347a59b4cL,
+        0x1b8b8a6038ad6ebeL, 0xeec83428198f021fL, 0x1137367c236c6537L, 0x553d20990ff96153L,
+        0x1585041b2c477e85L, 0x2a8c68bf53f7b9a8L, 0x1ae64521f7595e26L, 0x752f82ef28f5a812L,
+        0x10cfeb353a97dad8L, 0x093db1d57999890bL, 0x1503e602893dd18eL, 0x0b8d1e4ad7ffeb4eL,
+        0x1a44df832b8d45f1L, 0x8e7065dd8dffe622L, 0x106b0bb1fb384bb6L, 0xf9063faa78bfefd5L,
+        0x1485ce9e7a065ea4L, 0xb747cf9516efebcaL, 0x19a742461887f64dL, 0xe519c37a5cabe6bdL,
+        0x1008896bcf54f9f0L, 0xaf301a2c79eb7036L, 0x140aabc6c32a386cL, 0xdafc20b798664c43L,
+        0x190d56b873f4c688L, 0x11bb28e57e7fdf54L, 0x1f50ac6690f1f82aL, 0x1629f31ede1fd72aL,
+        0x13926bc01a973b1aL, 0x4dda37f34ad3e67aL, 0x187706b0213d09e0L, 0xe150c5f01d88e019L,
+        0x1e94c85c298c4c59L, 0x19a4f76c24eb181fL, 0x131cfd3999f7afb7L, 0xb0071aa39712ef13L,
+        0x17e43c8800759ba5L, 0x9c08e14c7cd7aad8L, 0x1ddd4baa0093028fL, 0x030b199f9c0d958eL,
+        0x12aa4f4a405be199L, 0x61e6f003c1887d79L, 0x1754e31cd072d9ffL, 0xba60ac04b1ea9cd7L,
+        0x1d2a1be4048f907fL, 0xa8f8d705de65440dL, 0x123a516e82d9ba4fL, 0xc99b8663aaff4a88L,
+        0x16c8e5ca239028e3L, 0xbc0267fc95bf1d2aL, 0x1c7b1f3cac74331cL, 0xab0301fbbb2ee474L,
+        0x11ccf385ebc89ff1L, 0xeae1e13d54fd4ec9L, 0x1640306766bac7eeL, 0x659a598caa3ca27bL,
+        0x1bd03c81406979e9L, 0xff00efefd4cbcb1aL, 0x116225d0c841ec32L, 0x3f6095f5e4ff5ef0L,
+        0x15baaf44fa52673eL, 0xcf38bb735e3f36acL, 0x1b295b1638e7010eL, 0x8306ea5035cf0457L,
+        0x10f9d8ede39060a9L, 0x11e4527221a162b6L, 0x15384f295c7478d3L, 0x565d670eaa09bb64L,
+        0x1a8662f3b3919708L, 0x2bf4c0d2548c2a3dL, 0x1093fdd8503afe65L, 0x1b78f88374d79a66L,
+        0x14b8fd4e6449bdfeL, 0x625736a4520d8100L, 0x19e73ca1fd5c2d7dL, 0xfaed044d6690e140L,
+        0x103085e53e599c6eL, 0xbcd422b0601a8cc8L, 0x143ca75e8df0038aL, 0x6c092b5c78212ffaL,
+        0x194bd136316c046dL, 0x070b763396297bf8L, 0x1f9ec583bdc70588L, 0x48ce53c07bb3daf6L,
+        0x13c33b72569c6375L, 0x2d80f4584d5068daL, 0x18b40a4eec437c52L, 0x78e1316e60a48310L
+    };
+
+    /** 2^(bitlength(5^q) - 1 + 59) / 5^q + 1 for 0 <= q < 31. */
+    private static final long[] FLOAT_POW5_INV_SPLIT = {
+        0x0800000000000001L, 0x0666666666666667L, 0x051eb851eb851eb9L,
+        0x04189374bc6a7efaL, 0x068db8bac710cb2aL, 0x053e2d6238da3c22L,
+        0x0431bde82d7b634eL, 0x06b5fca6af2bd216L, 0x055e63b88c230e78L,
+        0x044b82fa09b5a52dL, 0x06df37f675ef6eaeL, 0x057f5ff85e592558L,
+        0x0465e6604b7a8447L, 0x0709709a125da071L, 0x05a126e1a84ae6c1L,
+        0x0480ebe7b9d58567L, 0x0734aca5f6226f0bL, 0x05c3bd5191b525a3L,
+        0x049c97747490eae9L, 0x0760f253edb4ab0eL, 0x05e72843249088d8L,
+        0x04b8ed0283a6d3e0L, 0x078e480405d7b966L, 0x060b6cd004ac9452L,
+        0x04d5f0a66a23a9dbL, 0x07bcb43d769f762bL, 0x063090312bb2c4efL,
+        0x04f3a68dbc8f03f3L, 0x07ec3daf94180651L, 0x065697bfa9acd1daL,
+        0x051212ffbaf0a7e2L
+    };
+
+    /** 5^i scaled to 61 bits for 0 <= i < 47. */
+    private static final long[] FLOAT_POW5_SPLIT = {
+        0x1000000000000000L, 0x1400000000000000L, 0x1900000000000000L,
+        0x1f40000000000000L, 0x1388000000000000L, 0x186a000000000000L,
+        0x1e84800000000000L, 0x1312d00000000000L, 0x17d7840000000000L,
+        0x1dcd650000000000L, 0x12a05f2000000000L, 0x174876e800000000L,
+        0x1d1a94a200000000L, 0x12309ce540000000L, 0x16bcc41e90000000L,
+        0x1c6bf52634000000L, 0x11c37937e0800000L, 0x16345785d8a00000L,
+        0x1bc16d674ec80000L, 0x1158e460913d0000L, 0x15af1d78b58c4000L,
+        0x1b1ae4d6e2ef5000L, 0x10f0cf064dd59200L, 0x152d02c7e14af680L,
+        0x1a784379d99db420L, 0x108b2a2c28029094L, 0x14adf4b7320334b9L,
+        0x19d971e4fe8401e7L, 0x1027e72f1f128130L, 0x1431e0fae6d7217cL,
+        0x193e5939a08ce9dbL, 0x1f8def8808b02452L, 0x13b8b5b5056e16b3L,
+        0x18a6e32246c99c60L, 0x1ed09bead87c0378L, 0x13426172c74d822bL,
+        0x1812f9cf7920e2b6L, 0x1e17b84357691b64L, 0x12ced32a16a1b11eL,
+        0x178287f49c4a1d66L, 0x1d6329f1c35ca4bfL, 0x125dfa371a19e6f7L,
+        0x16f578c4e0a060b5L, 0x1cb2d6f618c878e3L, 0x11efc659cf7d4b8dL,
+        0x166bb7f0435c9e71L, 0x1c06a5ec5433c60dL
+    };
 }
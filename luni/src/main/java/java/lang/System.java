@@ -44,8 +44,10 @@ import java.io.PrintStream;
 import java.nio.channels.Channel;
 import java.nio.channels.spi.SelectorProvider;
 import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
@@ -264,7 +266,7 @@ public final class System {
 
     private static void initSystemProperties() {
         VMRuntime runtime = VMRuntime.getRuntime();
-        Properties p = new Properties();
+        Properties p = new SystemProperties();
 
         String projectUrl = "http://www.android.com/";
         String projectName = "The Android Project";
@@ -422,7 +424,11 @@ public final class System {
         if (prop.isEmpty()) {
             throw new IllegalArgumentException();
         }
-        return getProperties().getProperty(prop, defaultValue);
+        Properties p = getProperties();
+        if (p instanceof SystemProperties) {
+            return ((SystemProperties) p).getSnapshotProperty(prop, defaultValue);
+        }
+        return p.getProperty(prop, defaultValue);
     }
 
     /**
@@ -684,4 +690,140 @@ public final class System {
             return (String) o;
         }
     }
+
+    /**
+     * The built-in system properties. Reads through {@link System#getProperty}
+     * consult an immutable copy of the string properties instead of taking the
+     * table's lock. Every mutation discards the copy, and the next read builds
+     * a new one, so a batch of writes costs a single rebuild.
+     *
+     * <p>All of Hashtable's mutations go through put, remove and clear except
+     * for those made through the entry set, which is wrapped to catch them.
+     */
+    private static final class SystemProperties extends Properties {
+        private transient volatile Map<String, String> snapshot;
+
+        String getSnapshotProperty(String name, String defaultValue) {
+            Map<String, String> s = snapshot;
+            if (s == null) {
+                s = buildSnapshot();
+            }
+            String value = s.get(name);
+            return value != null ? value : defaultValue;
+        }
+
+        private synchronized Map<String, String> buildSnapshot() {
+            Map<String, String> s = snapshot;
+            if (s == null) {
+                s = new HashMap<String, String>(size() * 2);
+                for (Map.Entry<Object, Object> entry : super.entrySet()) {
+                    Object key = entry.getKey();
+                    Object value = entry.getValue();
+                    if (key instanceof String && value instanceof String) {
+                        s.put((String) key, (String) value);
+                    }
+                }
+                snapshot = s;
+            }
+            return s;
+        }
+
+        /**
+         * Serializes as a plain Properties so that readers don't need this class.
+         */
+        private Object writeReplace() {
+            Properties result = new Properties();
+            result.putAll(this);
+            return result;
+        }
+
+        @Override public synchronized Object put(Object key, Object value) {
+            Object result = super.put(key, value);
+            snapshot = null;
+            return result;
+        }
+
+        @Override public synchronized Object remove(Object key) {
+            Object result = super.remove(key);
+            snapshot = null;
+            return result;
+        }
+
+        @Override public synchronized void clear() {
+            super.clear();
+            snapshot = null;
+        }
+
+        @Override public Set<Map.Entry<Object, Object>> entrySet() {
+            final Set<Map.Entry<Object, Object>> entries = super.entrySet();
+            return new AbstractSet<Map.Entry<Object, Object>>() {
+                @Override public Iterator<Map.Entry<Object, Object>> iterator() {
+                    final Iterator<Map.Entry<Object, Object>> it = entries.iterator();
+                    return new Iterator<Map.Entry<Object, Object>>() {
+                        public boolean hasNext() {
+                            return it.hasNext();
+                        }
+                        public Map.Entry<Object, Object> next() {
+                            return new InvalidatingEntry(it.next());
+                        }
+                        public void remove() {
+                            it.remove();
+                        }
+                    };
+                }
+                @Override public int size() {
+                    return entries.size();
+                }
+                @Override public boolean contains(Object o) {
+                    return entries.contains(o);
+                }
+                @Override public boolean remove(Object o) {
+                    synchronized (SystemProperties.this) {
+                        boolean result = entries.remove(o);
+                        snapshot = null;
+                        return result;
+                    }
+                }
+                @Override public void clear() {
+                    entries.clear();
+                }
+            };
+        }
+
+        private final class InvalidatingEntry implements Map.Entry<Object, Object> {
+            private final Map.Entry<Object, Object> delegate;
+
+            InvalidatingEntry(Map.Entry<Object, Object> delegate) {
+                this.delegate = delegate;
+            }
+
+            public Object getKey() {
+                return delegate.getKey();
+            }
+
+            public Object getValue() {
+                return delegate.getValue();
+            }
+
+            public Object setValue(Object value) {
+                synchronized (SystemProperties.this) {
+                    Object result = delegate.setValue(value);
+                    snapshot = null;
+                    return result;
+                }
+            }
+
+            @Override public boolean equals(Object o) {
+                return delegate.equals(o);
+            }
+
+            @Override public int hashCode() {
+                return delegate.hashCode();
+            }
+
+            @Override public String toString() {
+                return delegate.toString();
+            }
+        }
+    }
 }
@@ -100,6 +100,7 @@ public class PlainSocketImpl extends SocketImpl {
             // TODO: we can't just set newImpl.fd to clientFd because a nio SocketChannel may
             // be sharing the FileDescriptor. http://b//4452981.
             newImpl.fd.setInt$(clientFd.getInt$());
+            newImpl.fd.setType$(clientFd.getType$());
 
             newImpl.address = peerAddress.getAddress();
             newImpl.port = peerAddress.getPort();
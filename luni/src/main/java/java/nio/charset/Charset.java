@@ -22,7 +22,6 @@ import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.spi.CharsetProvider;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Locale;
@@ -30,6 +29,7 @@ import java.util.ServiceLoader;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import libcore.icu.NativeConverter;
 
 /**
@@ -153,7 +153,23 @@ import libcore.icu.NativeConverter;
  * it returns are inherently stateful.
  */
 public abstract class Charset implements Comparable<Charset> {
-    private static final HashMap<String, Charset> CACHED_CHARSETS = new HashMap<String, Charset>();
+    /**
+     * Maps canonical names, aliases and the names callers actually used to the
+     * canonical instance. Lookups don't lock because forName is called for
+     * every String(byte[], String) and InputStreamReader.
+     */
+    private static final ConcurrentHashMap<String, Charset> CACHED_CHARSETS =
+            new ConcurrentHashMap<String, Charset>();
+
+    /**
+     * Well-formed names that ICU doesn't know, so that repeated lookups of
+     * charsets from a provider, or of unsupported charsets, skip the JNI call.
+     * Providers are still consulted each time because the context class loader
+     * may have changed. Bounded because names often come from the network.
+     */
+    private static final ConcurrentHashMap<String, Boolean> NOT_BUILT_IN =
+            new ConcurrentHashMap<String, Boolean>();
+    private static final int MAX_NOT_BUILT_IN = 64;
 
     private static final Charset DEFAULT_CHARSET = getDefaultCharset();
 
@@ -216,7 +232,7 @@ public abstract class Charset implements Comparable<Charset> {
         // Start with a copy of the built-in charsets...
         TreeMap<String, Charset> charsets = new TreeMap<String, Charset>(String.CASE_INSENSITIVE_ORDER);
         for (String charsetName : NativeConverter.getAvailableCharsetNames()) {
-            Charset charset = NativeConverter.charsetForName(charsetName);
+            Charset charset = builtInCharset(charsetName);
             charsets.put(charset.name(), charset);
         }
 
@@ -235,31 +251,51 @@ public abstract class Charset implements Comparable<Charset> {
         return Collections.unmodifiableSortedMap(charsets);
     }
 
-    private static Charset cacheCharset(String charsetName, Charset cs) {
-        synchronized (CACHED_CHARSETS) {
-            // Get the canonical name for this charset, and the canonical instance from the table.
-            String canonicalName = cs.name();
-            Charset canonicalCharset = CACHED_CHARSETS.get(canonicalName);
-            if (canonicalCharset == null) {
-                canonicalCharset = cs;
-            }
+    /**
+     * Returns the built-in charset for {@code charsetName}, or null. ICU knows
+     * the names and aliases of all built-in charsets, but UTF-8, ISO-8859-1 and
+     * US-ASCII are converted in Java to avoid a JNI call per buffer.
+     */
+    private static Charset builtInCharset(String charsetName) {
+        Charset cs = NativeConverter.charsetForName(charsetName);
+        if (cs == null) {
+            return null;
+        }
+        String name = cs.name();
+        if (name.equals("UTF-8")) {
+            return new CharsetUtf8(name, cs.aliasesArray());
+        } else if (name.equals("ISO-8859-1")) {
+            return new CharsetLatin1(name, cs.aliasesArray(), '\u00ff');
+        } else if (name.equals("US-ASCII")) {
+            return new CharsetLatin1(name, cs.aliasesArray(), '\u007f');
+        }
+        return cs;
+    }
 
-            // Cache the charset by its canonical name...
-            CACHED_CHARSETS.put(canonicalName, canonicalCharset);
+    private String[] aliasesArray() {
+        return aliasesSet.toArray(new String[aliasesSet.size()]);
+    }
 
-            // And the name the user used... (Section 1.4 of http://unicode.org/reports/tr22/ means
-            // that many non-alias, non-canonical names are valid. For example, "utf8" isn't an
-            // alias of the canonical name "UTF-8", but we shouldn't penalize consistent users of
-            // such names unduly.)
-            CACHED_CHARSETS.put(charsetName, canonicalCharset);
+    private static Charset cacheCharset(String charsetName, Charset cs) {
+        // Get the canonical name for this charset, and the canonical instance from the table.
+        String canonicalName = cs.name();
+        Charset canonicalCharset = CACHED_CHARSETS.putIfAbsent(canonicalName, cs);
+        if (canonicalCharset == null) {
+            canonicalCharset = cs;
+        }
 
-            // And all its aliases...
-            for (String alias : cs.aliasesSet) {
-                CACHED_CHARSETS.put(alias, canonicalCharset);
-            }
+        // Cache the name the user used... (Section 1.4 of http://unicode.org/reports/tr22/ means
+        // that many non-alias, non-canonical names are valid. For example, "utf8" isn't an
+        // alias of the canonical name "UTF-8", but we shouldn't penalize consistent users of
+        // such names unduly.)
+        CACHED_CHARSETS.put(charsetName, canonicalCharset);
 
-            return canonicalCharset;
+        // And all its aliases...
+        for (String alias : cs.aliasesSet) {
+            CACHED_CHARSETS.put(alias, canonicalCharset);
         }
+
+        return canonicalCharset;
     }
 
     /**
@@ -272,24 +308,26 @@ public abstract class Charset implements Comparable<Charset> {
      *             if the desired charset is not supported by this runtime.
      */
     public static Charset forName(String charsetName) {
-        // Is this charset in our cache?
-        Charset cs;
-        synchronized (CACHED_CHARSETS) {
-            cs = CACHED_CHARSETS.get(charsetName);
-            if (cs != null) {
-                return cs;
-            }
-        }
-
         if (charsetName == null) {
             throw new IllegalCharsetNameException(null);
         }
 
+        // Is this charset in our cache?
+        Charset cs = CACHED_CHARSETS.get(charsetName);
+        if (cs != null) {
+            return cs;
+        }
+
         // Is this a built-in charset supported by ICU?
         checkCharsetName(charsetName);
-        cs = NativeConverter.charsetForName(charsetName);
-        if (cs != null) {
-            return cacheCharset(charsetName, cs);
+        if (!NOT_BUILT_IN.containsKey(charsetName)) {
+            cs = builtInCharset(charsetName);
+            if (cs != null) {
+                return cacheCharset(charsetName, cs);
+            }
+            if (NOT_BUILT_IN.size() < MAX_NOT_BUILT_IN) {
+                NOT_BUILT_IN.put(charsetName, Boolean.TRUE);
+            }
         }
 
         // Does a configured CharsetProvider have this charset?
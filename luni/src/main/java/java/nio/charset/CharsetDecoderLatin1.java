@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package java.nio.charset;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * A decoder for ISO-8859-1 or US-ASCII that works directly on array-backed
+ * buffers. For US-ASCII, bytes above 0x7f are malformed.
+ */
+final class CharsetDecoderLatin1 extends CharsetDecoder {
+    private final char maxChar;
+
+    CharsetDecoderLatin1(Charset cs, char maxChar) {
+        super(cs, 1.0f, 1.0f);
+        this.maxChar = maxChar;
+    }
+
+    @Override protected CoderResult decodeLoop(ByteBuffer in, CharBuffer out) {
+        if (!in.hasArray() || !out.hasArray()) {
+            while (in.hasRemaining()) {
+                if (!out.hasRemaining()) {
+                    return CoderResult.OVERFLOW;
+                }
+                int b = in.get(in.position()) & 0xff;
+                if (b > maxChar) {
+                    return CoderResult.malformedForLength(1);
+                }
+                out.put((char) b);
+                in.position(in.position() + 1);
+            }
+            return CoderResult.UNDERFLOW;
+        }
+
+        byte[] src = in.array();
+        int srcOffset = in.arrayOffset();
+        int sp = srcOffset + in.position();
+        int sl = srcOffset + in.limit();
+        char[] dst = out.array();
+        int dstOffset = out.arrayOffset();
+        int dp = dstOffset + out.position();
+        int end = sp + Math.min(sl - sp, out.remaining());
+
+        if (maxChar == 0xff) {
+            while (sp < end) {
+                dst[dp++] = (char) (src[sp++] & 0xff);
+            }
+        } else {
+            while (sp < end && src[sp] >= 0) {
+                dst[dp++] = (char) src[sp++];
+            }
+        }
+
+        CoderResult result;
+        if (sp == sl) {
+            result = CoderResult.UNDERFLOW;
+        } else if (sp < end) {
+            result = CoderResult.malformedForLength(1);
+        } else {
+            result = CoderResult.OVERFLOW;
+        }
+        in.position(sp - srcOffset);
+        out.position(dp - dstOffset);
+        return result;
+    }
+}
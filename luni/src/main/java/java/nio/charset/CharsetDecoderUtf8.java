@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package java.nio.charset;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * A UTF-8 decoder that works directly on array-backed buffers, copying runs
+ * of ASCII without further checks.
+ *
+ * <p>Like the ICU decoders, this remembers a sequence that is split across
+ * calls to {@code decode}, so callers may pass input in arbitrary pieces.
+ * Malformed input is reported one maximal invalid subsequence at a time, as
+ * recommended by the Unicode standard. Overlong forms, encoded surrogates and
+ * values above U+10FFFF are malformed.
+ */
+final class CharsetDecoderUtf8 extends CharsetDecoder {
+    /** The start of a sequence that was split across calls to decodeLoop. */
+    private final byte[] pending = new byte[4];
+    private int pendingCount;
+
+    /** Scratch arrays for buffers that aren't backed by arrays. */
+    private byte[] allocatedInput;
+    private char[] allocatedOutput;
+
+    CharsetDecoderUtf8(Charset cs) {
+        super(cs, 1.0f, 1.0f);
+    }
+
+    @Override protected CoderResult decodeLoop(ByteBuffer in, CharBuffer out) {
+        if (pendingCount > 0) {
+            CoderResult result = decodePending(in, out);
+            if (result != null) {
+                return result;
+            }
+        }
+        if (in.hasArray() && out.hasArray()) {
+            return decodeArrays(in, out);
+        }
+
+        // Decode via scratch arrays, then copy back what was consumed and produced.
+        ByteBuffer arrayIn = in;
+        if (!in.hasArray()) {
+            int length = in.remaining();
+            if (allocatedInput == null || allocatedInput.length < length) {
+                allocatedInput = new byte[length];
+            }
+            int position = in.position();
+            in.get(allocatedInput, 0, length);
+            in.position(position);
+            arrayIn = ByteBuffer.wrap(allocatedInput, 0, length);
+        }
+        CharBuffer arrayOut = out;
+        if (!out.hasArray()) {
+            int length = out.remaining();
+            if (allocatedOutput == null || allocatedOutput.length < length) {
+                allocatedOutput = new char[length];
+            }
+            arrayOut = CharBuffer.wrap(allocatedOutput, 0, length);
+        }
+        CoderResult result = decodeArrays(arrayIn, arrayOut);
+        if (arrayIn != in) {
+            in.position(in.position() + arrayIn.position());
+        }
+        if (arrayOut != out) {
+            out.put(allocatedOutput, 0, arrayOut.position());
+        }
+        return result;
+    }
+
+    private CoderResult decodeArrays(ByteBuffer in, CharBuffer out) {
+        byte[] src = in.array();
+        int srcOffset = in.arrayOffset();
+        int sp = srcOffset + in.position();
+        int sl = srcOffset + in.limit();
+        char[] dst = out.array();
+        int dstOffset = out.arrayOffset();
+        int dp = dstOffset + out.position();
+        int dl = dstOffset + out.limit();
+
+        CoderResult result = CoderResult.UNDERFLOW;
+        while (sp < sl) {
+            int b = src[sp];
+            if (b >= 0) {
+                // Copy a run of ASCII.
+                if (dp == dl) {
+                    result = CoderResult.OVERFLOW;
+                    break;
+                }
+                int end = sp + Math.min(sl - sp, dl - dp);
+                while (sp < end && src[sp] >= 0) {
+                    dst[dp++] = (char) src[sp++];
+                }
+                continue;
+            }
+
+            int lead = b & 0xff;
+            int length = sequenceLength(lead);
+            if (length == 0) {
+                result = CoderResult.malformedForLength(1);
+                break;
+            }
+            int valid = 1;
+            while (valid < length && sp + valid < sl && isValidTrail(lead, valid, src[sp + valid])) {
+                valid++;
+            }
+            if (valid < length) {
+                if (sp + valid == sl) {
+                    // The sequence continues in the next buffer.
+                    System.arraycopy(src, sp, pending, 0, valid);
+                    pendingCount = valid;
+                    sp = sl;
+                } else {
+                    result = CoderResult.malformedForLength(valid);
+                }
+                break;
+            }
+
+            int codePoint = decode(src, sp, length);
+            if (codePoint < 0x10000) {
+                if (dp == dl) {
+                    result = CoderResult.OVERFLOW;
+                    break;
+                }
+                dst[dp++] = (char) codePoint;
+            } else {
+                if (dl - dp < 2) {
+                    result = CoderResult.OVERFLOW;
+                    break;
+                }
+                dst[dp++] = Character.highSurrogate(codePoint);
+                dst[dp++] = Character.lowSurrogate(codePoint);
+            }
+            sp += length;
+        }
+        in.position(sp - srcOffset);
+        out.position(dp - dstOffset);
+        return result;
+    }
+
+    /**
+     * Completes the pending sequence with bytes from {@code in}. Returns null
+     * if decoding should continue with the rest of the input.
+     */
+    private CoderResult decodePending(ByteBuffer in, CharBuffer out) {
+        int lead = pending[0] & 0xff;
+        int length = sequenceLength(lead);
+        while (pendingCount < length) {
+            if (!in.hasRemaining()) {
+                return CoderResult.UNDERFLOW;
+            }
+            byte b = in.get(in.position());
+            if (!isValidTrail(lead, pendingCount, b)) {
+                return pendingMalformed(out);
+            }
+            pending[pendingCount++] = b;
+            in.position(in.position() + 1);
+        }
+        int codePoint = decode(pending, 0, length);
+        if (out.remaining() < (codePoint < 0x10000 ? 1 : 2)) {
+            // Give back the final byte; it was necessarily read from this input.
+            pendingCount--;
+            in.position(in.position() - 1);
+            return CoderResult.OVERFLOW;
+        }
+        if (codePoint < 0x10000) {
+            out.put((char) codePoint);
+        } else {
+            out.put(Character.highSurrogate(codePoint));
+            out.put(Character.lowSurrogate(codePoint));
+        }
+        pendingCount = 0;
+        return null;
+    }
+
+    /**
+     * Handles a pending sequence that turned out to be malformed. Its bytes
+     * were consumed by an earlier call, so the error action is applied here
+     * rather than by {@code decode}, as the ICU decoders do. Returns null if
+     * decoding should continue.
+     */
+    private CoderResult pendingMalformed(CharBuffer out) {
+        CodingErrorAction action = malformedInputAction();
+        if (action == CodingErrorAction.REPLACE) {
+            String replacement = replacement();
+            if (out.remaining() < replacement.length()) {
+                return CoderResult.OVERFLOW;
+            }
+            out.put(replacement);
+        } else if (action == CodingErrorAction.REPORT) {
+            int length = pendingCount;
+            pendingCount = 0;
+            return CoderResult.malformedForLength(length);
+        }
+        pendingCount = 0;
+        return null;
+    }
+
+    @Override protected CoderResult implFlush(CharBuffer out) {
+        if (pendingCount > 0) {
+            CoderResult result = pendingMalformed(out);
+            if (result != null) {
+                return result;
+            }
+        }
+        return CoderResult.UNDERFLOW;
+    }
+
+    @Override protected void implReset() {
+        pendingCount = 0;
+    }
+
+    /**
+     * Returns the length of the sequence starting with {@code lead}, or 0 if
+     * it can't start a sequence.
+     */
+    private static int sequenceLength(int lead) {
+        if (lead >= 0xc2 && lead <= 0xdf) {
+            return 2;
+        } else if (lead >= 0xe0 && lead <= 0xef) {
+            return 3;
+        } else if (lead >= 0xf0 && lead <= 0xf4) {
+            return 4;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns true if {@code b} may follow {@code lead} at {@code index} in a
+     * sequence. The second byte's range is narrowed for some lead bytes to
+     * exclude overlong forms, surrogates and values above U+10FFFF.
+     */
+    private static boolean isValidTrail(int lead, int index, byte b) {
+        int value = b & 0xff;
+        int min = 0x80;
+        int max = 0xbf;
+        if (index == 1) {
+            if (lead == 0xe0) {
+                min = 0xa0;
+            } else if (lead == 0xed) {
+                max = 0x9f;
+            } else if (lead == 0xf0) {
+                min = 0x90;
+            } else if (lead == 0xf4) {
+                max = 0x8f;
+            }
+        }
+        return value >= min && value <= max;
+    }
+
+    /**
+     * Returns the code point of the valid {@code length}-byte sequence at
+     * {@code offset}.
+     */
+    private static int decode(byte[] bytes, int offset, int length) {
+        int codePoint = bytes[offset] & (0x7f >> length);
+        for (int i = 1; i < length; i++) {
+            codePoint = (codePoint << 6) | (bytes[offset + i] & 0x3f);
+        }
+        return codePoint;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package java.nio.charset;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * An encoder for ISO-8859-1 or US-ASCII that works directly on array-backed
+ * buffers. Chars above the charset's maximum are unmappable, and unpaired
+ * surrogates are malformed.
+ *
+ * <p>Like the ICU encoders, this remembers a high surrogate at the end of the
+ * input, so a surrogate pair split across calls to {@code encode} is reported
+ * as one unmappable character rather than as malformed input.
+ */
+final class CharsetEncoderLatin1 extends CharsetEncoder {
+    private final char maxChar;
+
+    /** A high surrogate that ended the previous input, or 0. */
+    private char pendingHighSurrogate;
+
+    CharsetEncoderLatin1(Charset cs, char maxChar) {
+        super(cs, 1.0f, 1.0f);
+        this.maxChar = maxChar;
+    }
+
+    @Override protected CoderResult encodeLoop(CharBuffer in, ByteBuffer out) {
+        if (pendingHighSurrogate != 0) {
+            if (!in.hasRemaining()) {
+                return CoderResult.UNDERFLOW;
+            }
+            if (Character.isLowSurrogate(in.get(in.position()))) {
+                // The pair is unmappable. Its high surrogate was consumed by an
+                // earlier call, so only the low surrogate is reported.
+                pendingHighSurrogate = 0;
+                return CoderResult.unmappableForLength(1);
+            }
+            CoderResult result = pendingMalformed(out);
+            if (result != null) {
+                return result;
+            }
+        }
+
+        if (!in.hasArray() || !out.hasArray()) {
+            while (in.hasRemaining()) {
+                char c = in.get(in.position());
+                if (c > maxChar) {
+                    return unencodable(c, in.remaining() > 1 ? in.get(in.position() + 1) : 0,
+                            in.remaining() == 1, in);
+                }
+                if (!out.hasRemaining()) {
+                    return CoderResult.OVERFLOW;
+                }
+                out.put((byte) c);
+                in.position(in.position() + 1);
+            }
+            return CoderResult.UNDERFLOW;
+        }
+
+        char[] src = in.array();
+        int srcOffset = in.arrayOffset();
+        int sp = srcOffset + in.position();
+        int sl = srcOffset + in.limit();
+        byte[] dst = out.array();
+        int dstOffset = out.arrayOffset();
+        int dp = dstOffset + out.position();
+        int end = sp + Math.min(sl - sp, out.remaining());
+
+        char c;
+        while (sp < end && (c = src[sp]) <= maxChar) {
+            dst[dp++] = (byte) c;
+            sp++;
+        }
+        out.position(dp - dstOffset);
+        in.position(sp - srcOffset);
+
+        if (sp == sl) {
+            return CoderResult.UNDERFLOW;
+        } else if (sp < end || src[sp] > maxChar) {
+            return unencodable(src[sp], sp + 1 < sl ? src[sp + 1] : 0, sp + 1 == sl, in);
+        }
+        return CoderResult.OVERFLOW;
+    }
+
+    /**
+     * Returns the result for the char {@code c} at the position of {@code in},
+     * which is above the maximum. {@code next} is the char after it, if any.
+     */
+    private CoderResult unencodable(char c, char next, boolean isLast, CharBuffer in) {
+        if (Character.isHighSurrogate(c)) {
+            if (isLast) {
+                // The pair continues in the next buffer.
+                pendingHighSurrogate = c;
+                in.position(in.position() + 1);
+                return CoderResult.UNDERFLOW;
+            }
+            return Character.isLowSurrogate(next)
+                    ? CoderResult.unmappableForLength(2)
+                    : CoderResult.malformedForLength(1);
+        } else if (Character.isLowSurrogate(c)) {
+            return CoderResult.malformedForLength(1);
+        }
+        return CoderResult.unmappableForLength(1);
+    }
+
+    /**
+     * Handles a pending high surrogate that turned out to be unpaired. It was
+     * consumed by an earlier call, so the error action is applied here rather
+     * than by {@code encode}, as the ICU encoders do. Returns null if encoding
+     * should continue.
+     */
+    private CoderResult pendingMalformed(ByteBuffer out) {
+        CodingErrorAction action = malformedInputAction();
+        if (action == CodingErrorAction.REPLACE) {
+            byte[] replacement = replacement();
+            if (out.remaining() < replacement.length) {
+                return CoderResult.OVERFLOW;
+            }
+            out.put(replacement);
+        } else if (action == CodingErrorAction.REPORT) {
+            pendingHighSurrogate = 0;
+            return CoderResult.malformedForLength(1);
+        }
+        pendingHighSurrogate = 0;
+        return null;
+    }
+
+    @Override protected CoderResult implFlush(ByteBuffer out) {
+        if (pendingHighSurrogate != 0) {
+            CoderResult result = pendingMalformed(out);
+            if (result != null) {
+                return result;
+            }
+        }
+        return CoderResult.UNDERFLOW;
+    }
+
+    @Override protected void implReset() {
+        pendingHighSurrogate = 0;
+    }
+
+    @Override public boolean canEncode(char c) {
+        return c <= maxChar;
+    }
+}
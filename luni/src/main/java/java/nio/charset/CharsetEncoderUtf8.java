@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package java.nio.charset;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * A UTF-8 encoder that works directly on array-backed buffers, copying runs
+ * of ASCII without further checks.
+ *
+ * <p>Like the ICU encoders, this remembers a high surrogate at the end of the
+ * input, so a surrogate pair may be split across calls to {@code encode}.
+ * Unpaired surrogates are malformed.
+ */
+final class CharsetEncoderUtf8 extends CharsetEncoder {
+    /** A high surrogate that ended the previous input, or 0. */
+    private char pendingHighSurrogate;
+
+    /** Scratch arrays for buffers that aren't backed by arrays. */
+    private char[] allocatedInput;
+    private byte[] allocatedOutput;
+
+    CharsetEncoderUtf8(Charset cs) {
+        super(cs, 1.1f, 3.0f);
+    }
+
+    @Override protected CoderResult encodeLoop(CharBuffer in, ByteBuffer out) {
+        if (pendingHighSurrogate != 0) {
+            CoderResult result = encodePending(in, out);
+            if (result != null) {
+                return result;
+            }
+        }
+        if (in.hasArray() && out.hasArray()) {
+            return encodeArrays(in, out);
+        }
+
+        // Encode via scratch arrays, then copy back what was consumed and produced.
+        CharBuffer arrayIn = in;
+        if (!in.hasArray()) {
+            int length = in.remaining();
+            if (allocatedInput == null || allocatedInput.length < length) {
+                allocatedInput = new char[length];
+            }
+            int position = in.position();
+            in.get(allocatedInput, 0, length);
+            in.position(position);
+            arrayIn = CharBuffer.wrap(allocatedInput, 0, length);
+        }
+        ByteBuffer arrayOut = out;
+        if (!out.hasArray()) {
+            int length = out.remaining();
+            if (allocatedOutput == null || allocatedOutput.length < length) {
+                allocatedOutput = new byte[length];
+            }
+            arrayOut = ByteBuffer.wrap(allocatedOutput, 0, length);
+        }
+        CoderResult result = encodeArrays(arrayIn, arrayOut);
+        if (arrayIn != in) {
+            in.position(in.position() + arrayIn.position());
+        }
+        if (arrayOut != out) {
+            out.put(allocatedOutput, 0, arrayOut.position());
+        }
+        return result;
+    }
+
+    private CoderResult encodeArrays(CharBuffer in, ByteBuffer out) {
+        char[] src = in.array();
+        int srcOffset = in.arrayOffset();
+        int sp = srcOffset + in.position();
+        int sl = srcOffset + in.limit();
+        byte[] dst = out.array();
+        int dstOffset = out.arrayOffset();
+        int dp = dstOffset + out.position();
+        int dl = dstOffset + out.limit();
+
+        CoderResult result = CoderResult.UNDERFLOW;
+        while (sp < sl) {
+            char c = src[sp];
+            if (c < 0x80) {
+                // Copy a run of ASCII.
+                if (dp == dl) {
+                    result = CoderResult.OVERFLOW;
+                    break;
+                }
+                int end = sp + Math.min(sl - sp, dl - dp);
+                while (sp < end && (c = src[sp]) < 0x80) {
+                    dst[dp++] = (byte) c;
+                    sp++;
+                }
+            } else if (c < 0x800) {
+                if (dl - dp < 2) {
+                    result = CoderResult.OVERFLOW;
+                    break;
+                }
+                dst[dp++] = (byte) (0xc0 | (c >> 6));
+                dst[dp++] = (byte) (0x80 | (c & 0x3f));
+                sp++;
+            } else if (!Character.isSurrogate(c)) {
+                if (dl - dp < 3) {
+                    result = CoderResult.OVERFLOW;
+                    break;
+                }
+                dst[dp++] = (byte) (0xe0 | (c >> 12));
+                dst[dp++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                dst[dp++] = (byte) (0x80 | (c & 0x3f));
+                sp++;
+            } else if (Character.isHighSurrogate(c)) {
+                if (sp + 1 == sl) {
+                    // The pair continues in the next buffer.
+                    pendingHighSurrogate = c;
+                    sp++;
+                    break;
+                }
+                char low = src[sp + 1];
+                if (!Character.isLowSurrogate(low)) {
+                    result = CoderResult.malformedForLength(1);
+                    break;
+                }
+                if (dl - dp < 4) {
+                    result = CoderResult.OVERFLOW;
+                    break;
+                }
+                dp = putSupplementary(dst, dp, Character.toCodePoint(c, low));
+                sp += 2;
+            } else {
+                result = CoderResult.malformedForLength(1);
+                break;
+            }
+        }
+        in.position(sp - srcOffset);
+        out.position(dp - dstOffset);
+        return result;
+    }
+
+    /**
+     * Completes the pending surrogate pair with the first char of {@code in}.
+     * Returns null if encoding should continue with the rest of the input.
+     */
+    private CoderResult encodePending(CharBuffer in, ByteBuffer out) {
+        if (!in.hasRemaining()) {
+            return CoderResult.UNDERFLOW;
+        }
+        char low = in.get(in.position());
+        if (!Character.isLowSurrogate(low)) {
+            return pendingMalformed(out);
+        }
+        if (out.remaining() < 4) {
+            return CoderResult.OVERFLOW;
+        }
+        int codePoint = Character.toCodePoint(pendingHighSurrogate, low);
+        out.put((byte) (0xf0 | (codePoint >> 18)));
+        out.put((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+        out.put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+        out.put((byte) (0x80 | (codePoint & 0x3f)));
+        in.position(in.position() + 1);
+        pendingHighSurrogate = 0;
+        return null;
+    }
+
+    /**
+     * Handles a pending high surrogate that turned out to be unpaired. It was
+     * consumed by an earlier call, so the error action is applied here rather
+     * than by {@code encode}, as the ICU encoders do. Returns null if encoding
+     * should continue.
+     */
+    private CoderResult pendingMalformed(ByteBuffer out) {
+        CodingErrorAction action = malformedInputAction();
+        if (action == CodingErrorAction.REPLACE) {
+            byte[] replacement = replacement();
+            if (out.remaining() < replacement.length) {
+                return CoderResult.OVERFLOW;
+            }
+            out.put(replacement);
+        } else if (action == CodingErrorAction.REPORT) {
+            pendingHighSurrogate = 0;
+            return CoderResult.malformedForLength(1);
+        }
+        pendingHighSurrogate = 0;
+        return null;
+    }
+
+    @Override protected CoderResult implFlush(ByteBuffer out) {
+        if (pendingHighSurrogate != 0) {
+            CoderResult result = pendingMalformed(out);
+            if (result != null) {
+                return result;
+            }
+        }
+        return CoderResult.UNDERFLOW;
+    }
+
+    @Override protected void implReset() {
+        pendingHighSurrogate = 0;
+    }
+
+    @Override public boolean canEncode(char c) {
+        return !Character.isSurrogate(c);
+    }
+
+    private static int putSupplementary(byte[] dst, int dp, int codePoint) {
+        dst[dp++] = (byte) (0xf0 | (codePoint >> 18));
+        dst[dp++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+        dst[dp++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+        dst[dp++] = (byte) (0x80 | (codePoint & 0x3f));
+        return dp;
+    }
+}
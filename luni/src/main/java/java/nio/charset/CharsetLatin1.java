@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package java.nio.charset;
+
+import libcore.icu.NativeConverter;
+
+/**
+ * ISO-8859-1 or its subset US-ASCII, converted in Java rather than by ICU.
+ * Both map each byte directly to the char with the same value, up to a
+ * maximum of U+00FF or U+007F respectively.
+ */
+final class CharsetLatin1 extends Charset {
+    private final char maxChar;
+
+    CharsetLatin1(String canonicalName, String[] aliases, char maxChar) {
+        super(canonicalName, aliases);
+        this.maxChar = maxChar;
+    }
+
+    public CharsetDecoder newDecoder() {
+        return new CharsetDecoderLatin1(this, maxChar);
+    }
+
+    public CharsetEncoder newEncoder() {
+        return new CharsetEncoderLatin1(this, maxChar);
+    }
+
+    public boolean contains(Charset cs) {
+        if (cs == null) {
+            return false;
+        } else if (this.equals(cs)) {
+            return true;
+        }
+        return NativeConverter.contains(this.name(), cs.name());
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package java.nio.charset;
+
+import libcore.icu.NativeConverter;
+
+/**
+ * UTF-8, converted in Java rather than by ICU. Streams spend most of their
+ * time decoding and encoding buffers of ASCII, which doesn't warrant a JNI
+ * call per buffer.
+ */
+final class CharsetUtf8 extends Charset {
+    CharsetUtf8(String canonicalName, String[] aliases) {
+        super(canonicalName, aliases);
+    }
+
+    public CharsetDecoder newDecoder() {
+        return new CharsetDecoderUtf8(this);
+    }
+
+    public CharsetEncoder newEncoder() {
+        return new CharsetEncoderUtf8(this);
+    }
+
+    public boolean contains(Charset cs) {
+        if (cs == null) {
+            return false;
+        } else if (this.equals(cs)) {
+            return true;
+        }
+        return NativeConverter.contains(this.name(), cs.name());
+    }
+}
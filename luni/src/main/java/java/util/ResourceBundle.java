@@ -22,10 +22,12 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.lang.ref.WeakReference;
 import java.net.URL;
 import java.net.URLConnection;
 import java.nio.charset.Charsets;
 import static java.nio.charset.Charsets.UTF_8;
+import java.util.concurrent.ConcurrentHashMap;
 import libcore.io.IoUtils;
 
 /**
@@ -94,6 +96,15 @@ public abstract class ResourceBundle {
 
     private long lastLoadTime = 0;
 
+    /**
+     * When a bundle loaded through a {@link Control} must be checked again,
+     * in milliseconds. Long.MIN_VALUE if it mustn't be cached at all.
+     */
+    private volatile long expirationTime = Long.MAX_VALUE;
+
+    /** The format this bundle was loaded from by a {@link Control}, for needsReload. */
+    private String loadFormat;
+
     static class MissingBundle extends ResourceBundle {
         @Override
         public Enumeration<String> getKeys() {
@@ -110,10 +121,21 @@ public abstract class ResourceBundle {
 
     private static final ResourceBundle MISSINGBASE = new MissingBundle();
 
-    private static final WeakHashMap<Object, Hashtable<String, ResourceBundle>> cache
-            = new WeakHashMap<Object, Hashtable<String, ResourceBundle>>();
+    /**
+     * Loaded bundles by class loader, or "null". Each loader's bundles are
+     * keyed by bundle name for the getBundle methods without a Control, and
+     * by {@link ControlKey} for those with one.
+     */
+    private static final WeakHashMap<Object, ConcurrentHashMap<Object, ResourceBundle>> cache
+            = new WeakHashMap<Object, ConcurrentHashMap<Object, ResourceBundle>>();
+
+    /**
+     * The bundles of the most recently used loader, so that lookups needn't
+     * lock the cache while callers keep using the same loader.
+     */
+    private static volatile LoaderCache lastLoaderCache;
 
-    private static Locale cacheLocale = Locale.getDefault();
+    private static volatile Locale cacheLocale = Locale.getDefault();
 
     /**
      * Constructs a new instance of this class.
@@ -216,8 +238,11 @@ public abstract class ResourceBundle {
         }
         Locale defaultLocale = Locale.getDefault();
         if (!cacheLocale.equals(defaultLocale)) {
-            cache.clear();
-            cacheLocale = defaultLocale;
+            synchronized (cache) {
+                cache.clear();
+                lastLoaderCache = null;
+                cacheLocale = defaultLocale;
+            }
         }
         ResourceBundle bundle = null;
         if (!locale.equals(defaultLocale)) {
@@ -296,40 +321,32 @@ public abstract class ResourceBundle {
     public static ResourceBundle getBundle(String baseName,
             Locale targetLocale, ClassLoader loader,
             ResourceBundle.Control control) {
-        boolean expired = false;
-        String bundleName = control.toBundleName(baseName, targetLocale);
-        Object cacheKey = loader != null ? loader : "null";
-        Hashtable<String, ResourceBundle> loaderCache = getLoaderCache(cacheKey);
-        ResourceBundle result = loaderCache.get(bundleName);
-        if (result != null) {
-            long time = control.getTimeToLive(baseName, targetLocale);
-            if (time == 0 || time == Control.TTL_NO_EXPIRATION_CONTROL
-                    || time + result.lastLoadTime < System.currentTimeMillis()) {
-                if (MISSING == result) {
-                    throw new MissingResourceException(null, bundleName + '_'
-                            + targetLocale, EMPTY_STRING);
-                }
-                return result;
+        ConcurrentHashMap<Object, ResourceBundle> loaderCache = getLoaderCache(loader);
+        ControlKey key = new ControlKey(baseName, targetLocale, true);
+        ResourceBundle resolution = loaderCache.get(key);
+        if (resolution == null || System.currentTimeMillis() >= resolution.expirationTime) {
+            resolution = processGetBundle(baseName, targetLocale, loader, control, loaderCache);
+            if (resolution.expirationTime != Long.MIN_VALUE) {
+                loaderCache.put(key, resolution);
             }
-            expired = true;
         }
-        // try to load
-        ResourceBundle ret = processGetBundle(baseName, targetLocale, loader,
-                control, expired, result);
-
-        if (ret != null) {
-            loaderCache.put(bundleName, ret);
-            ret.lastLoadTime = System.currentTimeMillis();
-            return ret;
+        ResourceBundle bundle = ((Resolution) resolution).bundle;
+        if (bundle == null) {
+            String bundleName = control.toBundleName(baseName, targetLocale);
+            throw new MissingResourceException(null, bundleName + '_' + targetLocale, EMPTY_STRING);
         }
-        loaderCache.put(bundleName, MISSING);
-        throw new MissingResourceException(null, bundleName + '_' + targetLocale, EMPTY_STRING);
+        return bundle;
     }
 
+    /**
+     * Finds the bundle for {@code targetLocale} by chaining the bundles of its
+     * candidate locales, each of which is cached separately, together with
+     * the earliest time any of them must be checked again.
+     */
     private static ResourceBundle processGetBundle(String baseName,
             Locale targetLocale, ClassLoader loader,
-            ResourceBundle.Control control, boolean expired,
-            ResourceBundle result) {
+            ResourceBundle.Control control,
+            ConcurrentHashMap<Object, ResourceBundle> loaderCache) {
         List<Locale> locales = control.getCandidateLocales(baseName, targetLocale);
         if (locales == null) {
             throw new IllegalArgumentException();
@@ -340,48 +357,22 @@ public abstract class ResourceBundle {
                 || Control.FORMAT_DEFAULT == formats) {
             throw new IllegalArgumentException();
         }
+        long expirationTime = Long.MAX_VALUE;
         ResourceBundle ret = null;
         ResourceBundle currentBundle = null;
-        ResourceBundle bundle = null;
         for (Locale locale : locales) {
-            for (String format : formats) {
-                try {
-                    if (expired) {
-                        bundle = control.newBundle(baseName, locale, format,
-                                loader, control.needsReload(baseName, locale,
-                                        format, loader, result, System
-                                                .currentTimeMillis()));
-
-                    } else {
-                        try {
-                            bundle = control.newBundle(baseName, locale,
-                                    format, loader, false);
-                        } catch (IllegalArgumentException e) {
-                            // do nothing
-                        }
-                    }
-                } catch (IllegalAccessException e) {
-                    // do nothing
-                } catch (InstantiationException e) {
-                    // do nothing
-                } catch (IOException e) {
-                    // do nothing
-                }
-                if (bundle != null) {
-                    if (currentBundle != null) {
-                        currentBundle.setParent(bundle);
-                        currentBundle = bundle;
-                    } else {
-                        if (ret == null) {
-                            ret = bundle;
-                            currentBundle = ret;
-                        }
-                    }
-                }
-                if (bundle != null) {
-                    break;
-                }
+            ResourceBundle bundle = findCandidate(baseName, locale, formats, loader, control,
+                    loaderCache);
+            expirationTime = Math.min(expirationTime, bundle.expirationTime);
+            if (bundle instanceof MissingBundle || bundle == currentBundle) {
+                continue;
+            }
+            if (currentBundle == null) {
+                ret = bundle;
+            } else if (currentBundle.parent != bundle) {
+                currentBundle.setParent(bundle);
             }
+            currentBundle = bundle;
         }
 
         if ((ret == null)
@@ -389,12 +380,90 @@ public abstract class ResourceBundle {
                         .contains(Locale.ROOT))))) {
             Locale nextLocale = control.getFallbackLocale(baseName, targetLocale);
             if (nextLocale != null) {
-                ret = processGetBundle(baseName, nextLocale, loader, control,
-                        expired, result);
+                ResourceBundle fallback = processGetBundle(baseName, nextLocale, loader, control,
+                        loaderCache);
+                expirationTime = Math.min(expirationTime, fallback.expirationTime);
+                if (((Resolution) fallback).bundle != null) {
+                    ret = ((Resolution) fallback).bundle;
+                }
             }
         }
 
-        return ret;
+        ResourceBundle resolution = new Resolution(ret);
+        resolution.expirationTime = expirationTime;
+        return resolution;
+    }
+
+    /**
+     * Returns the bundle for exactly {@code locale}, or a {@code MissingBundle}
+     * if there is none, loading it only if the cached entry has expired and
+     * the control says it needs reloading.
+     */
+    private static ResourceBundle findCandidate(String baseName, Locale locale,
+            List<String> formats, ClassLoader loader, ResourceBundle.Control control,
+            ConcurrentHashMap<Object, ResourceBundle> loaderCache) {
+        ControlKey key = new ControlKey(baseName, locale, false);
+        ResourceBundle cached = loaderCache.get(key);
+        long now = System.currentTimeMillis();
+        boolean reload = false;
+        if (cached != null) {
+            if (now < cached.expirationTime) {
+                return cached;
+            }
+            if (!(cached instanceof MissingBundle)) {
+                if (!control.needsReload(baseName, locale, cached.loadFormat, loader, cached,
+                        cached.lastLoadTime)) {
+                    cached.expirationTime = expirationTime(control, baseName, locale, now);
+                    return cached;
+                }
+                reload = true;
+            }
+        }
+
+        ResourceBundle bundle = null;
+        String loadFormat = null;
+        for (String format : formats) {
+            try {
+                bundle = control.newBundle(baseName, locale, format, loader, reload);
+            } catch (IllegalArgumentException e) {
+                // do nothing
+            } catch (IllegalAccessException e) {
+                // do nothing
+            } catch (InstantiationException e) {
+                // do nothing
+            } catch (IOException e) {
+                // do nothing
+            }
+            if (bundle != null) {
+                loadFormat = format;
+                break;
+            }
+        }
+        if (bundle == null) {
+            bundle = new MissingBundle();
+        }
+        bundle.lastLoadTime = now;
+        bundle.loadFormat = loadFormat;
+        bundle.expirationTime = expirationTime(control, baseName, locale, now);
+        if (bundle.expirationTime != Long.MIN_VALUE) {
+            loaderCache.put(key, bundle);
+        } else if (cached != null) {
+            loaderCache.remove(key, cached);
+        }
+        return bundle;
+    }
+
+    private static long expirationTime(ResourceBundle.Control control, String baseName,
+            Locale locale, long now) {
+        long ttl = control.getTimeToLive(baseName, locale);
+        if (ttl == Control.TTL_NO_EXPIRATION_CONTROL) {
+            return Long.MAX_VALUE;
+        } else if (ttl == Control.TTL_DONT_CACHE) {
+            return Long.MIN_VALUE;
+        } else if (ttl < 0) {
+            throw new IllegalArgumentException("Invalid time to live: " + ttl);
+        }
+        return ttl < Long.MAX_VALUE - now ? now + ttl : Long.MAX_VALUE;
     }
 
     /**
@@ -478,8 +547,7 @@ public abstract class ResourceBundle {
         String bundleName = localeName.isEmpty()
                 ? base
                 : (base + "_" + localeName);
-        Object cacheKey = loader != null ? loader : "null";
-        Hashtable<String, ResourceBundle> loaderCache = getLoaderCache(cacheKey);
+        ConcurrentHashMap<Object, ResourceBundle> loaderCache = getLoaderCache(loader);
         ResourceBundle cached = loaderCache.get(bundleName);
         if (cached != null) {
             if (cached == MISSINGBASE) {
@@ -548,17 +616,83 @@ public abstract class ResourceBundle {
         return null;
     }
 
-    private static Hashtable<String, ResourceBundle> getLoaderCache(Object cacheKey) {
+    private static ConcurrentHashMap<Object, ResourceBundle> getLoaderCache(ClassLoader loader) {
+        Object cacheKey = loader != null ? loader : "null";
+        LoaderCache last = lastLoaderCache;
+        if (last != null && last.get() == cacheKey) {
+            return last.bundles;
+        }
         synchronized (cache) {
-            Hashtable<String, ResourceBundle> loaderCache = cache.get(cacheKey);
+            ConcurrentHashMap<Object, ResourceBundle> loaderCache = cache.get(cacheKey);
             if (loaderCache == null) {
-                loaderCache = new Hashtable<String, ResourceBundle>();
+                loaderCache = new ConcurrentHashMap<Object, ResourceBundle>();
                 cache.put(cacheKey, loaderCache);
             }
+            lastLoaderCache = new LoaderCache(cacheKey, loaderCache);
             return loaderCache;
         }
     }
 
+    /**
+     * A loader's bundles, which doesn't keep the loader reachable.
+     */
+    private static final class LoaderCache extends WeakReference<Object> {
+        final ConcurrentHashMap<Object, ResourceBundle> bundles;
+
+        LoaderCache(Object cacheKey, ConcurrentHashMap<Object, ResourceBundle> bundles) {
+            super(cacheKey);
+            this.bundles = bundles;
+        }
+    }
+
+    /**
+     * Identifies a bundle loaded through a {@link Control}. Candidate keys map
+     * to the bundle for exactly that locale, or a {@code MissingBundle} if
+     * there is none. Resolved keys map to the {@link Resolution} of a lookup
+     * for that locale, so that repeated lookups don't walk the candidates.
+     */
+    private static final class ControlKey {
+        private final String baseName;
+        private final Locale locale;
+        private final boolean resolved;
+        private final int hashCode;
+
+        ControlKey(String baseName, Locale locale, boolean resolved) {
+            this.baseName = baseName;
+            this.locale = locale;
+            this.resolved = resolved;
+            this.hashCode = (baseName.hashCode() * 31 + locale.hashCode()) * 2
+                    + (resolved ? 1 : 0);
+        }
+
+        @Override public boolean equals(Object o) {
+            if (!(o instanceof ControlKey)) {
+                return false;
+            }
+            ControlKey other = (ControlKey) o;
+            return resolved == other.resolved
+                    && baseName.equals(other.baseName)
+                    && locale.equals(other.locale);
+        }
+
+        @Override public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * The outcome of looking up a bundle through a {@link Control}: the bundle,
+     * or null if there was none, and when the candidates it was built from
+     * must next be checked.
+     */
+    private static final class Resolution extends MissingBundle {
+        final ResourceBundle bundle;
+
+        Resolution(ResourceBundle bundle) {
+            this.bundle = bundle;
+        }
+    }
+
     /**
      * Returns the named resource from this {@code ResourceBundle}, or null if the
      * resource is not found.
@@ -605,14 +739,17 @@ public abstract class ResourceBundle {
     }
 
     public static void clearCache() {
-        cache.remove(ClassLoader.getSystemClassLoader());
+        clearCache(ClassLoader.getSystemClassLoader());
     }
 
     public static void clearCache(ClassLoader loader) {
         if (loader == null) {
             throw new NullPointerException();
         }
-        cache.remove(loader);
+        synchronized (cache) {
+            cache.remove(loader);
+            lastLoaderCache = null;
+        }
     }
 
     public boolean containsKey(String key) {
@@ -280,8 +280,10 @@ public abstract class TimeZone implements Serializable, Cloneable {
      * <p>Other than the special cases "UTC" and "GMT" (which are synonymous in this context,
      * both corresponding to UTC), Android does not support the deprecated three-letter time
      * zone IDs used in Java 1.1.
+     *
+     * <p>This method is safe to call concurrently and does not take a lock.
      */
-    public static synchronized TimeZone getTimeZone(String id) {
+    public static TimeZone getTimeZone(String id) {
         if (id == null) {
             throw new NullPointerException("id == null");
         }
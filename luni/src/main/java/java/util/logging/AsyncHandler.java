@@ -0,0 +1,350 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package java.util.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@code Handler} that publishes records to a target handler on a dedicated
+ * thread, so that callers don't wait for formatting or I/O.
+ * <p>
+ * Records are put into a bounded ring buffer without locking and are drained
+ * in batches; the target handler is flushed once per batch rather than once
+ * per record. The source class and method of each record are determined on
+ * the calling thread before it is queued.
+ * <p>
+ * When the buffer is full, records whose level is at least the block level
+ * wait for space, and other records are dropped and counted. A block level of
+ * {@code Level.ALL} never drops records, {@code Level.OFF} never blocks
+ * callers, and levels in between drop only less important records.
+ * <p>
+ * {@code AsyncHandler} will read following {@code LogManager} properties for
+ * initialization, if given properties are not defined or has invalid values,
+ * default value will be used.
+ * <ul>
+ * <li>java.util.logging.AsyncHandler.filter specifies the {@code Filter}
+ * class name, defaults to no {@code Filter}.</li>
+ * <li>java.util.logging.AsyncHandler.level specifies the level for this
+ * {@code Handler}, defaults to {@code Level.ALL}.</li>
+ * <li>java.util.logging.AsyncHandler.blockLevel specifies the block level,
+ * defaults to {@code Level.ALL}.</li>
+ * <li>java.util.logging.AsyncHandler.size specifies the buffer size in number
+ * of {@code LogRecord}, defaults to 1024.</li>
+ * <li>java.util.logging.AsyncHandler.target specifies the class of the target
+ * {@code Handler}, no default value, which means this property must be
+ * specified either by property setting or by constructor.</li>
+ * </ul>
+ *
+ * @hide
+ */
+public class AsyncHandler extends Handler {
+
+    private static final int DEFAULT_SIZE = 1024;
+
+    /** How long a blocked caller or flush waits before checking for space again. */
+    private static final long WAIT_NANOS = 100000L;
+
+    private final LogManager manager = LogManager.getLogManager();
+
+    private Handler target;
+
+    private volatile Level blockLevel = Level.ALL;
+
+    private AtomicReferenceArray<LogRecord> buffer;
+
+    private int mask;
+
+    /** The number of records ever claimed by callers. */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** The number of records ever taken by the drain thread. Written only by that thread. */
+    private volatile long head;
+
+    /** The number of records the target handler has finished publishing. */
+    private volatile long published;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile boolean closed;
+
+    /** True while the drain thread is, or is about to be, parked. */
+    private volatile boolean drainerWaiting;
+
+    private Thread drainer;
+
+    /**
+     * Default constructor, construct and init an {@code AsyncHandler} using
+     * {@code LogManager} properties or default values.
+     *
+     * @throws RuntimeException
+     *             if property value are invalid and no default value could be
+     *             used.
+     */
+    public AsyncHandler() {
+        String className = this.getClass().getName();
+        final String targetName = manager.getProperty(className + ".target");
+        try {
+            ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            if (loader == null) {
+                loader = ClassLoader.getSystemClassLoader();
+            }
+            Class<?> targetClass = loader.loadClass(targetName);
+            target = (Handler) targetClass.newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException("Cannot load target handler '" + targetName + "'");
+        }
+        int size = DEFAULT_SIZE;
+        String sizeString = manager.getProperty(className + ".size");
+        if (sizeString != null) {
+            try {
+                size = Integer.parseInt(sizeString);
+                if (size <= 0) {
+                    size = DEFAULT_SIZE;
+                }
+            } catch (Exception e) {
+                printInvalidPropMessage(className + ".size", sizeString, e);
+            }
+        }
+        String blockName = manager.getProperty(className + ".blockLevel");
+        if (blockName != null) {
+            try {
+                blockLevel = Level.parse(blockName);
+            } catch (Exception e) {
+                printInvalidPropMessage(className + ".blockLevel", blockName, e);
+            }
+        }
+        initProperties("ALL", null, "java.util.logging.SimpleFormatter", null);
+        start(size);
+    }
+
+    /**
+     * Construct and init an {@code AsyncHandler} using given target, size and
+     * block level, other properties using {@code LogManager} properties or
+     * default values.
+     *
+     * @param target
+     *            the given {@code Handler} to output
+     * @param size
+     *            the maximum number of buffered {@code LogRecord}, greater than
+     *            zero. It is rounded up to a power of two.
+     * @param blockLevel
+     *            the level at or above which callers wait when the buffer is
+     *            full
+     * @throws IllegalArgumentException
+     *             if {@code size <= 0}
+     */
+    public AsyncHandler(Handler target, int size, Level blockLevel) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size <= 0");
+        }
+        target.getLevel();
+        blockLevel.intValue();
+        this.target = target;
+        this.blockLevel = blockLevel;
+        initProperties("ALL", null, "java.util.logging.SimpleFormatter", null);
+        start(size);
+    }
+
+    private void start(int size) {
+        int capacity = Integer.highestOneBit(Math.min(size, 1 << 30));
+        if (capacity < size) {
+            capacity <<= 1;
+        }
+        buffer = new AtomicReferenceArray<LogRecord>(capacity);
+        mask = capacity - 1;
+        drainer = new Thread("AsyncHandler") {
+            @Override public void run() {
+                try {
+                    drain();
+                } finally {
+                    // Release blocked callers even if draining failed.
+                    closed = true;
+                }
+            }
+        };
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Queues a given {@code LogRecord} for publishing by the target handler.
+     * If given record is not loggable, just return. If the buffer is full the
+     * record is dropped unless its level is at least the block level, in which
+     * case this waits for space.
+     *
+     * @param record
+     *            the log record
+     */
+    @Override public void publish(LogRecord record) {
+        if (!isLoggable(record)) {
+            return;
+        }
+        if (closed) {
+            dropped.incrementAndGet();
+            return;
+        }
+        // The stack is only meaningful on this thread.
+        record.getSourceClassName();
+
+        if (offer(record)) {
+            return;
+        }
+        if (record.getLevel().intValue() < blockLevel.intValue()
+                || Thread.currentThread() == drainer) {
+            dropped.incrementAndGet();
+            return;
+        }
+        while (!offer(record)) {
+            if (closed) {
+                dropped.incrementAndGet();
+                return;
+            }
+            LockSupport.unpark(drainer);
+            LockSupport.parkNanos(WAIT_NANOS);
+        }
+    }
+
+    private boolean offer(LogRecord record) {
+        while (true) {
+            long t = tail.get();
+            if (t - head >= buffer.length()) {
+                return false;
+            }
+            if (tail.compareAndSet(t, t + 1)) {
+                buffer.set((int) t & mask, record);
+                if (drainerWaiting) {
+                    LockSupport.unpark(drainer);
+                }
+                return true;
+            }
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            boolean drained = false;
+            LogRecord record;
+            while ((record = buffer.get((int) head & mask)) != null) {
+                // Clear the slot before releasing it to callers.
+                buffer.set((int) head & mask, null);
+                head++;
+                drained = true;
+                try {
+                    target.publish(record);
+                } catch (Throwable t) {
+                    reportError(t, ErrorManager.WRITE_FAILURE);
+                }
+                published++;
+            }
+            if (drained) {
+                try {
+                    target.flush();
+                } catch (Throwable t) {
+                    reportError(t, ErrorManager.FLUSH_FAILURE);
+                }
+            }
+
+            if (closed && head == tail.get()) {
+                return;
+            }
+            drainerWaiting = true;
+            if (buffer.get((int) head & mask) == null && !closed) {
+                LockSupport.park(this);
+            }
+            drainerWaiting = false;
+        }
+    }
+
+    /**
+     * Reports a failure of the target handler. Errors are reported too, so
+     * that they don't silently stop the drain thread.
+     */
+    private void reportError(Throwable t, int code) {
+        reportError(null, t instanceof Exception ? (Exception) t : new RuntimeException(t), code);
+    }
+
+    /**
+     * Waits until all records queued before this call have been published,
+     * then flushes the target handler.
+     */
+    @Override
+    public void flush() {
+        long end = tail.get();
+        while (published < end && drainer.isAlive() && Thread.currentThread() != drainer) {
+            LockSupport.unpark(drainer);
+            LockSupport.parkNanos(WAIT_NANOS);
+        }
+        target.flush();
+    }
+
+    /**
+     * Publishes the queued records, then closes this handler and the target
+     * handler. Records published concurrently with this call may be dropped.
+     */
+    @Override
+    public void close() {
+        manager.checkAccess();
+        setLevel(Level.OFF);
+        closed = true;
+        LockSupport.unpark(drainer);
+        if (Thread.currentThread() != drainer) {
+            boolean interrupted = false;
+            while (drainer.isAlive()) {
+                try {
+                    drainer.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        target.close();
+    }
+
+    /**
+     * Returns the number of records dropped because the buffer was full.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Return the block level.
+     *
+     * @return the block level
+     */
+    public Level getBlockLevel() {
+        return blockLevel;
+    }
+
+    /**
+     * Set the block level. When the buffer is full, records at or above this
+     * level wait for space and other records are dropped.
+     *
+     * @param newLevel
+     *                 the new level to set.
+     */
+    public void setBlockLevel(Level newLevel) {
+        manager.checkAccess();
+        newLevel.intValue();
+        this.blockLevel = newLevel;
+    }
+}
@@ -0,0 +1,511 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package java.util.logging;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.TimeZone;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import libcore.io.IoUtils;
+
+/**
+ * A {@code RollingFileHandler} writes logging records into a file, and moves
+ * the file aside once it is large enough or old enough.
+ * <p>
+ * Unlike {@code FileHandler}, records are not flushed one by one. Output is
+ * collected in a large buffer that is reused for every file, and written out
+ * when the buffer is full, when {@link #flush} is called, and periodically
+ * in the background.
+ * <p>
+ * Rotating renames the current file and opens a new one; the old file is
+ * then archived on a background thread. Archives are named by appending the
+ * generation to the file name, as in {@code app.log.1.gz} for the most
+ * recent one, and are compressed with gzip unless compression is disabled.
+ * Only the given number of archives is kept.
+ * <p>
+ * {@code RollingFileHandler} reads the following {@code LogManager}
+ * properties for initialization; if a property is not defined or has an
+ * invalid value, a default value is used.
+ * <ul>
+ * <li>java.util.logging.RollingFileHandler.pattern specifies the output file.
+ * "%h", "%t" and "%%" are replaced as for {@code FileHandler}. Defaults to
+ * "%h/java.log".</li>
+ * <li>java.util.logging.RollingFileHandler.limit specifies the number of
+ * bytes after which the file is rotated, defaults to zero, which means no
+ * limit.</li>
+ * <li>java.util.logging.RollingFileHandler.interval specifies the period in
+ * milliseconds at which the file is rotated, defaults to zero, which means
+ * never. Periods start at midnight local time, so 86400000 rotates daily.</li>
+ * <li>java.util.logging.RollingFileHandler.count specifies how many archives
+ * to keep, defaults to 5.</li>
+ * <li>java.util.logging.RollingFileHandler.compress specifies whether
+ * archives are compressed, defaults to {@code true}.</li>
+ * <li>java.util.logging.RollingFileHandler.bufferSize specifies the size of
+ * the output buffer in bytes, defaults to 65536.</li>
+ * <li>java.util.logging.RollingFileHandler.flushInterval specifies how often
+ * in milliseconds buffered output is written to the file, defaults to 1000.
+ * Zero disables periodic flushing.</li>
+ * <li>java.util.logging.RollingFileHandler.filter specifies the
+ * {@code Filter} class name, defaults to no {@code Filter}.</li>
+ * <li>java.util.logging.RollingFileHandler.formatter specifies the
+ * {@code Formatter} class, defaults to
+ * {@code java.util.logging.SimpleFormatter}.</li>
+ * <li>java.util.logging.RollingFileHandler.encoding specifies the character
+ * set encoding name, defaults to the default platform encoding.</li>
+ * <li>java.util.logging.RollingFileHandler.level specifies the level for this
+ * {@code Handler}, defaults to {@code Level.ALL}.</li>
+ * </ul>
+ * <p>
+ * Existing output is appended to. Unlike {@code FileHandler} no lock file is
+ * used, so the output file must not be shared with other handlers.
+ *
+ * @hide
+ */
+public class RollingFileHandler extends StreamHandler {
+
+    private static final String DEFAULT_PATTERN = "%h/java.log";
+
+    private static final int DEFAULT_COUNT = 5;
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final long DEFAULT_FLUSH_INTERVAL = 1000;
+
+    private final LogManager manager = LogManager.getLogManager();
+
+    private File file;
+
+    private long limit;
+
+    private long interval;
+
+    private int count;
+
+    private boolean compress;
+
+    // shared by every output file
+    private byte[] buffer;
+
+    private BufferedFileStream output;
+
+    private long nextRotationMillis = Long.MAX_VALUE;
+
+    // distinguishes files waiting to be archived
+    private int pendingId;
+
+    // archives files in order and flushes periodically
+    private ScheduledThreadPoolExecutor executor;
+
+    private volatile long bytesWritten;
+
+    private volatile int rotationCount;
+
+    private volatile long rotationNanos;
+
+    /**
+     * Construct a {@code RollingFileHandler} using {@code LogManager}
+     * properties or their default value.
+     *
+     * @throws IOException
+     *             if the output file cannot be opened.
+     */
+    public RollingFileHandler() throws IOException {
+        String className = this.getClass().getName();
+        String pattern = manager.getProperty(className + ".pattern");
+        init(pattern != null ? pattern : DEFAULT_PATTERN,
+                getLongProperty(className + ".limit", 0),
+                getLongProperty(className + ".interval", 0),
+                (int) getLongProperty(className + ".count", DEFAULT_COUNT));
+    }
+
+    /**
+     * Construct a {@code RollingFileHandler} writing to the file named by
+     * {@code pattern}. The remaining configuration is done using
+     * {@code LogManager} properties.
+     *
+     * @param pattern
+     *            the name pattern for the output file.
+     * @param limit
+     *            the number of bytes after which the file is rotated, or zero
+     *            for no limit.
+     * @param interval
+     *            the period in milliseconds at which the file is rotated, or
+     *            zero for never.
+     * @param count
+     *            the number of archives to keep, at least one.
+     * @throws IOException
+     *             if the output file cannot be opened.
+     * @throws IllegalArgumentException
+     *             if {@code pattern} is empty, {@code limit < 0},
+     *             {@code interval < 0} or {@code count < 1}.
+     */
+    public RollingFileHandler(String pattern, long limit, long interval, int count)
+            throws IOException {
+        if (pattern.isEmpty()) {
+            throw new IllegalArgumentException("Pattern cannot be empty");
+        }
+        if (limit < 0 || interval < 0 || count < 1) {
+            throw new IllegalArgumentException("limit < 0 || interval < 0 || count < 1");
+        }
+        init(pattern, limit, interval, count);
+    }
+
+    private void init(String pattern, long limit, long interval, int count) throws IOException {
+        manager.checkAccess();
+        initProperties("ALL", null, "java.util.logging.SimpleFormatter", null);
+        String className = this.getClass().getName();
+        this.file = new File(expand(pattern));
+        this.limit = limit < 0 ? 0 : limit;
+        this.interval = interval < 0 ? 0 : interval;
+        this.count = count < 1 ? DEFAULT_COUNT : count;
+        this.compress = !"false".equalsIgnoreCase(manager.getProperty(className + ".compress"));
+        long bufferSize = getLongProperty(className + ".bufferSize", DEFAULT_BUFFER_SIZE);
+        this.buffer = new byte[bufferSize > 0 && bufferSize <= Integer.MAX_VALUE
+                ? (int) bufferSize : DEFAULT_BUFFER_SIZE];
+        long flushInterval = getLongProperty(className + ".flushInterval",
+                DEFAULT_FLUSH_INTERVAL);
+
+        open(true);
+
+        executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "RollingFileHandler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        if (flushInterval > 0) {
+            executor.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    flush();
+                }
+            }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void open(boolean append) throws IOException {
+        output = new BufferedFileStream(new FileOutputStream(file, append),
+                append ? file.length() : 0);
+        setOutputStream(output);
+        if (interval > 0) {
+            long now = System.currentTimeMillis();
+            long local = now + TimeZone.getDefault().getOffset(now);
+            long periodStart = local - ((local % interval) + interval) % interval;
+            nextRotationMillis = now + (periodStart + interval - local);
+        }
+    }
+
+    /**
+     * Publish a {@code LogRecord}, first rotating the file if the current
+     * period has ended, and afterwards if the file has reached the limit.
+     *
+     * @param record
+     *            the log record to publish.
+     */
+    @Override
+    public synchronized void publish(LogRecord record) {
+        if (!isLoggable(record)) {
+            return;
+        }
+        try {
+            if (System.currentTimeMillis() >= nextRotationMillis) {
+                rotate();
+            }
+            super.publish(record);
+            // output is null if rotating failed to open a new file
+            if (limit > 0 && output != null) {
+                // moves the writer's output into our buffer, without writing the file
+                super.flush();
+                if (output.length >= limit) {
+                    rotate();
+                }
+            }
+        } catch (Exception e) {
+            reportError("Exception occurred when logging the record", e,
+                    ErrorManager.GENERIC_FAILURE);
+        }
+    }
+
+    /**
+     * Closes the current file, moves it aside for archiving and opens a new
+     * one. Only the renaming and opening happen on the calling thread.
+     */
+    private void rotate() {
+        long start = System.nanoTime();
+        super.close();
+        File pending = new File(file.getPath() + "." + (++pendingId) + ".pending");
+        if (!file.renameTo(pending)) {
+            reportError("Cannot rename " + file, null, ErrorManager.GENERIC_FAILURE);
+            pending = null;
+        }
+        try {
+            open(pending == null);
+        } catch (IOException e) {
+            output = null;
+            reportError("Error opening log file", e, ErrorManager.OPEN_FAILURE);
+        }
+        rotationCount++;
+        rotationNanos += System.nanoTime() - start;
+        if (pending != null) {
+            executor.execute(new Archive(pending));
+        }
+    }
+
+    /**
+     * Writes buffered output to the file.
+     */
+    @Override
+    public synchronized void flush() {
+        super.flush();
+        if (output != null) {
+            try {
+                output.drain();
+            } catch (IOException e) {
+                reportError("Exception occurred when flushing the output stream", e,
+                        ErrorManager.FLUSH_FAILURE);
+            }
+        }
+    }
+
+    /**
+     * Flushes and closes the output file, then waits for pending archives to
+     * be written.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            super.close();
+            output = null;
+        }
+        executor.shutdown();
+        boolean interrupted = false;
+        while (!executor.isTerminated()) {
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the number of bytes written by this handler to all of its
+     * files, including output that is buffered but not yet in a file.
+     */
+    public synchronized long getBytesWritten() {
+        super.flush();
+        return bytesWritten;
+    }
+
+    /**
+     * Returns the number of times the file has been rotated.
+     */
+    public int getRotationCount() {
+        return rotationCount;
+    }
+
+    /**
+     * Returns the total time in nanoseconds that logging threads spent
+     * rotating files. This excludes archiving, which happens in the
+     * background.
+     */
+    public long getRotationNanos() {
+        return rotationNanos;
+    }
+
+    private File archive(int generation) {
+        return new File(file.getPath() + "." + generation + (compress ? ".gz" : ""));
+    }
+
+    /**
+     * Shifts the existing archives up a generation and stores a rotated file
+     * as the first one.
+     */
+    private final class Archive implements Runnable {
+        private final File pending;
+
+        Archive(File pending) {
+            this.pending = pending;
+        }
+
+        public void run() {
+            archive(count).delete();
+            for (int i = count - 1; i > 0; i--) {
+                File from = archive(i);
+                if (from.exists()) {
+                    from.renameTo(archive(i + 1));
+                }
+            }
+            File target = archive(1);
+            if (!compress) {
+                if (!pending.renameTo(target)) {
+                    reportError("Cannot rename " + pending, null, ErrorManager.GENERIC_FAILURE);
+                }
+                return;
+            }
+
+            File temp = new File(target.getPath() + ".tmp");
+            InputStream in = null;
+            OutputStream out = null;
+            try {
+                in = new FileInputStream(pending);
+                out = new GZIPOutputStream(new FileOutputStream(temp));
+                byte[] bytes = new byte[8192];
+                int n;
+                while ((n = in.read(bytes)) != -1) {
+                    out.write(bytes, 0, n);
+                }
+                out.close();
+                out = null;
+                if (!temp.renameTo(target)) {
+                    throw new IOException("Cannot rename " + temp);
+                }
+                pending.delete();
+            } catch (IOException e) {
+                reportError("Error compressing " + pending, e, ErrorManager.WRITE_FAILURE);
+            } finally {
+                IoUtils.closeQuietly(in);
+                IoUtils.closeQuietly(out);
+            }
+        }
+    }
+
+    /**
+     * Buffers output in the handler's shared buffer. Flushing is a no-op so
+     * that the writer can be flushed to measure the file without writing it;
+     * the buffer is written when full, by {@link #drain} and on close.
+     */
+    private final class BufferedFileStream extends OutputStream {
+        private final FileOutputStream out;
+        private int count;
+
+        // the file's length including buffered bytes
+        long length;
+
+        BufferedFileStream(FileOutputStream out, long length) {
+            this.out = out;
+            this.length = length;
+        }
+
+        @Override public void write(int oneByte) throws IOException {
+            if (count == buffer.length) {
+                drain();
+            }
+            buffer[count++] = (byte) oneByte;
+            length++;
+            bytesWritten++;
+        }
+
+        @Override public void write(byte[] b, int off, int len) throws IOException {
+            if (len >= buffer.length) {
+                drain();
+                out.write(b, off, len);
+            } else {
+                if (len > buffer.length - count) {
+                    drain();
+                }
+                System.arraycopy(b, off, buffer, count, len);
+                count += len;
+            }
+            length += len;
+            bytesWritten += len;
+        }
+
+        @Override public void flush() {
+        }
+
+        void drain() throws IOException {
+            if (count > 0) {
+                out.write(buffer, 0, count);
+                count = 0;
+            }
+        }
+
+        @Override public void close() throws IOException {
+            try {
+                drain();
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    // get long LogManager property, if invalid value got, using default value
+    private long getLongProperty(String key, long defaultValue) {
+        String property = manager.getProperty(key);
+        long result = defaultValue;
+        if (property != null) {
+            try {
+                result = Long.parseLong(property.trim());
+            } catch (NumberFormatException e) {
+                // ignore
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Replaces "%h", "%t" and "%%" in {@code pattern}, and '/' with the
+     * local separator.
+     */
+    private static String expand(String pattern) {
+        pattern = pattern.replace('/', File.separatorChar);
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c != '%' || i + 1 == pattern.length()) {
+                result.append(c);
+                continue;
+            }
+            char next = pattern.charAt(++i);
+            String directory;
+            if (next == 'h') {
+                directory = System.getProperty("user.home");
+            } else if (next == 't') {
+                directory = System.getProperty("java.io.tmpdir");
+            } else {
+                if (next != '%') {
+                    result.append('%');
+                }
+                result.append(next);
+                continue;
+            }
+            if (directory == null) {
+                directory = "";
+            }
+            result.append(directory);
+            if (!directory.endsWith(File.separator)) {
+                result.append(File.separator);
+            }
+            // a following separator is already provided
+            if (i + 1 < pattern.length() && pattern.charAt(i + 1) == File.separatorChar) {
+                i++;
+            }
+        }
+        return result.toString();
+    }
+}
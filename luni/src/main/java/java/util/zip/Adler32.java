@@ -17,6 +17,8 @@
 
 package java.util.zip;
 
+import java.nio.ByteBuffer;
+import java.nio.NioUtils;
 import java.util.Arrays;
 
 /**
@@ -26,6 +28,16 @@ import java.util.Arrays;
  */
 public class Adler32 implements Checksum {
 
+    /** The largest prime smaller than 65536. */
+    private static final int BASE = 65521;
+
+    /**
+     * The largest n such that 255n(n+1)/2 + (n+1)(BASE-1) fits in 31 bits, so
+     * that the sums need only be reduced modulo {@code BASE} every n bytes.
+     * (zlib uses 5552, which relies on unsigned 32-bit arithmetic.)
+     */
+    private static final int NMAX = 3854;
+
     private long adler = 1;
 
     /**
@@ -52,7 +64,9 @@ public class Adler32 implements Checksum {
      *            the byte to update checksum with.
      */
     public void update(int i) {
-        adler = updateByteImpl(i, adler);
+        long s1 = ((adler & 0xffff) + (i & 0xff)) % BASE;
+        long s2 = ((adler >>> 16) + s1) % BASE;
+        adler = (s2 << 16) | s1;
     }
 
     /**
@@ -71,10 +85,85 @@ public class Adler32 implements Checksum {
      */
     public void update(byte[] buf, int offset, int byteCount) {
         Arrays.checkOffsetAndCount(buf.length, offset, byteCount);
-        adler = updateImpl(buf, offset, byteCount, adler);
+        if (byteCount <= CRC32.MAX_JAVA_UPDATE) {
+            adler = updateJava(buf, offset, byteCount, adler);
+        } else {
+            adler = updateImpl(buf, offset, byteCount, adler);
+        }
+    }
+
+    /**
+     * Updates this checksum with the bytes between {@code buffer}'s position
+     * and limit, and advances its position to its limit. Direct and mapped
+     * buffers are read in place, without copying to the Java heap.
+     *
+     * @hide
+     */
+    public void update(ByteBuffer buffer) {
+        int byteCount = buffer.remaining();
+        if (buffer.isDirect()) {
+            int address = NioUtils.getDirectBufferAddress(buffer) + buffer.position();
+            adler = updateByteBufferImpl(address, byteCount, adler);
+        } else {
+            byte[] array = NioUtils.unsafeArray(buffer);
+            int offset = NioUtils.unsafeArrayOffset(buffer) + buffer.position();
+            if (byteCount <= CRC32.MAX_JAVA_UPDATE) {
+                adler = updateJava(array, offset, byteCount, adler);
+            } else {
+                adler = updateImpl(array, offset, byteCount, adler);
+            }
+        }
+        buffer.position(buffer.limit());
+    }
+
+    /**
+     * Returns the Adler-32 checksum of the concatenation of two byte
+     * sequences, given the checksum of each and the length of the second.
+     * This is zlib's {@code adler32_combine}.
+     *
+     * @hide
+     */
+    public static long combine(long adler1, long adler2, long len2) {
+        if (len2 < 0) {
+            return 0xffffffffL;
+        }
+        long rem = len2 % BASE;
+        long sum1 = adler1 & 0xffff;
+        long sum2 = (rem * sum1) % BASE;
+        sum1 += (adler2 & 0xffff) + BASE - 1;
+        sum2 += ((adler1 >>> 16) & 0xffff) + ((adler2 >>> 16) & 0xffff) + BASE - rem;
+        if (sum1 >= BASE) {
+            sum1 -= BASE;
+        }
+        if (sum1 >= BASE) {
+            sum1 -= BASE;
+        }
+        if (sum2 >= (BASE << 1)) {
+            sum2 -= (BASE << 1);
+        }
+        if (sum2 >= BASE) {
+            sum2 -= BASE;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    private static long updateJava(byte[] buf, int offset, int byteCount, long adler1) {
+        int s1 = (int) (adler1 & 0xffff);
+        int s2 = (int) ((adler1 >>> 16) & 0xffff);
+        while (byteCount > 0) {
+            int n = Math.min(byteCount, NMAX);
+            byteCount -= n;
+            for (int end = offset + n; offset < end; offset++) {
+                s1 += buf[offset] & 0xff;
+                s2 += s1;
+            }
+            s1 %= BASE;
+            s2 %= BASE;
+        }
+        return ((long) s2 << 16) | s1;
     }
 
     private native long updateImpl(byte[] buf, int offset, int byteCount, long adler1);
 
-    private native long updateByteImpl(int val, long adler1);
+    private native long updateByteBufferImpl(int address, int byteCount, long adler1);
 }
@@ -17,6 +17,8 @@
 
 package java.util.zip;
 
+import java.nio.ByteBuffer;
+import java.nio.NioUtils;
 import java.util.Arrays;
 
 /**
@@ -25,6 +27,35 @@ import java.util.Arrays;
  */
 public class CRC32 implements Checksum {
 
+    /**
+     * Updates of at most this many bytes are computed in Java, where the
+     * slicing-by-8 loop is cheaper than the JNI transition into zlib.
+     */
+    static final int MAX_JAVA_UPDATE = 128;
+
+    /**
+     * Lookup tables for slicing-by-8: {@code TABLES[0]} is the classic
+     * byte-at-a-time table for the reflected polynomial 0xedb88320, and
+     * {@code TABLES[k]} advances a byte's contribution through {@code k}
+     * further zero bytes.
+     */
+    private static final int[][] TABLES = new int[8][256];
+    static {
+        for (int i = 0; i < 256; i++) {
+            int c = i;
+            for (int k = 0; k < 8; k++) {
+                c = (c & 1) != 0 ? 0xedb88320 ^ (c >>> 1) : c >>> 1;
+            }
+            TABLES[0][i] = c;
+        }
+        for (int i = 0; i < 256; i++) {
+            for (int t = 1; t < 8; t++) {
+                int previous = TABLES[t - 1][i];
+                TABLES[t][i] = (previous >>> 8) ^ TABLES[0][previous & 0xff];
+            }
+        }
+    }
+
     private long crc = 0L;
 
     long tbytes = 0L;
@@ -53,7 +84,10 @@ public class CRC32 implements Checksum {
      *            represents the byte to update the checksum.
      */
     public void update(int val) {
-        crc = updateByteImpl((byte) val, crc);
+        tbytes++;
+        int c = ~(int) crc;
+        c = TABLES[0][(c ^ val) & 0xff] ^ (c >>> 8);
+        crc = ~c & 0xffffffffL;
     }
 
     /**
@@ -73,10 +107,132 @@ public class CRC32 implements Checksum {
     public void update(byte[] buf, int offset, int byteCount) {
         Arrays.checkOffsetAndCount(buf.length, offset, byteCount);
         tbytes += byteCount;
-        crc = updateImpl(buf, offset, byteCount, crc);
+        if (byteCount <= MAX_JAVA_UPDATE) {
+            crc = updateJava(buf, offset, byteCount, crc);
+        } else {
+            crc = updateImpl(buf, offset, byteCount, crc);
+        }
+    }
+
+    /**
+     * Updates this checksum with the bytes between {@code buffer}'s position
+     * and limit, and advances its position to its limit. Direct and mapped
+     * buffers are read in place, without copying to the Java heap.
+     *
+     * @hide
+     */
+    public void update(ByteBuffer buffer) {
+        int byteCount = buffer.remaining();
+        tbytes += byteCount;
+        if (buffer.isDirect()) {
+            int address = NioUtils.getDirectBufferAddress(buffer) + buffer.position();
+            crc = updateByteBufferImpl(address, byteCount, crc);
+        } else {
+            byte[] array = NioUtils.unsafeArray(buffer);
+            int offset = NioUtils.unsafeArrayOffset(buffer) + buffer.position();
+            if (byteCount <= MAX_JAVA_UPDATE) {
+                crc = updateJava(array, offset, byteCount, crc);
+            } else {
+                crc = updateImpl(array, offset, byteCount, crc);
+            }
+        }
+        buffer.position(buffer.limit());
+    }
+
+    /**
+     * Computes the CRC32 of {@code byteCount} bytes starting at {@code offset}
+     * with slicing-by-8, consuming eight bytes per iteration.
+     */
+    private static long updateJava(byte[] buf, int offset, int byteCount, long crc1) {
+        int[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2], t3 = TABLES[3];
+        int[] t4 = TABLES[4], t5 = TABLES[5], t6 = TABLES[6], t7 = TABLES[7];
+        int c = ~(int) crc1;
+        int end = offset + byteCount;
+        for (; offset + 8 <= end; offset += 8) {
+            int one = c ^ ((buf[offset] & 0xff)
+                    | (buf[offset + 1] & 0xff) << 8
+                    | (buf[offset + 2] & 0xff) << 16
+                    | (buf[offset + 3] & 0xff) << 24);
+            int two = (buf[offset + 4] & 0xff)
+                    | (buf[offset + 5] & 0xff) << 8
+                    | (buf[offset + 6] & 0xff) << 16
+                    | (buf[offset + 7] & 0xff) << 24;
+            c = t7[one & 0xff] ^ t6[(one >>> 8) & 0xff] ^ t5[(one >>> 16) & 0xff] ^ t4[one >>> 24]
+                    ^ t3[two & 0xff] ^ t2[(two >>> 8) & 0xff] ^ t1[(two >>> 16) & 0xff] ^ t0[two >>> 24];
+        }
+        for (; offset < end; offset++) {
+            c = t0[(c ^ buf[offset]) & 0xff] ^ (c >>> 8);
+        }
+        return ~c & 0xffffffffL;
+    }
+
+    /**
+     * Returns the CRC32 of the concatenation of two byte sequences, given the
+     * CRC32 of each and the length of the second. This lets ranges of a larger
+     * input be checksummed independently, for example in parallel, and then
+     * joined. It uses zlib's {@code crc32_combine} algorithm: the first CRC is
+     * advanced through {@code len2} zero bytes by repeated squaring of the CRC
+     * shift operator, so the cost is logarithmic in {@code len2}.
+     *
+     * @hide
+     */
+    public static long combine(long crc1, long crc2, long len2) {
+        if (len2 <= 0) {
+            return crc1;
+        }
+        int[] even = new int[32]; // even-power-of-two zeros operator
+        int[] odd = new int[32]; // odd-power-of-two zeros operator
+
+        // put operator for one zero bit in odd
+        odd[0] = 0xedb88320; // CRC-32 polynomial
+        int row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+
+        gf2MatrixSquare(even, odd); // put operator for two zero bits in even
+        gf2MatrixSquare(odd, even); // put operator for four zero bits in odd
+
+        // apply len2 zeros to crc1 (first square will put the operator for one
+        // zero byte, eight zero bits, in even)
+        int result = (int) crc1;
+        do {
+            gf2MatrixSquare(even, odd);
+            if ((len2 & 1) != 0) {
+                result = gf2MatrixTimes(even, result);
+            }
+            len2 >>>= 1;
+            if (len2 == 0) {
+                break;
+            }
+            gf2MatrixSquare(odd, even);
+            if ((len2 & 1) != 0) {
+                result = gf2MatrixTimes(odd, result);
+            }
+            len2 >>>= 1;
+        } while (len2 != 0);
+
+        return (result ^ (int) crc2) & 0xffffffffL;
+    }
+
+    private static int gf2MatrixTimes(int[] mat, int vec) {
+        int sum = 0;
+        for (int i = 0; vec != 0; i++, vec >>>= 1) {
+            if ((vec & 1) != 0) {
+                sum ^= mat[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void gf2MatrixSquare(int[] square, int[] mat) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = gf2MatrixTimes(mat, mat[n]);
+        }
     }
 
     private native long updateImpl(byte[] buf, int offset, int byteCount, long crc1);
 
-    private native long updateByteImpl(byte val, long crc1);
+    private native long updateByteBufferImpl(int address, int byteCount, long crc1);
 }
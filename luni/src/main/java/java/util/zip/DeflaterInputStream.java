@@ -88,6 +88,9 @@ public class DeflaterInputStream extends FilterInputStream {
      */
     @Override
     public void close() throws IOException {
+        if (closed) {
+            return;
+        }
         closed = true;
         def.end();
         in.close();
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Arrays;
 import libcore.io.Streams;
+import libcore.util.ZlibPool;
 
 /**
  * This class provides an implementation of {@code FilterOutputStream} that
@@ -45,8 +46,17 @@ public class DeflaterOutputStream extends FilterOutputStream {
 
     boolean done = false;
 
+    private boolean closed = false;
+
     private final boolean syncFlush;
 
+    /**
+     * The deflater this stream obtained from {@link ZlibPool}, or null if the
+     * deflater was supplied by the caller. A pooled deflater is recycled rather
+     * than ended when this stream is closed.
+     */
+    Deflater pooledDeflater;
+
     /**
      * This constructor lets you pass the {@code Deflater} specifying the
      * compression algorithm.
@@ -152,10 +162,17 @@ public class DeflaterOutputStream extends FilterOutputStream {
     @Override
     public void close() throws IOException {
         // everything closed here should also be closed in ZipOutputStream.close()
-        if (!def.finished()) {
-            finish();
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (!def.finished()) {
+                finish();
+            }
+        } finally {
+            endDeflater();
         }
-        def.end();
         out.close();
     }
 
@@ -178,6 +195,21 @@ public class DeflaterOutputStream extends FilterOutputStream {
         done = true;
     }
 
+    /**
+     * Releases the deflater's native resources, returning it to the pool if
+     * it was obtained from there. A recycled deflater may already belong to
+     * another stream, so this stream keeps an ended one in its place.
+     */
+    void endDeflater() {
+        if (pooledDeflater != null && pooledDeflater == def) {
+            ZlibPool.recycle(pooledDeflater);
+            def = ZlibPool.RECYCLED_DEFLATER;
+        } else {
+            def.end();
+        }
+        pooledDeflater = null;
+    }
+
     @Override public void write(int i) throws IOException {
         Streams.writeSingleByte(this, i);
     }
@@ -189,6 +221,9 @@ public class DeflaterOutputStream extends FilterOutputStream {
      *             If an error occurs during writing.
      */
     @Override public void write(byte[] buffer, int offset, int byteCount) throws IOException {
+        if (closed) {
+            throw new IOException("Stream is closed");
+        }
         if (done) {
             throw new IOException("attempt to write after finish");
         }
@@ -210,7 +245,7 @@ public class DeflaterOutputStream extends FilterOutputStream {
      * read by its recipient. Doing so may degrade compression.
      */
     @Override public void flush() throws IOException {
-        if (syncFlush) {
+        if (syncFlush && !closed) {
             int byteCount;
             while ((byteCount = def.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH)) != 0) {
                 out.write(buf, 0, byteCount);
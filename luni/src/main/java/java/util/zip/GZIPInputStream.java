@@ -23,6 +23,7 @@ import java.io.InputStream;
 import java.nio.ByteOrder;
 import java.util.Arrays;
 import libcore.io.Memory;
+import libcore.util.ZlibPool;
 
 /**
  * The {@code GZIPInputStream} class is used to read data stored in the GZIP
@@ -93,7 +94,20 @@ public class GZIPInputStream extends InflaterInputStream {
      *             if an {@code IOException} occurs.
      */
     public GZIPInputStream(InputStream is, int size) throws IOException {
-        super(is, new Inflater(true), size);
+        super(is, ZlibPool.obtainInflater(), size);
+        pooledInflater = inf;
+        try {
+            readHeader();
+        } catch (IOException e) {
+            endInflater();
+            throw e;
+        } catch (RuntimeException e) {
+            endInflater();
+            throw e;
+        }
+    }
+
+    private void readHeader() throws IOException {
         byte[] header = new byte[10];
         readFully(header, 0, header.length);
         short magic = Memory.peekShort(header, 0, ByteOrder.LITTLE_ENDIAN);
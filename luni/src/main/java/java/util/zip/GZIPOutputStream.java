@@ -19,6 +19,7 @@ package java.util.zip;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import libcore.util.ZlibPool;
 
 /**
  * The {@code GZIPOutputStream} class is used to write data to a stream in the
@@ -72,7 +73,8 @@ public class GZIPOutputStream extends DeflaterOutputStream {
      *             if an {@code IOException} occurs.
      */
     public GZIPOutputStream(OutputStream os, int size) throws IOException {
-        super(os, new Deflater(Deflater.DEFAULT_COMPRESSION, true), size);
+        super(os, ZlibPool.obtainDeflater(), size);
+        pooledDeflater = def;
         writeShort(GZIPInputStream.GZIP_MAGIC);
         out.write(Deflater.DEFLATED);
         out.write(0); // flags
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
 import libcore.io.Streams;
+import libcore.util.ZlibPool;
 
 /**
  * This class provides an implementation of {@code FilterInputStream} that
@@ -64,6 +65,13 @@ public class InflaterInputStream extends FilterInputStream {
 
     int nativeEndBufSize = 0;
 
+    /**
+     * The inflater this stream obtained from {@link ZlibPool}, or null if the
+     * inflater was supplied by the caller. A pooled inflater is recycled rather
+     * than ended when this stream is closed.
+     */
+    Inflater pooledInflater;
+
     /**
      * This is the most basic constructor. You only need to pass the {@code
      * InputStream} from which the compressed data is to be read from. Default
@@ -250,7 +258,7 @@ public class InflaterInputStream extends FilterInputStream {
     @Override
     public void close() throws IOException {
         if (!closed) {
-            inf.end();
+            endInflater();
             closed = true;
             eof = true;
             super.close();
@@ -293,6 +301,21 @@ public class InflaterInputStream extends FilterInputStream {
         return false;
     }
 
+    /**
+     * Releases the inflater's native resources, returning it to the pool if
+     * it was obtained from there. A recycled inflater may already belong to
+     * another stream, so this stream keeps an ended one in its place.
+     */
+    void endInflater() {
+        if (pooledInflater != null && pooledInflater == inf) {
+            ZlibPool.recycle(pooledInflater);
+            inf = ZlibPool.RECYCLED_INFLATER;
+        } else {
+            inf.end();
+        }
+        pooledInflater = null;
+    }
+
     private void checkClosed() throws IOException {
         if (closed) {
             throw new IOException("Stream is closed");
@@ -0,0 +1,326 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package java.util.zip;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import libcore.io.Streams;
+
+/**
+ * A GZIP output stream that compresses fixed-size blocks of its input
+ * concurrently on an {@link Executor}. The output is a standard single-member
+ * GZIP stream that can be read by {@link GZIPInputStream} or {@code gunzip(1)}.
+ *
+ * <p>Each block is deflated by its own {@link Deflater}, primed with the last
+ * 32 KiB of the preceding block as a preset dictionary so that the compression
+ * ratio stays close to that of {@link GZIPOutputStream}. Every block but the
+ * last is ended with a sync flush, which aligns it to a byte boundary so that
+ * the compressed blocks can simply be concatenated. The CRC of each block is
+ * also computed on the executor and combined on the writing thread.
+ *
+ * <p>At most {@code maxPendingBlocks} blocks are in flight at any time; a
+ * writer that gets ahead of the executor blocks until the oldest block has been
+ * written out. Like other streams this class is not safe for concurrent use by
+ * multiple writers.
+ *
+ * @hide
+ */
+public class ParallelGZIPOutputStream extends FilterOutputStream {
+
+    /** The default size of each independently compressed block. */
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    /** The size of the deflate window, and so of the dictionary carried between blocks. */
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private final Executor executor;
+    private final int level;
+    private final int maxPendingBlocks;
+    private final ArrayDeque<FutureTask<Block>> pending = new ArrayDeque<FutureTask<Block>>();
+
+    private byte[] block;
+    private int blockLength;
+    private byte[] previousBlock;
+    private int previousBlockLength;
+
+    private long crc;
+    private long totalIn;
+    private boolean finished;
+    private boolean closed;
+
+    /**
+     * Constructs a stream that compresses {@link #DEFAULT_BLOCK_SIZE} blocks
+     * at the default compression level, keeping up to twice the number of
+     * available processors in flight.
+     */
+    public ParallelGZIPOutputStream(OutputStream os, Executor executor) throws IOException {
+        this(os, executor, Deflater.DEFAULT_COMPRESSION, DEFAULT_BLOCK_SIZE,
+                2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a stream that compresses {@code blockSize} blocks at
+     * compression level {@code level} on {@code executor}.
+     *
+     * @param level the compression level in the range between -1 and 9.
+     * @param blockSize the number of uncompressed bytes per block. Blocks
+     *     smaller than the 32 KiB deflate window lose some compression.
+     * @param maxPendingBlocks the number of blocks that may be compressing
+     *     concurrently before writes block.
+     */
+    public ParallelGZIPOutputStream(OutputStream os, Executor executor, int level, int blockSize,
+            int maxPendingBlocks) throws IOException {
+        super(os);
+        if (os == null || executor == null) {
+            throw new NullPointerException();
+        }
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Bad level: " + level);
+        }
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("blockSize <= 0: " + blockSize);
+        }
+        if (maxPendingBlocks <= 0) {
+            throw new IllegalArgumentException("maxPendingBlocks <= 0: " + maxPendingBlocks);
+        }
+        this.executor = executor;
+        this.level = level;
+        this.maxPendingBlocks = maxPendingBlocks;
+        this.block = new byte[blockSize];
+
+        out.write(GZIPInputStream.GZIP_MAGIC & 0xff);
+        out.write((GZIPInputStream.GZIP_MAGIC >> 8) & 0xff);
+        out.write(Deflater.DEFLATED);
+        out.write(0); // flags
+        writeInt(0); // mod time
+        out.write(0); // extra flags
+        out.write(0); // operating system
+    }
+
+    @Override public void write(int b) throws IOException {
+        Streams.writeSingleByte(this, b);
+    }
+
+    @Override public void write(byte[] buffer, int offset, int byteCount) throws IOException {
+        checkWritable();
+        Arrays.checkOffsetAndCount(buffer.length, offset, byteCount);
+        while (byteCount > 0) {
+            int count = Math.min(byteCount, block.length - blockLength);
+            System.arraycopy(buffer, offset, block, blockLength, count);
+            blockLength += count;
+            offset += count;
+            byteCount -= count;
+            if (blockLength == block.length) {
+                submitBlock(false);
+            }
+        }
+    }
+
+    /**
+     * Compresses any buffered input, waits for all pending blocks and flushes
+     * the compressed data to the underlying stream. Flushing a partially
+     * filled block may degrade compression.
+     */
+    @Override public void flush() throws IOException {
+        if (closed) {
+            throw new IOException("Stream is closed");
+        }
+        if (!finished && blockLength > 0) {
+            submitBlock(false);
+        }
+        drain(0);
+        out.flush();
+    }
+
+    /**
+     * Compresses all remaining input and writes the GZIP trailer, without
+     * closing the underlying stream.
+     */
+    public void finish() throws IOException {
+        if (closed) {
+            throw new IOException("Stream is closed");
+        }
+        if (finished) {
+            return;
+        }
+        submitBlock(true);
+        drain(0);
+        writeInt((int) crc);
+        writeInt((int) totalIn);
+        finished = true;
+    }
+
+    @Override public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            finish();
+        } finally {
+            closed = true;
+            block = null;
+            previousBlock = null;
+            out.close();
+        }
+    }
+
+    private void checkWritable() throws IOException {
+        if (closed) {
+            throw new IOException("Stream is closed");
+        }
+        if (finished) {
+            throw new IOException("attempt to write after finish");
+        }
+    }
+
+    /**
+     * Hands the current block to the executor and starts a new one. The
+     * previous block's bytes are shared with the task as its dictionary, so
+     * a block array is never reused once submitted.
+     */
+    private void submitBlock(boolean last) throws IOException {
+        drain(maxPendingBlocks - 1);
+        FutureTask<Block> task = new FutureTask<Block>(new Block(level, block, blockLength,
+                previousBlock, previousBlockLength, last));
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // The block stays buffered; only executed tasks may be waited for.
+            throw (IOException) new IOException("block compression rejected").initCause(e);
+        }
+        pending.addLast(task);
+        if (blockLength > 0) {
+            previousBlock = block;
+            previousBlockLength = blockLength;
+        }
+        if (!last) {
+            block = new byte[block.length];
+        }
+        blockLength = 0;
+    }
+
+    /**
+     * Writes out completed blocks in order until at most {@code maxPending}
+     * remain in flight.
+     */
+    private void drain(int maxPending) throws IOException {
+        while (pending.size() > maxPending) {
+            Block result;
+            try {
+                result = pending.peekFirst().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw (IOException) new IOException("block compression failed").initCause(cause);
+            }
+            pending.removeFirst();
+            out.write(result.compressed, 0, result.compressedLength);
+            crc = CRC32.combine(crc, result.crc, result.length);
+            totalIn += result.length;
+        }
+    }
+
+    private void writeInt(int i) throws IOException {
+        out.write(i & 0xff);
+        out.write((i >> 8) & 0xff);
+        out.write((i >> 16) & 0xff);
+        out.write((i >> 24) & 0xff);
+    }
+
+    /**
+     * One block of input, compressed on the executor. After {@link #call}
+     * completes the compressed bytes and checksum are available.
+     */
+    private static final class Block implements Callable<Block> {
+        private final int level;
+        private final byte[] input;
+        private final int length;
+        private final byte[] dictionary;
+        private final int dictionaryLength;
+        private final boolean last;
+
+        byte[] compressed;
+        int compressedLength;
+        long crc;
+
+        Block(int level, byte[] input, int length, byte[] dictionary, int dictionaryLength,
+                boolean last) {
+            this.level = level;
+            this.input = input;
+            this.length = length;
+            this.dictionary = dictionary;
+            this.dictionaryLength = dictionaryLength;
+            this.last = last;
+        }
+
+        public Block call() {
+            CRC32 checksum = new CRC32();
+            checksum.update(input, 0, length);
+            crc = checksum.getValue();
+
+            Deflater deflater = new Deflater(level, true);
+            try {
+                if (dictionary != null) {
+                    int dictionaryOffset = Math.max(0, dictionaryLength - DICTIONARY_SIZE);
+                    deflater.setDictionary(dictionary, dictionaryOffset,
+                            dictionaryLength - dictionaryOffset);
+                }
+                deflater.setInput(input, 0, length);
+                // Compressed output rarely exceeds its input by more than a few bytes per 16 KiB.
+                compressed = new byte[length + (length >> 12) + 64];
+                if (last) {
+                    deflater.finish();
+                    while (!deflater.finished()) {
+                        grow();
+                        compressedLength += deflater.deflate(compressed, compressedLength,
+                                compressed.length - compressedLength);
+                    }
+                } else {
+                    // A sync flush is complete once it leaves spare room in the output buffer.
+                    do {
+                        grow();
+                        compressedLength += deflater.deflate(compressed, compressedLength,
+                                compressed.length - compressedLength, Deflater.SYNC_FLUSH);
+                    } while (compressedLength == compressed.length);
+                }
+            } finally {
+                deflater.end();
+            }
+            return this;
+        }
+
+        private void grow() {
+            if (compressedLength == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+        }
+    }
+}
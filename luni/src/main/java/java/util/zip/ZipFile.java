@@ -32,6 +32,7 @@ import java.util.LinkedHashMap;
 import libcore.io.BufferIterator;
 import libcore.io.HeapBufferIterator;
 import libcore.io.Streams;
+import libcore.util.ZlibPool;
 
 /**
  * This class provides random read access to a <i>ZIP-archive</i> file.
@@ -267,7 +268,7 @@ public class ZipFile implements ZipConstants {
             rafstrm.mLength = rafstrm.mOffset + entry.compressedSize;
             if (entry.compressionMethod == ZipEntry.DEFLATED) {
                 int bufSize = Math.max(1024, (int)Math.min(entry.getSize(), 65535L));
-                return new ZipInflaterInputStream(rafstrm, new Inflater(true), bufSize, entry);
+                return new ZipInflaterInputStream(rafstrm, bufSize, entry);
             } else {
                 return rafstrm;
             }
@@ -426,8 +427,9 @@ public class ZipFile implements ZipConstants {
         ZipEntry entry;
         long bytesRead = 0;
 
-        public ZipInflaterInputStream(InputStream is, Inflater inf, int bsize, ZipEntry entry) {
-            super(is, inf, bsize);
+        public ZipInflaterInputStream(InputStream is, int bsize, ZipEntry entry) {
+            super(is, ZlibPool.obtainInflater(), bsize);
+            this.pooledInflater = inf;
             this.entry = entry;
         }
 
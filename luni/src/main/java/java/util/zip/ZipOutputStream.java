@@ -115,11 +115,16 @@ public class ZipOutputStream extends DeflaterOutputStream implements ZipConstant
     @Override
     public void close() throws IOException {
         // don't call super.close() because that calls finish() conditionally
-        if (out != null) {
+        if (out == null) {
+            return;
+        }
+        try {
             finish();
+        } finally {
             def.end();
-            out.close();
+            OutputStream toClose = out;
             out = null;
+            toClose.close();
         }
     }
 
@@ -27,8 +27,22 @@ import static libcore.io.OsConstants.*;
 
 /**
  * Informs BlockGuard of any activity it should be aware of.
+ *
+ * <p>Closing a socket needs to know whether it is one, and whether it
+ * lingers. To avoid asking the kernel on every close, the descriptors
+ * created here are marked with one of the FD_TYPE constants using
+ * {@link FileDescriptor#setType$}.
  */
 public class BlockGuardOs extends ForwardingOs {
+    /** Nothing is known about the descriptor. */
+    private static final int FD_TYPE_UNKNOWN = 0;
+    /** The descriptor isn't a socket. */
+    private static final int FD_TYPE_OTHER = 1;
+    /** The descriptor is a socket without SO_LINGER. */
+    private static final int FD_TYPE_SOCKET = 2;
+    /** The descriptor is a socket with SO_LINGER and a nonzero timeout. */
+    private static final int FD_TYPE_LINGER_SOCKET = 3;
+
     public BlockGuardOs(Os os) {
         super(os);
     }
@@ -52,13 +66,23 @@ public class BlockGuardOs extends ForwardingOs {
 
     @Override public FileDescriptor accept(FileDescriptor fd, InetSocketAddress peerAddress) throws ErrnoException {
         BlockGuard.getThreadPolicy().onNetwork();
-        return tagSocket(os.accept(fd, peerAddress));
+        FileDescriptor acceptFd = tagSocket(os.accept(fd, peerAddress));
+        // Accepted sockets inherit SO_LINGER from the listening socket.
+        int type = fd.getType$();
+        if (type == FD_TYPE_SOCKET || type == FD_TYPE_LINGER_SOCKET) {
+            acceptFd.setType$(type);
+        }
+        return acceptFd;
     }
 
     @Override public void close(FileDescriptor fd) throws ErrnoException {
         try {
-            if (S_ISSOCK(Libcore.os.fstat(fd).st_mode)) {
-                if (isLingerSocket(fd)) {
+            int type = fd.getType$();
+            if (type == FD_TYPE_UNKNOWN) {
+                type = typeOf(fd);
+            }
+            if (type != FD_TYPE_OTHER) {
+                if (type == FD_TYPE_LINGER_SOCKET) {
                     // If the fd is a socket with SO_LINGER set, we might block indefinitely.
                     // We allow non-linger sockets so that apps can close their network
                     // connections in methods like onDestroy which will run on the UI thread.
@@ -75,8 +99,15 @@ public class BlockGuardOs extends ForwardingOs {
         os.close(fd);
     }
 
-    private static boolean isLingerSocket(FileDescriptor fd) throws ErrnoException {
+    private static int typeOf(FileDescriptor fd) throws ErrnoException {
+        if (!S_ISSOCK(Libcore.os.fstat(fd).st_mode)) {
+            return FD_TYPE_OTHER;
+        }
         StructLinger linger = Libcore.os.getsockoptLinger(fd, SOL_SOCKET, SO_LINGER);
+        return isLinger(linger) ? FD_TYPE_LINGER_SOCKET : FD_TYPE_SOCKET;
+    }
+
+    private static boolean isLinger(StructLinger linger) {
         return linger.isOn() && linger.l_linger > 0;
     }
 
@@ -107,7 +138,17 @@ public class BlockGuardOs extends ForwardingOs {
         if ((mode & O_ACCMODE) != O_RDONLY) {
             BlockGuard.getThreadPolicy().onWriteToDisk();
         }
-        return os.open(path, flags, mode);
+        FileDescriptor fd = os.open(path, flags, mode);
+        // open(2) fails on sockets.
+        fd.setType$(FD_TYPE_OTHER);
+        return fd;
+    }
+
+    @Override public FileDescriptor[] pipe() throws ErrnoException {
+        FileDescriptor[] fds = os.pipe();
+        fds[0].setType$(FD_TYPE_OTHER);
+        fds[1].setType$(FD_TYPE_OTHER);
+        return fds;
     }
 
     @Override public int poll(StructPollfd[] fds, int timeoutMs) throws ErrnoException {
@@ -177,8 +218,18 @@ public class BlockGuardOs extends ForwardingOs {
         return os.sendto(fd, bytes, byteOffset, byteCount, flags, inetAddress, port);
     }
 
+    @Override public void setsockoptLinger(FileDescriptor fd, int level, int option, StructLinger value) throws ErrnoException {
+        os.setsockoptLinger(fd, level, option, value);
+        if (level == SOL_SOCKET && option == SO_LINGER) {
+            fd.setType$(isLinger(value) ? FD_TYPE_LINGER_SOCKET : FD_TYPE_SOCKET);
+        }
+    }
+
     @Override public FileDescriptor socket(int domain, int type, int protocol) throws ErrnoException {
-        return tagSocket(os.socket(domain, type, protocol));
+        FileDescriptor fd = tagSocket(os.socket(domain, type, protocol));
+        // New sockets don't linger.
+        fd.setType$(FD_TYPE_SOCKET);
+        return fd;
     }
 
     @Override public int write(FileDescriptor fd, ByteBuffer buffer) throws ErrnoException {
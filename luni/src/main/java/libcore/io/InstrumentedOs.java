@@ -0,0 +1,1237 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package libcore.io;
+
+import java.io.FileDescriptor;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import libcore.util.MutableInt;
+import libcore.util.MutableLong;
+
+/**
+ * Counts the calls made through {@link Os}, the bytes they transfer, and
+ * how long they take.
+ *
+ * <p>This is opt-in: {@link #install} wraps {@link Libcore#os}, so every
+ * call made by the class libraries is recorded, including the ones that
+ * other wrappers like {@link BlockGuardOs} make on their own behalf. Each
+ * thread records into its own counters, so recording takes no locks;
+ * {@link #snapshot} adds up all threads' counters and {@link
+ * #snapshotCurrentThread} returns just the calling thread's. The counters of
+ * threads that have exited are folded into a shared total by the next
+ * snapshot, so short-lived threads don't accumulate.
+ *
+ * <p>Latencies are kept as histograms with power-of-two buckets: bucket 0
+ * counts calls that took less than 1024ns, and bucket {@code i} those that
+ * took less than {@code 1024 << i} ns. The last bucket has no upper bound.
+ *
+ * @hide
+ */
+public final class InstrumentedOs extends ForwardingOs {
+    /** The number of latency histogram buckets. */
+    public static final int BUCKET_COUNT = 24;
+
+    // The layout of each call's counters.
+    private static final int COUNT = 0;
+    private static final int BYTES = 1;
+    private static final int NANOS = 2;
+    private static final int HISTOGRAM = 3;
+    private static final int COUNTER_COUNT = HISTOGRAM + BUCKET_COUNT;
+
+    /** The calls that are recorded, one per {@link Os} method name. */
+    private enum Call {
+        ACCEPT("accept"),
+        ACCESS("access"),
+        BIND("bind"),
+        CHMOD("chmod"),
+        CLOSE("close"),
+        CONNECT("connect"),
+        DUP("dup"),
+        DUP2("dup2"),
+        FCNTL_VOID("fcntlVoid"),
+        FCNTL_LONG("fcntlLong"),
+        FCNTL_FLOCK("fcntlFlock"),
+        FDATASYNC("fdatasync"),
+        FSTAT("fstat"),
+        FSTATFS("fstatfs"),
+        FSYNC("fsync"),
+        FTRUNCATE("ftruncate"),
+        GETADDRINFO("getaddrinfo"),
+        GETEGID("getegid"),
+        GETEUID("geteuid"),
+        GETGID("getgid"),
+        GETNAMEINFO("getnameinfo"),
+        GETPID("getpid"),
+        GETPPID("getppid"),
+        GETPWNAM("getpwnam"),
+        GETPWUID("getpwuid"),
+        GETSOCKNAME("getsockname"),
+        GETSOCKOPT_BYTE("getsockoptByte"),
+        GETSOCKOPT_IN_ADDR("getsockoptInAddr"),
+        GETSOCKOPT_INT("getsockoptInt"),
+        GETSOCKOPT_LINGER("getsockoptLinger"),
+        GETSOCKOPT_TIMEVAL("getsockoptTimeval"),
+        GETUID("getuid"),
+        IF_INDEXTONAME("if_indextoname"),
+        IOCTL_INET_ADDRESS("ioctlInetAddress"),
+        IOCTL_INT("ioctlInt"),
+        ISATTY("isatty"),
+        KILL("kill"),
+        LISTEN("listen"),
+        LSEEK("lseek"),
+        LSTAT("lstat"),
+        MINCORE("mincore"),
+        MKDIR("mkdir"),
+        MLOCK("mlock"),
+        MMAP("mmap"),
+        MSYNC("msync"),
+        MUNLOCK("munlock"),
+        MUNMAP("munmap"),
+        OPEN("open"),
+        PIPE("pipe"),
+        POLL("poll"),
+        PREAD("pread"),
+        PWRITE("pwrite"),
+        READ("read"),
+        READV("readv"),
+        RECVFROM("recvfrom"),
+        REMOVE("remove"),
+        RENAME("rename"),
+        SENDFILE("sendfile"),
+        SENDTO("sendto"),
+        SETEGID("setegid"),
+        SETEUID("seteuid"),
+        SETGID("setgid"),
+        SETSOCKOPT_BYTE("setsockoptByte"),
+        SETSOCKOPT_IFREQ("setsockoptIfreq"),
+        SETSOCKOPT_INT("setsockoptInt"),
+        SETSOCKOPT_IP_MREQN("setsockoptIpMreqn"),
+        SETSOCKOPT_GROUP_REQ("setsockoptGroupReq"),
+        SETSOCKOPT_LINGER("setsockoptLinger"),
+        SETSOCKOPT_TIMEVAL("setsockoptTimeval"),
+        SETUID("setuid"),
+        SHUTDOWN("shutdown"),
+        SOCKET("socket"),
+        STAT("stat"),
+        STATFS("statfs"),
+        SYMLINK("symlink"),
+        SYSCONF("sysconf"),
+        UNAME("uname"),
+        WAITPID("waitpid"),
+        WRITE("write"),
+        WRITEV("writev");
+
+        final String methodName;
+
+        Call(String methodName) {
+            this.methodName = methodName;
+        }
+    }
+
+    private static final Call[] CALLS = Call.values();
+
+    private static final HashMap<String, Call> CALLS_BY_NAME = new HashMap<String, Call>();
+    static {
+        for (Call call : CALLS) {
+            CALLS_BY_NAME.put(call.methodName, call);
+        }
+    }
+
+    /**
+     * The counters of one thread. Only that thread writes them, so it can
+     * use ordered stores rather than atomic updates.
+     */
+    private static final class ThreadCounters {
+        final String threadName = Thread.currentThread().getName();
+        final WeakReference<Thread> owner = new WeakReference<Thread>(Thread.currentThread());
+        final AtomicReferenceArray<AtomicLongArray> calls =
+                new AtomicReferenceArray<AtomicLongArray>(CALLS.length);
+
+        /**
+         * Returns true if the owner has exited. Its counters are then final:
+         * a thread's termination happens-before isAlive() returns false.
+         */
+        boolean isOwnerDead() {
+            Thread thread = owner.get();
+            return thread == null || !thread.isAlive();
+        }
+
+        AtomicLongArray get(Call call) {
+            AtomicLongArray counters = calls.get(call.ordinal());
+            if (counters == null) {
+                counters = new AtomicLongArray(COUNTER_COUNT);
+                calls.lazySet(call.ordinal(), counters);
+            }
+            return counters;
+        }
+    }
+
+    /** The counters of every thread not yet found to have exited. */
+    private final ConcurrentLinkedQueue<ThreadCounters> allCounters =
+            new ConcurrentLinkedQueue<ThreadCounters>();
+
+    /** The totals of the threads removed from allCounters. Guarded by itself. */
+    private final long[][] exitedTotals = new long[CALLS.length][COUNTER_COUNT];
+
+    private final ThreadLocal<ThreadCounters> threadCounters = new ThreadLocal<ThreadCounters>() {
+        @Override protected ThreadCounters initialValue() {
+            ThreadCounters counters = new ThreadCounters();
+            allCounters.add(counters);
+            return counters;
+        }
+    };
+
+    public InstrumentedOs(Os os) {
+        super(os);
+    }
+
+    /**
+     * Wraps {@link Libcore#os} in an {@code InstrumentedOs}, unless it
+     * already is one, and returns it.
+     */
+    public static synchronized InstrumentedOs install() {
+        if (Libcore.os instanceof InstrumentedOs) {
+            return (InstrumentedOs) Libcore.os;
+        }
+        InstrumentedOs result = new InstrumentedOs(Libcore.os);
+        Libcore.os = result;
+        return result;
+    }
+
+    /**
+     * Removes the {@code InstrumentedOs} installed by {@link #install}, if
+     * any.
+     */
+    public static synchronized void uninstall() {
+        if (Libcore.os instanceof InstrumentedOs) {
+            Libcore.os = ((InstrumentedOs) Libcore.os).os;
+        }
+    }
+
+    private void end(Call call, long start, long bytes) {
+        long nanos = System.nanoTime() - start;
+        AtomicLongArray counters = threadCounters.get().get(call);
+        counters.lazySet(COUNT, counters.get(COUNT) + 1);
+        if (bytes > 0) {
+            counters.lazySet(BYTES, counters.get(BYTES) + bytes);
+        }
+        counters.lazySet(NANOS, counters.get(NANOS) + nanos);
+        int bucket = HISTOGRAM
+                + Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(nanos >>> 10));
+        counters.lazySet(bucket, counters.get(bucket) + 1);
+    }
+
+    /**
+     * Returns the totals of all threads so far.
+     */
+    public Snapshot snapshot() {
+        long[][] totals = new long[CALLS.length][COUNTER_COUNT];
+        synchronized (exitedTotals) {
+            // Prune and add up under the lock so no thread is counted twice.
+            for (Iterator<ThreadCounters> it = allCounters.iterator(); it.hasNext(); ) {
+                ThreadCounters counters = it.next();
+                if (counters.isOwnerDead()) {
+                    addTo(exitedTotals, counters);
+                    it.remove();
+                } else {
+                    addTo(totals, counters);
+                }
+            }
+            for (int i = 0; i < CALLS.length; i++) {
+                for (int j = 0; j < COUNTER_COUNT; j++) {
+                    totals[i][j] += exitedTotals[i][j];
+                }
+            }
+        }
+        return new Snapshot("all threads", totals);
+    }
+
+    /**
+     * Returns the totals of the calling thread so far.
+     */
+    public Snapshot snapshotCurrentThread() {
+        ThreadCounters counters = threadCounters.get();
+        long[][] totals = new long[CALLS.length][COUNTER_COUNT];
+        addTo(totals, counters);
+        return new Snapshot(counters.threadName, totals);
+    }
+
+    private static void addTo(long[][] totals, ThreadCounters counters) {
+        for (int i = 0; i < CALLS.length; i++) {
+            AtomicLongArray call = counters.calls.get(i);
+            if (call != null) {
+                for (int j = 0; j < COUNTER_COUNT; j++) {
+                    totals[i][j] += call.get(j);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the totals of all threads, followed by those of each thread
+     * that is still running, to {@code file} as text.
+     */
+    public void dump(String file) throws IOException {
+        List<Snapshot> snapshots = new ArrayList<Snapshot>();
+        snapshots.add(snapshot());
+        for (ThreadCounters counters : allCounters) {
+            long[][] totals = new long[CALLS.length][COUNTER_COUNT];
+            addTo(totals, counters);
+            snapshots.add(new Snapshot(counters.threadName, totals));
+        }
+        Writer writer = new FileWriter(file);
+        try {
+            for (Snapshot snapshot : snapshots) {
+                writer.write(snapshot.toString());
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * The totals of some threads at one point in time.
+     */
+    public static final class Snapshot {
+        private final String name;
+        private final long[][] totals;
+
+        private Snapshot(String name, long[][] totals) {
+            this.name = name;
+            this.totals = totals;
+        }
+
+        private long[] totals(String methodName) {
+            Call call = CALLS_BY_NAME.get(methodName);
+            if (call == null) {
+                throw new IllegalArgumentException("Not an instrumented call: " + methodName);
+            }
+            return totals[call.ordinal()];
+        }
+
+        /**
+         * Returns the names of the calls made at least once, such as
+         * {@code "read"}. Overloads of a method are counted together.
+         */
+        public List<String> getCalls() {
+            List<String> result = new ArrayList<String>();
+            for (Call call : CALLS) {
+                if (totals[call.ordinal()][COUNT] != 0) {
+                    result.add(call.methodName);
+                }
+            }
+            return result;
+        }
+
+        public long getCount(String call) {
+            return totals(call)[COUNT];
+        }
+
+        /**
+         * Returns the number of bytes transferred by calls like read and
+         * write, as returned by them.
+         */
+        public long getBytes(String call) {
+            return totals(call)[BYTES];
+        }
+
+        public long getTotalNanos(String call) {
+            return totals(call)[NANOS];
+        }
+
+        /**
+         * Returns a copy of the latency histogram, with {@link #BUCKET_COUNT}
+         * buckets.
+         */
+        public long[] getHistogram(String call) {
+            long[] result = new long[BUCKET_COUNT];
+            System.arraycopy(totals(call), HISTOGRAM, result, 0, BUCKET_COUNT);
+            return result;
+        }
+
+        /**
+         * Returns an upper bound on the latency of {@code percent} percent
+         * of the calls, or {@code Long.MAX_VALUE} if that falls in the last
+         * bucket, or 0 if there were no calls.
+         */
+        public long getLatencyPercentileNanos(String call, int percent) {
+            return percentile(totals(call), percent);
+        }
+
+        private static long percentile(long[] counters, int percent) {
+            long count = counters[COUNT];
+            if (count == 0) {
+                return 0;
+            }
+            long threshold = (count * percent + 99) / 100;
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+                seen += counters[HISTOGRAM + i];
+                if (seen >= threshold) {
+                    return 1024L << i;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        /**
+         * Returns the calls made between {@code earlier} and this snapshot,
+         * assuming both cover the same threads.
+         */
+        public Snapshot minus(Snapshot earlier) {
+            long[][] difference = new long[CALLS.length][COUNTER_COUNT];
+            for (int i = 0; i < CALLS.length; i++) {
+                for (int j = 0; j < COUNTER_COUNT; j++) {
+                    difference[i][j] = totals[i][j] - earlier.totals[i][j];
+                }
+            }
+            return new Snapshot(name, difference);
+        }
+
+        /**
+         * Returns a table with one line per call made: its count, bytes,
+         * total milliseconds, and the median and 99th percentile latency
+         * bounds in microseconds.
+         */
+        @Override public String toString() {
+            StringBuilder result = new StringBuilder();
+            result.append(name).append('\n');
+            for (Call call : CALLS) {
+                long[] counters = totals[call.ordinal()];
+                if (counters[COUNT] == 0) {
+                    continue;
+                }
+                result.append("  ").append(call.methodName)
+                        .append(" count=").append(counters[COUNT])
+                        .append(" bytes=").append(counters[BYTES])
+                        .append(" ms=").append(counters[NANOS] / 1000000)
+                        .append(" p50us<").append(microseconds(percentile(counters, 50)))
+                        .append(" p99us<").append(microseconds(percentile(counters, 99)))
+                        .append('\n');
+            }
+            return result.toString();
+        }
+
+        private static String microseconds(long nanos) {
+            return (nanos == Long.MAX_VALUE) ? "inf" : Long.toString(nanos / 1000);
+        }
+    }
+
+    @Override public FileDescriptor accept(FileDescriptor fd, InetSocketAddress peerAddress) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.accept(fd, peerAddress);
+        } finally {
+            end(Call.ACCEPT, start, 0);
+        }
+    }
+
+    @Override public boolean access(String path, int mode) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.access(path, mode);
+        } finally {
+            end(Call.ACCESS, start, 0);
+        }
+    }
+
+    @Override public void bind(FileDescriptor fd, InetAddress address, int port) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.bind(fd, address, port);
+        } finally {
+            end(Call.BIND, start, 0);
+        }
+    }
+
+    @Override public void chmod(String path, int mode) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.chmod(path, mode);
+        } finally {
+            end(Call.CHMOD, start, 0);
+        }
+    }
+
+    @Override public void close(FileDescriptor fd) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.close(fd);
+        } finally {
+            end(Call.CLOSE, start, 0);
+        }
+    }
+
+    @Override public void connect(FileDescriptor fd, InetAddress address, int port) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.connect(fd, address, port);
+        } finally {
+            end(Call.CONNECT, start, 0);
+        }
+    }
+
+    @Override public FileDescriptor dup(FileDescriptor oldFd) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.dup(oldFd);
+        } finally {
+            end(Call.DUP, start, 0);
+        }
+    }
+
+    @Override public FileDescriptor dup2(FileDescriptor oldFd, int newFd) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.dup2(oldFd, newFd);
+        } finally {
+            end(Call.DUP2, start, 0);
+        }
+    }
+
+    @Override public int fcntlVoid(FileDescriptor fd, int cmd) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.fcntlVoid(fd, cmd);
+        } finally {
+            end(Call.FCNTL_VOID, start, 0);
+        }
+    }
+
+    @Override public int fcntlLong(FileDescriptor fd, int cmd, long arg) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.fcntlLong(fd, cmd, arg);
+        } finally {
+            end(Call.FCNTL_LONG, start, 0);
+        }
+    }
+
+    @Override public int fcntlFlock(FileDescriptor fd, int cmd, StructFlock arg) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.fcntlFlock(fd, cmd, arg);
+        } finally {
+            end(Call.FCNTL_FLOCK, start, 0);
+        }
+    }
+
+    @Override public void fdatasync(FileDescriptor fd) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.fdatasync(fd);
+        } finally {
+            end(Call.FDATASYNC, start, 0);
+        }
+    }
+
+    @Override public StructStat fstat(FileDescriptor fd) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.fstat(fd);
+        } finally {
+            end(Call.FSTAT, start, 0);
+        }
+    }
+
+    @Override public StructStatFs fstatfs(FileDescriptor fd) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.fstatfs(fd);
+        } finally {
+            end(Call.FSTATFS, start, 0);
+        }
+    }
+
+    @Override public void fsync(FileDescriptor fd) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.fsync(fd);
+        } finally {
+            end(Call.FSYNC, start, 0);
+        }
+    }
+
+    @Override public void ftruncate(FileDescriptor fd, long length) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.ftruncate(fd, length);
+        } finally {
+            end(Call.FTRUNCATE, start, 0);
+        }
+    }
+
+    @Override public InetAddress[] getaddrinfo(String node, StructAddrinfo hints) throws GaiException {
+        long start = System.nanoTime();
+        try {
+            return os.getaddrinfo(node, hints);
+        } finally {
+            end(Call.GETADDRINFO, start, 0);
+        }
+    }
+
+    @Override public int getegid() {
+        long start = System.nanoTime();
+        try {
+            return os.getegid();
+        } finally {
+            end(Call.GETEGID, start, 0);
+        }
+    }
+
+    @Override public int geteuid() {
+        long start = System.nanoTime();
+        try {
+            return os.geteuid();
+        } finally {
+            end(Call.GETEUID, start, 0);
+        }
+    }
+
+    @Override public int getgid() {
+        long start = System.nanoTime();
+        try {
+            return os.getgid();
+        } finally {
+            end(Call.GETGID, start, 0);
+        }
+    }
+
+    @Override public String getnameinfo(InetAddress address, int flags) throws GaiException {
+        long start = System.nanoTime();
+        try {
+            return os.getnameinfo(address, flags);
+        } finally {
+            end(Call.GETNAMEINFO, start, 0);
+        }
+    }
+
+    @Override public int getpid() {
+        long start = System.nanoTime();
+        try {
+            return os.getpid();
+        } finally {
+            end(Call.GETPID, start, 0);
+        }
+    }
+
+    @Override public int getppid() {
+        long start = System.nanoTime();
+        try {
+            return os.getppid();
+        } finally {
+            end(Call.GETPPID, start, 0);
+        }
+    }
+
+    @Override public StructPasswd getpwnam(String name) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.getpwnam(name);
+        } finally {
+            end(Call.GETPWNAM, start, 0);
+        }
+    }
+
+    @Override public StructPasswd getpwuid(int uid) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.getpwuid(uid);
+        } finally {
+            end(Call.GETPWUID, start, 0);
+        }
+    }
+
+    @Override public SocketAddress getsockname(FileDescriptor fd) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.getsockname(fd);
+        } finally {
+            end(Call.GETSOCKNAME, start, 0);
+        }
+    }
+
+    @Override public int getsockoptByte(FileDescriptor fd, int level, int option) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.getsockoptByte(fd, level, option);
+        } finally {
+            end(Call.GETSOCKOPT_BYTE, start, 0);
+        }
+    }
+
+    @Override public InetAddress getsockoptInAddr(FileDescriptor fd, int level, int option) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.getsockoptInAddr(fd, level, option);
+        } finally {
+            end(Call.GETSOCKOPT_IN_ADDR, start, 0);
+        }
+    }
+
+    @Override public int getsockoptInt(FileDescriptor fd, int level, int option) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.getsockoptInt(fd, level, option);
+        } finally {
+            end(Call.GETSOCKOPT_INT, start, 0);
+        }
+    }
+
+    @Override public StructLinger getsockoptLinger(FileDescriptor fd, int level, int option) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.getsockoptLinger(fd, level, option);
+        } finally {
+            end(Call.GETSOCKOPT_LINGER, start, 0);
+        }
+    }
+
+    @Override public StructTimeval getsockoptTimeval(FileDescriptor fd, int level, int option) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.getsockoptTimeval(fd, level, option);
+        } finally {
+            end(Call.GETSOCKOPT_TIMEVAL, start, 0);
+        }
+    }
+
+    @Override public int getuid() {
+        long start = System.nanoTime();
+        try {
+            return os.getuid();
+        } finally {
+            end(Call.GETUID, start, 0);
+        }
+    }
+
+    @Override public String if_indextoname(int index) {
+        long start = System.nanoTime();
+        try {
+            return os.if_indextoname(index);
+        } finally {
+            end(Call.IF_INDEXTONAME, start, 0);
+        }
+    }
+
+    @Override public InetAddress ioctlInetAddress(FileDescriptor fd, int cmd, String interfaceName) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.ioctlInetAddress(fd, cmd, interfaceName);
+        } finally {
+            end(Call.IOCTL_INET_ADDRESS, start, 0);
+        }
+    }
+
+    @Override public int ioctlInt(FileDescriptor fd, int cmd, MutableInt arg) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.ioctlInt(fd, cmd, arg);
+        } finally {
+            end(Call.IOCTL_INT, start, 0);
+        }
+    }
+
+    @Override public boolean isatty(FileDescriptor fd) {
+        long start = System.nanoTime();
+        try {
+            return os.isatty(fd);
+        } finally {
+            end(Call.ISATTY, start, 0);
+        }
+    }
+
+    @Override public void kill(int pid, int signal) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.kill(pid, signal);
+        } finally {
+            end(Call.KILL, start, 0);
+        }
+    }
+
+    @Override public void listen(FileDescriptor fd, int backlog) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.listen(fd, backlog);
+        } finally {
+            end(Call.LISTEN, start, 0);
+        }
+    }
+
+    @Override public long lseek(FileDescriptor fd, long offset, int whence) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.lseek(fd, offset, whence);
+        } finally {
+            end(Call.LSEEK, start, 0);
+        }
+    }
+
+    @Override public StructStat lstat(String path) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.lstat(path);
+        } finally {
+            end(Call.LSTAT, start, 0);
+        }
+    }
+
+    @Override public void mincore(long address, long byteCount, byte[] vector) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.mincore(address, byteCount, vector);
+        } finally {
+            end(Call.MINCORE, start, 0);
+        }
+    }
+
+    @Override public void mkdir(String path, int mode) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.mkdir(path, mode);
+        } finally {
+            end(Call.MKDIR, start, 0);
+        }
+    }
+
+    @Override public void mlock(long address, long byteCount) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.mlock(address, byteCount);
+        } finally {
+            end(Call.MLOCK, start, 0);
+        }
+    }
+
+    @Override public long mmap(long address, long byteCount, int prot, int flags, FileDescriptor fd, long offset) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.mmap(address, byteCount, prot, flags, fd, offset);
+        } finally {
+            end(Call.MMAP, start, 0);
+        }
+    }
+
+    @Override public void msync(long address, long byteCount, int flags) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.msync(address, byteCount, flags);
+        } finally {
+            end(Call.MSYNC, start, 0);
+        }
+    }
+
+    @Override public void munlock(long address, long byteCount) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.munlock(address, byteCount);
+        } finally {
+            end(Call.MUNLOCK, start, 0);
+        }
+    }
+
+    @Override public void munmap(long address, long byteCount) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.munmap(address, byteCount);
+        } finally {
+            end(Call.MUNMAP, start, 0);
+        }
+    }
+
+    @Override public FileDescriptor open(String path, int flags, int mode) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.open(path, flags, mode);
+        } finally {
+            end(Call.OPEN, start, 0);
+        }
+    }
+
+    @Override public FileDescriptor[] pipe() throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.pipe();
+        } finally {
+            end(Call.PIPE, start, 0);
+        }
+    }
+
+    @Override public int poll(StructPollfd[] fds, int timeoutMs) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.poll(fds, timeoutMs);
+        } finally {
+            end(Call.POLL, start, 0);
+        }
+    }
+
+    @Override public int pread(FileDescriptor fd, ByteBuffer buffer, long offset) throws ErrnoException {
+        long start = System.nanoTime();
+        int result = -1;
+        try {
+            return result = os.pread(fd, buffer, offset);
+        } finally {
+            end(Call.PREAD, start, result);
+        }
+    }
+
+    @Override public int pread(FileDescriptor fd, byte[] bytes, int byteOffset, int byteCount, long offset) throws ErrnoException {
+        long start = System.nanoTime();
+        int result = -1;
+        try {
+            return result = os.pread(fd, bytes, byteOffset, byteCount, offset);
+        } finally {
+            end(Call.PREAD, start, result);
+        }
+    }
+
+    @Override public int pwrite(FileDescriptor fd, ByteBuffer buffer, long offset) throws ErrnoException {
+        long start = System.nanoTime();
+        int result = -1;
+        try {
+            return result = os.pwrite(fd, buffer, offset);
+        } finally {
+            end(Call.PWRITE, start, result);
+        }
+    }
+
+    @Override public int pwrite(FileDescriptor fd, byte[] bytes, int byteOffset, int byteCount, long offset) throws ErrnoException {
+        long start = System.nanoTime();
+        int result = -1;
+        try {
+            return result = os.pwrite(fd, bytes, byteOffset, byteCount, offset);
+        } finally {
+            end(Call.PWRITE, start, result);
+        }
+    }
+
+    @Override public int read(FileDescriptor fd, ByteBuffer buffer) throws ErrnoException {
+        long start = System.nanoTime();
+        int result = -1;
+        try {
+            return result = os.read(fd, buffer);
+        } finally {
+            end(Call.READ, start, result);
+        }
+    }
+
+    @Override public int read(FileDescriptor fd, byte[] bytes, int byteOffset, int byteCount) throws ErrnoException {
+        long start = System.nanoTime();
+        int result = -1;
+        try {
+            return result = os.read(fd, bytes, byteOffset, byteCount);
+        } finally {
+            end(Call.READ, start, result);
+        }
+    }
+
+    @Override public int readv(FileDescriptor fd, Object[] buffers, int[] offsets, int[] byteCounts) throws ErrnoException {
+        long start = System.nanoTime();
+        int result = -1;
+        try {
+            return result = os.readv(fd, buffers, offsets, byteCounts);
+        } finally {
+            end(Call.READV, start, result);
+        }
+    }
+
+    @Override public int recvfrom(FileDescriptor fd, ByteBuffer buffer, int flags, InetSocketAddress srcAddress) throws ErrnoException {
+        long start = System.nanoTime();
+        int result = -1;
+        try {
+            return result = os.recvfrom(fd, buffer, flags, srcAddress);
+        } finally {
+            end(Call.RECVFROM, start, result);
+        }
+    }
+
+    @Override public int recvfrom(FileDescriptor fd, byte[] bytes, int byteOffset, int byteCount, int flags, InetSocketAddress srcAddress) throws ErrnoException {
+        long start = System.nanoTime();
+        int result = -1;
+        try {
+            return result = os.recvfrom(fd, bytes, byteOffset, byteCount, flags, srcAddress);
+        } finally {
+            end(Call.RECVFROM, start, result);
+        }
+    }
+
+    @Override public void remove(String path) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.remove(path);
+        } finally {
+            end(Call.REMOVE, start, 0);
+        }
+    }
+
+    @Override public void rename(String oldPath, String newPath) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.rename(oldPath, newPath);
+        } finally {
+            end(Call.RENAME, start, 0);
+        }
+    }
+
+    @Override public long sendfile(FileDescriptor outFd, FileDescriptor inFd, MutableLong inOffset, long byteCount) throws ErrnoException {
+        long start = System.nanoTime();
+        long result = -1;
+        try {
+            return result = os.sendfile(outFd, inFd, inOffset, byteCount);
+        } finally {
+            end(Call.SENDFILE, start, result);
+        }
+    }
+
+    @Override public int sendto(FileDescriptor fd, ByteBuffer buffer, int flags, InetAddress inetAddress, int port) throws ErrnoException {
+        long start = System.nanoTime();
+        int result = -1;
+        try {
+            return result = os.sendto(fd, buffer, flags, inetAddress, port);
+        } finally {
+            end(Call.SENDTO, start, result);
+        }
+    }
+
+    @Override public int sendto(FileDescriptor fd, byte[] bytes, int byteOffset, int byteCount, int flags, InetAddress inetAddress, int port) throws ErrnoException {
+        long start = System.nanoTime();
+        int result = -1;
+        try {
+            return result = os.sendto(fd, bytes, byteOffset, byteCount, flags, inetAddress, port);
+        } finally {
+            end(Call.SENDTO, start, result);
+        }
+    }
+
+    @Override public void setegid(int egid) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.setegid(egid);
+        } finally {
+            end(Call.SETEGID, start, 0);
+        }
+    }
+
+    @Override public void seteuid(int euid) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.seteuid(euid);
+        } finally {
+            end(Call.SETEUID, start, 0);
+        }
+    }
+
+    @Override public void setgid(int gid) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.setgid(gid);
+        } finally {
+            end(Call.SETGID, start, 0);
+        }
+    }
+
+    @Override public void setsockoptByte(FileDescriptor fd, int level, int option, int value) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.setsockoptByte(fd, level, option, value);
+        } finally {
+            end(Call.SETSOCKOPT_BYTE, start, 0);
+        }
+    }
+
+    @Override public void setsockoptIfreq(FileDescriptor fd, int level, int option, String value) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.setsockoptIfreq(fd, level, option, value);
+        } finally {
+            end(Call.SETSOCKOPT_IFREQ, start, 0);
+        }
+    }
+
+    @Override public void setsockoptInt(FileDescriptor fd, int level, int option, int value) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.setsockoptInt(fd, level, option, value);
+        } finally {
+            end(Call.SETSOCKOPT_INT, start, 0);
+        }
+    }
+
+    @Override public void setsockoptIpMreqn(FileDescriptor fd, int level, int option, int value) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.setsockoptIpMreqn(fd, level, option, value);
+        } finally {
+            end(Call.SETSOCKOPT_IP_MREQN, start, 0);
+        }
+    }
+
+    @Override public void setsockoptGroupReq(FileDescriptor fd, int level, int option, StructGroupReq value) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.setsockoptGroupReq(fd, level, option, value);
+        } finally {
+            end(Call.SETSOCKOPT_GROUP_REQ, start, 0);
+        }
+    }
+
+    @Override public void setsockoptLinger(FileDescriptor fd, int level, int option, StructLinger value) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.setsockoptLinger(fd, level, option, value);
+        } finally {
+            end(Call.SETSOCKOPT_LINGER, start, 0);
+        }
+    }
+
+    @Override public void setsockoptTimeval(FileDescriptor fd, int level, int option, StructTimeval value) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.setsockoptTimeval(fd, level, option, value);
+        } finally {
+            end(Call.SETSOCKOPT_TIMEVAL, start, 0);
+        }
+    }
+
+    @Override public void setuid(int uid) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.setuid(uid);
+        } finally {
+            end(Call.SETUID, start, 0);
+        }
+    }
+
+    @Override public void shutdown(FileDescriptor fd, int how) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.shutdown(fd, how);
+        } finally {
+            end(Call.SHUTDOWN, start, 0);
+        }
+    }
+
+    @Override public FileDescriptor socket(int domain, int type, int protocol) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.socket(domain, type, protocol);
+        } finally {
+            end(Call.SOCKET, start, 0);
+        }
+    }
+
+    @Override public StructStat stat(String path) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.stat(path);
+        } finally {
+            end(Call.STAT, start, 0);
+        }
+    }
+
+    @Override public StructStatFs statfs(String path) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.statfs(path);
+        } finally {
+            end(Call.STATFS, start, 0);
+        }
+    }
+
+    @Override public void symlink(String oldPath, String newPath) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            os.symlink(oldPath, newPath);
+        } finally {
+            end(Call.SYMLINK, start, 0);
+        }
+    }
+
+    @Override public long sysconf(int name) {
+        long start = System.nanoTime();
+        try {
+            return os.sysconf(name);
+        } finally {
+            end(Call.SYSCONF, start, 0);
+        }
+    }
+
+    @Override public StructUtsname uname() {
+        long start = System.nanoTime();
+        try {
+            return os.uname();
+        } finally {
+            end(Call.UNAME, start, 0);
+        }
+    }
+
+    @Override public int waitpid(int pid, MutableInt status, int options) throws ErrnoException {
+        long start = System.nanoTime();
+        try {
+            return os.waitpid(pid, status, options);
+        } finally {
+            end(Call.WAITPID, start, 0);
+        }
+    }
+
+    @Override public int write(FileDescriptor fd, ByteBuffer buffer) throws ErrnoException {
+        long start = System.nanoTime();
+        int result = -1;
+        try {
+            return result = os.write(fd, buffer);
+        } finally {
+            end(Call.WRITE, start, result);
+        }
+    }
+
+    @Override public int write(FileDescriptor fd, byte[] bytes, int byteOffset, int byteCount) throws ErrnoException {
+        long start = System.nanoTime();
+        int result = -1;
+        try {
+            return result = os.write(fd, bytes, byteOffset, byteCount);
+        } finally {
+            end(Call.WRITE, start, result);
+        }
+    }
+
+    @Override public int writev(FileDescriptor fd, Object[] buffers, int[] offsets, int[] byteCounts) throws ErrnoException {
+        long start = System.nanoTime();
+        int result = -1;
+        try {
+            return result = os.writev(fd, buffers, offsets, byteCounts);
+        } finally {
+            end(Call.WRITEV, start, result);
+        }
+    }
+}
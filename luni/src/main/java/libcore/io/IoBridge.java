@@ -180,9 +180,11 @@ public final class IoBridge {
             return;
         }
         int intFd = fd.getInt$();
+        int type = fd.getType$();
         fd.setInt$(-1);
         FileDescriptor oldFd = new FileDescriptor();
         oldFd.setInt$(intFd);
+        oldFd.setType$(type);
         AsynchronousCloseMonitor.signalBlockedThreads(oldFd);
         try {
             Libcore.os.close(oldFd);
@@ -16,76 +16,364 @@
 
 package libcore.net.http;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.Locale;
-import java.util.TimeZone;
 
 /**
  * Best-effort parser for HTTP dates.
+ *
+ * <p>This is hand-written rather than built on SimpleDateFormat so that it is
+ * thread-safe and doesn't allocate calendars or time zones. The parser accepts
+ * RFC 1123 dates ({@code Sun, 06 Nov 1994 08:49:37 GMT}), RFC 1036 dates
+ * ({@code Sunday, 06-Nov-94 08:49:37 GMT}), ANSI C asctime() dates ({@code Sun
+ * Nov  6 08:49:37 1994}) and the common variations on these that browsers
+ * accept for cookies, such as numeric months, {@code HH-mm-ss} times and
+ * missing commas. Dates without a zone are in GMT, as RFC 2616 requires.
  */
 public final class HttpDate {
 
-    /**
-     * Most websites serve cookies in the blessed format. Eagerly create the parser to ensure such
-     * cookies are on the fast path.
-     */
-    private static final ThreadLocal<DateFormat> STANDARD_DATE_FORMAT
-            = new ThreadLocal<DateFormat>() {
-        @Override protected DateFormat initialValue() {
-            DateFormat rfc1123 = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
-            rfc1123.setTimeZone(TimeZone.getTimeZone("UTC"));
-            return rfc1123;
-        }
+    private static final String[] DAY_NAMES = {
+        "Sun", "Mon", "Tue", "Wed", "Thu", "Fri", "Sat",
+    };
+
+    private static final String[] MONTH_NAMES = {
+        "Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec",
     };
 
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
     /**
-     * If we fail to parse a date in a non-standard format, try each of these formats in sequence.
+     * Recently formatted dates, indexed by the low bits of their second. Most
+     * formatted dates are close to now, so this avoids formatting the same
+     * second repeatedly. Entries are immutable, so unsynchronized reads and
+     * writes of the array are safe; a lost update only costs a cache miss.
      */
-    private static final String[] BROWSER_COMPATIBLE_DATE_FORMATS = new String[] {
-            /* This list comes from  {@code org.apache.http.impl.cookie.BrowserCompatSpec}. */
-            "EEEE, dd-MMM-yy HH:mm:ss zzz", // RFC 1036
-            "EEE MMM d HH:mm:ss yyyy", // ANSI C asctime()
-            "EEE, dd-MMM-yyyy HH:mm:ss z",
-            "EEE, dd-MMM-yyyy HH-mm-ss z",
-            "EEE, dd MMM yy HH:mm:ss z",
-            "EEE dd-MMM-yyyy HH:mm:ss z",
-            "EEE dd MMM yyyy HH:mm:ss z",
-            "EEE dd-MMM-yyyy HH-mm-ss z",
-            "EEE dd-MMM-yy HH:mm:ss z",
-            "EEE dd MMM yy HH:mm:ss z",
-            "EEE,dd-MMM-yy HH:mm:ss z",
-            "EEE,dd-MMM-yyyy HH:mm:ss z",
-            "EEE, dd-MM-yyyy HH:mm:ss z",
-
-            /* RI bug 6641315 claims a cookie of this format was once served by www.yahoo.com */
-            "EEE MMM d yyyy HH:mm:ss z",
-    };
+    private static final FormattedDate[] FORMAT_CACHE = new FormattedDate[16];
+
+    private HttpDate() {
+    }
 
     /**
      * Returns the date for {@code value}. Returns null if the value couldn't be
      * parsed.
      */
     public static Date parse(String value) {
-        try {
-            return STANDARD_DATE_FORMAT.get().parse(value);
-        } catch (ParseException ignore) {
-        }
-        for (String formatString : BROWSER_COMPATIBLE_DATE_FORMATS) {
-            try {
-                return new SimpleDateFormat(formatString, Locale.US).parse(value);
-            } catch (ParseException ignore) {
-            }
+        if (value == null) {
+            return null;
         }
-        return null;
+        long millis = parseMillis(value);
+        return millis != Long.MIN_VALUE ? new Date(millis) : null;
     }
 
     /**
      * Returns the string for {@code value}.
      */
     public static String format(Date value) {
-        return STANDARD_DATE_FORMAT.get().format(value);
+        long seconds = floorDiv(value.getTime(), MILLIS_PER_SECOND);
+        int slot = (int) seconds & (FORMAT_CACHE.length - 1);
+        FormattedDate cached = FORMAT_CACHE[slot];
+        if (cached != null && cached.seconds == seconds) {
+            return cached.text;
+        }
+        String text = formatSeconds(seconds);
+        FORMAT_CACHE[slot] = new FormattedDate(seconds, text);
+        return text;
+    }
+
+    /**
+     * Formats {@code seconds} since the epoch as an RFC 1123 date, like
+     * {@code Sun, 06 Nov 1994 08:49:37 GMT}.
+     */
+    private static String formatSeconds(long seconds) {
+        long days = floorDiv(seconds, SECONDS_PER_DAY);
+        int secondOfDay = (int) (seconds - days * SECONDS_PER_DAY);
+
+        // Convert days since the epoch to a proleptic Gregorian date, counting
+        // in 400-year eras that start on March 1st so leap days fall at the end.
+        long z = days + 719468;
+        long era = floorDiv(z, 146097);
+        int dayOfEra = (int) (z - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 2 : shiftedMonth - 10;
+        long year = era * 400 + yearOfEra + (month <= 1 ? 1 : 0);
+
+        StringBuilder result = new StringBuilder(29);
+        result.append(DAY_NAMES[(int) floorMod(days + 4, 7)]).append(", ");
+        appendTwoDigits(result, day);
+        result.append(' ').append(MONTH_NAMES[month]).append(' ');
+        if (year >= 0 && year < 1000) {
+            result.append(year < 10 ? "000" : year < 100 ? "00" : "0");
+        }
+        result.append(year).append(' ');
+        appendTwoDigits(result, secondOfDay / 3600);
+        result.append(':');
+        appendTwoDigits(result, secondOfDay / 60 % 60);
+        result.append(':');
+        appendTwoDigits(result, secondOfDay % 60);
+        result.append(" GMT");
+        return result.toString();
+    }
+
+    private static void appendTwoDigits(StringBuilder sb, int value) {
+        sb.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    /**
+     * Returns the milliseconds since the epoch for {@code s}, or {@code
+     * Long.MIN_VALUE} if it isn't a date.
+     *
+     * <p>The string is scanned as a sequence of words and numbers separated by
+     * punctuation. Each is classified by its shape and by which fields are
+     * still missing, which makes the order of the day, month and year
+     * irrelevant.
+     */
+    private static long parseMillis(String s) {
+        int day = -1;
+        int month = -1;
+        int year = -1;
+        int hour = -1;
+        int minute = -1;
+        int second = -1;
+        int offsetSeconds = 0;
+        boolean zoneSeen = false;
+
+        int length = s.length();
+        int pos = 0;
+        while (pos < length) {
+            char c = s.charAt(pos);
+            if (isLetter(c)) {
+                int end = pos;
+                while (end < length && isLetter(s.charAt(end))) {
+                    end++;
+                }
+                int monthIndex = month == -1 ? monthIndex(s, pos, end) : -1;
+                int zone = hour != -1 && !zoneSeen ? zoneOffset(s, pos, end) : -1;
+                if (monthIndex != -1) {
+                    month = monthIndex;
+                } else if (zone != -1) {
+                    zoneSeen = true;
+                    offsetSeconds = zone == Integer.MAX_VALUE ? 0 : zone;
+                } else if (hour != -1) {
+                    // Trailing text. Stop if we already have a date, fail otherwise.
+                    break;
+                }
+                // Otherwise it's a day of the week, which we don't need.
+                pos = end;
+
+            } else if (isDigit(c)) {
+                int end = pos;
+                int value = 0;
+                while (end < length && isDigit(s.charAt(end)) && end - pos < 5) {
+                    value = value * 10 + (s.charAt(end) - '0');
+                    end++;
+                }
+                int digits = end - pos;
+                char separator = end < length ? s.charAt(end) : 0;
+                if (hour == -1 && digits <= 2 && (separator == ':' || separator == '-')
+                        && end + 1 < length && isDigit(s.charAt(end + 1))
+                        && isTime(s, end, separator)) {
+                    // A time, like 08:49:37 or 08-49-37.
+                    hour = value;
+                    pos = end + 1;
+                    minute = readTwoDigits(s, pos);
+                    pos += countDigits(s, pos);
+                    if (pos < length && s.charAt(pos) == separator
+                            && pos + 1 < length && isDigit(s.charAt(pos + 1))) {
+                        pos++;
+                        if (countDigits(s, pos) > 2) {
+                            return Long.MIN_VALUE;
+                        }
+                        second = readTwoDigits(s, pos);
+                        pos += countDigits(s, pos);
+                    } else {
+                        second = 0;
+                    }
+                    continue;
+                } else if (day == -1 && digits <= 2) {
+                    day = value;
+                } else if (month == -1 && digits <= 2 && year == -1) {
+                    month = value - 1;
+                } else if (year == -1 && (digits == 2 || digits == 4)) {
+                    year = digits == 2 ? (value < 70 ? 2000 + value : 1900 + value) : value;
+                } else {
+                    return Long.MIN_VALUE;
+                }
+                pos = end;
+
+            } else if ((c == '+' || c == '-') && hour != -1
+                    && pos + 1 < length && isDigit(s.charAt(pos + 1))) {
+                // A numeric zone offset, like +0100 or -08:00, possibly after "GMT".
+                int end = pos + 1;
+                int hours = 0;
+                int minutes = 0;
+                int digits = countDigits(s, end);
+                if (digits == 4) {
+                    hours = readTwoDigits(s, end);
+                    minutes = readTwoDigits(s, end + 2);
+                    end += 4;
+                } else if (digits <= 2) {
+                    hours = readTwoDigits(s, end);
+                    end += digits;
+                    if (end < length && s.charAt(end) == ':' && countDigits(s, end + 1) == 2) {
+                        minutes = readTwoDigits(s, end + 1);
+                        end += 3;
+                    }
+                } else {
+                    return Long.MIN_VALUE;
+                }
+                if (hours > 23 || minutes > 59) {
+                    return Long.MIN_VALUE;
+                }
+                int offset = hours * 3600 + minutes * 60;
+                offsetSeconds = c == '-' ? -offset : offset;
+                zoneSeen = true;
+                pos = end;
+
+            } else {
+                pos++;
+            }
+        }
+
+        if (day < 1 || day > 31 || month < 0 || month > 11 || year == -1
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59
+                || second < 0 || second > 59) {
+            return Long.MIN_VALUE;
+        }
+        long seconds = daysSinceEpoch(year, month + 1, day) * SECONDS_PER_DAY
+                + hour * 3600 + minute * 60 + second - offsetSeconds;
+        return seconds * MILLIS_PER_SECOND;
+    }
+
+    /**
+     * Returns true if the digits before {@code separator} at {@code pos} are
+     * followed by one or two more digits, making them a time rather than a
+     * date like 06-11-1994.
+     */
+    private static boolean isTime(String s, int pos, char separator) {
+        int digits = countDigits(s, pos + 1);
+        if (digits < 1 || digits > 2) {
+            return false;
+        }
+        if (separator == ':') {
+            return true;
+        }
+        // With '-' the time needs seconds too, and the next field must be short.
+        int next = pos + 1 + digits;
+        if (next >= s.length() || s.charAt(next) != '-') {
+            return false;
+        }
+        int secondDigits = countDigits(s, next + 1);
+        return secondDigits >= 1 && secondDigits <= 2;
+    }
+
+    /**
+     * Returns the number of days from 1970-01-01 to the given proleptic
+     * Gregorian date, where {@code month} is 1-based.
+     */
+    private static long daysSinceEpoch(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = floorDiv(y, 400);
+        int yearOfEra = (int) (y - era * 400);
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Returns the 0-based month for the word {@code s[start..end)}, or -1.
+     * Like browsers, only the first three letters are significant.
+     */
+    private static int monthIndex(String s, int start, int end) {
+        if (end - start < 3) {
+            return -1;
+        }
+        for (int i = 0; i < MONTH_NAMES.length; i++) {
+            if (s.regionMatches(true, start, MONTH_NAMES[i], 0, 3)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the offset in seconds of the zone named by {@code s[start..end)},
+     * {@code Integer.MAX_VALUE} for UTC, or -1 if it's not a known zone. Only
+     * the zones defined by RFC 822 are recognized.
+     */
+    private static int zoneOffset(String s, int start, int end) {
+        int length = end - start;
+        if (length == 1 && (s.charAt(start) == 'Z' || s.charAt(start) == 'z')) {
+            return Integer.MAX_VALUE;
+        }
+        if ((length == 2 && s.regionMatches(true, start, "UT", 0, 2))
+                || (length == 3 && (s.regionMatches(true, start, "GMT", 0, 3)
+                        || s.regionMatches(true, start, "UTC", 0, 3)))) {
+            return Integer.MAX_VALUE;
+        }
+        if (length != 3 || Character.toUpperCase(s.charAt(start + 2)) != 'T') {
+            return -1;
+        }
+        int standardHours;
+        switch (Character.toUpperCase(s.charAt(start))) {
+            case 'E': standardHours = -5; break;
+            case 'C': standardHours = -6; break;
+            case 'M': standardHours = -7; break;
+            case 'P': standardHours = -8; break;
+            default: return -1;
+        }
+        switch (Character.toUpperCase(s.charAt(start + 1))) {
+            case 'S': return standardHours * 3600;
+            case 'D': return (standardHours + 1) * 3600;
+            default: return -1;
+        }
+    }
+
+    private static int countDigits(String s, int pos) {
+        int end = pos;
+        while (end < s.length() && isDigit(s.charAt(end))) {
+            end++;
+        }
+        return end - pos;
+    }
+
+    /**
+     * Returns the value of the one or two digits at {@code pos}.
+     */
+    private static int readTwoDigits(String s, int pos) {
+        int value = s.charAt(pos) - '0';
+        if (pos + 1 < s.length() && isDigit(s.charAt(pos + 1))) {
+            value = value * 10 + (s.charAt(pos + 1) - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static long floorDiv(long a, long b) {
+        long quotient = a / b;
+        return (a % b != 0 && (a < 0) != (b < 0)) ? quotient - 1 : quotient;
+    }
+
+    private static long floorMod(long a, long b) {
+        return a - floorDiv(a, b) * b;
+    }
+
+    private static final class FormattedDate {
+        final long seconds;
+        final String text;
+
+        FormattedDate(long seconds, String text) {
+            this.seconds = seconds;
+            this.text = text;
+        }
     }
 }
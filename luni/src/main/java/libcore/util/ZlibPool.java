@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package libcore.util;
+
+import java.util.ArrayDeque;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A small bounded pool of headerless ("raw") zlib streams, as used by the GZIP
+ * and ZIP stream classes. Each {@code Inflater} and {@code Deflater} owns a
+ * native zlib context whose allocation dominates the cost of short-lived
+ * streams; returning them here on {@code close()} lets the next stream reuse
+ * the context after a cheap {@code reset()}.
+ *
+ * <p>Callers must not touch an inflater or deflater after recycling it. Streams
+ * that are never closed simply drop their context, which is then ended by its
+ * finalizer as before.
+ */
+public final class ZlibPool {
+    /** The maximum number of idle contexts of each kind retained by the pool. */
+    private static final int MAX_IDLE = 4;
+
+    /**
+     * Approximate native size of a raw inflate context: a 32 KiB window plus
+     * zlib's inflate_state.
+     */
+    private static final long INFLATER_NATIVE_BYTES = (1 << 15) + 7 * 1024;
+
+    /**
+     * Approximate native size of a raw deflate context with the default window
+     * and memory level. See the comment in java_util_zip_Deflater.cpp.
+     */
+    private static final long DEFLATER_NATIVE_BYTES = (1 << 17) + (1 << 17) + 6 * 1024;
+
+    /**
+     * Ended contexts that streams keep in place of the ones they recycled, so
+     * that any later use fails as it would after {@code end()} rather than
+     * with a NullPointerException, and can't reach a context now owned by
+     * another stream.
+     */
+    public static final Inflater RECYCLED_INFLATER = endedInflater();
+    public static final Deflater RECYCLED_DEFLATER = endedDeflater();
+
+    private static final ArrayDeque<Inflater> idleInflaters = new ArrayDeque<Inflater>(MAX_IDLE);
+    private static final ArrayDeque<Deflater> idleDeflaters = new ArrayDeque<Deflater>(MAX_IDLE);
+
+    private static int hitCount;
+    private static int missCount;
+    private static int discardCount;
+
+    private ZlibPool() {
+    }
+
+    private static Inflater endedInflater() {
+        Inflater result = new Inflater(true);
+        result.end();
+        return result;
+    }
+
+    private static Deflater endedDeflater() {
+        Deflater result = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        result.end();
+        return result;
+    }
+
+    /**
+     * Returns an inflater that expects no ZLIB header, reusing an idle pooled
+     * context if one is available.
+     */
+    public static Inflater obtainInflater() {
+        synchronized (ZlibPool.class) {
+            Inflater result = idleInflaters.pollFirst();
+            if (result != null) {
+                hitCount++;
+                return result;
+            }
+            missCount++;
+        }
+        return new Inflater(true);
+    }
+
+    /**
+     * Returns {@code inflater}, which must have been obtained from {@link
+     * #obtainInflater}, to the pool. If the pool is full the inflater is ended.
+     */
+    public static void recycle(Inflater inflater) {
+        try {
+            inflater.reset();
+        } catch (IllegalStateException alreadyEnded) {
+            return;
+        }
+        synchronized (ZlibPool.class) {
+            if (idleInflaters.size() < MAX_IDLE) {
+                idleInflaters.addFirst(inflater);
+                return;
+            }
+            discardCount++;
+        }
+        inflater.end();
+    }
+
+    /**
+     * Returns a deflater at the default compression level that writes no ZLIB
+     * header, reusing an idle pooled context if one is available.
+     */
+    public static Deflater obtainDeflater() {
+        synchronized (ZlibPool.class) {
+            Deflater result = idleDeflaters.pollFirst();
+            if (result != null) {
+                hitCount++;
+                return result;
+            }
+            missCount++;
+        }
+        return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    }
+
+    /**
+     * Returns {@code deflater}, which must have been obtained from {@link
+     * #obtainDeflater}, to the pool. Any level or strategy set by the previous
+     * user is restored to the default. If the pool is full the deflater is
+     * ended.
+     */
+    public static void recycle(Deflater deflater) {
+        try {
+            deflater.reset();
+            deflater.setLevel(Deflater.DEFAULT_COMPRESSION);
+            deflater.setStrategy(Deflater.DEFAULT_STRATEGY);
+        } catch (IllegalStateException alreadyEnded) {
+            return;
+        }
+        synchronized (ZlibPool.class) {
+            if (idleDeflaters.size() < MAX_IDLE) {
+                idleDeflaters.addFirst(deflater);
+                return;
+            }
+            discardCount++;
+        }
+        deflater.end();
+    }
+
+    /**
+     * Returns the number of obtain calls satisfied by an idle pooled context.
+     */
+    public static int hitCount() {
+        synchronized (ZlibPool.class) {
+            return hitCount;
+        }
+    }
+
+    /**
+     * Returns the number of obtain calls that had to allocate a new native context.
+     */
+    public static int missCount() {
+        synchronized (ZlibPool.class) {
+            return missCount;
+        }
+    }
+
+    /**
+     * Returns the number of recycled contexts that were ended because the pool was full.
+     */
+    public static int discardCount() {
+        synchronized (ZlibPool.class) {
+            return discardCount;
+        }
+    }
+
+    /**
+     * Returns the approximate number of bytes of native memory held by idle
+     * pooled contexts. Contexts in use by open streams are not included: a
+     * stream that is never closed doesn't return its context, so the pool
+     * can't tell when that context is freed.
+     */
+    public static long idleNativeBytes() {
+        synchronized (ZlibPool.class) {
+            return idleInflaters.size() * INFLATER_NATIVE_BYTES
+                    + idleDeflaters.size() * DEFLATER_NATIVE_BYTES;
+        }
+    }
+
+    /**
+     * Ends all idle pooled contexts, releasing their native memory.
+     */
+    public static void evictAll() {
+        while (true) {
+            Inflater inflater;
+            synchronized (ZlibPool.class) {
+                inflater = idleInflaters.pollFirst();
+            }
+            if (inflater == null) {
+                break;
+            }
+            inflater.end();
+        }
+        while (true) {
+            Deflater deflater;
+            synchronized (ZlibPool.class) {
+                deflater = idleDeflaters.pollFirst();
+            }
+            if (deflater == null) {
+                break;
+            }
+            deflater.end();
+        }
+    }
+}
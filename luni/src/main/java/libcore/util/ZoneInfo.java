@@ -52,6 +52,14 @@ public final class ZoneInfo extends TimeZone {
     private final byte[] mIsDsts;
     private final boolean mUseDst;
 
+    /**
+     * The transition interval containing the most recent lookup. Callers
+     * overwhelmingly ask about times close to each other (usually "now"), so
+     * checking this first avoids a binary search over the transitions. The
+     * interval is immutable and may be shared with clones of this zone.
+     */
+    private transient volatile Interval mLastInterval;
+
     ZoneInfo(String name, int[] transitions, byte[] type, int[] gmtOffsets, byte[] isDsts) {
         mTransitions = transitions;
         mTypes = type;
@@ -113,6 +121,10 @@ public final class ZoneInfo extends TimeZone {
 
         mRawOffset *= 1000;
         mEarliestRawOffset = earliestRawOffset * 1000;
+
+        // Prime the cache for the current time, so that clones handed out by
+        // ZoneInfoDB start with it populated.
+        findInterval((int) currentUnixTime);
     }
 
     @Override
@@ -146,35 +158,70 @@ public final class ZoneInfo extends TimeZone {
 
     @Override
     public int getOffset(long when) {
-        int unix = (int) (when / 1000);
-        int transition = Arrays.binarySearch(mTransitions, unix);
-        if (transition < 0) {
-            transition = ~transition - 1;
-            if (transition < 0) {
-                // Assume that all times before our first transition correspond to the
-                // oldest-known non-daylight offset. The obvious alternative would be to
-                // use the current raw offset, but that seems like a greater leap of faith.
-                return mEarliestRawOffset;
-            }
+        Interval interval = findInterval((int) (when / 1000));
+        if (interval == null) {
+            // Assume that all times before our first transition correspond to the
+            // oldest-known non-daylight offset. The obvious alternative would be to
+            // use the current raw offset, but that seems like a greater leap of faith.
+            return mEarliestRawOffset;
         }
-        return mRawOffset + mOffsets[mTypes[transition] & 0xff] * 1000;
+        return mRawOffset + interval.offset;
     }
 
     @Override public boolean inDaylightTime(Date time) {
-        long when = time.getTime();
-        int unix = (int) (when / 1000);
+        Interval interval = findInterval((int) (time.getTime() / 1000));
+        if (interval == null) {
+            // Assume that all times before our first transition are non-daylight.
+            // Transition data tends to start with a transition to daylight, so just
+            // copying the first transition would assume the opposite.
+            // http://code.google.com/p/android/issues/detail?id=14395
+            return false;
+        }
+        return interval.isDst;
+    }
+
+    /**
+     * Returns the interval between transitions that contains {@code unix}
+     * seconds, or null if it predates the first transition.
+     */
+    private Interval findInterval(int unix) {
+        Interval interval = mLastInterval;
+        if (interval != null && interval.start <= unix && unix < interval.end) {
+            return interval;
+        }
         int transition = Arrays.binarySearch(mTransitions, unix);
         if (transition < 0) {
             transition = ~transition - 1;
             if (transition < 0) {
-                // Assume that all times before our first transition are non-daylight.
-                // Transition data tends to start with a transition to daylight, so just
-                // copying the first transition would assume the opposite.
-                // http://code.google.com/p/android/issues/detail?id=14395
-                return false;
+                return null;
             }
         }
-        return mIsDsts[mTypes[transition] & 0xff] == 1;
+        int type = mTypes[transition] & 0xff;
+        int end = (transition + 1 < mTransitions.length)
+                ? mTransitions[transition + 1]
+                : Integer.MAX_VALUE;
+        interval = new Interval(mTransitions[transition], end, mOffsets[type] * 1000,
+                mIsDsts[type] == 1);
+        mLastInterval = interval;
+        return interval;
+    }
+
+    /**
+     * The half-open range {@code [start, end)} of unix seconds between two
+     * transitions, with its offset from the raw offset in milliseconds.
+     */
+    private static final class Interval {
+        final int start;
+        final int end;
+        final int offset;
+        final boolean isDst;
+
+        Interval(int start, int end, int offset, boolean isDst) {
+            this.start = start;
+            this.end = end;
+            this.offset = offset;
+            this.isDst = isDst;
+        }
     }
 
     @Override public int getRawOffset() {
@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
 import libcore.io.BufferIterator;
 import libcore.io.ErrnoException;
 import libcore.io.IoUtils;
@@ -87,6 +88,14 @@ public final class ZoneInfoDB {
         readIndex();
     }
 
+    /**
+     * Zones that have already been parsed, by id. These are never handed out
+     * directly: callers get a clone, which shares the prototype's immutable
+     * transition data. There are only a few hundred ids, so this isn't bounded.
+     */
+    private static final ConcurrentHashMap<String, ZoneInfo> cache =
+            new ConcurrentHashMap<String, ZoneInfo>();
+
     private ZoneInfoDB() {
     }
 
@@ -180,7 +189,7 @@ public final class ZoneInfoDB {
         }
     }
 
-    private static TimeZone makeTimeZone(String id) throws IOException {
+    private static ZoneInfo makeTimeZone(String id) throws IOException {
         // Work out where in the big data file this time zone is.
         int index = Arrays.binarySearch(ids, id);
         if (index < 0) {
@@ -263,11 +272,22 @@ public final class ZoneInfoDB {
         if (id == null) {
             return null;
         }
-        try {
-            return makeTimeZone(id);
-        } catch (IOException ignored) {
-            return null;
+        ZoneInfo zone = cache.get(id);
+        if (zone == null) {
+            try {
+                zone = makeTimeZone(id);
+            } catch (IOException ignored) {
+                return null;
+            }
+            if (zone == null) {
+                return null;
+            }
+            ZoneInfo existing = cache.putIfAbsent(id, zone);
+            if (existing != null) {
+                zone = existing;
+            }
         }
+        return (TimeZone) zone.clone();
     }
 
     public static String getVersion() {
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.security.asn1;
+
+import java.io.IOException;
+
+/**
+ * Wraps an ASN.1 type so that its values are decoded on first access.
+ *
+ * <p>Decoding walks the encoding in verify mode, so malformed encodings are
+ * still rejected immediately, but no objects are created for the value.
+ * Instead a {@link Value} is returned that holds a copy of the encoding
+ * and decodes it when {@link Value#get} is first called. This suits
+ * components that are large and often not needed, such as the extensions of
+ * a certificate or the entries of a CRL.
+ *
+ * <p>Encoding is delegated to the wrapped type and expects the decoded
+ * value, not a {@code Value}.
+ */
+public final class ASN1Lazy extends ASN1Type {
+
+    private final ASN1Type type;
+
+    /**
+     * Constructs a lazy variant of {@code type}.
+     *
+     * @throws IllegalArgumentException if type has no tag of its own, like
+     *     ANY or CHOICE
+     */
+    public ASN1Lazy(ASN1Type type) {
+        super(type.id & 0xC0, type.id & 0x1F);
+        if (type instanceof ASN1Any || type instanceof ASN1Choice) {
+            throw new IllegalArgumentException("type has no tag");
+        }
+        this.type = type;
+    }
+
+    public boolean checkTag(int identifier) {
+        return type.checkTag(identifier);
+    }
+
+    public Object decode(BerInputStream in) throws IOException {
+        int begOffset = in.tagOffset;
+        boolean isVerify = in.isVerify;
+        in.isVerify = true;
+        try {
+            type.decode(in);
+        } finally {
+            in.isVerify = isVerify;
+        }
+        // verify mode doesn't restore the tag offset of constructed types
+        in.tagOffset = begOffset;
+
+        if (isVerify) {
+            return null;
+        }
+        // copy the encoding so the value doesn't keep the whole input alive
+        byte[] encoding = new byte[in.getOffset() - begOffset];
+        System.arraycopy(in.getBuffer(), begOffset, encoding, 0, encoding.length);
+        in.content = new Value(type, encoding, in instanceof DerInputStream);
+        return getDecodedObject(in);
+    }
+
+    public void encodeASN(BerOutputStream out) {
+        type.encodeASN(out);
+    }
+
+    public void encodeContent(BerOutputStream out) {
+        type.encodeContent(out);
+    }
+
+    public void setEncodingContent(BerOutputStream out) {
+        type.setEncodingContent(out);
+    }
+
+    @Override public int getEncodedLength(BerOutputStream out) {
+        return type.getEncodedLength(out);
+    }
+
+    /**
+     * A value whose encoding has been verified but not yet decoded.
+     */
+    public static final class Value {
+        private final ASN1Type type;
+        private final boolean der;
+
+        /** The value's encoding, or null once decoded. Guarded by this. */
+        private byte[] encoding;
+        private Object value;
+
+        Value(ASN1Type type, byte[] encoding, boolean der) {
+            this.type = type;
+            this.encoding = encoding;
+            this.der = der;
+        }
+
+        /**
+         * Returns the decoded value, decoding it on the first call.
+         */
+        public synchronized Object get() {
+            if (encoding != null) {
+                try {
+                    BerInputStream in = der
+                            ? new DerInputStream(encoding)
+                            : new BerInputStream(encoding);
+                    value = type.decode(in);
+                } catch (IOException e) {
+                    // The encoding was verified when it was first read.
+                    throw new IllegalStateException("Failed to decode " + type, e);
+                }
+                encoding = null;
+            }
+            return value;
+        }
+
+        /**
+         * Returns a new decoder positioned at the start of the encoding, or
+         * null if it has already been decoded. This allows callers to scan
+         * the encoding without decoding all of it.
+         */
+        public synchronized BerInputStream newDecoder() throws IOException {
+            if (encoding == null) {
+                return null;
+            }
+            return der ? new DerInputStream(encoding) : new BerInputStream(encoding);
+        }
+    }
+}
@@ -239,13 +239,18 @@ public class X509CRLImpl extends X509CRL {
         if (certificate == null) {
             throw new NullPointerException();
         }
+        BigInteger serialN = certificate.getSerialNumber();
         if (!entriesRetrieved) {
+            // most certificates aren't revoked; rule that out without
+            // decoding every entry
+            if (!tbsCertList.containsSerialNumber(serialN)) {
+                return null;
+            }
             retrieveEntries();
         }
         if (entries == null) {
             return null;
         }
-        BigInteger serialN = certificate.getSerialNumber();
         if (isIndirectCRL) {
             // search in indirect crl
             X500Principal certIssuer = certificate.getIssuerX500Principal();
@@ -292,6 +297,9 @@ public class X509CRLImpl extends X509CRL {
      */
     public X509CRLEntry getRevokedCertificate(BigInteger serialNumber) {
         if (!entriesRetrieved) {
+            if (serialNumber != null && !tbsCertList.containsSerialNumber(serialNumber)) {
+                return null;
+            }
             retrieveEntries();
         }
         if (entries == null) {
@@ -71,7 +71,6 @@ public final class X509CertImpl extends X509Certificate {
     // cache values retrieved from the certificate object,
     // initialized using the "single-check idiom".
     private final TBSCertificate tbsCert;
-    private final Extensions extensions;
     private volatile long notBefore = -1;
     private volatile long notAfter = -1;
     private volatile BigInteger serialNumber;
@@ -99,9 +98,9 @@ public final class X509CertImpl extends X509Certificate {
         try {
             // decode the Certificate object
             this.certificate = (Certificate) Certificate.ASN1.decode(in);
-            // cache the values of TBSCertificate and Extensions
+            // cache the value of TBSCertificate; its extensions are
+            // only decoded when first asked for
             this.tbsCert = certificate.getTbsCertificate();
-            this.extensions = tbsCert.getExtensions();
         } catch (IOException e) {
             throw new CertificateException(e);
         }
@@ -113,9 +112,9 @@ public final class X509CertImpl extends X509Certificate {
      */
     public X509CertImpl(Certificate certificate) {
         this.certificate = certificate;
-        // cache the values of TBSCertificate and Extensions
+        // cache the value of TBSCertificate; its extensions are
+        // only decoded when first asked for
         this.tbsCert = certificate.getTbsCertificate();
-        this.extensions = tbsCert.getExtensions();
     }
 
     /**
@@ -285,6 +284,7 @@ public final class X509CertImpl extends X509Certificate {
     }
 
     public boolean[] getKeyUsage() {
+        Extensions extensions = tbsCert.getExtensions();
         if (extensions == null) {
             return null;
         }
@@ -293,6 +293,7 @@ public final class X509CertImpl extends X509Certificate {
 
     public List<String> getExtendedKeyUsage()
                                 throws CertificateParsingException {
+        Extensions extensions = tbsCert.getExtensions();
         if (extensions == null) {
             return null;
         }
@@ -304,6 +305,7 @@ public final class X509CertImpl extends X509Certificate {
     }
 
     public int getBasicConstraints() {
+        Extensions extensions = tbsCert.getExtensions();
         if (extensions == null) {
             return Integer.MAX_VALUE;
         }
@@ -311,6 +313,7 @@ public final class X509CertImpl extends X509Certificate {
     }
 
     public Collection<List<?>> getSubjectAlternativeNames() throws CertificateParsingException {
+        Extensions extensions = tbsCert.getExtensions();
         if (extensions == null) {
             return null;
         }
@@ -329,6 +332,7 @@ public final class X509CertImpl extends X509Certificate {
      * method documentation for more information.
      */
     public Collection<List<?>> getIssuerAlternativeNames() throws CertificateParsingException {
+        Extensions extensions = tbsCert.getExtensions();
         if (extensions == null) {
             return null;
         }
@@ -410,6 +414,7 @@ public final class X509CertImpl extends X509Certificate {
     }
 
     @Override public Set<String> getNonCriticalExtensionOIDs() {
+        Extensions extensions = tbsCert.getExtensions();
         if (extensions == null) {
             return null;
         }
@@ -418,6 +423,7 @@ public final class X509CertImpl extends X509Certificate {
     }
 
     @Override public Set<String> getCriticalExtensionOIDs() {
+        Extensions extensions = tbsCert.getExtensions();
         if (extensions == null) {
             return null;
         }
@@ -426,6 +432,7 @@ public final class X509CertImpl extends X509Certificate {
     }
 
     @Override public byte[] getExtensionValue(String oid) {
+        Extensions extensions = tbsCert.getExtensions();
         if (extensions == null) {
             return null;
         }
@@ -435,6 +442,7 @@ public final class X509CertImpl extends X509Certificate {
     }
 
     @Override public boolean hasUnsupportedCriticalExtension() {
+        Extensions extensions = tbsCert.getExtensions();
         if (extensions == null) {
             return false;
         }
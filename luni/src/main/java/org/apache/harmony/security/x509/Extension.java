@@ -30,6 +30,7 @@ import org.apache.harmony.security.asn1.ASN1Oid;
 import org.apache.harmony.security.asn1.ASN1Sequence;
 import org.apache.harmony.security.asn1.ASN1Type;
 import org.apache.harmony.security.asn1.BerInputStream;
+import org.apache.harmony.security.asn1.DerInputStream;
 import org.apache.harmony.security.asn1.ObjectIdentifier;
 import org.apache.harmony.security.utils.Array;
 
@@ -348,6 +349,32 @@ public final class Extension {
     }
 
 
+    /**
+     * Decodes the value of a verified Key Usage or Basic Constraints
+     * extension, throwing if it is malformed. Other extensions are ignored.
+     */
+    private static void verifyDecodedValue(byte[] encoding, int offset, int length)
+            throws IOException {
+        BerInputStream in = new DerInputStream(encoding, offset, length);
+        in.next();
+        int[] oid = (int[]) ASN1Oid.getInstance().decode(in);
+        boolean keyUsage = Arrays.equals(oid, KEY_USAGE);
+        if (!keyUsage && !Arrays.equals(oid, BASIC_CONSTRAINTS)) {
+            return;
+        }
+        in.next();
+        if (ASN1Boolean.getInstance().checkTag(in.tag)) {
+            ASN1Boolean.getInstance().decode(in);
+            in.next();
+        }
+        byte[] extnValue = (byte[]) ASN1OctetString.getInstance().decode(in);
+        if (keyUsage) {
+            new KeyUsage(extnValue);
+        } else {
+            new BasicConstraints(extnValue);
+        }
+    }
+
     /**
      * X.509 Extension encoder/decoder.
      */
@@ -367,6 +394,21 @@ public final class Extension {
             setDefault(Boolean.FALSE, 1);
         }
 
+        /**
+         * Key Usage and Basic Constraints values are decoded with the
+         * extension, so malformed ones must be rejected even when the
+         * extension is only verified, as it is when decoded lazily.
+         */
+        @Override public Object decode(BerInputStream in) throws IOException {
+            int tagOffset = in.getTagOffset();
+            Object decoded = super.decode(in);
+            if (decoded == null) {
+                // verify mode: nothing was decoded
+                verifyDecodedValue(in.getBuffer(), tagOffset, in.getOffset() - tagOffset);
+            }
+            return decoded;
+        }
+
         @Override protected Object getDecodedObject(BerInputStream in) throws IOException {
             Object[] values = (Object[]) in.content;
 
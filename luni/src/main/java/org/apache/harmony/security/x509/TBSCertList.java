@@ -30,6 +30,7 @@ import java.util.List;
 import javax.security.auth.x500.X500Principal;
 import org.apache.harmony.security.asn1.ASN1Explicit;
 import org.apache.harmony.security.asn1.ASN1Integer;
+import org.apache.harmony.security.asn1.ASN1Lazy;
 import org.apache.harmony.security.asn1.ASN1Sequence;
 import org.apache.harmony.security.asn1.ASN1SequenceOf;
 import org.apache.harmony.security.asn1.ASN1Type;
@@ -75,8 +76,11 @@ public final class TBSCertList {
     private final Date thisUpdate;
     /** the value of nextUpdate of the structure */
     private final Date nextUpdate;
-    /** the value of revokedCertificates of the structure */
-    private final List<RevokedCertificate> revokedCertificates;
+    /**
+     * the value of revokedCertificates of the structure, or an
+     * ASN1Lazy.Value decoding to it
+     */
+    private final Object revokedCertificates;
     /** the value of crlExtensions field of the structure */
     private final Extensions crlExtensions;
     /** the ASN.1 encoded form of TBSCertList */
@@ -193,7 +197,7 @@ public final class TBSCertList {
     /** Constructs the object with associated ASN.1 encoding */
     private TBSCertList(int version, AlgorithmIdentifier signature,
             Name issuer, Date thisUpdate, Date nextUpdate,
-            List<RevokedCertificate> revokedCertificates, Extensions crlExtensions,
+            Object revokedCertificates, Extensions crlExtensions,
             byte[] encoding) {
         this.version = version;
         this.signature = signature;
@@ -243,8 +247,98 @@ public final class TBSCertList {
     /**
      * Returns the value of revokedCertificates field of the structure.
      */
+    @SuppressWarnings("unchecked")
     public List<RevokedCertificate> getRevokedCertificates() {
-        return revokedCertificates;
+        Object revokedCertificates = this.revokedCertificates;
+        if (revokedCertificates instanceof ASN1Lazy.Value) {
+            return (List<RevokedCertificate>) ((ASN1Lazy.Value) revokedCertificates).get();
+        }
+        return (List<RevokedCertificate>) revokedCertificates;
+    }
+
+    /**
+     * Returns true if revokedCertificates has an entry for {@code
+     * serialNumber}, whatever the entry's certificate issuer. Until the list
+     * has been decoded, this scans its encoding and compares serial numbers
+     * in place, so large CRLs can be checked without creating an object per
+     * entry.
+     */
+    public boolean containsSerialNumber(BigInteger serialNumber) {
+        if (revokedCertificates instanceof ASN1Lazy.Value) {
+            try {
+                BerInputStream in = ((ASN1Lazy.Value) revokedCertificates).newDecoder();
+                if (in != null) {
+                    return containsSerialNumber(in, serialNumber);
+                }
+            } catch (IOException e) {
+                // fall back to decoding the list
+            }
+        }
+        List<RevokedCertificate> list = getRevokedCertificates();
+        if (list == null) {
+            return false;
+        }
+        for (RevokedCertificate revokedCertificate : list) {
+            if (serialNumber.equals(revokedCertificate.getUserCertificate())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Scans an encoded revokedCertificates list for a serial number. The
+     * decoder must be positioned at the start of the list's content.
+     * Minimally encoded integers are compared directly with {@code
+     * BigInteger.toByteArray}; any others are decoded before comparing.
+     */
+    private static boolean containsSerialNumber(BerInputStream in, BigInteger serialNumber)
+            throws IOException {
+        byte[] encodedSerialNumber = serialNumber.toByteArray();
+        byte[] buffer = in.getBuffer();
+        int end = in.getEndOffset();
+        while (in.getOffset() < end) {
+            in.next(); // the entry's SEQUENCE
+            int entryEnd = in.getEndOffset();
+            in.next(); // userCertificate
+            int start = in.getOffset();
+            int length = in.getEndOffset() - start;
+            if (!isMinimal(buffer, start, length)) {
+                byte[] value = new byte[length];
+                System.arraycopy(buffer, start, value, 0, length);
+                if (length > 0 && serialNumber.equals(new BigInteger(value))) {
+                    return true;
+                }
+            } else if (length == encodedSerialNumber.length) {
+                int i = 0;
+                while (i < length && buffer[start + i] == encodedSerialNumber[i]) {
+                    i++;
+                }
+                if (i == length) {
+                    return true;
+                }
+            }
+            // skip userCertificate and the rest of the entry
+            in.readContent();
+            while (in.getOffset() < entryEnd) {
+                in.next();
+                in.readContent();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the integer encoded in {@code buffer} has no
+     * redundant leading octets, as {@code BigInteger.toByteArray} produces.
+     */
+    private static boolean isMinimal(byte[] buffer, int start, int length) {
+        if (length < 2) {
+            return length == 1;
+        }
+        int first = buffer[start];
+        int second = buffer[start + 1];
+        return !(first == 0 && second >= 0) && !(first == -1 && second < 0);
     }
 
     /**
@@ -278,14 +372,16 @@ public final class TBSCertList {
                     ? that.nextUpdate == null
                     : nextUpdate.getTime() / 1000
                         == that.nextUpdate.getTime() / 1000)
-            && ((revokedCertificates == null || that.revokedCertificates == null)
-                && revokedCertificates == that.revokedCertificates
-                || revokedCertificates.equals(that.revokedCertificates))
+            && equals(getRevokedCertificates(), that.getRevokedCertificates())
             && (crlExtensions == null
                     ? that.crlExtensions == null
                     : crlExtensions.equals(that.crlExtensions));
     }
 
+    private static boolean equals(List<RevokedCertificate> a, List<RevokedCertificate> b) {
+        return (a == null) ? b == null : a.equals(b);
+    }
+
     @Override public int hashCode() {
         return ((version * 37 + signature.hashCode()) * 37
                 + Arrays.hashCode(issuer.getEncoded())) * 37
@@ -300,6 +396,7 @@ public final class TBSCertList {
         sb.append("\nIssuer: ").append(issuer.getName(X500Principal.RFC2253));
         sb.append("\n\nThis Update: ").append(thisUpdate);
         sb.append("\nNext Update: ").append(nextUpdate).append('\n');
+        List<RevokedCertificate> revokedCertificates = getRevokedCertificates();
         if (revokedCertificates != null) {
             sb.append("\nRevoked Certificates: ").append(revokedCertificates.size()).append(" [");
             int number = 1;
@@ -326,7 +423,8 @@ public final class TBSCertList {
             Name.ASN1, // issuer
             Time.ASN1, // thisUpdate
             Time.ASN1, // nextUpdate
-            new ASN1SequenceOf(RevokedCertificate.ASN1), // revokedCertificates
+            // decoded on first access; see containsSerialNumber
+            new ASN1Lazy(new ASN1SequenceOf(RevokedCertificate.ASN1)), // revokedCertificates
             new ASN1Explicit(0, Extensions.ASN1) // crlExtensions
                 }) {
         {
@@ -346,7 +444,7 @@ public final class TBSCertList {
                         (Name) values[2],
                         (Date) values[3],
                         (Date) values[4],
-                        (List<RevokedCertificate>) values[5],
+                        values[5],
                         (Extensions) values[6],
                         in.getEncoded()
                     );
@@ -360,7 +458,7 @@ public final class TBSCertList {
             values[2] = tbs.issuer;
             values[3] = tbs.thisUpdate;
             values[4] = tbs.nextUpdate;
-            values[5] = tbs.revokedCertificates;
+            values[5] = tbs.getRevokedCertificates();
             values[6] = tbs.crlExtensions;
         }
     };
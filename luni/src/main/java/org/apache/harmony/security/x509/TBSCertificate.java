@@ -28,6 +28,7 @@ import org.apache.harmony.security.asn1.ASN1BitString;
 import org.apache.harmony.security.asn1.ASN1Explicit;
 import org.apache.harmony.security.asn1.ASN1Implicit;
 import org.apache.harmony.security.asn1.ASN1Integer;
+import org.apache.harmony.security.asn1.ASN1Lazy;
 import org.apache.harmony.security.asn1.ASN1Sequence;
 import org.apache.harmony.security.asn1.ASN1Type;
 import org.apache.harmony.security.asn1.BerInputStream;
@@ -80,8 +81,8 @@ public final class TBSCertificate {
     private final boolean[] issuerUniqueID;
     /** the value of subjectUniqueID field of the structure */
     private final boolean[] subjectUniqueID;
-    /** the value of extensions field of the structure */
-    private final Extensions extensions;
+    /** the value of extensions field of the structure, or an ASN1Lazy.Value decoding to it */
+    private final Object extensions;
     /** the ASN.1 encoded form of TBSCertificate */
     private byte[] encoding;
 
@@ -91,6 +92,16 @@ public final class TBSCertificate {
                           SubjectPublicKeyInfo subjectPublicKeyInfo,
                           boolean[] issuerUniqueID, boolean[] subjectUniqueID,
                           Extensions extensions) {
+        this(version, serialNumber, signature, issuer, validity, subject,
+             subjectPublicKeyInfo, issuerUniqueID, subjectUniqueID, (Object) extensions);
+    }
+
+    private TBSCertificate(int version, BigInteger serialNumber,
+                          AlgorithmIdentifier signature, Name issuer,
+                          Validity validity, Name subject,
+                          SubjectPublicKeyInfo subjectPublicKeyInfo,
+                          boolean[] issuerUniqueID, boolean[] subjectUniqueID,
+                          Object extensions) {
         this.version = version;
         this.serialNumber = serialNumber;
         this.signature = signature;
@@ -108,7 +119,7 @@ public final class TBSCertificate {
                           Validity validity, Name subject,
                           SubjectPublicKeyInfo subjectPublicKeyInfo,
                           boolean[] issuerUniqueID, boolean[] subjectUniqueID,
-                          Extensions extensions, byte[] encoding) {
+                          Object extensions, byte[] encoding) {
         this(version, serialNumber, signature, issuer, validity, subject,
              subjectPublicKeyInfo, issuerUniqueID, subjectUniqueID, extensions);
         this.encoding = encoding;
@@ -181,7 +192,17 @@ public final class TBSCertificate {
      * Returns the value of extensions field of the structure.
      */
     public Extensions getExtensions() {
-        return extensions;
+        return (Extensions) resolve(extensions);
+    }
+
+    /**
+     * Returns the decoded form of a field that may have been decoded lazily.
+     */
+    private static Object resolve(Object field) {
+        if (field instanceof ASN1Lazy.Value) {
+            return ((ASN1Lazy.Value) field).get();
+        }
+        return field;
     }
 
     /**
@@ -217,6 +238,7 @@ public final class TBSCertificate {
                 sb.append(b ? '1' : '0');
             }
         }
+        Extensions extensions = getExtensions();
         if (extensions != null) {
             sb.append("\n\n  Extensions: ");
             sb.append("[\n");
@@ -227,7 +249,9 @@ public final class TBSCertificate {
     }
 
     /**
-     * X.509 TBSCertificate encoder/decoder.
+     * X.509 TBSCertificate encoder/decoder. The extensions are often not
+     * needed, so they are decoded on first access. Their encoding and the
+     * Key Usage and Basic Constraints values are still checked up front.
      */
     public static final ASN1Sequence ASN1 = new ASN1Sequence(new ASN1Type[] {
             new ASN1Explicit(0, ASN1Integer.getInstance()), ASN1Integer.getInstance(),
@@ -235,7 +259,7 @@ public final class TBSCertificate {
             Validity.ASN1, Name.ASN1, SubjectPublicKeyInfo.ASN1,
             new ASN1Implicit(1, ASN1BitString.getInstance()),
             new ASN1Implicit(2, ASN1BitString.getInstance()),
-            new ASN1Explicit(3, Extensions.ASN1)}) {
+            new ASN1Lazy(new ASN1Explicit(3, Extensions.ASN1))}) {
         {
             setDefault(new byte[] {0}, 0);
             setOptional(7);
@@ -260,7 +284,7 @@ public final class TBSCertificate {
                         (SubjectPublicKeyInfo) values[6],
                         issuerUniqueID,
                         subjectUniqueID,
-                        (Extensions) values[9],
+                        values[9],
                         in.getEncoded()
                     );
         }
@@ -280,7 +304,7 @@ public final class TBSCertificate {
             if (tbs.subjectUniqueID != null) {
                 values[8] = new BitString(tbs.subjectUniqueID);
             }
-            values[9] = tbs.extensions;
+            values[9] = tbs.getExtensions();
         }
     };
 }
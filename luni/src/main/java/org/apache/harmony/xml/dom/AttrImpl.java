@@ -105,10 +105,12 @@ public final class AttrImpl extends NodeImpl implements Attr {
     @Override
     public void setPrefix(String prefix) {
         this.prefix = validatePrefix(prefix, namespaceAware, namespaceURI);
+        documentChanged();
     }
 
     public void setValue(String value) throws DOMException {
         this.value = value;
+        documentChanged();
     }
 
     public TypeInfo getSchemaTypeInfo() {
@@ -73,6 +73,19 @@ public final class DocumentImpl extends InnerNodeImpl implements Document {
      */
     private WeakHashMap<NodeImpl, Map<String, UserData>> nodeToUserData;
 
+    /**
+     * The number of changes to this document's elements and attributes. Live
+     * element lists compare this with the count they were collected at.
+     */
+    int modCount;
+
+    /**
+     * A lazily built index of this document's elements, or null if the
+     * document has changed since it was last needed. Like Xerces, we rebuild
+     * on demand rather than maintain the index on every mutation.
+     */
+    private ElementIndex elementIndex;
+
     public DocumentImpl(DOMImplementationImpl impl, String namespaceURI,
             String qualifiedName, DocumentType doctype, String inputEncoding) {
         super(null);
@@ -381,21 +394,36 @@ public final class DocumentImpl extends InnerNodeImpl implements Document {
     }
 
     public Element getElementById(String elementId) {
-        ElementImpl root = (ElementImpl) getDocumentElement();
-
-        return (root == null ? null : root.getElementById(elementId));
+        return getElementIndex().getElementById(elementId);
     }
 
     public NodeList getElementsByTagName(String name) {
-        NodeListImpl result = new NodeListImpl();
-        getElementsByTagName(result, name);
-        return result;
+        return new ElementListImpl(this, false, null, name);
     }
 
     public NodeList getElementsByTagNameNS(String namespaceURI, String localName) {
-        NodeListImpl result = new NodeListImpl();
-        getElementsByTagNameNS(result, namespaceURI, localName);
-        return result;
+        return new ElementListImpl(this, true, namespaceURI, localName);
+    }
+
+    /**
+     * Returns the index of this document's elements, building it if this
+     * document has changed since it was last built.
+     */
+    ElementIndex getElementIndex() {
+        if (elementIndex == null) {
+            elementIndex = new ElementIndex(this);
+        }
+        return elementIndex;
+    }
+
+    /**
+     * Discards the element index and invalidates live element lists. Called
+     * when nodes are inserted or removed, and when elements or attributes are
+     * renamed or changed.
+     */
+    void elementsChanged() {
+        modCount++;
+        elementIndex = null;
     }
 
     public DOMImplementation getImplementation() {
@@ -44,7 +44,8 @@ public class ElementImpl extends InnerNodeImpl implements Element {
     String prefix;
     String localName;
 
-    private List<AttrImpl> attributes = new ArrayList<AttrImpl>();
+    // Read by ElementIndex.
+    List<AttrImpl> attributes = new ArrayList<AttrImpl>();
 
     ElementImpl(DocumentImpl document, String namespaceURI, String qualifiedName) {
         super(document);
@@ -124,50 +125,12 @@ public class ElementImpl extends InnerNodeImpl implements Element {
         return new ElementAttrNamedNodeMapImpl();
     }
 
-    /**
-     * This implementation walks the entire document looking for an element
-     * with the given ID attribute. We should consider adding an index to speed
-     * navigation of large documents.
-     */
-    Element getElementById(String name) {
-        for (Attr attr : attributes) {
-            if (attr.isId() && name.equals(attr.getValue())) {
-                return this;
-            }
-        }
-
-        /*
-         * TODO: Remove this behavior.
-         * The spec explicitly says that this is a bad idea. From
-         * Document.getElementById(): "Attributes with the name "ID"
-         * or "id" are not of type ID unless so defined.
-         */
-        if (name.equals(getAttribute("id"))) {
-            return this;
-        }
-
-        for (NodeImpl node : children) {
-            if (node.getNodeType() == Node.ELEMENT_NODE) {
-                Element element = ((ElementImpl) node).getElementById(name);
-                if (element != null) {
-                    return element;
-                }
-            }
-        }
-
-        return null;
-    }
-
     public NodeList getElementsByTagName(String name) {
-        NodeListImpl result = new NodeListImpl();
-        getElementsByTagName(result, name);
-        return result;
+        return new ElementListImpl(this, false, null, name);
     }
 
     public NodeList getElementsByTagNameNS(String namespaceURI, String localName) {
-        NodeListImpl result = new NodeListImpl();
-        getElementsByTagNameNS(result, namespaceURI, localName);
-        return result;
+        return new ElementListImpl(this, true, namespaceURI, localName);
     }
 
     @Override
@@ -218,6 +181,7 @@ public class ElementImpl extends InnerNodeImpl implements Element {
 
         if (i != -1) {
             attributes.remove(i);
+            documentChanged();
         }
     }
 
@@ -227,6 +191,7 @@ public class ElementImpl extends InnerNodeImpl implements Element {
 
         if (i != -1) {
             attributes.remove(i);
+            documentChanged();
         }
     }
 
@@ -239,6 +204,7 @@ public class ElementImpl extends InnerNodeImpl implements Element {
 
         attributes.remove(oldAttrImpl);
         oldAttrImpl.ownerElement = null;
+        documentChanged();
 
         return oldAttrImpl;
     }
@@ -287,6 +253,7 @@ public class ElementImpl extends InnerNodeImpl implements Element {
 
         attributes.add(newAttrImpl);
         newAttrImpl.ownerElement = this;
+        documentChanged();
 
         return oldAttrImpl;
     }
@@ -312,6 +279,7 @@ public class ElementImpl extends InnerNodeImpl implements Element {
 
         attributes.add(newAttrImpl);
         newAttrImpl.ownerElement = this;
+        documentChanged();
 
         return oldAttrImpl;
     }
@@ -319,6 +287,7 @@ public class ElementImpl extends InnerNodeImpl implements Element {
     @Override
     public void setPrefix(String prefix) {
         this.prefix = validatePrefix(prefix, namespaceAware, namespaceURI);
+        documentChanged();
     }
 
     public class ElementAttrNamedNodeMapImpl implements NamedNodeMap {
@@ -354,6 +323,7 @@ public class ElementImpl extends InnerNodeImpl implements Element {
                 throw new DOMException(DOMException.NOT_FOUND_ERR, null);
             }
 
+            ElementImpl.this.documentChanged();
             return ElementImpl.this.attributes.remove(i);
         }
 
@@ -365,6 +335,7 @@ public class ElementImpl extends InnerNodeImpl implements Element {
                 throw new DOMException(DOMException.NOT_FOUND_ERR, null);
             }
 
+            ElementImpl.this.documentChanged();
             return ElementImpl.this.attributes.remove(i);
         }
 
@@ -397,6 +368,7 @@ public class ElementImpl extends InnerNodeImpl implements Element {
                     "No such attribute: " + name);
         }
         attr.isId = isId;
+        documentChanged();
     }
 
     public void setIdAttributeNS(String namespaceURI, String localName,
@@ -407,9 +379,12 @@ public class ElementImpl extends InnerNodeImpl implements Element {
                     "No such attribute: " + namespaceURI +  " " + localName);
         }
         attr.isId = isId;
+        documentChanged();
     }
 
     public void setIdAttributeNode(Attr idAttr, boolean isId) throws DOMException {
-        ((AttrImpl) idAttr).isId = isId;
+        AttrImpl attr = (AttrImpl) idAttr;
+        attr.isId = isId;
+        attr.documentChanged();
     }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.xml.dom;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import libcore.util.Objects;
+import org.w3c.dom.Node;
+
+/**
+ * An index of a document's elements by tag name, local name and ID. It is
+ * built with a single preorder walk of the document and is discarded by the
+ * document on the next change to its elements or their attributes. This makes
+ * repeated lookups on an unchanging document cheap without costing every
+ * mutation an index update.
+ *
+ * <p>All lists are in document order and must not be modified.
+ */
+final class ElementIndex {
+
+    private final List<NodeImpl> all = new ArrayList<NodeImpl>();
+    private final Map<String, List<NodeImpl>> byName = new HashMap<String, List<NodeImpl>>();
+    private final Map<String, List<NodeImpl>> byLocalName
+            = new HashMap<String, List<NodeImpl>>();
+    private final Map<String, ElementImpl> byId = new HashMap<String, ElementImpl>();
+
+    ElementIndex(DocumentImpl document) {
+        index(document);
+    }
+
+    private void index(InnerNodeImpl parent) {
+        for (LeafNodeImpl node : parent.children) {
+            if (node.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+
+            ElementImpl element = (ElementImpl) node;
+            all.add(element);
+            add(byName, element.getNodeName(), element);
+            add(byLocalName, element.getLocalName(), element);
+
+            // The first element in document order wins, as with a tree walk.
+            for (AttrImpl attr : element.attributes) {
+                if (attr.isId() && !byId.containsKey(attr.getValue())) {
+                    byId.put(attr.getValue(), element);
+                }
+            }
+            /*
+             * TODO: Remove this behavior.
+             * The spec explicitly says that this is a bad idea. From
+             * Document.getElementById(): "Attributes with the name "ID"
+             * or "id" are not of type ID unless so defined.
+             */
+            String id = element.getAttribute("id");
+            if (!byId.containsKey(id)) {
+                byId.put(id, element);
+            }
+
+            index(element);
+        }
+    }
+
+    private static void add(Map<String, List<NodeImpl>> map, String key, ElementImpl element) {
+        List<NodeImpl> list = map.get(key);
+        if (list == null) {
+            list = new ArrayList<NodeImpl>();
+            map.put(key, list);
+        }
+        list.add(element);
+    }
+
+    List<NodeImpl> getElementsByTagName(String name) {
+        if ("*".equals(name)) {
+            return all;
+        }
+        List<NodeImpl> result = byName.get(name);
+        return result != null ? result : Collections.<NodeImpl>emptyList();
+    }
+
+    List<NodeImpl> getElementsByTagNameNS(String namespaceURI, String localName) {
+        List<NodeImpl> candidates = "*".equals(localName) ? all : byLocalName.get(localName);
+        if (candidates == null) {
+            return Collections.emptyList();
+        }
+        if ("*".equals(namespaceURI)) {
+            return candidates;
+        }
+
+        List<NodeImpl> result = new ArrayList<NodeImpl>();
+        for (NodeImpl element : candidates) {
+            if (Objects.equal(namespaceURI, element.getNamespaceURI())) {
+                result.add(element);
+            }
+        }
+        return result;
+    }
+
+    ElementImpl getElementById(String elementId) {
+        return byId.get(elementId);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.xml.dom;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * The live list returned by getElementsByTagName() and
+ * getElementsByTagNameNS(). The matching elements are collected on first use
+ * and collected again only after the owning document has changed. Lists rooted
+ * at a document are served from its {@link ElementIndex}; lists rooted at an
+ * element walk that element's subtree.
+ */
+final class ElementListImpl implements NodeList {
+
+    private final InnerNodeImpl root;
+    private final boolean namespaceAware;
+    private final String namespaceURI;
+    private final String name;
+
+    private List<NodeImpl> elements;
+    private DocumentImpl document;
+    private int modCount;
+
+    /**
+     * @param namespaceAware true to match {@code namespaceURI} and the local
+     *     name, false to ignore {@code namespaceURI} and match the node name.
+     */
+    ElementListImpl(InnerNodeImpl root, boolean namespaceAware, String namespaceURI,
+            String name) {
+        this.root = root;
+        this.namespaceAware = namespaceAware;
+        this.namespaceURI = namespaceURI;
+        this.name = name;
+    }
+
+    private List<NodeImpl> elements() {
+        DocumentImpl current = root.document;
+        if (elements != null && current != null
+                && current == document && current.modCount == modCount) {
+            return elements;
+        }
+
+        if (root == current) {
+            ElementIndex index = current.getElementIndex();
+            elements = namespaceAware
+                    ? index.getElementsByTagNameNS(namespaceURI, name)
+                    : index.getElementsByTagName(name);
+        } else {
+            elements = new ArrayList<NodeImpl>();
+            if (namespaceAware) {
+                root.getElementsByTagNameNS(elements, namespaceURI, name);
+            } else {
+                root.getElementsByTagName(elements, name);
+            }
+        }
+        document = current;
+        modCount = current != null ? current.modCount : 0;
+        return elements;
+    }
+
+    public int getLength() {
+        return elements().size();
+    }
+
+    public Node item(int index) {
+        List<NodeImpl> elements = elements();
+        return index >= 0 && index < elements.size() ? elements.get(index) : null;
+    }
+}
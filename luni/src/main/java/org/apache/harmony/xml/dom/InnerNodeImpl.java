@@ -52,14 +52,22 @@ public abstract class InnerNodeImpl extends LeafNodeImpl {
         return insertChildAt(newChild, children.size());
     }
 
+    /**
+     * Returns a live view of this node's children. The view reads through to
+     * {@link #children}, so it is cheap to create and reflects later changes.
+     */
     public NodeList getChildNodes() {
-        NodeListImpl list = new NodeListImpl();
+        return new ChildNodeList();
+    }
 
-        for (NodeImpl node : children) {
-            list.add(node);
+    private final class ChildNodeList implements NodeList {
+        public int getLength() {
+            return children.size();
         }
 
-        return list;
+        public Node item(int index) {
+            return index >= 0 && index < children.size() ? children.get(index) : null;
+        }
     }
 
     public Node getFirstChild() {
@@ -102,9 +110,15 @@ public abstract class InnerNodeImpl extends LeafNodeImpl {
      */
     Node insertChildAt(Node newChild, int index) throws DOMException {
         if (newChild instanceof DocumentFragment) {
-            NodeList toAdd = newChild.getChildNodes();
-            for (int i = 0; i < toAdd.getLength(); i++) {
-                insertChildAt(toAdd.item(i), index + i);
+            // Snapshot the fragment's children; inserting each one removes it
+            // from the fragment's live child list.
+            NodeList fragmentChildren = newChild.getChildNodes();
+            Node[] toAdd = new Node[fragmentChildren.getLength()];
+            for (int i = 0; i < toAdd.length; i++) {
+                toAdd[i] = fragmentChildren.item(i);
+            }
+            for (int i = 0; i < toAdd.length; i++) {
+                insertChildAt(toAdd[i], index + i);
             }
             return newChild;
         }
@@ -121,11 +135,13 @@ public abstract class InnerNodeImpl extends LeafNodeImpl {
             int oldIndex = toInsert.index;
             toInsert.parent.children.remove(oldIndex);
             toInsert.parent.refreshIndices(oldIndex);
+            toInsert.parent.documentChanged();
         }
 
         children.add(index, toInsert);
         toInsert.parent = this;
         refreshIndices(index);
+        documentChanged();
 
         return newChild;
     }
@@ -181,6 +197,7 @@ public abstract class InnerNodeImpl extends LeafNodeImpl {
         children.remove(index);
         oldChildImpl.parent = null;
         refreshIndices(index);
+        documentChanged();
 
         return oldChild;
     }
@@ -228,7 +245,7 @@ public abstract class InnerNodeImpl extends LeafNodeImpl {
                 && child.getNodeType() != Node.PROCESSING_INSTRUCTION_NODE;
     }
 
-    void getElementsByTagName(NodeListImpl out, String name) {
+    void getElementsByTagName(List<NodeImpl> out, String name) {
         for (NodeImpl node : children) {
             if (node.getNodeType() == Node.ELEMENT_NODE) {
                 ElementImpl element = (ElementImpl) node;
@@ -240,7 +257,7 @@ public abstract class InnerNodeImpl extends LeafNodeImpl {
         }
     }
 
-    void getElementsByTagNameNS(NodeListImpl out, String namespaceURI, String localName) {
+    void getElementsByTagNameNS(List<NodeImpl> out, String namespaceURI, String localName) {
         for (NodeImpl node : children) {
             if (node.getNodeType() == Node.ELEMENT_NODE) {
                 ElementImpl element = (ElementImpl) node;
@@ -71,6 +71,16 @@ public abstract class NodeImpl implements Node {
         this.document = document;
     }
 
+    /**
+     * Tells this node's document that elements, element names or attributes
+     * may have changed, invalidating its element index and any live lists.
+     */
+    final void documentChanged() {
+        if (document != null) {
+            document.elementsChanged();
+        }
+    }
+
     public Node appendChild(Node newChild) throws DOMException {
         throw new DOMException(DOMException.HIERARCHY_REQUEST_ERR, null);
     }
@@ -253,6 +263,7 @@ public abstract class NodeImpl implements Node {
             attr.namespaceURI = namespaceURI;
             attr.prefix = prefix;
             attr.localName = qualifiedName;
+            attr.documentChanged();
             break;
 
         case ELEMENT_NODE:
@@ -261,6 +272,7 @@ public abstract class NodeImpl implements Node {
             element.namespaceURI = namespaceURI;
             element.prefix = prefix;
             element.localName = qualifiedName;
+            element.documentChanged();
             break;
 
         default:
@@ -291,12 +303,14 @@ public abstract class NodeImpl implements Node {
             AttrImpl attr = (AttrImpl) node;
             attr.namespaceAware = false;
             attr.localName = name;
+            attr.documentChanged();
             break;
 
         case ELEMENT_NODE:
             ElementImpl element = (ElementImpl) node;
             element.namespaceAware = false;
             element.localName = name;
+            element.documentChanged();
             break;
 
         default:
@@ -52,7 +52,7 @@ public class NodeListImpl implements NodeList {
     }
 
     public Node item(int index) {
-        if (index >= children.size()) {
+        if (index < 0 || index >= children.size()) {
             return null;
         } else {
             return children.get(index);
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.xml.xpath;
+
+import javax.xml.xpath.XPathVariableResolver;
+import org.w3c.dom.Node;
+
+/**
+ * The context in which an expression is evaluated.
+ */
+final class Context {
+    /** The context node, or null if the expression was evaluated without one. */
+    final Node node;
+    final int position;
+    final int size;
+    final XPathVariableResolver variables;
+
+    Context(Node node, int position, int size, XPathVariableResolver variables) {
+        this.node = node;
+        this.position = position;
+        this.size = size;
+        this.variables = variables;
+    }
+
+    Context with(Node node, int position, int size) {
+        return new Context(node, position, size, variables);
+    }
+}
@@ -0,0 +1,526 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.xml.xpath;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.xml.namespace.QName;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathVariableResolver;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * A compiled XPath expression. Values are represented as {@code Boolean},
+ * {@code Double}, {@code String} and, for node sets, a {@code List<Node>}
+ * without duplicates in document order.
+ */
+abstract class Expr {
+
+    /** Static result types. */
+    static final int NODESET = 0;
+    static final int STRING = 1;
+    static final int NUMBER = 2;
+    static final int BOOLEAN = 3;
+    static final int ANY = 4;
+
+    abstract Object evaluate(Context context) throws XPathExpressionException;
+
+    /**
+     * Returns the type of this expression's value, or {@link #ANY} if it is
+     * only known at evaluation time.
+     */
+    abstract int resultType();
+
+    /**
+     * Returns true if this expression depends on the context position or
+     * size. Predicates that don't can be evaluated while nodes are selected.
+     */
+    boolean usesPosition() {
+        return false;
+    }
+
+    boolean evaluateBoolean(Context context) throws XPathExpressionException {
+        return toBoolean(evaluate(context));
+    }
+
+    double evaluateNumber(Context context) throws XPathExpressionException {
+        return toNumber(evaluate(context));
+    }
+
+    String evaluateString(Context context) throws XPathExpressionException {
+        return toString(evaluate(context));
+    }
+
+    @SuppressWarnings("unchecked") // node sets are the only lists
+    List<Node> evaluateNodeSet(Context context) throws XPathExpressionException {
+        Object value = evaluate(context);
+        if (!(value instanceof List)) {
+            throw new XPathExpressionException("Expected a node-set but was " + value);
+        }
+        return (List<Node>) value;
+    }
+
+    /**
+     * Passes the nodes of this node set expression to {@code out} in document
+     * order. Returns false if {@code out} stopped the selection.
+     */
+    boolean select(Context context, NodeCollector out) throws XPathExpressionException {
+        for (Node node : evaluateNodeSet(context)) {
+            if (!out.add(node)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the first node of this node set expression in document order,
+     * or null if it is empty.
+     */
+    Node evaluateFirst(Context context) throws XPathExpressionException {
+        NodeCollector.First first = new NodeCollector.First();
+        select(context, first);
+        return first.node;
+    }
+
+    static boolean toBoolean(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        } else if (value instanceof Double) {
+            double d = (Double) value;
+            return d != 0 && !Double.isNaN(d);
+        } else if (value instanceof String) {
+            return ((String) value).length() > 0;
+        } else {
+            return !((List<?>) value).isEmpty();
+        }
+    }
+
+    static double toNumber(Object value) {
+        if (value instanceof Double) {
+            return (Double) value;
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        } else {
+            return parseNumber(toString(value));
+        }
+    }
+
+    static String toString(Object value) {
+        if (value instanceof String) {
+            return (String) value;
+        } else if (value instanceof Double) {
+            return formatNumber((Double) value);
+        } else if (value instanceof Boolean) {
+            return value.toString();
+        } else {
+            List<?> nodes = (List<?>) value;
+            return nodes.isEmpty() ? "" : Nodes.stringValue((Node) nodes.get(0));
+        }
+    }
+
+    static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    /**
+     * Parses {@code s} as an XPath number: optional whitespace, an optional
+     * minus sign, digits with an optional decimal point, and optional
+     * whitespace. Anything else is NaN.
+     */
+    static double parseNumber(String s) {
+        int start = 0;
+        int end = s.length();
+        while (start < end && isWhitespace(s.charAt(start))) {
+            start++;
+        }
+        while (end > start && isWhitespace(s.charAt(end - 1))) {
+            end--;
+        }
+
+        int i = start;
+        if (i < end && s.charAt(i) == '-') {
+            i++;
+        }
+        int digits = 0;
+        boolean point = false;
+        for (; i < end; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                return Double.NaN;
+            }
+        }
+        return digits == 0 ? Double.NaN : Double.parseDouble(s.substring(start, end));
+    }
+
+    /**
+     * Formats {@code d} as XPath requires: integers without a decimal point
+     * and other numbers without an exponent.
+     */
+    static String formatNumber(double d) {
+        if (Double.isNaN(d)) {
+            return "NaN";
+        } else if (Double.isInfinite(d)) {
+            return d > 0 ? "Infinity" : "-Infinity";
+        } else if (d == (long) d) {
+            return Long.toString((long) d);
+        } else {
+            return new BigDecimal(Double.toString(d)).toPlainString();
+        }
+    }
+
+    /**
+     * Converts a value supplied by a variable or extension function.
+     */
+    static Object fromJava(Object value) {
+        if (value instanceof String || value instanceof Boolean || value instanceof Double) {
+            return value;
+        } else if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value instanceof Node) {
+            return Collections.singletonList((Node) value);
+        } else if (value instanceof NodeList) {
+            return Nodes.fromNodeList((NodeList) value);
+        } else {
+            return value != null ? value.toString() : "";
+        }
+    }
+
+    /**
+     * Returns true if a node is selected by {@code predicate} in
+     * {@code context}: a number selects the node at that position, any other
+     * value is converted to a boolean.
+     */
+    static boolean accept(Expr predicate, Context context) throws XPathExpressionException {
+        switch (predicate.resultType()) {
+        case NUMBER:
+            return predicate.evaluateNumber(context) == context.position;
+        case ANY:
+            Object value = predicate.evaluate(context);
+            return value instanceof Double
+                    ? (Double) value == context.position
+                    : toBoolean(value);
+        default:
+            return predicate.evaluateBoolean(context);
+        }
+    }
+
+    /**
+     * Returns the nodes of {@code nodes} selected by {@code predicate}, with
+     * positions given by their order in {@code nodes}.
+     */
+    static List<Node> filter(List<Node> nodes, Expr predicate, Context context)
+            throws XPathExpressionException {
+        List<Node> result = new ArrayList<Node>(nodes.size());
+        int size = nodes.size();
+        for (int i = 0; i < size; i++) {
+            Node node = nodes.get(i);
+            if (accept(predicate, context.with(node, i + 1, size))) {
+                result.add(node);
+            }
+        }
+        return result;
+    }
+
+    /** A literal string or number. */
+    static final class Constant extends Expr {
+        final Object value;
+
+        Constant(Object value) {
+            this.value = value;
+        }
+
+        @Override Object evaluate(Context context) {
+            return value;
+        }
+
+        @Override int resultType() {
+            return value instanceof Double ? NUMBER : STRING;
+        }
+    }
+
+    /** A variable reference, resolved each time it is evaluated. */
+    static final class Variable extends Expr {
+        private final QName name;
+
+        Variable(QName name) {
+            this.name = name;
+        }
+
+        @Override Object evaluate(Context context) throws XPathExpressionException {
+            XPathVariableResolver resolver = context.variables;
+            if (resolver == null) {
+                throw new XPathExpressionException("No variable resolver for $" + name);
+            }
+            Object value = resolver.resolveVariable(name);
+            if (value == null) {
+                throw new XPathExpressionException("Undefined variable $" + name);
+            }
+            return fromJava(value);
+        }
+
+        @Override int resultType() {
+            return ANY;
+        }
+    }
+
+    static final class Negate extends Expr {
+        private final Expr operand;
+
+        Negate(Expr operand) {
+            this.operand = operand;
+        }
+
+        @Override Object evaluate(Context context) throws XPathExpressionException {
+            return evaluateNumber(context);
+        }
+
+        @Override double evaluateNumber(Context context) throws XPathExpressionException {
+            return -operand.evaluateNumber(context);
+        }
+
+        @Override int resultType() {
+            return NUMBER;
+        }
+
+        @Override boolean usesPosition() {
+            return operand.usesPosition();
+        }
+    }
+
+    /** A binary operator other than union. */
+    static final class Binary extends Expr {
+        static final int OR = 0;
+        static final int AND = 1;
+        static final int EQ = 2;
+        static final int NE = 3;
+        static final int LT = 4;
+        static final int LE = 5;
+        static final int GT = 6;
+        static final int GE = 7;
+        static final int PLUS = 8;
+        static final int MINUS = 9;
+        static final int MULTIPLY = 10;
+        static final int DIV = 11;
+        static final int MOD = 12;
+
+        private final int op;
+        private final Expr left;
+        private final Expr right;
+
+        Binary(int op, Expr left, Expr right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override Object evaluate(Context context) throws XPathExpressionException {
+            return op >= PLUS ? (Object) evaluateNumber(context) : evaluateBoolean(context);
+        }
+
+        @Override boolean evaluateBoolean(Context context) throws XPathExpressionException {
+            switch (op) {
+            case OR:
+                return left.evaluateBoolean(context) || right.evaluateBoolean(context);
+            case AND:
+                return left.evaluateBoolean(context) && right.evaluateBoolean(context);
+            case EQ:
+            case NE:
+            case LT:
+            case LE:
+            case GT:
+            case GE:
+                return compare(op, left.evaluate(context), right.evaluate(context));
+            default:
+                return toBoolean(evaluateNumber(context));
+            }
+        }
+
+        @Override double evaluateNumber(Context context) throws XPathExpressionException {
+            if (op < PLUS) {
+                return evaluateBoolean(context) ? 1 : 0;
+            }
+            double a = left.evaluateNumber(context);
+            double b = right.evaluateNumber(context);
+            switch (op) {
+            case PLUS:
+                return a + b;
+            case MINUS:
+                return a - b;
+            case MULTIPLY:
+                return a * b;
+            case DIV:
+                return a / b;
+            default:
+                return a % b;
+            }
+        }
+
+        @Override int resultType() {
+            return op >= PLUS ? NUMBER : BOOLEAN;
+        }
+
+        @Override boolean usesPosition() {
+            return left.usesPosition() || right.usesPosition();
+        }
+
+        /**
+         * Compares two values. Comparisons involving node sets are true if
+         * they are true for any node in the set.
+         */
+        @SuppressWarnings("unchecked") // node sets are the only lists
+        private static boolean compare(int op, Object a, Object b) {
+            if (b instanceof List && !(a instanceof List)) {
+                return compare(reverse(op), b, a);
+            }
+            if (!(a instanceof List)) {
+                return compareAtomic(op, a, b);
+            }
+
+            List<Node> nodes = (List<Node>) a;
+            if (b instanceof Boolean) {
+                return compareAtomic(op, !nodes.isEmpty(), b);
+            }
+            if (b instanceof List) {
+                List<Node> others = (List<Node>) b;
+                if (others.isEmpty()) {
+                    return false;
+                }
+                String[] otherValues = new String[others.size()];
+                for (int i = 0; i < otherValues.length; i++) {
+                    otherValues[i] = Nodes.stringValue(others.get(i));
+                }
+                for (Node node : nodes) {
+                    String value = Nodes.stringValue(node);
+                    for (String otherValue : otherValues) {
+                        if (compareAtomic(op, value, otherValue)) {
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            }
+            for (Node node : nodes) {
+                Object value = b instanceof Double
+                        ? (Object) parseNumber(Nodes.stringValue(node))
+                        : Nodes.stringValue(node);
+                if (compareAtomic(op, value, b)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static int reverse(int op) {
+            switch (op) {
+            case LT:
+                return GT;
+            case LE:
+                return GE;
+            case GT:
+                return LT;
+            case GE:
+                return LE;
+            default:
+                return op;
+            }
+        }
+
+        private static boolean compareAtomic(int op, Object a, Object b) {
+            if (op == EQ || op == NE) {
+                boolean equal;
+                if (a instanceof Boolean || b instanceof Boolean) {
+                    equal = toBoolean(a) == toBoolean(b);
+                } else if (a instanceof Double || b instanceof Double) {
+                    equal = toNumber(a) == toNumber(b);
+                } else {
+                    equal = a.equals(b);
+                }
+                return equal == (op == EQ);
+            }
+
+            double x = toNumber(a);
+            double y = toNumber(b);
+            switch (op) {
+            case LT:
+                return x < y;
+            case LE:
+                return x <= y;
+            case GT:
+                return x > y;
+            default:
+                return x >= y;
+            }
+        }
+    }
+
+    static final class Union extends Expr {
+        private final Expr left;
+        private final Expr right;
+
+        Union(Expr left, Expr right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override Object evaluate(Context context) throws XPathExpressionException {
+            return Nodes.union(left.evaluateNodeSet(context), right.evaluateNodeSet(context));
+        }
+
+        @Override int resultType() {
+            return NODESET;
+        }
+
+        @Override boolean usesPosition() {
+            return left.usesPosition() || right.usesPosition();
+        }
+    }
+
+    /** A primary expression followed by predicates. */
+    static final class Filter extends Expr {
+        private final Expr primary;
+        private final Expr[] predicates;
+
+        Filter(Expr primary, Expr[] predicates) {
+            this.primary = primary;
+            this.predicates = predicates;
+        }
+
+        @Override Object evaluate(Context context) throws XPathExpressionException {
+            List<Node> nodes = primary.evaluateNodeSet(context);
+            for (Expr predicate : predicates) {
+                nodes = filter(nodes, predicate, context);
+            }
+            return nodes;
+        }
+
+        @Override int resultType() {
+            return NODESET;
+        }
+
+        @Override boolean usesPosition() {
+            return primary.usesPosition();
+        }
+    }
+}
@@ -0,0 +1,430 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.xml.xpath;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.XMLConstants;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFunction;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * A call to a function of the XPath core function library.
+ */
+final class FunctionCall extends Expr {
+
+    private static final int LAST = 0;
+    private static final int POSITION = 1;
+    private static final int COUNT = 2;
+    private static final int ID = 3;
+    private static final int LOCAL_NAME = 4;
+    private static final int NAMESPACE_URI = 5;
+    private static final int NAME = 6;
+    private static final int STRING_FUNCTION = 7;
+    private static final int CONCAT = 8;
+    private static final int STARTS_WITH = 9;
+    private static final int CONTAINS = 10;
+    private static final int SUBSTRING_BEFORE = 11;
+    private static final int SUBSTRING_AFTER = 12;
+    private static final int SUBSTRING = 13;
+    private static final int STRING_LENGTH = 14;
+    private static final int NORMALIZE_SPACE = 15;
+    private static final int TRANSLATE = 16;
+    private static final int BOOLEAN_FUNCTION = 17;
+    private static final int NOT = 18;
+    private static final int TRUE = 19;
+    private static final int FALSE = 20;
+    private static final int LANG = 21;
+    private static final int NUMBER_FUNCTION = 22;
+    private static final int SUM = 23;
+    private static final int FLOOR = 24;
+    private static final int CEILING = 25;
+    private static final int ROUND = 26;
+
+    private static final String[] NAMES = {
+        "last", "position", "count", "id", "local-name", "namespace-uri", "name", "string",
+        "concat", "starts-with", "contains", "substring-before", "substring-after", "substring",
+        "string-length", "normalize-space", "translate", "boolean", "not", "true", "false",
+        "lang", "number", "sum", "floor", "ceiling", "round",
+    };
+    private static final int[] MIN_ARGS = {
+        0, 0, 1, 1, 0, 0, 0, 0, 2, 2, 2, 2, 2, 2, 0, 0, 3, 1, 1, 0, 0, 1, 0, 1, 1, 1, 1,
+    };
+    private static final int[] MAX_ARGS = {
+        0, 0, 1, 1, 1, 1, 1, 1, Integer.MAX_VALUE, 2, 2, 2, 2, 3, 1, 1, 3, 1, 1, 0, 0, 1, 1, 1,
+        1, 1, 1,
+    };
+    private static final int[] RESULT_TYPES = {
+        NUMBER, NUMBER, NUMBER, NODESET, STRING, STRING, STRING, STRING, STRING, BOOLEAN,
+        BOOLEAN, STRING, STRING, STRING, NUMBER, STRING, STRING, BOOLEAN, BOOLEAN, BOOLEAN,
+        BOOLEAN, BOOLEAN, NUMBER, NUMBER, NUMBER, NUMBER, NUMBER,
+    };
+
+    private final int function;
+    private final Expr[] args;
+
+    private FunctionCall(int function, Expr[] args) {
+        this.function = function;
+        this.args = args;
+    }
+
+    /**
+     * Returns a call to the core function {@code name}, or null if there is
+     * no such function.
+     *
+     * @throws XPathExpressionException if the function doesn't take that many
+     *     arguments.
+     */
+    static FunctionCall create(String name, Expr[] args) throws XPathExpressionException {
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].equals(name)) {
+                if (args.length < MIN_ARGS[i] || args.length > MAX_ARGS[i]) {
+                    throw new XPathExpressionException(
+                            "Wrong number of arguments for " + name + "(): " + args.length);
+                }
+                return new FunctionCall(i, args);
+            }
+        }
+        return null;
+    }
+
+    @Override int resultType() {
+        return RESULT_TYPES[function];
+    }
+
+    @Override boolean usesPosition() {
+        if (function == LAST || function == POSITION) {
+            return true;
+        }
+        for (Expr arg : args) {
+            if (arg.usesPosition()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override Object evaluate(Context context) throws XPathExpressionException {
+        switch (RESULT_TYPES[function]) {
+        case NUMBER:
+            return evaluateNumber(context);
+        case STRING:
+            return evaluateString(context);
+        case BOOLEAN:
+            return evaluateBoolean(context);
+        default:
+            return evaluateNodeSet(context);
+        }
+    }
+
+    @Override double evaluateNumber(Context context) throws XPathExpressionException {
+        switch (function) {
+        case LAST:
+            return context.size;
+        case POSITION:
+            return context.position;
+        case COUNT:
+            return args[0].evaluateNodeSet(context).size();
+        case STRING_LENGTH:
+            String s = stringArgument(context);
+            return s.codePointCount(0, s.length());
+        case NUMBER_FUNCTION:
+            return args.length == 0
+                    ? parseNumber(contextString(context))
+                    : args[0].evaluateNumber(context);
+        case SUM:
+            double sum = 0;
+            for (Node node : args[0].evaluateNodeSet(context)) {
+                sum += parseNumber(Nodes.stringValue(node));
+            }
+            return sum;
+        case FLOOR:
+            return Math.floor(args[0].evaluateNumber(context));
+        case CEILING:
+            return Math.ceil(args[0].evaluateNumber(context));
+        case ROUND:
+            return round(args[0].evaluateNumber(context));
+        default:
+            return toNumber(evaluate(context));
+        }
+    }
+
+    @Override String evaluateString(Context context) throws XPathExpressionException {
+        switch (function) {
+        case LOCAL_NAME:
+        case NAMESPACE_URI:
+        case NAME:
+            Node node = args.length == 0 ? context.node : args[0].evaluateFirst(context);
+            return node != null ? name(node) : "";
+        case STRING_FUNCTION:
+            return args.length == 0 ? contextString(context) : args[0].evaluateString(context);
+        case CONCAT:
+            StringBuilder result = new StringBuilder();
+            for (Expr arg : args) {
+                result.append(arg.evaluateString(context));
+            }
+            return result.toString();
+        case SUBSTRING_BEFORE:
+            String before = args[0].evaluateString(context);
+            int end = before.indexOf(args[1].evaluateString(context));
+            return end != -1 ? before.substring(0, end) : "";
+        case SUBSTRING_AFTER:
+            String after = args[0].evaluateString(context);
+            String separator = args[1].evaluateString(context);
+            int start = after.indexOf(separator);
+            return start != -1 ? after.substring(start + separator.length()) : "";
+        case SUBSTRING:
+            return substring(context);
+        case NORMALIZE_SPACE:
+            return normalizeSpace(stringArgument(context));
+        case TRANSLATE:
+            return translate(args[0].evaluateString(context), args[1].evaluateString(context),
+                    args[2].evaluateString(context));
+        default:
+            return toString(evaluate(context));
+        }
+    }
+
+    @Override boolean evaluateBoolean(Context context) throws XPathExpressionException {
+        switch (function) {
+        case STARTS_WITH:
+            return args[0].evaluateString(context).startsWith(args[1].evaluateString(context));
+        case CONTAINS:
+            return args[0].evaluateString(context).contains(args[1].evaluateString(context));
+        case BOOLEAN_FUNCTION:
+            return args[0].evaluateBoolean(context);
+        case NOT:
+            return !args[0].evaluateBoolean(context);
+        case TRUE:
+            return true;
+        case FALSE:
+            return false;
+        case LANG:
+            return lang(context.node, args[0].evaluateString(context));
+        default:
+            return toBoolean(evaluate(context));
+        }
+    }
+
+    @Override List<Node> evaluateNodeSet(Context context) throws XPathExpressionException {
+        if (function != ID) {
+            return super.evaluateNodeSet(context);
+        }
+
+        Node node = context.node;
+        Document document = node == null || node.getNodeType() == Node.DOCUMENT_NODE
+                ? (Document) node
+                : node.getOwnerDocument();
+        List<Node> result = new ArrayList<Node>();
+        if (document == null) {
+            return result;
+        }
+        Object value = args[0].evaluate(context);
+        if (value instanceof List) {
+            for (Object idNode : (List<?>) value) {
+                addElementsById(document, Nodes.stringValue((Node) idNode), result);
+            }
+        } else {
+            addElementsById(document, toString(value), result);
+        }
+        return Nodes.sortUnique(result);
+    }
+
+    private String contextString(Context context) {
+        return context.node != null ? Nodes.stringValue(context.node) : "";
+    }
+
+    private String stringArgument(Context context) throws XPathExpressionException {
+        return args.length == 0 ? contextString(context) : args[0].evaluateString(context);
+    }
+
+    private String name(Node node) {
+        short type = node.getNodeType();
+        boolean named = type == Node.ELEMENT_NODE || type == Node.ATTRIBUTE_NODE;
+        switch (function) {
+        case LOCAL_NAME:
+            return named ? Nodes.localName(node)
+                    : type == Node.PROCESSING_INSTRUCTION_NODE ? node.getNodeName()
+                    : "";
+        case NAMESPACE_URI:
+            String namespaceURI = named ? node.getNamespaceURI() : null;
+            return namespaceURI != null ? namespaceURI : "";
+        default:
+            return named || type == Node.PROCESSING_INSTRUCTION_NODE ? node.getNodeName() : "";
+        }
+    }
+
+    private static void addElementsById(Document document, String ids, List<Node> out) {
+        int length = ids.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && isWhitespace(ids.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && !isWhitespace(ids.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                Element element = document.getElementById(ids.substring(start, i));
+                if (element != null) {
+                    out.add(element);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the characters at positions {@code p} with
+     * {@code round(start) <= p < round(start) + round(length)}, counting from 1.
+     */
+    private String substring(Context context) throws XPathExpressionException {
+        String s = args[0].evaluateString(context);
+        double first = round(args[1].evaluateNumber(context));
+        double last = args.length == 3
+                ? first + round(args[2].evaluateNumber(context))
+                : Double.POSITIVE_INFINITY;
+        double begin = Math.max(first, 1);
+        double end = Math.min(last, s.codePointCount(0, s.length()) + 1);
+        if (!(begin < end)) {
+            return ""; // also if either is NaN
+        }
+        int beginIndex = s.offsetByCodePoints(0, (int) begin - 1);
+        int endIndex = s.offsetByCodePoints(beginIndex, (int) end - (int) begin);
+        return s.substring(beginIndex, endIndex);
+    }
+
+    private static String normalizeSpace(String s) {
+        StringBuilder result = new StringBuilder(s.length());
+        boolean space = false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (isWhitespace(c)) {
+                space = result.length() > 0;
+            } else {
+                if (space) {
+                    result.append(' ');
+                    space = false;
+                }
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    private static String translate(String s, String from, String to) {
+        int[] fromCodePoints = codePoints(from);
+        int[] toCodePoints = codePoints(to);
+        StringBuilder result = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); ) {
+            int c = s.codePointAt(i);
+            i += Character.charCount(c);
+            int index = indexOf(fromCodePoints, c);
+            if (index == -1) {
+                result.appendCodePoint(c);
+            } else if (index < toCodePoints.length) {
+                result.appendCodePoint(toCodePoints[index]);
+            }
+        }
+        return result.toString();
+    }
+
+    private static int[] codePoints(String s) {
+        int[] result = new int[s.codePointCount(0, s.length())];
+        for (int i = 0, offset = 0; i < result.length; i++) {
+            result[i] = s.codePointAt(offset);
+            offset += Character.charCount(result[i]);
+        }
+        return result;
+    }
+
+    private static int indexOf(int[] codePoints, int c) {
+        for (int i = 0; i < codePoints.length; i++) {
+            if (codePoints[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Rounds half up, unlike Math.rint(), and keeps the sign of negative
+     * numbers that round to zero, unlike Math.round().
+     */
+    static double round(double d) {
+        if (Double.isNaN(d) || Double.isInfinite(d) || d == 0) {
+            return d;
+        }
+        if (d < 0 && d >= -0.5) {
+            return -0.0;
+        }
+        double floor = Math.floor(d);
+        return d - floor >= 0.5 ? floor + 1 : floor;
+    }
+
+    private static boolean lang(Node node, String language) {
+        for (Node n = node; n != null; n = Nodes.parent(n)) {
+            if (n.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+            Element element = (Element) n;
+            Attr attr = element.getAttributeNodeNS(XMLConstants.XML_NS_URI, "lang");
+            if (attr == null) {
+                attr = element.getAttributeNode("xml:lang");
+            }
+            if (attr != null) {
+                String value = attr.getValue();
+                int length = language.length();
+                return value.regionMatches(true, 0, language, 0, length)
+                        && (value.length() == length || value.charAt(length) == '-');
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A call to a function supplied by an {@code XPathFunctionResolver}.
+     * Node set arguments are passed as a {@code NodeList}.
+     */
+    static final class Extension extends Expr {
+        private final XPathFunction function;
+        private final Expr[] args;
+
+        Extension(XPathFunction function, Expr[] args) {
+            this.function = function;
+            this.args = args;
+        }
+
+        @SuppressWarnings("unchecked") // node sets are the only lists
+        @Override Object evaluate(Context context) throws XPathExpressionException {
+            List<Object> values = new ArrayList<Object>(args.length);
+            for (Expr arg : args) {
+                Object value = arg.evaluate(context);
+                values.add(value instanceof List ? Nodes.asNodeList((List<Node>) value) : value);
+            }
+            return fromJava(function.evaluate(values));
+        }
+
+        @Override int resultType() {
+            return ANY;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.xml.xpath;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.xml.xpath.XPathExpressionException;
+import org.w3c.dom.Node;
+
+/**
+ * A sequence of steps from the context node, the root, or the nodes of a
+ * filter expression.
+ *
+ * <p>Steps are evaluated depth first: each node selected by a step is passed
+ * straight to the next step, so no node set is built for the intermediate
+ * steps. This selects nodes in document order for the common paths made of
+ * child, attribute and descendant steps. Where a step could select nodes out
+ * of order or more than once, its nodes are collected and sorted before the
+ * next step runs.
+ */
+final class LocationPath extends Expr {
+
+    /** The expression whose nodes the path starts from, or null. */
+    final Expr start;
+
+    /** True if the path starts from the root of the context node's tree. */
+    final boolean absolute;
+
+    final Step[] steps;
+
+    /** Indices of the steps whose output must be sorted, in increasing order. */
+    private final int[] sortAfter;
+
+    LocationPath(Expr start, boolean absolute, Step[] steps) {
+        this.start = start;
+        this.absolute = absolute;
+        this.steps = steps;
+
+        List<Integer> sortAfter = new ArrayList<Integer>();
+        int order = start != null ? Step.ORDERED : Step.SINGLE;
+        for (int i = 0; i < steps.length; i++) {
+            order = steps[i].order(order);
+            if (order == Step.UNORDERED) {
+                sortAfter.add(i);
+                order = Step.ORDERED;
+            }
+        }
+        this.sortAfter = new int[sortAfter.size()];
+        for (int i = 0; i < this.sortAfter.length; i++) {
+            this.sortAfter[i] = sortAfter.get(i);
+        }
+    }
+
+    @Override Object evaluate(Context context) throws XPathExpressionException {
+        return evaluateNodeSet(context);
+    }
+
+    @Override List<Node> evaluateNodeSet(Context context) throws XPathExpressionException {
+        NodeCollector.All all = new NodeCollector.All();
+        select(context, all);
+        return all.nodes;
+    }
+
+    @Override boolean evaluateBoolean(Context context) throws XPathExpressionException {
+        return evaluateFirst(context) != null;
+    }
+
+    @Override String evaluateString(Context context) throws XPathExpressionException {
+        Node first = evaluateFirst(context);
+        return first != null ? Nodes.stringValue(first) : "";
+    }
+
+    @Override double evaluateNumber(Context context) throws XPathExpressionException {
+        return parseNumber(evaluateString(context));
+    }
+
+    @Override int resultType() {
+        return NODESET;
+    }
+
+    @Override boolean usesPosition() {
+        return start != null && start.usesPosition();
+    }
+
+    @Override boolean select(Context context, NodeCollector out)
+            throws XPathExpressionException {
+        List<Node> nodes;
+        if (start != null) {
+            nodes = start.evaluateNodeSet(context);
+        } else if (context.node == null) {
+            return true;
+        } else {
+            nodes = Collections.singletonList(absolute ? Nodes.root(context.node) : context.node);
+        }
+
+        int from = 0;
+        for (int sortAfterStep : sortAfter) {
+            NodeCollector.All all = new NodeCollector.All();
+            NodeCollector chain = chain(from, sortAfterStep + 1, context, all);
+            for (Node node : nodes) {
+                chain.add(node);
+            }
+            nodes = Nodes.sortUnique(all.nodes);
+            from = sortAfterStep + 1;
+        }
+
+        NodeCollector chain = chain(from, steps.length, context, out);
+        for (Node node : nodes) {
+            if (!chain.add(node)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a collector that passes each node it receives through the steps
+     * {@code from} to {@code to} and on to {@code out}.
+     */
+    private NodeCollector chain(int from, int to, Context context, NodeCollector out) {
+        NodeCollector result = out;
+        for (int i = to - 1; i >= from; i--) {
+            result = new StepInput(steps[i], context, result);
+        }
+        return result;
+    }
+
+    private static final class StepInput extends NodeCollector {
+        private final Step step;
+        private final Context context;
+        private final NodeCollector out;
+
+        StepInput(Step step, Context context, NodeCollector out) {
+            this.step = step;
+            this.context = context;
+            this.out = out;
+        }
+
+        @Override boolean add(Node node) throws XPathExpressionException {
+            return step.select(node, context, out);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.xml.xpath;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.xpath.XPathExpressionException;
+import org.w3c.dom.Node;
+
+/**
+ * Receives the nodes selected by a step or path, one at a time.
+ */
+abstract class NodeCollector {
+
+    /**
+     * Receives the next selected node. Returns false if no more nodes are
+     * wanted, in which case the selection stops.
+     */
+    abstract boolean add(Node node) throws XPathExpressionException;
+
+    /** Collects every node. */
+    static final class All extends NodeCollector {
+        final List<Node> nodes = new ArrayList<Node>();
+
+        @Override boolean add(Node node) {
+            nodes.add(node);
+            return true;
+        }
+    }
+
+    /** Keeps the first node and stops. */
+    static final class First extends NodeCollector {
+        Node node;
+
+        @Override boolean add(Node node) {
+            this.node = node;
+            return false;
+        }
+    }
+}
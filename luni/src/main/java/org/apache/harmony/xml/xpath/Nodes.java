@@ -0,0 +1,328 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.xml.xpath;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.w3c.dom.Attr;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Maps the DOM onto the XPath data model. Document type nodes are not XPath
+ * nodes and are skipped; attributes have their owner element as parent but
+ * are not its children; namespace declarations are not attributes.
+ */
+final class Nodes {
+
+    private static final String XMLNS_URI = "http://www.w3.org/2000/xmlns/";
+
+    private Nodes() {
+    }
+
+    static Node parent(Node node) {
+        return node.getNodeType() == Node.ATTRIBUTE_NODE
+                ? ((Attr) node).getOwnerElement()
+                : node.getParentNode();
+    }
+
+    static Node firstChild(Node node) {
+        if (node.getNodeType() == Node.ATTRIBUTE_NODE) {
+            return null;
+        }
+        Node child = node.getFirstChild();
+        return child != null && child.getNodeType() == Node.DOCUMENT_TYPE_NODE
+                ? nextSibling(child)
+                : child;
+    }
+
+    static Node lastChild(Node node) {
+        if (node.getNodeType() == Node.ATTRIBUTE_NODE) {
+            return null;
+        }
+        Node child = node.getLastChild();
+        return child != null && child.getNodeType() == Node.DOCUMENT_TYPE_NODE
+                ? previousSibling(child)
+                : child;
+    }
+
+    static Node nextSibling(Node node) {
+        if (node.getNodeType() == Node.ATTRIBUTE_NODE) {
+            return null;
+        }
+        Node sibling = node.getNextSibling();
+        while (sibling != null && sibling.getNodeType() == Node.DOCUMENT_TYPE_NODE) {
+            sibling = sibling.getNextSibling();
+        }
+        return sibling;
+    }
+
+    static Node previousSibling(Node node) {
+        if (node.getNodeType() == Node.ATTRIBUTE_NODE) {
+            return null;
+        }
+        Node sibling = node.getPreviousSibling();
+        while (sibling != null && sibling.getNodeType() == Node.DOCUMENT_TYPE_NODE) {
+            sibling = sibling.getPreviousSibling();
+        }
+        return sibling;
+    }
+
+    /**
+     * Returns the node after {@code node} in document order that is not one
+     * of its descendants, or null if there is no such node within
+     * {@code root}. Pass a null root to search the whole document.
+     */
+    static Node following(Node node, Node root) {
+        for (Node n = node; n != root && n != null; n = n.getParentNode()) {
+            Node sibling = nextSibling(n);
+            if (sibling != null) {
+                return sibling;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the node after {@code node} in document order, or null if there
+     * is no such node within {@code root}.
+     */
+    static Node next(Node node, Node root) {
+        Node child = firstChild(node);
+        return child != null ? child : following(node, root);
+    }
+
+    /** Returns the root of the tree containing {@code node}. */
+    static Node root(Node node) {
+        Node root = node;
+        for (Node n = node; n != null; n = parent(n)) {
+            root = n;
+        }
+        return root;
+    }
+
+    static boolean isText(Node node) {
+        short type = node.getNodeType();
+        return type == Node.TEXT_NODE || type == Node.CDATA_SECTION_NODE;
+    }
+
+    /**
+     * Returns true if {@code attr} declares a namespace rather than being an
+     * attribute in the XPath sense.
+     */
+    static boolean isNamespaceDeclaration(Node attr) {
+        if (XMLNS_URI.equals(attr.getNamespaceURI())) {
+            return true;
+        }
+        String name = attr.getNodeName();
+        return name.equals("xmlns") || name.startsWith("xmlns:");
+    }
+
+    static String stringValue(Node node) {
+        switch (node.getNodeType()) {
+        case Node.DOCUMENT_NODE:
+        case Node.DOCUMENT_FRAGMENT_NODE:
+        case Node.ELEMENT_NODE:
+        case Node.ENTITY_REFERENCE_NODE:
+            Node first = firstChild(node);
+            if (first == null) {
+                return "";
+            }
+            if (isText(first) && nextSibling(first) == null) {
+                return first.getNodeValue();
+            }
+            StringBuilder result = new StringBuilder();
+            for (Node n = first; n != null; n = next(n, node)) {
+                if (isText(n)) {
+                    result.append(n.getNodeValue());
+                }
+            }
+            return result.toString();
+
+        case Node.ATTRIBUTE_NODE:
+        case Node.TEXT_NODE:
+        case Node.CDATA_SECTION_NODE:
+        case Node.COMMENT_NODE:
+        case Node.PROCESSING_INSTRUCTION_NODE:
+            String value = node.getNodeValue();
+            return value != null ? value : "";
+
+        default:
+            return "";
+        }
+    }
+
+    /**
+     * Returns the local part of the name of an element or attribute, also for
+     * nodes created without namespace support.
+     */
+    static String localName(Node node) {
+        String localName = node.getLocalName();
+        if (localName != null) {
+            return localName;
+        }
+        String name = node.getNodeName();
+        return name.substring(name.indexOf(':') + 1);
+    }
+
+    static final Comparator<Node> DOCUMENT_ORDER = new Comparator<Node>() {
+        public int compare(Node a, Node b) {
+            return Nodes.compare(a, b);
+        }
+    };
+
+    /**
+     * Compares {@code a} and {@code b} by document order. An element's
+     * attributes follow the element and precede its children.
+     */
+    static int compare(Node a, Node b) {
+        if (a == b) {
+            return 0;
+        }
+
+        int depthA = depth(a);
+        int depthB = depth(b);
+        Node x = a;
+        Node y = b;
+        for (; depthA > depthB; depthA--) {
+            x = parent(x);
+        }
+        for (; depthB > depthA; depthB--) {
+            y = parent(y);
+        }
+        if (x == y) {
+            return x == a ? -1 : 1; // one is an ancestor of the other
+        }
+
+        Node parent;
+        while ((parent = parent(x)) != parent(y)) {
+            x = parent(x);
+            y = parent(y);
+        }
+        if (parent == null) {
+            // Nodes from different trees have no defined order; keep it stable.
+            return System.identityHashCode(x) < System.identityHashCode(y) ? -1 : 1;
+        }
+
+        boolean xIsAttribute = x.getNodeType() == Node.ATTRIBUTE_NODE;
+        boolean yIsAttribute = y.getNodeType() == Node.ATTRIBUTE_NODE;
+        if (xIsAttribute != yIsAttribute) {
+            return xIsAttribute ? -1 : 1;
+        }
+        if (xIsAttribute) {
+            NamedNodeMap attributes = parent.getAttributes();
+            for (int i = 0; i < attributes.getLength(); i++) {
+                Node attribute = attributes.item(i);
+                if (attribute == x) {
+                    return -1;
+                } else if (attribute == y) {
+                    return 1;
+                }
+            }
+            return 0;
+        }
+        for (Node n = x.getNextSibling(); n != null; n = n.getNextSibling()) {
+            if (n == y) {
+                return -1;
+            }
+        }
+        return 1;
+    }
+
+    private static int depth(Node node) {
+        int depth = 0;
+        for (Node n = parent(node); n != null; n = parent(n)) {
+            depth++;
+        }
+        return depth;
+    }
+
+    /**
+     * Returns {@code nodes} without duplicates and in document order.
+     */
+    static List<Node> sortUnique(List<Node> nodes) {
+        if (nodes.size() < 2) {
+            return nodes;
+        }
+        Map<Node, Boolean> seen = new IdentityHashMap<Node, Boolean>(nodes.size());
+        List<Node> result = new ArrayList<Node>(nodes.size());
+        for (Node node : nodes) {
+            if (seen.put(node, Boolean.TRUE) == null) {
+                result.add(node);
+            }
+        }
+        Collections.sort(result, DOCUMENT_ORDER);
+        return result;
+    }
+
+    /**
+     * Returns the union of two node sets in document order.
+     */
+    static List<Node> union(List<Node> a, List<Node> b) {
+        if (a.isEmpty()) {
+            return b;
+        } else if (b.isEmpty()) {
+            return a;
+        }
+        List<Node> result = new ArrayList<Node>(a.size() + b.size());
+        int i = 0;
+        int j = 0;
+        while (i < a.size() && j < b.size()) {
+            int compare = compare(a.get(i), b.get(j));
+            if (compare <= 0) {
+                result.add(a.get(i++));
+                if (compare == 0) {
+                    j++;
+                }
+            } else {
+                result.add(b.get(j++));
+            }
+        }
+        result.addAll(a.subList(i, a.size()));
+        result.addAll(b.subList(j, b.size()));
+        return result;
+    }
+
+    static NodeList asNodeList(final List<Node> nodes) {
+        return new NodeList() {
+            public Node item(int index) {
+                return index >= 0 && index < nodes.size() ? nodes.get(index) : null;
+            }
+
+            public int getLength() {
+                return nodes.size();
+            }
+        };
+    }
+
+    /**
+     * Returns the nodes of {@code nodeList} without duplicates and in document
+     * order.
+     */
+    static List<Node> fromNodeList(NodeList nodeList) {
+        List<Node> result = new ArrayList<Node>(nodeList.getLength());
+        for (int i = 0; i < nodeList.getLength(); i++) {
+            result.add(nodeList.item(i));
+        }
+        return sortUnique(result);
+    }
+}
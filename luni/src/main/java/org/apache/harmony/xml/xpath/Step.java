@@ -0,0 +1,425 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.xml.xpath;
+
+import java.util.List;
+import javax.xml.xpath.XPathExpressionException;
+import libcore.util.Objects;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.ProcessingInstruction;
+
+/**
+ * A location step: an axis, a node test and predicates.
+ */
+final class Step {
+
+    static final int CHILD = 0;
+    static final int DESCENDANT = 1;
+    static final int DESCENDANT_OR_SELF = 2;
+    static final int PARENT = 3;
+    static final int ANCESTOR = 4;
+    static final int ANCESTOR_OR_SELF = 5;
+    static final int FOLLOWING_SIBLING = 6;
+    static final int PRECEDING_SIBLING = 7;
+    static final int FOLLOWING = 8;
+    static final int PRECEDING = 9;
+    static final int ATTRIBUTE = 10;
+    static final int NAMESPACE = 11;
+    static final int SELF = 12;
+
+    static final String[] AXIS_NAMES = {
+        "child", "descendant", "descendant-or-self", "parent", "ancestor", "ancestor-or-self",
+        "following-sibling", "preceding-sibling", "following", "preceding", "attribute",
+        "namespace", "self",
+    };
+
+    /*
+     * How the nodes selected by a sequence of steps are ordered. Selection is
+     * depth first, so the nodes of a step are passed on in the order the step
+     * produces them for each of its input nodes in turn.
+     */
+
+    /** A single node. */
+    static final int SINGLE = 0;
+    /** Nodes in document order, none of which contains another. */
+    static final int DISJOINT = 1;
+    /** Nodes in document order without duplicates. */
+    static final int ORDERED = 2;
+    /** Nodes that must be sorted and deduplicated. */
+    static final int UNORDERED = 3;
+
+    final int axis;
+    final NodeTest test;
+    final Expr[] predicates;
+
+    /** True if some predicate needs the context position or size. */
+    private final boolean positional;
+
+    /** If the first predicate is a literal like [1], that position; else 0. */
+    private final int nth;
+
+    Step(int axis, NodeTest test, Expr[] predicates) {
+        this.axis = axis;
+        this.test = test;
+        this.predicates = predicates;
+
+        boolean positional = false;
+        for (Expr predicate : predicates) {
+            positional |= predicate.resultType() == Expr.NUMBER
+                    || predicate.resultType() == Expr.ANY
+                    || predicate.usesPosition();
+        }
+        this.positional = positional;
+
+        int nth = 0;
+        if (predicates.length > 0 && predicates[0] instanceof Expr.Constant) {
+            Object value = ((Expr.Constant) predicates[0]).value;
+            if (value instanceof Double) {
+                double position = (Double) value;
+                nth = position >= 1 && position == (int) position ? (int) position : 0;
+            }
+        }
+        this.nth = nth;
+    }
+
+    boolean isPositional() {
+        return positional;
+    }
+
+    /**
+     * Returns how the nodes selected by this step are ordered, given the
+     * order of its input nodes.
+     */
+    int order(int inputOrder) {
+        switch (axis) {
+        case SELF:
+            return inputOrder;
+        case CHILD:
+            return inputOrder <= DISJOINT ? DISJOINT : UNORDERED;
+        case ATTRIBUTE:
+        case NAMESPACE:
+            return inputOrder <= ORDERED ? DISJOINT : UNORDERED;
+        case DESCENDANT:
+        case DESCENDANT_OR_SELF:
+            return inputOrder <= DISJOINT ? ORDERED : UNORDERED;
+        case PARENT:
+            return inputOrder == SINGLE ? SINGLE : UNORDERED;
+        case FOLLOWING_SIBLING:
+            return inputOrder == SINGLE ? DISJOINT : UNORDERED;
+        case FOLLOWING:
+            return inputOrder == SINGLE ? ORDERED : UNORDERED;
+        default:
+            return UNORDERED; // reverse axes select nodes in reverse document order
+        }
+    }
+
+    /**
+     * Passes the nodes this step selects from {@code node} to {@code out}, in
+     * axis order. Returns false if {@code out} stopped the selection.
+     */
+    boolean select(Node node, Context context, NodeCollector out)
+            throws XPathExpressionException {
+        if (predicates.length == 0) {
+            return axis(node, out);
+        }
+        if (!positional) {
+            return axis(node, new Filter(context, out));
+        }
+
+        NodeCollector.All candidates = new NodeCollector.All();
+        axis(node, nth > 0 ? new Nth(nth, candidates) : candidates);
+        List<Node> nodes = candidates.nodes;
+        for (int i = nth > 0 ? 1 : 0; i < predicates.length && !nodes.isEmpty(); i++) {
+            nodes = Expr.filter(nodes, predicates[i], context);
+        }
+        for (Node selected : nodes) {
+            if (!out.add(selected)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Passes the nodes on this step's axis that pass its node test to
+     * {@code out}.
+     */
+    private boolean axis(Node node, NodeCollector out) throws XPathExpressionException {
+        switch (axis) {
+        case SELF:
+            return !test.matches(node) || out.add(node);
+
+        case CHILD:
+            for (Node n = Nodes.firstChild(node); n != null; n = Nodes.nextSibling(n)) {
+                if (test.matches(n) && !out.add(n)) {
+                    return false;
+                }
+            }
+            return true;
+
+        case DESCENDANT_OR_SELF:
+            if (test.matches(node) && !out.add(node)) {
+                return false;
+            }
+            // fall through
+        case DESCENDANT:
+            for (Node n = Nodes.firstChild(node); n != null; n = Nodes.next(n, node)) {
+                if (test.matches(n) && !out.add(n)) {
+                    return false;
+                }
+            }
+            return true;
+
+        case PARENT:
+            Node parent = Nodes.parent(node);
+            return parent == null || !test.matches(parent) || out.add(parent);
+
+        case ANCESTOR_OR_SELF:
+            if (test.matches(node) && !out.add(node)) {
+                return false;
+            }
+            // fall through
+        case ANCESTOR:
+            for (Node n = Nodes.parent(node); n != null; n = Nodes.parent(n)) {
+                if (test.matches(n) && !out.add(n)) {
+                    return false;
+                }
+            }
+            return true;
+
+        case FOLLOWING_SIBLING:
+            for (Node n = Nodes.nextSibling(node); n != null; n = Nodes.nextSibling(n)) {
+                if (test.matches(n) && !out.add(n)) {
+                    return false;
+                }
+            }
+            return true;
+
+        case PRECEDING_SIBLING:
+            for (Node n = Nodes.previousSibling(node); n != null; n = Nodes.previousSibling(n)) {
+                if (test.matches(n) && !out.add(n)) {
+                    return false;
+                }
+            }
+            return true;
+
+        case FOLLOWING:
+            Node start = node.getNodeType() == Node.ATTRIBUTE_NODE
+                    ? Nodes.next(Nodes.parent(node), null) // includes the owner's descendants
+                    : Nodes.following(node, null);
+            for (Node n = start; n != null; n = Nodes.next(n, null)) {
+                if (test.matches(n) && !out.add(n)) {
+                    return false;
+                }
+            }
+            return true;
+
+        case PRECEDING:
+            Node self = node.getNodeType() == Node.ATTRIBUTE_NODE ? Nodes.parent(node) : node;
+            for (Node ancestor = self; ancestor != null; ancestor = ancestor.getParentNode()) {
+                for (Node n = Nodes.previousSibling(ancestor); n != null;
+                        n = Nodes.previousSibling(n)) {
+                    if (!reverseSubtree(n, out)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+
+        case ATTRIBUTE:
+            NamedNodeMap attributes = node.getNodeType() == Node.ELEMENT_NODE
+                    ? node.getAttributes()
+                    : null;
+            if (attributes != null) {
+                for (int i = 0, length = attributes.getLength(); i < length; i++) {
+                    Node attribute = attributes.item(i);
+                    if (!Nodes.isNamespaceDeclaration(attribute)
+                            && test.matches(attribute)
+                            && !out.add(attribute)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+
+        default:
+            return true; // the DOM has no namespace nodes
+        }
+    }
+
+    /**
+     * Passes the nodes of the subtree at {@code node} that pass the node test
+     * to {@code out}, in reverse document order.
+     */
+    private boolean reverseSubtree(Node node, NodeCollector out)
+            throws XPathExpressionException {
+        for (Node n = Nodes.lastChild(node); n != null; n = Nodes.previousSibling(n)) {
+            if (!reverseSubtree(n, out)) {
+                return false;
+            }
+        }
+        return !test.matches(node) || out.add(node);
+    }
+
+    /**
+     * Passes on the nodes accepted by predicates that don't depend on the
+     * context position.
+     */
+    private final class Filter extends NodeCollector {
+        private final Context context;
+        private final NodeCollector out;
+
+        Filter(Context context, NodeCollector out) {
+            this.context = context;
+            this.out = out;
+        }
+
+        @Override boolean add(Node node) throws XPathExpressionException {
+            Context nodeContext = context.with(node, 0, 0);
+            for (Expr predicate : predicates) {
+                if (!predicate.evaluateBoolean(nodeContext)) {
+                    return true;
+                }
+            }
+            return out.add(node);
+        }
+    }
+
+    /** Passes on the nth node only, then stops. */
+    private static final class Nth extends NodeCollector {
+        private final NodeCollector out;
+        private int remaining;
+
+        Nth(int n, NodeCollector out) {
+            this.out = out;
+            this.remaining = n;
+        }
+
+        @Override boolean add(Node node) throws XPathExpressionException {
+            if (--remaining > 0) {
+                return true;
+            }
+            out.add(node);
+            return false;
+        }
+    }
+
+    /**
+     * Tests the type and name of nodes on an axis.
+     */
+    static final class NodeTest {
+        static final int NAME = 0;
+        static final int NODE = 1;
+        static final int TEXT = 2;
+        static final int COMMENT = 3;
+        static final int PROCESSING_INSTRUCTION = 4;
+
+        final int kind;
+
+        /** For name tests, the node type of the axis: elements or attributes. */
+        final short principalType;
+
+        /** The namespace URI to match, or null to match no namespace. */
+        final String namespaceURI;
+
+        /**
+         * The local name to match or, for processing instructions, the target.
+         * Null matches any name.
+         */
+        final String localName;
+
+        /** True for the "*" test, which matches names in any namespace. */
+        private final boolean anyNamespace;
+
+        private NodeTest(int kind, short principalType, String namespaceURI, String localName,
+                boolean anyNamespace) {
+            this.kind = kind;
+            this.principalType = principalType;
+            this.namespaceURI = namespaceURI;
+            this.localName = localName;
+            this.anyNamespace = anyNamespace;
+        }
+
+        static NodeTest anyName(int axis) {
+            return new NodeTest(NAME, principalType(axis), null, null, true);
+        }
+
+        /**
+         * @param localName the local name, or null to match any name in
+         *     {@code namespaceURI}.
+         */
+        static NodeTest name(int axis, String namespaceURI, String localName) {
+            return new NodeTest(NAME, principalType(axis), namespaceURI, localName, false);
+        }
+
+        static NodeTest type(int kind, String target) {
+            return new NodeTest(kind, (short) 0, null, target, false);
+        }
+
+        private static short principalType(int axis) {
+            switch (axis) {
+            case ATTRIBUTE:
+                return Node.ATTRIBUTE_NODE;
+            case NAMESPACE:
+                return (short) 0;
+            default:
+                return Node.ELEMENT_NODE;
+            }
+        }
+
+        boolean isNodeTypeTest() {
+            return kind == NODE;
+        }
+
+        /**
+         * Returns true if this is a name test that matches a node named
+         * {@code localName} in {@code namespaceURI}, which may be null.
+         */
+        boolean matchesName(String namespaceURI, String localName) {
+            return kind == NAME
+                    && (anyNamespace
+                            || (Objects.equal(this.namespaceURI, namespaceURI)
+                                    && (this.localName == null || this.localName.equals(localName))));
+        }
+
+        boolean matches(Node node) {
+            short type = node.getNodeType();
+            switch (kind) {
+            case NODE:
+                return true;
+            case TEXT:
+                return type == Node.TEXT_NODE || type == Node.CDATA_SECTION_NODE;
+            case COMMENT:
+                return type == Node.COMMENT_NODE;
+            case PROCESSING_INSTRUCTION:
+                return type == Node.PROCESSING_INSTRUCTION_NODE
+                        && (localName == null
+                                || localName.equals(((ProcessingInstruction) node).getTarget()));
+            default:
+                if (type != principalType) {
+                    return false;
+                }
+                if (anyNamespace) {
+                    return true;
+                }
+                return Objects.equal(namespaceURI, node.getNamespaceURI())
+                        && (localName == null || localName.equals(Nodes.localName(node)));
+            }
+        }
+    }
+}
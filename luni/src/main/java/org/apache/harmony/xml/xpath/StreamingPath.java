@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.xml.xpath;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLConnection;
+import javax.xml.xpath.XPathExpressionException;
+import libcore.io.IoUtils;
+import org.kxml2.io.KXmlParser;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+/**
+ * Evaluates a simple absolute path like {@code /a/b//c} or {@code //c/@d}
+ * directly on a parser's events, without building a document. Only the first
+ * matching node is needed for string, number and boolean results, so parsing
+ * stops as soon as that node is complete.
+ *
+ * <p>The path's element steps are tracked as a set of bits per open element:
+ * bit {@code i} is set if the element is a context node for step {@code i}.
+ * A child sets bit {@code i + 1} if it matches step {@code i}, and inherits
+ * bit {@code i} if that step is on the descendant axis.
+ *
+ * <p>Because parsing stops early, malformed content after the first match is
+ * not reported.
+ */
+final class StreamingPath {
+
+    /** Element steps, each on the child or descendant axis. */
+    private final Step[] elementSteps;
+
+    /** The final attribute step, or null if the path selects elements. */
+    private final Step attributeStep;
+
+    private StreamingPath(Step[] elementSteps, Step attributeStep) {
+        this.elementSteps = elementSteps;
+        this.attributeStep = attributeStep;
+    }
+
+    /**
+     * Returns a streaming evaluator for {@code expr}, or null if it isn't a
+     * path that can be evaluated on a stream.
+     */
+    static StreamingPath create(Expr expr) {
+        if (!(expr instanceof LocationPath)) {
+            return null;
+        }
+        LocationPath path = (LocationPath) expr;
+        Step[] steps = path.steps;
+        if (!path.absolute || path.start != null || steps.length == 0 || steps.length > 63) {
+            return null;
+        }
+
+        Step attributeStep = null;
+        int elementStepCount = steps.length;
+        Step last = steps[steps.length - 1];
+        if (last.axis == Step.ATTRIBUTE) {
+            // Attribute order is unspecified, so the test must match at most one.
+            if (last.predicates.length != 0 || last.test.kind != Step.NodeTest.NAME
+                    || last.test.localName == null) {
+                return null;
+            }
+            attributeStep = last;
+            elementStepCount--;
+        }
+
+        Step[] elementSteps = new Step[elementStepCount];
+        for (int i = 0; i < elementStepCount; i++) {
+            Step step = steps[i];
+            if ((step.axis != Step.CHILD && step.axis != Step.DESCENDANT)
+                    || step.predicates.length != 0
+                    || step.test.kind != Step.NodeTest.NAME
+                    || step.test.principalType != Node.ELEMENT_NODE) {
+                return null;
+            }
+            elementSteps[i] = step;
+        }
+        return new StreamingPath(elementSteps, attributeStep);
+    }
+
+    /**
+     * Returns the string value of the first node selected from the document
+     * in {@code source}, or null if no node is selected.
+     *
+     * @param needValue false if only the presence of a node is of interest,
+     *     in which case the empty string is returned for a match.
+     */
+    String evaluate(InputSource source, boolean needValue) throws XPathExpressionException {
+        KXmlParser parser = new KXmlParser();
+        try {
+            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+            String encoding = source.getEncoding();
+            if (source.getByteStream() != null) {
+                parser.setInput(source.getByteStream(), encoding);
+            } else if (source.getCharacterStream() != null) {
+                parser.setInput(source.getCharacterStream());
+            } else if (source.getSystemId() != null) {
+                URLConnection connection = new URL(source.getSystemId()).openConnection();
+                connection.connect();
+                parser.setInput(connection.getInputStream(), encoding);
+            } else {
+                throw new XPathExpressionException("InputSource needs a stream, reader or URI");
+            }
+            return select(parser, needValue);
+        } catch (XmlPullParserException e) {
+            throw new XPathExpressionException(e);
+        } catch (IOException e) {
+            throw new XPathExpressionException(e);
+        } finally {
+            IoUtils.closeQuietly(parser);
+        }
+    }
+
+    private String select(KXmlParser parser, boolean needValue)
+            throws XmlPullParserException, IOException {
+        int matchBit = elementSteps.length;
+        long[] states = new long[16];
+        states[0] = 1L; // the document is the context node for the first step
+
+        for (int event = parser.next(); event != XmlPullParser.END_DOCUMENT;
+                event = parser.next()) {
+            if (event != XmlPullParser.START_TAG) {
+                continue;
+            }
+
+            int depth = parser.getDepth();
+            long parentState = states[depth - 1];
+            String namespaceURI = parser.getNamespace();
+            if (namespaceURI.length() == 0) {
+                namespaceURI = null;
+            }
+            String localName = parser.getName();
+            long state = 0;
+            for (int i = 0; i < elementSteps.length; i++) {
+                if ((parentState & (1L << i)) == 0) {
+                    continue;
+                }
+                Step step = elementSteps[i];
+                if (step.axis == Step.DESCENDANT) {
+                    state |= 1L << i;
+                }
+                if (step.test.matchesName(namespaceURI, localName)) {
+                    state |= 1L << (i + 1);
+                }
+            }
+
+            if ((state & (1L << matchBit)) != 0) {
+                if (attributeStep != null) {
+                    String value = attributeValue(parser);
+                    if (value != null) {
+                        return value;
+                    }
+                } else {
+                    return needValue ? text(parser, depth) : "";
+                }
+            }
+
+            if (depth == states.length) {
+                long[] newStates = new long[depth * 2];
+                System.arraycopy(states, 0, newStates, 0, depth);
+                states = newStates;
+            }
+            states[depth] = state;
+        }
+        return null;
+    }
+
+    private String attributeValue(KXmlParser parser) {
+        for (int i = 0; i < parser.getAttributeCount(); i++) {
+            String namespaceURI = parser.getAttributeNamespace(i);
+            if (namespaceURI.length() == 0) {
+                namespaceURI = null;
+            }
+            if (attributeStep.test.matchesName(namespaceURI, parser.getAttributeName(i))) {
+                return parser.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the text content of the element that starts at the current
+     * event, consuming events up to its end tag.
+     */
+    private static String text(KXmlParser parser, int depth)
+            throws XmlPullParserException, IOException {
+        StringBuilder result = new StringBuilder();
+        while (true) {
+            int event = parser.next();
+            if (event == XmlPullParser.TEXT) {
+                result.append(parser.getText());
+            } else if (event == XmlPullParser.END_DOCUMENT
+                    || (event == XmlPullParser.END_TAG && parser.getDepth() == depth)) {
+                return result.toString();
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.xml.xpath;
+
+import java.io.IOException;
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathVariableResolver;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * A compiled expression. Instances hold no evaluation state and may be reused,
+ * and shared between threads that don't modify the documents they query.
+ */
+final class XPathExpressionImpl implements XPathExpression {
+
+    private static final int NODESET = 0;
+    private static final int NODE = 1;
+    private static final int STRING = 2;
+    private static final int NUMBER = 3;
+    private static final int BOOLEAN = 4;
+
+    private final Expr expr;
+    private final XPathVariableResolver variableResolver;
+
+    /** Non-null if this expression can be evaluated on a stream of parser events. */
+    private final StreamingPath streamingPath;
+
+    XPathExpressionImpl(Expr expr, XPathVariableResolver variableResolver) {
+        this.expr = expr;
+        this.variableResolver = variableResolver;
+        this.streamingPath = StreamingPath.create(expr);
+    }
+
+    public Object evaluate(Object item, QName returnType) throws XPathExpressionException {
+        int type = returnType(returnType);
+        Node node;
+        if (item == null || item instanceof Node) {
+            node = (Node) item;
+        } else {
+            throw new XPathExpressionException("Unsupported context item: " + item.getClass());
+        }
+
+        Context context = new Context(node, 1, 1, variableResolver);
+        switch (type) {
+        case NODESET:
+            return Nodes.asNodeList(expr.evaluateNodeSet(context));
+        case NODE:
+            return expr.evaluateFirst(context);
+        case STRING:
+            return expr.evaluateString(context);
+        case NUMBER:
+            return expr.evaluateNumber(context);
+        default:
+            return expr.evaluateBoolean(context);
+        }
+    }
+
+    public String evaluate(Object item) throws XPathExpressionException {
+        return (String) evaluate(item, XPathConstants.STRING);
+    }
+
+    /**
+     * Evaluates this expression against the document read from {@code source}.
+     * Simple absolute paths whose result is a string, number or boolean are
+     * evaluated directly on the parser's events; parsing stops as soon as the
+     * first matching node is complete. Everything else is evaluated on a DOM
+     * document.
+     */
+    public Object evaluate(InputSource source, QName returnType)
+            throws XPathExpressionException {
+        if (source == null) {
+            throw new NullPointerException("source == null");
+        }
+        int type = returnType(returnType);
+
+        if (streamingPath != null && type >= STRING) {
+            String value = streamingPath.evaluate(source, type != BOOLEAN);
+            switch (type) {
+            case STRING:
+                return value != null ? value : "";
+            case NUMBER:
+                return value != null ? Expr.parseNumber(value) : Double.NaN;
+            default:
+                return value != null;
+            }
+        }
+
+        return evaluate(parse(source), returnType);
+    }
+
+    public String evaluate(InputSource source) throws XPathExpressionException {
+        return (String) evaluate(source, XPathConstants.STRING);
+    }
+
+    private static Document parse(InputSource source) throws XPathExpressionException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            return factory.newDocumentBuilder().parse(source);
+        } catch (ParserConfigurationException e) {
+            throw new XPathExpressionException(e);
+        } catch (SAXException e) {
+            throw new XPathExpressionException(e);
+        } catch (IOException e) {
+            throw new XPathExpressionException(e);
+        }
+    }
+
+    private static int returnType(QName returnType) {
+        if (returnType == null) {
+            throw new NullPointerException("returnType == null");
+        } else if (returnType.equals(XPathConstants.NODESET)) {
+            return NODESET;
+        } else if (returnType.equals(XPathConstants.NODE)) {
+            return NODE;
+        } else if (returnType.equals(XPathConstants.STRING)) {
+            return STRING;
+        } else if (returnType.equals(XPathConstants.NUMBER)) {
+            return NUMBER;
+        } else if (returnType.equals(XPathConstants.BOOLEAN)) {
+            return BOOLEAN;
+        } else {
+            throw new IllegalArgumentException("Unsupported return type: " + returnType);
+        }
+    }
+}
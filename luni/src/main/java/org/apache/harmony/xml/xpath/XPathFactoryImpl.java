@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.xml.xpath;
+
+import javax.xml.XMLConstants;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathFactory;
+import javax.xml.xpath.XPathFactoryConfigurationException;
+import javax.xml.xpath.XPathFunctionResolver;
+import javax.xml.xpath.XPathVariableResolver;
+
+/**
+ * An XPath 1.0 implementation for the W3C DOM. Expressions are compiled once
+ * into a tree of expressions and steps that can be evaluated any number of
+ * times. Location paths are evaluated depth first, so most paths select their
+ * nodes without building a node set for each step.
+ */
+public final class XPathFactoryImpl extends XPathFactory {
+
+    private boolean secureProcessing;
+    private XPathVariableResolver variableResolver;
+    private XPathFunctionResolver functionResolver;
+
+    @Override
+    public boolean isObjectModelSupported(String objectModel) {
+        if (objectModel == null) {
+            throw new NullPointerException("objectModel == null");
+        }
+        return DEFAULT_OBJECT_MODEL_URI.equals(objectModel);
+    }
+
+    @Override
+    public void setFeature(String name, boolean value)
+            throws XPathFactoryConfigurationException {
+        if (name == null) {
+            throw new NullPointerException("name == null");
+        }
+        if (!XMLConstants.FEATURE_SECURE_PROCESSING.equals(name)) {
+            throw new XPathFactoryConfigurationException("Unsupported feature: " + name);
+        }
+        secureProcessing = value;
+    }
+
+    @Override
+    public boolean getFeature(String name) throws XPathFactoryConfigurationException {
+        if (name == null) {
+            throw new NullPointerException("name == null");
+        }
+        if (!XMLConstants.FEATURE_SECURE_PROCESSING.equals(name)) {
+            throw new XPathFactoryConfigurationException("Unsupported feature: " + name);
+        }
+        return secureProcessing;
+    }
+
+    @Override
+    public void setXPathVariableResolver(XPathVariableResolver resolver) {
+        if (resolver == null) {
+            throw new NullPointerException("resolver == null");
+        }
+        variableResolver = resolver;
+    }
+
+    @Override
+    public void setXPathFunctionResolver(XPathFunctionResolver resolver) {
+        if (resolver == null) {
+            throw new NullPointerException("resolver == null");
+        }
+        functionResolver = resolver;
+    }
+
+    @Override
+    public XPath newXPath() {
+        return new XPathImpl(variableResolver, functionResolver, secureProcessing);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.xml.xpath;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFunctionResolver;
+import javax.xml.xpath.XPathVariableResolver;
+import org.xml.sax.InputSource;
+
+/**
+ * Compiles expressions with the resolvers and namespace context in effect at
+ * the time of compilation.
+ */
+final class XPathImpl implements XPath {
+
+    private final XPathVariableResolver defaultVariableResolver;
+    private final XPathFunctionResolver defaultFunctionResolver;
+    private final boolean secureProcessing;
+
+    private XPathVariableResolver variableResolver;
+    private XPathFunctionResolver functionResolver;
+    private NamespaceContext namespaceContext;
+
+    XPathImpl(XPathVariableResolver variableResolver, XPathFunctionResolver functionResolver,
+            boolean secureProcessing) {
+        this.defaultVariableResolver = variableResolver;
+        this.defaultFunctionResolver = functionResolver;
+        this.secureProcessing = secureProcessing;
+        reset();
+    }
+
+    public void reset() {
+        variableResolver = defaultVariableResolver;
+        functionResolver = defaultFunctionResolver;
+        namespaceContext = null;
+    }
+
+    public void setXPathVariableResolver(XPathVariableResolver resolver) {
+        if (resolver == null) {
+            throw new NullPointerException("resolver == null");
+        }
+        variableResolver = resolver;
+    }
+
+    public XPathVariableResolver getXPathVariableResolver() {
+        return variableResolver;
+    }
+
+    public void setXPathFunctionResolver(XPathFunctionResolver resolver) {
+        if (resolver == null) {
+            throw new NullPointerException("resolver == null");
+        }
+        functionResolver = resolver;
+    }
+
+    public XPathFunctionResolver getXPathFunctionResolver() {
+        return functionResolver;
+    }
+
+    public void setNamespaceContext(NamespaceContext namespaceContext) {
+        if (namespaceContext == null) {
+            throw new NullPointerException("namespaceContext == null");
+        }
+        this.namespaceContext = namespaceContext;
+    }
+
+    public NamespaceContext getNamespaceContext() {
+        return namespaceContext;
+    }
+
+    public XPathExpression compile(String expression) throws XPathExpressionException {
+        if (expression == null) {
+            throw new NullPointerException("expression == null");
+        }
+        Expr expr = new XPathParser(expression, namespaceContext, functionResolver,
+                secureProcessing).parse();
+        return new XPathExpressionImpl(expr, variableResolver);
+    }
+
+    public Object evaluate(String expression, Object item, QName returnType)
+            throws XPathExpressionException {
+        return compile(expression).evaluate(item, returnType);
+    }
+
+    public String evaluate(String expression, Object item) throws XPathExpressionException {
+        return compile(expression).evaluate(item);
+    }
+
+    public Object evaluate(String expression, InputSource source, QName returnType)
+            throws XPathExpressionException {
+        return compile(expression).evaluate(source, returnType);
+    }
+
+    public String evaluate(String expression, InputSource source)
+            throws XPathExpressionException {
+        return compile(expression).evaluate(source);
+    }
+}
@@ -0,0 +1,622 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.xml.xpath;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFunction;
+import javax.xml.xpath.XPathFunctionException;
+import javax.xml.xpath.XPathFunctionResolver;
+
+/**
+ * Compiles an XPath 1.0 expression. Namespace prefixes and extension functions
+ * are resolved at compile time; variables are resolved on evaluation.
+ */
+final class XPathParser {
+
+    // Token types.
+    private static final int END = 0;
+    private static final int SYMBOL = 1;
+    private static final int NAME_TEST = 2;
+    private static final int NODE_TYPE = 3;
+    private static final int FUNCTION_NAME = 4;
+    private static final int AXIS_NAME = 5;
+    private static final int OPERATOR_NAME = 6;
+    private static final int MULTIPLY = 7;
+    private static final int LITERAL = 8;
+    private static final int NUMBER = 9;
+    private static final int VARIABLE = 10;
+
+    private final String expression;
+    private final NamespaceContext namespaceContext;
+    private final XPathFunctionResolver functionResolver;
+    private final boolean secureProcessing;
+
+    private final List<Integer> types = new ArrayList<Integer>();
+    private final List<String> texts = new ArrayList<String>();
+    private int token;
+
+    XPathParser(String expression, NamespaceContext namespaceContext,
+            XPathFunctionResolver functionResolver, boolean secureProcessing) {
+        this.expression = expression;
+        this.namespaceContext = namespaceContext;
+        this.functionResolver = functionResolver;
+        this.secureProcessing = secureProcessing;
+    }
+
+    Expr parse() throws XPathExpressionException {
+        tokenize();
+        Expr result = parseOr();
+        if (type() != END) {
+            throw syntaxError("Unexpected '" + text() + "'");
+        }
+        return result;
+    }
+
+    private XPathExpressionException syntaxError(String message) {
+        return new XPathExpressionException(message + " in " + expression);
+    }
+
+    // Tokenizer.
+
+    private void tokenize() throws XPathExpressionException {
+        String s = expression;
+        int length = s.length();
+        int i = 0;
+        while (true) {
+            while (i < length && Expr.isWhitespace(s.charAt(i))) {
+                i++;
+            }
+            if (i == length) {
+                addToken(END, "");
+                return;
+            }
+
+            char c = s.charAt(i);
+            int start = i;
+            if ("()[]@,|+-=".indexOf(c) != -1) {
+                addToken(SYMBOL, String.valueOf(c));
+                i++;
+            } else if (c == '!' && s.startsWith("!=", i)) {
+                addToken(SYMBOL, "!=");
+                i += 2;
+            } else if (c == '<' || c == '>') {
+                i += s.startsWith("=", i + 1) ? 2 : 1;
+                addToken(SYMBOL, s.substring(start, i));
+            } else if (c == '/') {
+                i += s.startsWith("/", i + 1) ? 2 : 1;
+                addToken(SYMBOL, s.substring(start, i));
+            } else if (c == '.' && !(i + 1 < length && isDigit(s.charAt(i + 1)))) {
+                i += s.startsWith(".", i + 1) ? 2 : 1;
+                addToken(SYMBOL, s.substring(start, i));
+            } else if (c == '.' || isDigit(c)) {
+                while (i < length && isDigit(s.charAt(i))) {
+                    i++;
+                }
+                if (i < length && s.charAt(i) == '.') {
+                    i++;
+                    while (i < length && isDigit(s.charAt(i))) {
+                        i++;
+                    }
+                }
+                addToken(NUMBER, s.substring(start, i));
+            } else if (c == '"' || c == '\'') {
+                int end = s.indexOf(c, i + 1);
+                if (end == -1) {
+                    throw syntaxError("Unterminated literal");
+                }
+                addToken(LITERAL, s.substring(i + 1, end));
+                i = end + 1;
+            } else if (c == '$') {
+                i = scanQName(i + 1);
+                if (i == start + 1) {
+                    throw syntaxError("Expected a variable name after '$'");
+                }
+                addToken(VARIABLE, s.substring(start + 1, i));
+            } else if (c == '*') {
+                addToken(precedesOperator() ? MULTIPLY : NAME_TEST, "*");
+                i++;
+            } else if (isNameStart(c)) {
+                i = scanNCName(i);
+                String name = s.substring(start, i);
+                if (precedesOperator()) {
+                    if (!name.equals("and") && !name.equals("or")
+                            && !name.equals("mod") && !name.equals("div")) {
+                        throw syntaxError("Expected an operator but was '" + name + "'");
+                    }
+                    addToken(OPERATOR_NAME, name);
+                    continue;
+                }
+
+                if (s.startsWith(":*", i)) {
+                    addToken(NAME_TEST, s.substring(start, i + 2));
+                    i += 2;
+                    continue;
+                }
+                if (i + 1 < length && s.charAt(i) == ':' && isNameStart(s.charAt(i + 1))) {
+                    i = scanNCName(i + 1);
+                    name = s.substring(start, i);
+                }
+
+                int next = i;
+                while (next < length && Expr.isWhitespace(s.charAt(next))) {
+                    next++;
+                }
+                if (s.startsWith("(", next)) {
+                    boolean nodeType = name.equals("node") || name.equals("text")
+                            || name.equals("comment") || name.equals("processing-instruction");
+                    addToken(nodeType ? NODE_TYPE : FUNCTION_NAME, name);
+                } else if (s.startsWith("::", next)) {
+                    addToken(AXIS_NAME, name);
+                    i = next + 2;
+                } else {
+                    addToken(NAME_TEST, name);
+                }
+            } else {
+                throw syntaxError("Unexpected character '" + c + "'");
+            }
+        }
+    }
+
+    /**
+     * Returns true if the next token must be an operator: there is a
+     * preceding token and it is not one of @, ::, (, [, , or an operator.
+     */
+    private boolean precedesOperator() {
+        if (types.isEmpty()) {
+            return false;
+        }
+        int last = types.get(types.size() - 1);
+        if (last == SYMBOL) {
+            String symbol = texts.get(texts.size() - 1);
+            return symbol.equals(")") || symbol.equals("]")
+                    || symbol.equals(".") || symbol.equals("..");
+        }
+        return last == NAME_TEST || last == LITERAL || last == NUMBER || last == VARIABLE;
+    }
+
+    private void addToken(int type, String text) {
+        types.add(type);
+        texts.add(text);
+    }
+
+    private int scanNCName(int i) {
+        int length = expression.length();
+        if (i < length && isNameStart(expression.charAt(i))) {
+            i++;
+            while (i < length && isNamePart(expression.charAt(i))) {
+                i++;
+            }
+        }
+        return i;
+    }
+
+    private int scanQName(int i) {
+        int end = scanNCName(i);
+        if (end > i && end + 1 < expression.length() && expression.charAt(end) == ':'
+                && isNameStart(expression.charAt(end + 1))) {
+            end = scanNCName(end + 1);
+        }
+        return end;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isNameStart(char c) {
+        return c == '_' || Character.isLetter(c);
+    }
+
+    private static boolean isNamePart(char c) {
+        if (isNameStart(c) || isDigit(c) || c == '.' || c == '-' || c == '\u00b7') {
+            return true;
+        }
+        int type = Character.getType(c);
+        return type == Character.DECIMAL_DIGIT_NUMBER
+                || type == Character.NON_SPACING_MARK
+                || type == Character.COMBINING_SPACING_MARK
+                || type == Character.ENCLOSING_MARK
+                || type == Character.MODIFIER_LETTER;
+    }
+
+    // Parser.
+
+    private int type() {
+        return types.get(token);
+    }
+
+    private String text() {
+        return texts.get(token);
+    }
+
+    private boolean isSymbol(String symbol) {
+        return type() == SYMBOL && text().equals(symbol);
+    }
+
+    private void expectSymbol(String symbol) throws XPathExpressionException {
+        if (!isSymbol(symbol)) {
+            throw syntaxError(type() == END
+                    ? "Expected '" + symbol + "' at end"
+                    : "Expected '" + symbol + "' but was '" + text() + "'");
+        }
+        token++;
+    }
+
+    private Expr parseOr() throws XPathExpressionException {
+        Expr result = parseAnd();
+        while (type() == OPERATOR_NAME && text().equals("or")) {
+            token++;
+            result = new Expr.Binary(Expr.Binary.OR, result, parseAnd());
+        }
+        return result;
+    }
+
+    private Expr parseAnd() throws XPathExpressionException {
+        Expr result = parseEquality();
+        while (type() == OPERATOR_NAME && text().equals("and")) {
+            token++;
+            result = new Expr.Binary(Expr.Binary.AND, result, parseEquality());
+        }
+        return result;
+    }
+
+    private Expr parseEquality() throws XPathExpressionException {
+        Expr result = parseRelational();
+        while (true) {
+            int op;
+            if (isSymbol("=")) {
+                op = Expr.Binary.EQ;
+            } else if (isSymbol("!=")) {
+                op = Expr.Binary.NE;
+            } else {
+                return result;
+            }
+            token++;
+            result = new Expr.Binary(op, result, parseRelational());
+        }
+    }
+
+    private Expr parseRelational() throws XPathExpressionException {
+        Expr result = parseAdditive();
+        while (true) {
+            int op;
+            if (isSymbol("<")) {
+                op = Expr.Binary.LT;
+            } else if (isSymbol("<=")) {
+                op = Expr.Binary.LE;
+            } else if (isSymbol(">")) {
+                op = Expr.Binary.GT;
+            } else if (isSymbol(">=")) {
+                op = Expr.Binary.GE;
+            } else {
+                return result;
+            }
+            token++;
+            result = new Expr.Binary(op, result, parseAdditive());
+        }
+    }
+
+    private Expr parseAdditive() throws XPathExpressionException {
+        Expr result = parseMultiplicative();
+        while (true) {
+            int op;
+            if (isSymbol("+")) {
+                op = Expr.Binary.PLUS;
+            } else if (isSymbol("-")) {
+                op = Expr.Binary.MINUS;
+            } else {
+                return result;
+            }
+            token++;
+            result = new Expr.Binary(op, result, parseMultiplicative());
+        }
+    }
+
+    private Expr parseMultiplicative() throws XPathExpressionException {
+        Expr result = parseUnary();
+        while (true) {
+            int op;
+            if (type() == MULTIPLY) {
+                op = Expr.Binary.MULTIPLY;
+            } else if (type() == OPERATOR_NAME && text().equals("div")) {
+                op = Expr.Binary.DIV;
+            } else if (type() == OPERATOR_NAME && text().equals("mod")) {
+                op = Expr.Binary.MOD;
+            } else {
+                return result;
+            }
+            token++;
+            result = new Expr.Binary(op, result, parseUnary());
+        }
+    }
+
+    private Expr parseUnary() throws XPathExpressionException {
+        if (isSymbol("-")) {
+            token++;
+            return new Expr.Negate(parseUnary());
+        }
+        Expr result = parsePath();
+        while (isSymbol("|")) {
+            token++;
+            result = new Expr.Union(result, parsePath());
+        }
+        return result;
+    }
+
+    private Expr parsePath() throws XPathExpressionException {
+        int type = type();
+        if (type == VARIABLE || type == LITERAL || type == NUMBER || type == FUNCTION_NAME
+                || isSymbol("(")) {
+            Expr filter = parseFilter();
+            if (!isSymbol("/") && !isSymbol("//")) {
+                return filter;
+            }
+            List<Step> steps = new ArrayList<Step>();
+            parseRelativePath(steps);
+            return new LocationPath(filter, false, optimize(steps));
+        }
+
+        List<Step> steps = new ArrayList<Step>();
+        boolean absolute = isSymbol("/") || isSymbol("//");
+        if (isSymbol("/")) {
+            token++;
+            if (startsStep()) {
+                steps.add(parseStep());
+                parseRelativePath(steps);
+            }
+        } else {
+            if (!isSymbol("//")) {
+                steps.add(parseStep());
+            }
+            parseRelativePath(steps);
+        }
+        return new LocationPath(null, absolute, optimize(steps));
+    }
+
+    /**
+     * Parses steps separated by '/' and '//' while the next token is one of
+     * those separators.
+     */
+    private void parseRelativePath(List<Step> steps) throws XPathExpressionException {
+        while (isSymbol("/") || isSymbol("//")) {
+            if (isSymbol("//")) {
+                steps.add(descendantOrSelf());
+            }
+            token++;
+            steps.add(parseStep());
+        }
+    }
+
+    private boolean startsStep() {
+        int type = type();
+        return type == NAME_TEST || type == NODE_TYPE || type == AXIS_NAME
+                || isSymbol("@") || isSymbol(".") || isSymbol("..");
+    }
+
+    private static Step descendantOrSelf() {
+        return new Step(Step.DESCENDANT_OR_SELF, Step.NodeTest.type(Step.NodeTest.NODE, null),
+                new Expr[0]);
+    }
+
+    private Step parseStep() throws XPathExpressionException {
+        if (isSymbol(".")) {
+            token++;
+            return new Step(Step.SELF, Step.NodeTest.type(Step.NodeTest.NODE, null), new Expr[0]);
+        } else if (isSymbol("..")) {
+            token++;
+            return new Step(Step.PARENT, Step.NodeTest.type(Step.NodeTest.NODE, null),
+                    new Expr[0]);
+        }
+
+        int axis = Step.CHILD;
+        if (isSymbol("@")) {
+            token++;
+            axis = Step.ATTRIBUTE;
+        } else if (type() == AXIS_NAME) {
+            axis = axis(text());
+            token++;
+        }
+
+        Step.NodeTest test = parseNodeTest(axis);
+        List<Expr> predicates = new ArrayList<Expr>();
+        while (isSymbol("[")) {
+            token++;
+            predicates.add(parseOr());
+            expectSymbol("]");
+        }
+        return new Step(axis, test, predicates.toArray(new Expr[predicates.size()]));
+    }
+
+    private int axis(String name) throws XPathExpressionException {
+        for (int i = 0; i < Step.AXIS_NAMES.length; i++) {
+            if (Step.AXIS_NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+        throw syntaxError("Unknown axis " + name);
+    }
+
+    private Step.NodeTest parseNodeTest(int axis) throws XPathExpressionException {
+        if (type() == NAME_TEST) {
+            String name = text();
+            token++;
+            if (name.equals("*")) {
+                return Step.NodeTest.anyName(axis);
+            } else if (name.endsWith(":*")) {
+                String prefix = name.substring(0, name.length() - 2);
+                return Step.NodeTest.name(axis, namespaceURI(prefix), null);
+            } else {
+                QName qName = qName(name);
+                String namespaceURI = qName.getNamespaceURI();
+                return Step.NodeTest.name(axis,
+                        namespaceURI.length() > 0 ? namespaceURI : null, qName.getLocalPart());
+            }
+        }
+
+        if (type() == NODE_TYPE) {
+            String name = text();
+            token++;
+            expectSymbol("(");
+            String target = null;
+            if (name.equals("processing-instruction") && type() == LITERAL) {
+                target = text();
+                token++;
+            }
+            expectSymbol(")");
+            int kind;
+            if (name.equals("node")) {
+                kind = Step.NodeTest.NODE;
+            } else if (name.equals("text")) {
+                kind = Step.NodeTest.TEXT;
+            } else if (name.equals("comment")) {
+                kind = Step.NodeTest.COMMENT;
+            } else {
+                kind = Step.NodeTest.PROCESSING_INSTRUCTION;
+            }
+            return Step.NodeTest.type(kind, target);
+        }
+
+        throw syntaxError(type() == END
+                ? "Expected a node test at end"
+                : "Expected a node test but was '" + text() + "'");
+    }
+
+    private Expr parseFilter() throws XPathExpressionException {
+        Expr primary = parsePrimary();
+        if (!isSymbol("[")) {
+            return primary;
+        }
+        List<Expr> predicates = new ArrayList<Expr>();
+        while (isSymbol("[")) {
+            token++;
+            predicates.add(parseOr());
+            expectSymbol("]");
+        }
+        return new Expr.Filter(primary, predicates.toArray(new Expr[predicates.size()]));
+    }
+
+    private Expr parsePrimary() throws XPathExpressionException {
+        int type = type();
+        String text = text();
+        token++;
+        switch (type) {
+        case VARIABLE:
+            return new Expr.Variable(qName(text));
+        case LITERAL:
+            return new Expr.Constant(text);
+        case NUMBER:
+            return new Expr.Constant(Double.valueOf(text));
+        case FUNCTION_NAME:
+            return parseFunctionCall(text);
+        default:
+            Expr result = parseOr();
+            expectSymbol(")");
+            return result;
+        }
+    }
+
+    private Expr parseFunctionCall(String name) throws XPathExpressionException {
+        expectSymbol("(");
+        List<Expr> argList = new ArrayList<Expr>();
+        if (!isSymbol(")")) {
+            argList.add(parseOr());
+            while (isSymbol(",")) {
+                token++;
+                argList.add(parseOr());
+            }
+        }
+        expectSymbol(")");
+        Expr[] args = argList.toArray(new Expr[argList.size()]);
+
+        if (name.indexOf(':') == -1) {
+            Expr result = FunctionCall.create(name, args);
+            if (result == null) {
+                throw syntaxError("Unknown function " + name + "()");
+            }
+            return result;
+        }
+
+        QName qName = qName(name);
+        if (secureProcessing) {
+            throw new XPathFunctionException(
+                    "Extension functions are disabled by secure processing: " + name);
+        }
+        XPathFunction function = functionResolver != null
+                ? functionResolver.resolveFunction(qName, args.length)
+                : null;
+        if (function == null) {
+            throw syntaxError("Unknown function " + name + "()");
+        }
+        return new FunctionCall.Extension(function, args);
+    }
+
+    private QName qName(String name) throws XPathExpressionException {
+        int colon = name.indexOf(':');
+        if (colon == -1) {
+            return new QName(name);
+        }
+        String prefix = name.substring(0, colon);
+        return new QName(namespaceURI(prefix), name.substring(colon + 1), prefix);
+    }
+
+    private String namespaceURI(String prefix) throws XPathExpressionException {
+        String namespaceURI = namespaceContext != null
+                ? namespaceContext.getNamespaceURI(prefix)
+                : null;
+        if (namespaceURI == null || namespaceURI.length() == 0) {
+            if (prefix.equals(XMLConstants.XML_NS_PREFIX)) {
+                return XMLConstants.XML_NS_URI;
+            }
+            throw syntaxError("Undeclared namespace prefix " + prefix);
+        }
+        return namespaceURI;
+    }
+
+    /**
+     * Simplifies steps: "descendant-or-self::node()/child::x" becomes
+     * "descendant::x" when x's predicates don't depend on its position, and
+     * redundant "self::node()" steps are dropped.
+     */
+    private static Step[] optimize(List<Step> steps) {
+        List<Step> result = new ArrayList<Step>(steps.size());
+        for (int i = 0; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            if (isAnyNode(step, Step.DESCENDANT_OR_SELF) && i + 1 < steps.size()) {
+                Step next = steps.get(i + 1);
+                if (next.axis == Step.CHILD && !next.isPositional()) {
+                    result.add(new Step(Step.DESCENDANT, next.test, next.predicates));
+                    i++;
+                    continue;
+                }
+            }
+            if (isAnyNode(step, Step.SELF) && steps.size() > 1) {
+                continue;
+            }
+            result.add(step);
+        }
+        return result.toArray(new Step[result.size()]);
+    }
+
+    private static boolean isAnyNode(Step step, int axis) {
+        return step.axis == axis && step.test.isNodeTypeTest() && step.predicates.length == 0;
+    }
+}
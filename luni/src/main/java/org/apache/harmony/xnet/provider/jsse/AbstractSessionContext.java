@@ -23,21 +23,47 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateEncodingException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.net.ssl.SSLSession;
 import javax.net.ssl.SSLSessionContext;
 import org.apache.harmony.security.provider.cert.X509CertImpl;
 
 /**
  * Supports SSL session caches.
+ *
+ * <p>Sessions are spread over a fixed number of shards, each an
+ * access-ordered map guarded by its own lock, so that concurrent handshakes
+ * with different peers don't contend on a single monitor. Every access
+ * stamps the entry from a shared clock; since each shard's eldest entry is
+ * its least recently used one, the least recently used session overall is
+ * found by comparing the shard heads.
+ *
+ * <p>When a session timeout is set, expired sessions are swept on a
+ * background thread at most every half timeout, in addition to being
+ * rejected on lookup.
  */
 abstract class AbstractSessionContext implements SSLSessionContext {
 
+    /** Number of shards; a power of two. */
+    private static final int SHARD_COUNT = 16;
+
+    /** Lower bound for the interval between two background sweeps. */
+    private static final long MIN_SWEEP_INTERVAL_MILLIS = 1000;
+
     volatile int maximumSize;
     volatile int timeout;
 
@@ -46,15 +72,56 @@ abstract class AbstractSessionContext implements SSLSessionContext {
     /** Identifies OpenSSL sessions. */
     static final int OPEN_SSL = 1;
 
-    private final Map<ByteArray, SSLSession> sessions
-            = new LinkedHashMap<ByteArray, SSLSession>() {
-        @Override
-        protected boolean removeEldestEntry(
-                Map.Entry<ByteArray, SSLSession> eldest) {
-            return maximumSize > 0 && size() > maximumSize;
+    private static final class Entry {
+        final SSLSession session;
+        long lastAccess; // guarded by the shard
+
+        Entry(SSLSession session, long lastAccess) {
+            this.session = session;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    /**
+     * A session and its access stamp, copied under the shard lock so that
+     * they can be compared after it is released.
+     */
+    private static final class StampedSession {
+        final SSLSession session;
+        final long lastAccess;
+
+        StampedSession(SSLSession session, long lastAccess) {
+            this.session = session;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private final LinkedHashMap<ByteArray, Entry>[] shards = newShards();
+
+    /** Number of entries across all shards. */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /** Source of the access stamps that order entries across shards. */
+    private final AtomicLong clock = new AtomicLong();
+
+    /** This cache uses a single background thread to sweep expired sessions. */
+    private final ExecutorService executorService = new ThreadPoolExecutor(0, 1,
+            60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+    private final AtomicBoolean sweepScheduled = new AtomicBoolean();
+    private volatile long nextSweepMillis;
+    private final Runnable sweepRunnable = new Runnable() {
+        public void run() {
+            try {
+                removeInvalidSessions();
+            } finally {
+                sweepScheduled.set(false);
+            }
         }
     };
 
+    private final AtomicLong resumedHandshakes = new AtomicLong();
+    private final AtomicLong fullHandshakes = new AtomicLong();
+
     /**
      * Constructs a new session context.
      *
@@ -66,15 +133,47 @@ abstract class AbstractSessionContext implements SSLSessionContext {
         this.timeout = timeout;
     }
 
+    @SuppressWarnings("unchecked")
+    private static LinkedHashMap<ByteArray, Entry>[] newShards() {
+        LinkedHashMap<ByteArray, Entry>[] result = new LinkedHashMap[SHARD_COUNT];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new LinkedHashMap<ByteArray, Entry>(16, 0.75f, true /* access order */);
+        }
+        return result;
+    }
+
+    private LinkedHashMap<ByteArray, Entry> shardFor(ByteArray key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return shards[h & (SHARD_COUNT - 1)];
+    }
+
     /**
      * Returns the collection of sessions ordered from oldest to newest
      */
     private Iterator<SSLSession> sessionIterator() {
-        synchronized (sessions) {
-            SSLSession[] array = sessions.values().toArray(
-                    new SSLSession[sessions.size()]);
-            return Arrays.asList(array).iterator();
+        List<StampedSession> entries = new ArrayList<StampedSession>(size.get());
+        for (LinkedHashMap<ByteArray, Entry> shard : shards) {
+            synchronized (shard) {
+                for (Entry entry : shard.values()) {
+                    entries.add(new StampedSession(entry.session, entry.lastAccess));
+                }
+            }
         }
+        StampedSession[] array = entries.toArray(new StampedSession[entries.size()]);
+        // The copies can't change while sorting, unlike the entries' stamps.
+        Arrays.sort(array, new Comparator<StampedSession>() {
+            public int compare(StampedSession a, StampedSession b) {
+                long lhs = a.lastAccess;
+                long rhs = b.lastAccess;
+                return lhs < rhs ? -1 : (lhs == rhs ? 0 : 1);
+            }
+        });
+        List<SSLSession> sessions = new ArrayList<SSLSession>(array.length);
+        for (StampedSession entry : array) {
+            sessions.add(entry.session);
+        }
+        return sessions.iterator();
     }
 
     public final Enumeration getIds() {
@@ -118,39 +217,104 @@ abstract class AbstractSessionContext implements SSLSessionContext {
      * Makes sure cache size is < maximumSize.
      */
     protected void trimToSize() {
-        synchronized (sessions) {
-            int size = sessions.size();
-            if (size > maximumSize) {
-                int removals = size - maximumSize;
-                Iterator<SSLSession> i = sessions.values().iterator();
-                do {
-                    SSLSession session = i.next();
-                    i.remove();
-                    sessionRemoved(session);
-                } while (--removals > 0);
+        while (maximumSize > 0 && size.get() > maximumSize) {
+            if (!removeEldest()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes the least recently used session. Returns false if the cache
+     * is empty.
+     */
+    private boolean removeEldest() {
+        while (true) {
+            LinkedHashMap<ByteArray, Entry> eldestShard = null;
+            Entry eldest = null;
+            long eldestAccess = 0;
+            for (LinkedHashMap<ByteArray, Entry> shard : shards) {
+                synchronized (shard) {
+                    if (shard.isEmpty()) {
+                        continue;
+                    }
+                    // Iterating doesn't count as an access, unlike get().
+                    Entry head = shard.values().iterator().next();
+                    if (eldest == null || head.lastAccess < eldestAccess) {
+                        eldest = head;
+                        eldestAccess = head.lastAccess;
+                        eldestShard = shard;
+                    }
+                }
+            }
+            if (eldest == null) {
+                return false;
+            }
+            synchronized (eldestShard) {
+                Iterator<Entry> i = eldestShard.values().iterator();
+                // Retry if another thread accessed or removed the entry meanwhile.
+                if (!i.hasNext() || i.next() != eldest) {
+                    continue;
+                }
+                i.remove();
             }
+            size.decrementAndGet();
+            sessionRemoved(eldest.session);
+            return true;
         }
     }
 
+    /**
+     * Removes every session that is no longer valid, typically because it
+     * has outlived the session timeout.
+     */
+    void removeInvalidSessions() {
+        List<SSLSession> removed = new ArrayList<SSLSession>();
+        for (LinkedHashMap<ByteArray, Entry> shard : shards) {
+            synchronized (shard) {
+                Iterator<Entry> i = shard.values().iterator();
+                while (i.hasNext()) {
+                    SSLSession session = i.next().session;
+                    // SSLSession's know their context and consult the
+                    // timeout as part of their validity condition.
+                    if (!session.isValid()) {
+                        i.remove();
+                        removed.add(session);
+                    }
+                }
+            }
+        }
+        size.addAndGet(-removed.size());
+        for (SSLSession session : removed) {
+            sessionRemoved(session);
+        }
+    }
+
+    /**
+     * Schedules a background sweep of expired sessions if a timeout is set
+     * and the previous sweep is more than half a timeout ago.
+     */
+    private void maybeScheduleSweep() {
+        int timeout = this.timeout;
+        if (timeout == 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (now < nextSweepMillis || !sweepScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        nextSweepMillis = now + Math.max(MIN_SWEEP_INTERVAL_MILLIS, timeout * 500L);
+        executorService.execute(sweepRunnable);
+    }
+
     public void setSessionTimeout(int seconds)
             throws IllegalArgumentException {
         if (seconds < 0) {
             throw new IllegalArgumentException("seconds < 0");
         }
         timeout = seconds;
-
-        synchronized (sessions) {
-            Iterator<SSLSession> i = sessions.values().iterator();
-            while (i.hasNext()) {
-                SSLSession session = i.next();
-                // SSLSession's know their context and consult the
-                // timeout as part of their validity condition.
-                if (!session.isValid()) {
-                    i.remove();
-                    sessionRemoved(session);
-                }
-            }
-        }
+        nextSweepMillis = 0;
+        removeInvalidSessions();
     }
 
     /**
@@ -174,6 +338,39 @@ abstract class AbstractSessionContext implements SSLSessionContext {
         }
     }
 
+    /**
+     * Returns the number of sessions currently cached in memory.
+     */
+    int cachedSessionCount() {
+        return size.get();
+    }
+
+    /**
+     * Records the outcome of a completed handshake that used this context:
+     * {@code resumed} is true if it reused a session already in the cache.
+     */
+    void recordHandshake(boolean resumed) {
+        if (resumed) {
+            resumedHandshakes.incrementAndGet();
+        } else {
+            fullHandshakes.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the number of handshakes that resumed a cached session.
+     */
+    public long getResumedHandshakeCount() {
+        return resumedHandshakes.get();
+    }
+
+    /**
+     * Returns the number of handshakes that negotiated a new session.
+     */
+    public long getFullHandshakeCount() {
+        return fullHandshakes.get();
+    }
+
     /**
      * Converts the given session to bytes.
      *
@@ -258,10 +455,16 @@ abstract class AbstractSessionContext implements SSLSessionContext {
             throw new NullPointerException("sessionId == null");
         }
         ByteArray key = new ByteArray(sessionId);
-        SSLSession session;
-        synchronized (sessions) {
-            session = sessions.get(key);
+        LinkedHashMap<ByteArray, Entry> shard = shardFor(key);
+        SSLSession session = null;
+        synchronized (shard) {
+            Entry entry = shard.get(key);
+            if (entry != null) {
+                entry.lastAccess = clock.incrementAndGet();
+                session = entry.session;
+            }
         }
+        maybeScheduleSweep();
         if (session != null && session.isValid()) {
             return session;
         }
@@ -274,9 +477,16 @@ abstract class AbstractSessionContext implements SSLSessionContext {
             return;
         }
         ByteArray key = new ByteArray(id);
-        synchronized (sessions) {
-            sessions.put(key, session);
+        LinkedHashMap<ByteArray, Entry> shard = shardFor(key);
+        Entry previous;
+        synchronized (shard) {
+            previous = shard.put(key, new Entry(session, clock.incrementAndGet()));
+        }
+        if (previous == null) {
+            size.incrementAndGet();
+            trimToSize();
         }
+        maybeScheduleSweep();
     }
 
     static void log(Throwable t) {
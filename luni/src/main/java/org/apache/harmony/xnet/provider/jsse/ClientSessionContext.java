@@ -16,8 +16,7 @@
 
 package org.apache.harmony.xnet.provider.jsse;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.net.ssl.SSLSession;
 
 /**
@@ -27,11 +26,11 @@ import javax.net.ssl.SSLSession;
 public class ClientSessionContext extends AbstractSessionContext {
 
     /**
-     * Sessions indexed by host and port. Protect from concurrent
-     * access by holding a lock on sessionsByHostAndPort.
+     * Sessions indexed by host and port. Lookups don't block one another,
+     * so handshakes with different servers can proceed in parallel.
      */
-    final Map<HostAndPort, SSLSession> sessionsByHostAndPort
-        = new HashMap<HostAndPort, SSLSession>();
+    final ConcurrentHashMap<HostAndPort, SSLSession> sessionsByHostAndPort
+        = new ConcurrentHashMap<HostAndPort, SSLSession>();
 
     private SSLClientSessionCache persistentCache;
 
@@ -53,10 +52,8 @@ public class ClientSessionContext extends AbstractSessionContext {
         if (host == null) {
             return;
         }
-        HostAndPort hostAndPortKey = new HostAndPort(host, port);
-        synchronized (sessionsByHostAndPort) {
-            sessionsByHostAndPort.remove(hostAndPortKey);
-        }
+        // Only drop the mapping if it hasn't been replaced by a newer session.
+        sessionsByHostAndPort.remove(new HostAndPort(host, port), session);
     }
 
     /**
@@ -70,11 +67,8 @@ public class ClientSessionContext extends AbstractSessionContext {
         if (host == null) {
             return null;
         }
-        SSLSession session;
         HostAndPort hostAndPortKey = new HostAndPort(host, port);
-        synchronized (sessionsByHostAndPort) {
-            session = sessionsByHostAndPort.get(hostAndPortKey);
-        }
+        SSLSession session = sessionsByHostAndPort.get(hostAndPortKey);
         if (session != null && session.isValid()) {
             return session;
         }
@@ -86,9 +80,7 @@ public class ClientSessionContext extends AbstractSessionContext {
                 session = toSession(data, host, port);
                 if (session != null && session.isValid()) {
                     super.putSession(session);
-                    synchronized (sessionsByHostAndPort) {
-                        sessionsByHostAndPort.put(hostAndPortKey, session);
-                    }
+                    sessionsByHostAndPort.put(hostAndPortKey, session);
                     return session;
                 }
             }
@@ -107,10 +99,7 @@ public class ClientSessionContext extends AbstractSessionContext {
             return;
         }
 
-        HostAndPort hostAndPortKey = new HostAndPort(host, port);
-        synchronized (sessionsByHostAndPort) {
-            sessionsByHostAndPort.put(hostAndPortKey, session);
-        }
+        sessionsByHostAndPort.put(new HostAndPort(host, port), session);
 
         // TODO: This in a background thread.
         if (persistentCache != null) {
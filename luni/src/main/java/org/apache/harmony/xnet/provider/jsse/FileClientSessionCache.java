@@ -16,7 +16,11 @@
 
 package org.apache.harmony.xnet.provider.jsse;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -29,6 +33,10 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.net.ssl.SSLSession;
 import libcore.io.IoUtils;
 
@@ -298,6 +306,246 @@ public class FileClientSessionCache {
         }
     }
 
+    /**
+     * This cache keeps all sessions in a single append-only journal file.
+     * The journal is read sequentially once, when the cache is created, and
+     * sessions are served from memory afterwards. Each put appends a single
+     * record, so storing a session costs one small write rather than the
+     * creation of a file.
+     *
+     * <p>The journal starts with a header of {@link #MAGIC} and
+     * {@link #VERSION}. Each record that follows holds the host as modified
+     * UTF-8, the port, the length of the session data and the data itself.
+     * A later record for the same host and port supersedes an earlier one. A
+     * truncated or corrupt record ends the journal; it and anything after
+     * it are dropped when the journal is next rebuilt.
+     *
+     * <p>When there are more than {@code maxSize} sessions, the least
+     * recently used one is dropped. The journal is rebuilt on a background
+     * thread once superseded records dominate it, which also persists the
+     * access order.
+     */
+    static class JournalImpl implements SSLClientSessionCache {
+
+        static final int MAGIC = 0x53534c4a; // "SSLJ"
+        static final int VERSION = 1;
+
+        private static final int REDUNDANT_RECORD_COMPACT_THRESHOLD = 2000;
+
+        final File journalFile;
+        private final File journalFileTmp;
+        private final int maxSize;
+
+        /** Session data by "host:port", in access order. */
+        private final LinkedHashMap<String, byte[]> sessions;
+
+        /** Appends to journalFile, or null if the journal can't be written. */
+        private DataOutputStream journalWriter;
+
+        /** The number of records in the journal that no longer hold a session. */
+        private int redundantRecordCount;
+
+        /** This cache uses a single background thread to rebuild the journal. */
+        private final ExecutorService executorService = new ThreadPoolExecutor(0, 1,
+                60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        private final Runnable rebuildRunnable = new Runnable() {
+            public void run() {
+                synchronized (JournalImpl.this) {
+                    if (journalRebuildRequired()) {
+                        rebuildJournal();
+                    }
+                }
+            }
+        };
+
+        /**
+         * Constructs a new cache backed by the given journal file, reading
+         * any sessions it already holds.
+         */
+        JournalImpl(File journalFile, int maxSize) throws IOException {
+            if (maxSize <= 0) {
+                throw new IllegalArgumentException("maxSize <= 0");
+            }
+            File directory = journalFile.getParentFile();
+            if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Creation of " + directory + " directory failed.");
+            }
+            this.journalFile = journalFile;
+            this.journalFileTmp = new File(journalFile.getPath() + ".tmp");
+            this.maxSize = maxSize;
+            this.sessions = new LinkedHashMap<String, byte[]>(
+                    16, 0.75f, true /* access order */) {
+                @Override protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                    if (size() > JournalImpl.this.maxSize) {
+                        redundantRecordCount++;
+                        return true;
+                    }
+                    return false;
+                }
+            };
+
+            if (journalFile.exists() && readJournal()) {
+                try {
+                    journalWriter = new DataOutputStream(new BufferedOutputStream(
+                            new FileOutputStream(journalFile, true)));
+                    return;
+                } catch (FileNotFoundException e) {
+                    logWriteError(journalFile, e);
+                }
+            }
+            // The journal is missing, unreadable or has a damaged tail.
+            rebuildJournal();
+            if (journalWriter == null) {
+                throw new IOException("Cannot write " + journalFile);
+            }
+        }
+
+        /**
+         * Reads the journal into memory. Returns false if it must be rebuilt
+         * because its header or last record is damaged.
+         */
+        private boolean readJournal() {
+            DataInputStream in;
+            try {
+                in = new DataInputStream(new BufferedInputStream(
+                        new FileInputStream(journalFile), 8192));
+            } catch (FileNotFoundException e) {
+                return false;
+            }
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    return false;
+                }
+                while (true) {
+                    String host;
+                    try {
+                        host = in.readUTF();
+                    } catch (EOFException e) {
+                        return true; // Clean end of the journal.
+                    }
+                    int port = in.readInt();
+                    int length = in.readInt();
+                    if (length < 0 || length > journalFile.length()) {
+                        return false;
+                    }
+                    byte[] data = new byte[length];
+                    in.readFully(data);
+                    if (sessions.put(key(host, port), data) != null) {
+                        redundantRecordCount++;
+                    }
+                }
+            } catch (IOException e) {
+                // Keep the records read so far.
+                System.logW("Error reading session journal " + journalFile + ".", e);
+                return false;
+            } finally {
+                IoUtils.closeQuietly(in);
+            }
+        }
+
+        /**
+         * Writes a journal holding only the current sessions, replacing the
+         * existing one.
+         */
+        private void rebuildJournal() {
+            IoUtils.closeQuietly(journalWriter);
+            journalWriter = null;
+            DataOutputStream out = null;
+            try {
+                out = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(journalFileTmp)));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                for (Map.Entry<String, byte[]> entry : sessions.entrySet()) {
+                    String key = entry.getKey();
+                    int colon = key.lastIndexOf(':');
+                    writeRecord(out, key.substring(0, colon),
+                            Integer.parseInt(key.substring(colon + 1)), entry.getValue());
+                }
+                out.close();
+                out = null;
+                if (!journalFileTmp.renameTo(journalFile)) {
+                    throw new IOException("Failed to rename " + journalFileTmp);
+                }
+                redundantRecordCount = 0;
+                journalWriter = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(journalFile, true)));
+            } catch (IOException e) {
+                IoUtils.closeQuietly(out);
+                journalFileTmp.delete();
+                logWriteError(journalFile, e);
+            }
+        }
+
+        private static void writeRecord(DataOutputStream out, String host, int port,
+                byte[] data) throws IOException {
+            out.writeUTF(host);
+            out.writeInt(port);
+            out.writeInt(data.length);
+            out.write(data);
+        }
+
+        /**
+         * We only rebuild the journal when it will halve the size of the
+         * journal and eliminate at least 2000 records.
+         */
+        private boolean journalRebuildRequired() {
+            return redundantRecordCount >= REDUNDANT_RECORD_COMPACT_THRESHOLD
+                    && redundantRecordCount >= sessions.size();
+        }
+
+        private static String key(String host, int port) {
+            if (host == null) {
+                throw new NullPointerException("host");
+            }
+            return host + ":" + port;
+        }
+
+        public synchronized byte[] getSessionData(String host, int port) {
+            return sessions.get(key(host, port));
+        }
+
+        public synchronized void putSessionData(SSLSession session, byte[] sessionData) {
+            String host = session.getPeerHost();
+            if (sessionData == null) {
+                throw new NullPointerException("sessionData");
+            }
+            int port = session.getPeerPort();
+            if (sessions.put(key(host, port), sessionData) != null) {
+                redundantRecordCount++;
+            }
+
+            if (journalWriter == null) {
+                // A previous write failed; try to start over.
+                rebuildJournal();
+                return;
+            }
+            try {
+                writeRecord(journalWriter, host, port, sessionData);
+                journalWriter.flush();
+            } catch (IOException e) {
+                logWriteError(journalFile, e);
+                // The tail may be partially written; rebuild on the next put.
+                IoUtils.closeQuietly(journalWriter);
+                journalWriter = null;
+                return;
+            }
+
+            if (journalRebuildRequired()) {
+                executorService.execute(rebuildRunnable);
+            }
+        }
+
+        /** Returns the number of sessions in the cache. */
+        synchronized int size() {
+            return sessions.size();
+        }
+
+        static void logWriteError(File file, Throwable t) {
+            System.logW("Error writing session data to " + file + ".", t);
+        }
+    }
+
     /**
      * Maps directories to the cache instances that are backed by those
      * directories. We synchronize access using the cache instance, so it's
@@ -326,9 +574,42 @@ public class FileClientSessionCache {
         return cache;
     }
 
+    /**
+     * Maps journal files to the cache instances that are backed by them.
+     */
+    static final Map<File, FileClientSessionCache.JournalImpl> journalCaches
+            = new HashMap<File, FileClientSessionCache.JournalImpl>();
+
+    /**
+     * Returns a cache backed by a single journal file, which is created
+     * (including parent directories) if necessary. All sessions in the
+     * journal are loaded when the cache is first requested. This cache
+     * should have exclusive access to the given file.
+     *
+     * <p>Unlike {@link #usingDirectory}, this cache scales to many servers:
+     * it reads its state in one sequential pass and stores each session with
+     * a single append.
+     *
+     * @param journalFile to store sessions in
+     * @param maxSize the maximum number of sessions to keep
+     * @return a cache backed by the given file
+     * @throws IOException if the journal can't be created
+     * @hide
+     */
+    public static synchronized SSLClientSessionCache usingJournal(
+            File journalFile, int maxSize) throws IOException {
+        FileClientSessionCache.JournalImpl cache = journalCaches.get(journalFile);
+        if (cache == null) {
+            cache = new FileClientSessionCache.JournalImpl(journalFile, maxSize);
+            journalCaches.put(journalFile, cache);
+        }
+        return cache;
+    }
+
     /** For testing. */
     static synchronized void reset() {
         caches.clear();
+        journalCaches.clear();
     }
 
     /** A file containing a piece of cached data. */
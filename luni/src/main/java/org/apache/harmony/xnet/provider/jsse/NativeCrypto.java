@@ -31,6 +31,8 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import javax.crypto.BadPaddingException;
+import javax.crypto.IllegalBlockSizeException;
 import javax.net.ssl.SSLException;
 import javax.security.auth.x500.X500Principal;
 import libcore.io.Memory;
@@ -154,15 +156,56 @@ public final class NativeCrypto {
 
     public static native int EVP_get_cipherbyname(String string);
 
-    public static native int EVP_CipherInit_ex(int cipherNid, byte[] key, byte[] iv,
+    public static native int EVP_CIPHER_iv_length(int evpCipher);
+
+    public static native int EVP_CIPHER_CTX_new();
+
+    /**
+     * Sets up {@code ctx} for {@code evpCipher} with the given key and IV.
+     * Passing 0 for {@code evpCipher} and null for {@code key} keeps the
+     * cipher and key schedule already in {@code ctx} and only resets the IV.
+     */
+    public static native void EVP_CipherInit_ex(int ctx, int evpCipher, byte[] key, byte[] iv,
             boolean encrypting);
 
+    /**
+     * Returns the number of bytes written to {@code out}, which must have room
+     * for {@code inLength} plus one block of output.
+     */
     public static native int EVP_CipherUpdate(int ctx, byte[] out, int outOffset, byte[] in,
-            int inOffset);
+            int inOffset, int inLength);
+
+    public static native int EVP_CipherUpdateDirect(int ctx, int outAddress, int outLength,
+            int inAddress, int inLength);
+
+    public static native int EVP_CipherFinal_ex(int ctx, byte[] out, int outOffset)
+            throws BadPaddingException, IllegalBlockSizeException;
+
+    public static native int EVP_CIPHER_CTX_block_size(int ctx);
+
+    public static native void EVP_CIPHER_CTX_set_padding(int ctx, boolean enablePadding);
+
+    public static native void EVP_CIPHER_CTX_free(int ctx);
+
+    // --- HMAC functions ------------------------------------------------------
 
-    public static native int EVP_CipherFinal_ex(int ctx, byte[] out, int outOffset);
+    public static native int HMAC_CTX_new();
 
-    public static native void EVP_CIPHER_CTX_cleanup(int ctx);
+    public static native int HMAC_CTX_copy(int ctx);
+
+    /**
+     * Keys {@code ctx} for HMAC over {@code evpMd}. Passing a null key and 0
+     * for {@code evpMd} restarts the MAC with the current key.
+     */
+    public static native void HMAC_Init_ex(int ctx, byte[] key, int evpMd);
+
+    public static native void HMAC_Update(int ctx, byte[] in, int offset, int length);
+
+    public static native void HMAC_UpdateDirect(int ctx, int inAddress, int length);
+
+    public static native byte[] HMAC_Final(int ctx);
+
+    public static native void HMAC_CTX_free(int ctx);
 
     // --- RAND seeding --------------------------------------------------------
 
@@ -336,6 +379,10 @@ public final class NativeCrypto {
     // SSL mode from ssl.h
     public static final long SSL_MODE_HANDSHAKE_CUTTHROUGH = 0x00000040L;
 
+    // SSL shutdown flags from ssl.h
+    public static final int SSL_SENT_SHUTDOWN = 1;
+    public static final int SSL_RECEIVED_SHUTDOWN = 2;
+
     // SSL options from ssl.h
     public static final long SSL_OP_NO_TICKET                              = 0x00004000L;
     public static final long SSL_OP_NO_SESSION_RESUMPTION_ON_RENEGOTIATION = 0x00010000L;
@@ -697,6 +744,68 @@ public final class NativeCrypto {
                                            FileDescriptor fd,
                                            SSLHandshakeCallbacks shc) throws IOException;
 
+    /**
+     * Attaches memory BIOs to the SSL so that records are exchanged through
+     * {@link #SSL_put_network_data} and {@link #SSL_get_network_data} instead
+     * of a socket. None of the {@code _BIO} functions block.
+     */
+    public static native void SSL_set_memory_bios(int sslNativePointer, boolean client_mode)
+        throws SSLException;
+
+    /**
+     * Returns the sslSessionNativePointer of the negotiated session once the
+     * handshake completes, or 0 if it needs records to be moved first.
+     */
+    public static native int SSL_do_handshake_bio(int sslNativePointer,
+                                                  SSLHandshakeCallbacks shc)
+        throws SSLException, CertificateException;
+
+    /**
+     * Returns the number of bytes read, 0 if more records are needed, or -1
+     * once the peer's close_notify has been read.
+     */
+    public static native int SSL_read_BIO(int sslNativePointer, SSLHandshakeCallbacks shc,
+                                          byte[] b, int off, int len) throws SSLException;
+
+    public static native int SSL_read_BIO_direct(int sslNativePointer, SSLHandshakeCallbacks shc,
+                                                 int address, int len) throws SSLException;
+
+    /**
+     * Returns the number of bytes consumed, which is 0 if a renegotiation
+     * needs records from the peer first.
+     */
+    public static native int SSL_write_BIO(int sslNativePointer, SSLHandshakeCallbacks shc,
+                                           byte[] b, int off, int len) throws SSLException;
+
+    public static native int SSL_write_BIO_direct(int sslNativePointer, SSLHandshakeCallbacks shc,
+                                                  int address, int len) throws SSLException;
+
+    public static native void SSL_put_network_data(int sslNativePointer,
+                                                   byte[] b, int off, int len)
+        throws SSLException;
+
+    public static native void SSL_put_network_data_direct(int sslNativePointer,
+                                                          int address, int len)
+        throws SSLException;
+
+    public static native int SSL_get_network_data(int sslNativePointer,
+                                                  byte[] b, int off, int len);
+
+    public static native int SSL_get_network_data_direct(int sslNativePointer,
+                                                         int address, int len);
+
+    public static native int SSL_pending_network_data(int sslNativePointer);
+
+    public static native int SSL_pending_readable_bytes(int sslNativePointer);
+
+    /**
+     * Queues a close_notify alert without waiting for the peer's.
+     */
+    public static native void SSL_shutdown_BIO(int sslNativePointer, SSLHandshakeCallbacks shc)
+        throws SSLException;
+
+    public static native int SSL_get_shutdown(int sslNativePointer);
+
     public static native void SSL_free(int sslNativePointer);
 
     public static native byte[] SSL_SESSION_session_id(int sslSessionNativePointer);
@@ -0,0 +1,640 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.xnet.provider.jsse;
+
+import java.nio.ByteBuffer;
+import java.nio.NioUtils;
+import java.security.AlgorithmParameters;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.InvalidParameterException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.InvalidParameterSpecException;
+import java.util.Arrays;
+import java.util.Locale;
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.CipherSpi;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+import libcore.util.EmptyArray;
+
+/**
+ * Implements the JDK CipherSpi interface using OpenSSL's EVP cipher API.
+ * Each subclass is registered for one full "algorithm/mode/padding"
+ * transformation.
+ *
+ * <p>The native context and key schedule are kept across {@code doFinal}
+ * calls: finishing an operation only rewinds the context to the IV it was
+ * initialized with.
+ */
+public abstract class OpenSSLCipher extends CipherSpi {
+
+    enum Mode {
+        ECB, CBC, CTR,
+        /** A stream cipher with no block mode, such as RC4. */
+        NONE,
+    }
+
+    /**
+     * Holds a pointer to the native cipher context, or 0 before the first
+     * call to init.
+     */
+    private int ctx;
+
+    private final Mode mode;
+
+    private final boolean padding;
+
+    /**
+     * The key bytes, needed to rewind ciphers that have no IV to reset.
+     */
+    private byte[] encodedKey;
+
+    private byte[] iv;
+
+    private boolean encrypting;
+
+    /**
+     * The block size OpenSSL processes input in: the cipher's block size for
+     * ECB and CBC, and 1 for CTR and stream ciphers.
+     */
+    private int modeBlockSize;
+
+    /**
+     * The number of input bytes held in the native context that have not
+     * yet produced output.
+     */
+    private int bufferedBytes;
+
+    /**
+     * Set by doFinal. The context is rewound before it is used again.
+     */
+    private boolean needsReset;
+
+    /**
+     * Receives the few trailing output bytes that don't fit the caller's
+     * buffer together with the slack the native code requires.
+     */
+    private byte[] scratch;
+
+    OpenSSLCipher(Mode mode, boolean padding) {
+        this.mode = mode;
+        this.padding = padding;
+    }
+
+    /**
+     * Returns the OpenSSL name of the cipher for a key of {@code keyLength}
+     * bytes, e.g. "aes-128-cbc".
+     *
+     * @throws InvalidKeyException if the key length is not supported.
+     */
+    abstract String getCipherName(int keyLength, Mode mode) throws InvalidKeyException;
+
+    /**
+     * Returns the name under which {@link AlgorithmParameters} for this
+     * cipher's IV can be found.
+     */
+    abstract String getBaseCipherName();
+
+    /**
+     * Returns the block size of the cipher, or 0 for stream ciphers.
+     */
+    abstract int getCipherBlockSize();
+
+    @Override
+    protected void engineSetMode(String modeStr) throws NoSuchAlgorithmException {
+        if (!mode.name().equalsIgnoreCase(modeStr)) {
+            throw new NoSuchAlgorithmException("Unsupported mode " + modeStr);
+        }
+    }
+
+    @Override
+    protected void engineSetPadding(String paddingStr) throws NoSuchPaddingException {
+        String upper = paddingStr.toUpperCase(Locale.US);
+        boolean supported = padding ? upper.equals("PKCS5PADDING") : upper.equals("NOPADDING");
+        if (!supported) {
+            throw new NoSuchPaddingException("Unsupported padding " + paddingStr);
+        }
+    }
+
+    @Override
+    protected int engineGetBlockSize() {
+        return getCipherBlockSize();
+    }
+
+    @Override
+    protected int engineGetOutputSize(int inputLen) {
+        int total = bufferedBytes + inputLen;
+        if (encrypting && padding) {
+            return total + modeBlockSize - (total % modeBlockSize);
+        }
+        return total;
+    }
+
+    @Override
+    protected byte[] engineGetIV() {
+        return (iv != null) ? iv.clone() : null;
+    }
+
+    @Override
+    protected AlgorithmParameters engineGetParameters() {
+        if (iv == null) {
+            return null;
+        }
+        try {
+            AlgorithmParameters params = AlgorithmParameters.getInstance(getBaseCipherName());
+            params.init(new IvParameterSpec(iv));
+            return params;
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        } catch (InvalidParameterSpecException e) {
+            return null;
+        }
+    }
+
+    @Override
+    protected void engineInit(int opmode, Key key, SecureRandom random)
+            throws InvalidKeyException {
+        try {
+            init(opmode, key, null, random);
+        } catch (InvalidAlgorithmParameterException e) {
+            throw new InvalidKeyException(e.getMessage());
+        }
+    }
+
+    @Override
+    protected void engineInit(int opmode, Key key, AlgorithmParameterSpec params,
+            SecureRandom random) throws InvalidKeyException, InvalidAlgorithmParameterException {
+        byte[] newIv = null;
+        if (params instanceof IvParameterSpec) {
+            newIv = ((IvParameterSpec) params).getIV();
+        } else if (params != null) {
+            throw new InvalidAlgorithmParameterException("Expected IvParameterSpec: " + params);
+        }
+        init(opmode, key, newIv, random);
+    }
+
+    @Override
+    protected void engineInit(int opmode, Key key, AlgorithmParameters params,
+            SecureRandom random) throws InvalidKeyException, InvalidAlgorithmParameterException {
+        AlgorithmParameterSpec spec = null;
+        if (params != null) {
+            try {
+                spec = params.getParameterSpec(IvParameterSpec.class);
+            } catch (InvalidParameterSpecException e) {
+                throw new InvalidAlgorithmParameterException(e.getMessage());
+            }
+        }
+        engineInit(opmode, key, spec, random);
+    }
+
+    private void init(int opmode, Key key, byte[] newIv, SecureRandom random)
+            throws InvalidKeyException, InvalidAlgorithmParameterException {
+        boolean encrypt;
+        if (opmode == Cipher.ENCRYPT_MODE || opmode == Cipher.WRAP_MODE) {
+            encrypt = true;
+        } else if (opmode == Cipher.DECRYPT_MODE || opmode == Cipher.UNWRAP_MODE) {
+            encrypt = false;
+        } else {
+            throw new InvalidParameterException("Unsupported opmode " + opmode);
+        }
+
+        if (key == null) {
+            throw new InvalidKeyException("key == null");
+        }
+        byte[] keyBytes = key.getEncoded();
+        if (keyBytes == null) {
+            throw new InvalidKeyException("key.getEncoded() == null");
+        }
+        int evpCipher = NativeCrypto.EVP_get_cipherbyname(getCipherName(keyBytes.length, mode));
+
+        int ivLength = NativeCrypto.EVP_CIPHER_iv_length(evpCipher);
+        if (ivLength == 0) {
+            newIv = null;
+        } else if (newIv == null) {
+            if (!encrypt) {
+                throw new InvalidAlgorithmParameterException("IV required for decryption");
+            }
+            newIv = new byte[ivLength];
+            if (random == null) {
+                random = new SecureRandom();
+            }
+            random.nextBytes(newIv);
+        } else if (newIv.length != ivLength) {
+            throw new InvalidAlgorithmParameterException("Expected " + ivLength
+                    + " byte IV but was " + newIv.length);
+        }
+
+        if (ctx == 0) {
+            ctx = NativeCrypto.EVP_CIPHER_CTX_new();
+        }
+        NativeCrypto.EVP_CipherInit_ex(ctx, evpCipher, keyBytes, newIv, encrypt);
+        NativeCrypto.EVP_CIPHER_CTX_set_padding(ctx, padding);
+        modeBlockSize = NativeCrypto.EVP_CIPHER_CTX_block_size(ctx);
+        encrypting = encrypt;
+        encodedKey = keyBytes;
+        iv = newIv;
+        bufferedBytes = 0;
+        needsReset = false;
+    }
+
+    /**
+     * Rewinds the native context after doFinal, keeping the key schedule
+     * where the cipher has an IV to reset instead.
+     */
+    private void ensureReady() {
+        if (ctx == 0) {
+            throw new IllegalStateException("Cipher not initialized");
+        }
+        if (needsReset) {
+            NativeCrypto.EVP_CipherInit_ex(ctx, 0, (iv == null) ? encodedKey : null, iv,
+                    encrypting);
+            bufferedBytes = 0;
+            needsReset = false;
+        }
+    }
+
+    /**
+     * Returns the number of bytes the next update of {@code inputLen} bytes
+     * will produce.
+     */
+    private int getUpdateOutputSize(int inputLen) {
+        if (modeBlockSize == 1) {
+            return inputLen;
+        }
+        int total = bufferedBytes + inputLen;
+        int held = total % modeBlockSize;
+        // When decrypting with padding OpenSSL keeps the last whole block back
+        // until it knows whether it is the final one.
+        if (!encrypting && padding && held == 0 && total > 0) {
+            held = modeBlockSize;
+        }
+        return total - held;
+    }
+
+    /**
+     * The free space beyond the input length the native update requires in
+     * its output buffer.
+     */
+    private int getUpdateSlack() {
+        return (modeBlockSize > 1) ? modeBlockSize : 0;
+    }
+
+    private byte[] getScratch(int size) {
+        if (scratch == null || scratch.length < size) {
+            scratch = new byte[size];
+        }
+        return scratch;
+    }
+
+    /**
+     * Processes input into the {@code outputCapacity} bytes of {@code output}
+     * at {@code outputOffset}, which the caller has checked can hold
+     * {@link #getUpdateOutputSize} bytes. Nothing is written past that range.
+     */
+    private int updateInternal(byte[] input, int inputOffset, int inputLen, byte[] output,
+            int outputOffset, int outputCapacity) {
+        int slack = getUpdateSlack();
+        int written = 0;
+        int direct = Math.min(inputLen, outputCapacity - slack);
+        if (direct > 0) {
+            written = NativeCrypto.EVP_CipherUpdate(ctx, output, outputOffset, input,
+                    inputOffset, direct);
+            inputOffset += direct;
+        }
+        int remaining = inputLen - Math.max(direct, 0);
+        if (remaining > 0) {
+            // At most a couple of blocks are left; cipher them into scratch space.
+            byte[] buffer = getScratch(remaining + slack);
+            int count = NativeCrypto.EVP_CipherUpdate(ctx, buffer, 0, input, inputOffset,
+                    remaining);
+            System.arraycopy(buffer, 0, output, outputOffset + written, count);
+            written += count;
+        }
+        bufferedBytes += inputLen - written;
+        return written;
+    }
+
+    /**
+     * Finishes the operation into {@code output} and marks the context for
+     * rewinding.
+     */
+    private int finalInternal(byte[] output, int outputOffset)
+            throws IllegalBlockSizeException, BadPaddingException {
+        needsReset = true;
+        int buffered = bufferedBytes;
+        bufferedBytes = 0;
+        if (modeBlockSize == 1) {
+            return 0;
+        }
+        if ((!padding || !encrypting) && buffered % modeBlockSize != 0) {
+            throw new IllegalBlockSizeException("Input length not a multiple of "
+                    + modeBlockSize + " bytes");
+        }
+        if (output.length - outputOffset >= modeBlockSize) {
+            return NativeCrypto.EVP_CipherFinal_ex(ctx, output, outputOffset);
+        }
+        byte[] buffer = getScratch(modeBlockSize);
+        int count = NativeCrypto.EVP_CipherFinal_ex(ctx, buffer, 0);
+        System.arraycopy(buffer, 0, output, outputOffset, count);
+        return count;
+    }
+
+    @Override
+    protected byte[] engineUpdate(byte[] input, int inputOffset, int inputLen) {
+        ensureReady();
+        int outputSize = getUpdateOutputSize(inputLen);
+        byte[] output = (outputSize > 0) ? new byte[outputSize] : EmptyArray.BYTE;
+        int written = updateInternal(input, inputOffset, inputLen, output, 0, output.length);
+        return (written == output.length) ? output : Arrays.copyOf(output, written);
+    }
+
+    @Override
+    protected int engineUpdate(byte[] input, int inputOffset, int inputLen, byte[] output,
+            int outputOffset) throws ShortBufferException {
+        return updateChecked(input, inputOffset, inputLen, output, outputOffset,
+                output.length - outputOffset);
+    }
+
+    /**
+     * Updates into the {@code outputCapacity} bytes of {@code output} at
+     * {@code outputOffset}, throwing if they can't hold the result.
+     */
+    private int updateChecked(byte[] input, int inputOffset, int inputLen, byte[] output,
+            int outputOffset, int outputCapacity) throws ShortBufferException {
+        ensureReady();
+        int outputSize = getUpdateOutputSize(inputLen);
+        if (outputCapacity < outputSize) {
+            throw new ShortBufferException("Output buffer too small: need " + outputSize);
+        }
+        return updateInternal(input, inputOffset, inputLen, output, outputOffset,
+                outputCapacity);
+    }
+
+    @Override
+    protected int engineUpdate(ByteBuffer input, ByteBuffer output) throws ShortBufferException {
+        if (input == null || output == null) {
+            throw new NullPointerException();
+        }
+        if (input.hasArray() && output.hasArray()) {
+            int written = updateChecked(input.array(), input.arrayOffset() + input.position(),
+                    input.remaining(), output.array(), output.arrayOffset() + output.position(),
+                    output.remaining());
+            input.position(input.limit());
+            output.position(output.position() + written);
+            return written;
+        }
+        if (!input.isDirect() || !output.isDirect() || output.isReadOnly()) {
+            return super.engineUpdate(input, output);
+        }
+        ensureReady();
+        int inputLen = input.remaining();
+        int outputSize = getUpdateOutputSize(inputLen);
+        if (output.remaining() < outputSize) {
+            throw new ShortBufferException("Output buffer too small: need " + outputSize);
+        }
+        if (output.remaining() < inputLen + getUpdateSlack()) {
+            return super.engineUpdate(input, output);
+        }
+        int written = NativeCrypto.EVP_CipherUpdateDirect(ctx,
+                NioUtils.getDirectBufferAddress(output) + output.position(), output.remaining(),
+                NioUtils.getDirectBufferAddress(input) + input.position(), inputLen);
+        input.position(input.limit());
+        output.position(output.position() + written);
+        bufferedBytes += inputLen - written;
+        return written;
+    }
+
+    @Override
+    protected byte[] engineDoFinal(byte[] input, int inputOffset, int inputLen)
+            throws IllegalBlockSizeException, BadPaddingException {
+        ensureReady();
+        byte[] output = new byte[engineGetOutputSize(inputLen)];
+        int written = 0;
+        if (inputLen > 0) {
+            written = updateInternal(input, inputOffset, inputLen, output, 0, output.length);
+        }
+        written += finalInternal(output, written);
+        return (written == output.length) ? output : Arrays.copyOf(output, written);
+    }
+
+    @Override
+    protected int engineDoFinal(byte[] input, int inputOffset, int inputLen, byte[] output,
+            int outputOffset) throws ShortBufferException, IllegalBlockSizeException,
+            BadPaddingException {
+        if (output == null) {
+            throw new NullPointerException("output == null");
+        }
+        ensureReady();
+        int outputSize = engineGetOutputSize(inputLen);
+        if (output.length - outputOffset < outputSize) {
+            throw new ShortBufferException("Output buffer too small: need " + outputSize);
+        }
+        int written = 0;
+        if (inputLen > 0) {
+            written = updateInternal(input, inputOffset, inputLen, output, outputOffset,
+                    output.length - outputOffset);
+        }
+        return written + finalInternal(output, outputOffset + written);
+    }
+
+    @Override
+    protected int engineDoFinal(ByteBuffer input, ByteBuffer output) throws ShortBufferException,
+            IllegalBlockSizeException, BadPaddingException {
+        if (input == null || output == null) {
+            throw new NullPointerException();
+        }
+        if (!input.isDirect() || !output.isDirect() || output.isReadOnly()) {
+            return super.engineDoFinal(input, output);
+        }
+        ensureReady();
+        int outputSize = engineGetOutputSize(input.remaining());
+        if (output.remaining() < outputSize) {
+            throw new ShortBufferException("Output buffer too small: need " + outputSize);
+        }
+        int written = engineUpdate(input, output);
+        byte[] tail = getScratch(modeBlockSize);
+        int count = finalInternal(tail, 0);
+        output.put(tail, 0, count);
+        return written + count;
+    }
+
+    @Override
+    protected int engineGetKeySize(Key key) throws InvalidKeyException {
+        byte[] encoded = key.getEncoded();
+        if (encoded == null) {
+            throw new InvalidKeyException("key.getEncoded() == null");
+        }
+        return encoded.length * 8;
+    }
+
+    private void free() {
+        if (ctx != 0) {
+            NativeCrypto.EVP_CIPHER_CTX_free(ctx);
+            ctx = 0;
+        }
+    }
+
+    @Override protected void finalize() throws Throwable {
+        try {
+            free();
+        } finally {
+            super.finalize();
+        }
+    }
+
+    public static abstract class AES extends OpenSSLCipher {
+        private static final int AES_BLOCK_SIZE = 16;
+
+        AES(Mode mode, boolean padding) {
+            super(mode, padding);
+        }
+
+        @Override
+        String getCipherName(int keyLength, Mode mode) throws InvalidKeyException {
+            if (keyLength != 16 && keyLength != 24 && keyLength != 32) {
+                throw new InvalidKeyException("Unsupported AES key length: " + keyLength);
+            }
+            return "aes-" + (keyLength * 8) + "-" + mode.name().toLowerCase(Locale.US);
+        }
+
+        @Override
+        String getBaseCipherName() {
+            return "AES";
+        }
+
+        @Override
+        int getCipherBlockSize() {
+            return AES_BLOCK_SIZE;
+        }
+
+        public static class ECB {
+            public static class NoPadding extends AES {
+                public NoPadding() {
+                    super(Mode.ECB, false);
+                }
+            }
+            public static class PKCS5Padding extends AES {
+                public PKCS5Padding() {
+                    super(Mode.ECB, true);
+                }
+            }
+        }
+
+        public static class CBC {
+            public static class NoPadding extends AES {
+                public NoPadding() {
+                    super(Mode.CBC, false);
+                }
+            }
+            public static class PKCS5Padding extends AES {
+                public PKCS5Padding() {
+                    super(Mode.CBC, true);
+                }
+            }
+        }
+
+        public static class CTR {
+            public static class NoPadding extends AES {
+                public NoPadding() {
+                    super(Mode.CTR, false);
+                }
+            }
+        }
+    }
+
+    public static abstract class DESEDE extends OpenSSLCipher {
+        private static final int DES_BLOCK_SIZE = 8;
+
+        DESEDE(Mode mode, boolean padding) {
+            super(mode, padding);
+        }
+
+        @Override
+        String getCipherName(int keyLength, Mode mode) throws InvalidKeyException {
+            String baseName;
+            if (keyLength == 24) {
+                baseName = "des-ede3-";
+            } else if (keyLength == 16) {
+                baseName = "des-ede-";
+            } else {
+                throw new InvalidKeyException("Unsupported DESede key length: " + keyLength);
+            }
+            return baseName + mode.name().toLowerCase(Locale.US);
+        }
+
+        @Override
+        String getBaseCipherName() {
+            return "DESede";
+        }
+
+        @Override
+        int getCipherBlockSize() {
+            return DES_BLOCK_SIZE;
+        }
+
+        public static class CBC {
+            public static class NoPadding extends DESEDE {
+                public NoPadding() {
+                    super(Mode.CBC, false);
+                }
+            }
+            public static class PKCS5Padding extends DESEDE {
+                public PKCS5Padding() {
+                    super(Mode.CBC, true);
+                }
+            }
+        }
+    }
+
+    public static class ARC4 extends OpenSSLCipher {
+        public ARC4() {
+            super(Mode.NONE, false);
+        }
+
+        @Override
+        String getCipherName(int keyLength, Mode mode) throws InvalidKeyException {
+            if (keyLength == 0) {
+                throw new InvalidKeyException("Empty ARC4 key");
+            }
+            return "rc4";
+        }
+
+        @Override
+        String getBaseCipherName() {
+            return "ARC4";
+        }
+
+        @Override
+        int getCipherBlockSize() {
+            return 0;
+        }
+
+        @Override
+        protected void engineSetMode(String modeStr) throws NoSuchAlgorithmException {
+            if (!modeStr.equalsIgnoreCase("NONE") && !modeStr.equalsIgnoreCase("ECB")) {
+                throw new NoSuchAlgorithmException("Unsupported mode " + modeStr);
+            }
+        }
+    }
+}
@@ -0,0 +1,995 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.xnet.provider.jsse;
+
+import dalvik.system.CloseGuard;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.NioUtils;
+import java.nio.ReadOnlyBufferException;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLEngineResult.Status;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.SSLProtocolException;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.X509ExtendedKeyManager;
+import javax.net.ssl.X509KeyManager;
+import javax.net.ssl.X509TrustManager;
+import javax.security.auth.x500.X500Principal;
+import org.apache.harmony.security.provider.cert.X509CertImpl;
+
+/**
+ * Implementation of SSLEngine based on OpenSSL. The native SSL object reads
+ * and writes its records through a pair of memory BIOs, which {@link #wrap}
+ * and {@link #unwrap} fill and drain, so no call ever blocks. Direct buffers
+ * are handed to OpenSSL by address without an intermediate copy.
+ *
+ * <p>Sessions are shared with the {@link ClientSessionContext} and
+ * {@link ServerSessionContext} of the SSLContext, so connections made by
+ * engines and by {@link OpenSSLSocketImpl} resume each other's sessions.
+ *
+ * <p>Delegated tasks are not used: certificate verification runs on the
+ * thread calling wrap or unwrap.
+ */
+public class OpenSSLEngineImpl extends SSLEngine
+        implements NativeCrypto.SSLHandshakeCallbacks {
+
+    /** Size of a TLS record header: type(1) + version(2) + length(2). */
+    private static final int RECORD_HEADER_LENGTH = 5;
+
+    /**
+     * The cipher suites offered by SSLEngine, which has always left out
+     * the elliptic curve suites and the renegotiation SCSV.
+     */
+    private static final String[] SUPPORTED_CIPHER_SUITES
+            = engineCipherSuites(NativeCrypto.getSupportedCipherSuites());
+    private static final String[] DEFAULT_CIPHER_SUITES
+            = engineCipherSuites(NativeCrypto.getDefaultCipherSuites());
+
+    private final SSLParametersImpl sslParameters;
+    private String[] enabledProtocols;
+    private String[] enabledCipherSuites;
+    private String[] enabledCompressionMethods;
+    private final CloseGuard guard = CloseGuard.get();
+
+    private int sslNativePointer;
+    private OpenSSLSessionImpl sslSession;
+
+    private boolean peerModeWasSet;
+    private boolean handshakeStarted;
+
+    /** Set once the native handshake has produced a session. */
+    private boolean handshakeDone;
+
+    /**
+     * Set by the native callback once the handshake is fully complete,
+     * which may be after {@link #handshakeDone} with handshake cutthrough.
+     */
+    private boolean handshakeCompleted;
+
+    /** Set once a result has reported {@link HandshakeStatus#FINISHED}. */
+    private boolean finishedReported;
+
+    private boolean isInboundDone;
+    private boolean closeOutboundCalled;
+
+    /**
+     * A handshake failure seen by unwrap. It is thrown by the next call so
+     * that the record which caused it is still reported as consumed.
+     */
+    private SSLException handshakeException;
+
+    /** Scratch space for buffers that are neither direct nor array-backed. */
+    private byte[] scratch;
+
+    public OpenSSLEngineImpl(SSLParametersImpl sslParameters) {
+        this(null, -1, sslParameters);
+    }
+
+    public OpenSSLEngineImpl(String host, int port, SSLParametersImpl sslParameters) {
+        super(host, port);
+        this.sslParameters = sslParameters;
+        this.enabledProtocols = NativeCrypto.getDefaultProtocols();
+        this.enabledCipherSuites = DEFAULT_CIPHER_SUITES.clone();
+        this.enabledCompressionMethods = NativeCrypto.getDefaultCompressionMethods();
+    }
+
+    @Override public synchronized void beginHandshake() throws SSLException {
+        if (isInboundDone || closeOutboundCalled) {
+            throw new SSLException("Engine has already been closed.");
+        }
+        if (!peerModeWasSet) {
+            throw new IllegalStateException("Client/Server mode was not set");
+        }
+        if (handshakeStarted) {
+            // renegotiation is left to the peer
+            return;
+        }
+        handshakeStarted = true;
+
+        // note that this modifies the global seed, not something specific to the connection
+        final int seedLengthInBytes = NativeCrypto.RAND_SEED_LENGTH_IN_BYTES;
+        final SecureRandom secureRandom = sslParameters.getSecureRandomMember();
+        if (secureRandom == null) {
+            NativeCrypto.RAND_load_file("/dev/urandom", seedLengthInBytes);
+        } else {
+            NativeCrypto.RAND_seed(secureRandom.generateSeed(seedLengthInBytes));
+        }
+
+        final boolean client = sslParameters.getUseClientMode();
+
+        final int sslCtxNativePointer = (client) ?
+            sslParameters.getClientSessionContext().sslCtxNativePointer :
+            sslParameters.getServerSessionContext().sslCtxNativePointer;
+
+        boolean exception = true;
+        try {
+            sslNativePointer = NativeCrypto.SSL_new(sslCtxNativePointer);
+            guard.open("closeOutbound");
+
+            // setup server certificates and private keys.
+            // clients will receive a call back to request certificates.
+            if (!client) {
+                Set<String> keyTypes = new HashSet<String>();
+                for (String enabledCipherSuite : enabledCipherSuites) {
+                    if (enabledCipherSuite.equals(NativeCrypto.TLS_EMPTY_RENEGOTIATION_INFO_SCSV)) {
+                        continue;
+                    }
+                    String keyType = CipherSuite.getByName(enabledCipherSuite).getServerKeyType();
+                    if (keyType != null) {
+                        keyTypes.add(keyType);
+                    }
+                }
+                X509KeyManager keyManager = sslParameters.getKeyManager();
+                for (String keyType : keyTypes) {
+                    String alias = (keyManager instanceof X509ExtendedKeyManager)
+                            ? ((X509ExtendedKeyManager) keyManager)
+                                    .chooseEngineServerAlias(keyType, null, this)
+                            : keyManager.chooseServerAlias(keyType, null, null);
+                    setCertificate(alias);
+                }
+            }
+
+            NativeCrypto.setEnabledProtocols(sslNativePointer, enabledProtocols);
+            NativeCrypto.setEnabledCipherSuites(sslNativePointer, enabledCipherSuites);
+            if (enabledCompressionMethods.length != 0) {
+                NativeCrypto.setEnabledCompressionMethods(sslNativePointer,
+                                                          enabledCompressionMethods);
+            }
+
+            boolean enableSessionCreation = sslParameters.getEnableSessionCreation();
+            if (!enableSessionCreation) {
+                NativeCrypto.SSL_set_session_creation_enabled(sslNativePointer,
+                                                              enableSessionCreation);
+            }
+
+            if (client) {
+                // look for client session to reuse
+                OpenSSLSessionImpl session = getCachedClientSession(
+                        sslParameters.getClientSessionContext());
+                if (session != null) {
+                    NativeCrypto.SSL_set_session(sslNativePointer,
+                                                 session.sslSessionNativePointer);
+                }
+            } else {
+                // needing client auth takes priority...
+                boolean certRequested;
+                if (sslParameters.getNeedClientAuth()) {
+                    NativeCrypto.SSL_set_verify(sslNativePointer,
+                                                NativeCrypto.SSL_VERIFY_PEER
+                                                | NativeCrypto.SSL_VERIFY_FAIL_IF_NO_PEER_CERT);
+                    certRequested = true;
+                // ... over just wanting it...
+                } else if (sslParameters.getWantClientAuth()) {
+                    NativeCrypto.SSL_set_verify(sslNativePointer,
+                                                NativeCrypto.SSL_VERIFY_PEER);
+                    certRequested = true;
+                // ... and it defaults properly so don't call SSL_set_verify in the common case.
+                } else {
+                    certRequested = false;
+                }
+
+                if (certRequested) {
+                    X509TrustManager trustManager = sslParameters.getTrustManager();
+                    X509Certificate[] issuers = trustManager.getAcceptedIssuers();
+                    if (issuers != null && issuers.length != 0) {
+                        NativeCrypto.SSL_set_client_CA_list(sslNativePointer,
+                                NativeCrypto.encodeIssuerX509Principals(issuers));
+                    }
+                }
+            }
+
+            NativeCrypto.SSL_set_memory_bios(sslNativePointer, client);
+
+            // a client queues its ClientHello here, a server finds nothing to read yet
+            doHandshake();
+            exception = false;
+        } catch (CertificateEncodingException e) {
+            SSLException wrapper = new SSLException("Problem encoding certificates");
+            wrapper.initCause(e);
+            throw wrapper;
+        } finally {
+            if (exception) {
+                isInboundDone = true;
+                closeOutboundCalled = true;
+                free();
+            }
+        }
+    }
+
+    /**
+     * Gets the suitable session reference from the session cache container.
+     */
+    private OpenSSLSessionImpl getCachedClientSession(ClientSessionContext sessionContext) {
+        String hostName = getPeerHost();
+        int port = getPeerPort();
+        if (hostName == null) {
+            return null;
+        }
+        OpenSSLSessionImpl session = (OpenSSLSessionImpl) sessionContext.getSession(hostName, port);
+        if (session == null) {
+            return null;
+        }
+        if (!contains(enabledProtocols, session.getProtocol())
+                || !contains(enabledCipherSuites, session.getCipherSuite())) {
+            return null;
+        }
+        String compressionMethod = session.getCompressionMethod();
+        if (!compressionMethod.equals(NativeCrypto.SUPPORTED_COMPRESSION_METHOD_NULL)
+                && !contains(enabledCompressionMethods, compressionMethod)) {
+            return null;
+        }
+        return session;
+    }
+
+    private static boolean contains(String[] array, String value) {
+        for (String element : array) {
+            if (value.equals(element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs the native handshake as far as the queued records allow and sets
+     * up the session once it completes.
+     */
+    private void doHandshake() throws SSLException {
+        int sslSessionNativePointer;
+        boolean exception = true;
+        try {
+            sslSessionNativePointer = NativeCrypto.SSL_do_handshake_bio(sslNativePointer, this);
+            exception = false;
+        } catch (CertificateException e) {
+            SSLHandshakeException wrapper = new SSLHandshakeException(e.getMessage());
+            wrapper.initCause(e);
+            throw wrapper;
+        } catch (SSLProtocolException e) {
+            throw new SSLHandshakeException(e);
+        } finally {
+            // on failure the engine is closed, but an alert queued by
+            // OpenSSL can still be sent with wrap
+            if (exception) {
+                isInboundDone = true;
+                closeOutboundCalled = true;
+                freeIfClosed();
+            }
+        }
+        if (sslSessionNativePointer == 0) {
+            return;
+        }
+        handshakeDone = true;
+
+        AbstractSessionContext sessionContext = (sslParameters.getUseClientMode())
+                ? sslParameters.getClientSessionContext()
+                : sslParameters.getServerSessionContext();
+        byte[] sessionId = NativeCrypto.SSL_SESSION_session_id(sslSessionNativePointer);
+        sslSession = (OpenSSLSessionImpl) sessionContext.getSession(sessionId);
+        sessionContext.recordHandshake(sslSession != null);
+        if (sslSession != null) {
+            sslSession.lastAccessedTime = System.currentTimeMillis();
+            NativeCrypto.SSL_SESSION_free(sslSessionNativePointer);
+        } else {
+            if (!sslParameters.getEnableSessionCreation()) {
+                // Should have been prevented by NativeCrypto.SSL_set_session_creation_enabled
+                throw new IllegalStateException("SSL Session may not be created");
+            }
+            X509Certificate[] localCertificates
+                    = createCertChain(NativeCrypto.SSL_get_certificate(sslNativePointer));
+            X509Certificate[] peerCertificates
+                    = createCertChain(NativeCrypto.SSL_get_peer_cert_chain(sslNativePointer));
+            sslSession = new OpenSSLSessionImpl(sslSessionNativePointer, localCertificates,
+                    peerCertificates, getPeerHost(), getPeerPort(), sessionContext);
+            // if not, putSession later in handshakeCompleted() callback
+            if (handshakeCompleted) {
+                sessionContext.putSession(sslSession);
+            }
+        }
+    }
+
+    /**
+     * Return a possibly null array of X509Certificates given the
+     * possibly null array of DER encoded bytes.
+     */
+    private static X509Certificate[] createCertChain(byte[][] certificatesBytes) {
+        if (certificatesBytes == null) {
+            return null;
+        }
+        X509Certificate[] certificates = new X509Certificate[certificatesBytes.length];
+        for (int i = 0; i < certificatesBytes.length; i++) {
+            try {
+                certificates[i] = new X509CertImpl(certificatesBytes[i]);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return certificates;
+    }
+
+    private void setCertificate(String alias) throws CertificateEncodingException, SSLException {
+        if (alias == null) {
+            return;
+        }
+        PrivateKey privateKey = sslParameters.getKeyManager().getPrivateKey(alias);
+        if (privateKey == null) {
+            return;
+        }
+        X509Certificate[] certificates = sslParameters.getKeyManager().getCertificateChain(alias);
+        if (certificates == null) {
+            return;
+        }
+
+        if (privateKey instanceof OpenSSLRSAPrivateKey) {
+            OpenSSLRSAPrivateKey rsaKey = (OpenSSLRSAPrivateKey) privateKey;
+            OpenSSLKey key = rsaKey.getOpenSSLKey();
+            NativeCrypto.SSL_use_OpenSSL_PrivateKey(sslNativePointer, key.getPkeyContext());
+        } else if (privateKey instanceof OpenSSLDSAPrivateKey) {
+            OpenSSLDSAPrivateKey dsaKey = (OpenSSLDSAPrivateKey) privateKey;
+            OpenSSLKey key = dsaKey.getOpenSSLKey();
+            NativeCrypto.SSL_use_OpenSSL_PrivateKey(sslNativePointer, key.getPkeyContext());
+        } else if ("PKCS#8".equals(privateKey.getFormat())) {
+            byte[] privateKeyBytes = privateKey.getEncoded();
+            NativeCrypto.SSL_use_PrivateKey(sslNativePointer, privateKeyBytes);
+        } else {
+            throw new SSLException("Unsupported PrivateKey format: " + privateKey.getFormat());
+        }
+
+        byte[][] certificateBytes = NativeCrypto.encodeCertificates(certificates);
+        NativeCrypto.SSL_use_certificate(sslNativePointer, certificateBytes);
+
+        // checks the last installed private key and certificate,
+        // so need to do this once per loop iteration
+        NativeCrypto.SSL_check_private_key(sslNativePointer);
+    }
+
+    @Override public synchronized SSLEngineResult wrap(ByteBuffer[] srcs, int offset, int length,
+            ByteBuffer dst) throws SSLException {
+        checkBuffers(srcs, offset, length);
+        if (dst == null) {
+            throw new IllegalArgumentException("dst == null");
+        }
+        if (dst.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        if (!handshakeStarted && !closeOutboundCalled) {
+            beginHandshake();
+        }
+
+        // records that are already queued, such as handshake messages and
+        // alerts, go out before any application data
+        int produced = drainNetworkData(dst);
+        if (produced == 0 && handshakeException != null) {
+            throwHandshakeException();
+        }
+        if (produced == 0 && sslNativePointer != 0 && !closeOutboundCalled) {
+            if (!handshakeDone) {
+                doHandshake();
+                produced = drainNetworkData(dst);
+            } else {
+                return wrapApplicationData(srcs, offset, length, dst);
+            }
+        }
+
+        if (produced == 0 && pendingNetworkData() > 0) {
+            return new SSLEngineResult(Status.BUFFER_OVERFLOW, getHandshakeStatus(), 0, 0);
+        }
+        Status status = isOutboundDone() ? Status.CLOSED : Status.OK;
+        return new SSLEngineResult(status, resultStatus(), 0, produced);
+    }
+
+    private SSLEngineResult wrapApplicationData(ByteBuffer[] srcs, int offset, int length,
+            ByteBuffer dst) throws SSLException {
+        int maxPlaintext = sslSession.getApplicationBufferSize();
+        int packetSize = sslSession.getPacketBufferSize();
+        int consumed = 0;
+        int produced = 0;
+        for (int i = offset; i < offset + length; i++) {
+            ByteBuffer src = srcs[i];
+            while (src.hasRemaining()) {
+                // a record and its overhead must fit in dst before it is written
+                if (dst.remaining() < packetSize) {
+                    if (consumed == 0) {
+                        return new SSLEngineResult(Status.BUFFER_OVERFLOW,
+                                getHandshakeStatus(), 0, 0);
+                    }
+                    return new SSLEngineResult(Status.OK, getHandshakeStatus(),
+                            consumed, produced);
+                }
+                int written = writePlaintext(src, Math.min(src.remaining(), maxPlaintext));
+                produced += drainNetworkData(dst);
+                if (written == 0) {
+                    // a renegotiation needs the peer's records first
+                    return new SSLEngineResult(Status.OK, getHandshakeStatus(),
+                            consumed, produced);
+                }
+                consumed += written;
+            }
+        }
+        return new SSLEngineResult(Status.OK, getHandshakeStatus(), consumed, produced);
+    }
+
+    @Override public synchronized SSLEngineResult unwrap(ByteBuffer src, ByteBuffer[] dsts,
+            int offset, int length) throws SSLException {
+        if (src == null) {
+            throw new IllegalArgumentException("src == null");
+        }
+        checkBuffers(dsts, offset, length);
+        for (int i = offset; i < offset + length; i++) {
+            if (dsts[i].isReadOnly()) {
+                throw new ReadOnlyBufferException();
+            }
+        }
+        if (handshakeException != null) {
+            throwHandshakeException();
+        }
+        if (isInboundDone) {
+            return new SSLEngineResult(Status.CLOSED, getHandshakeStatus(), 0, 0);
+        }
+        if (!handshakeStarted) {
+            beginHandshake();
+        }
+
+        if (!handshakeDone) {
+            if (pendingNetworkData() > 0) {
+                // our own flight has to be sent before the peer can answer it
+                return new SSLEngineResult(Status.OK, HandshakeStatus.NEED_WRAP, 0, 0);
+            }
+            int recordLength = nextRecordLength(src);
+            if (recordLength == -1) {
+                return new SSLEngineResult(Status.BUFFER_UNDERFLOW, getHandshakeStatus(), 0, 0);
+            }
+            int consumed = putNetworkData(src, recordLength);
+            try {
+                doHandshake();
+            } catch (SSLException e) {
+                handshakeException = e;
+            }
+            return new SSLEngineResult(Status.OK, resultStatus(), consumed, 0);
+        }
+
+        int capacity = 0;
+        for (int i = offset; i < offset + length; i++) {
+            capacity += dsts[i].remaining();
+        }
+        int maxPlaintext = sslSession.getApplicationBufferSize();
+        int consumed = 0;
+        int produced = 0;
+        while (true) {
+            if (NativeCrypto.SSL_pending_readable_bytes(sslNativePointer) == 0) {
+                if (consumed != 0 && capacity - produced < maxPlaintext) {
+                    // take further records only while their plaintext surely fits
+                    break;
+                }
+                int recordLength = nextRecordLength(src);
+                if (recordLength == -1) {
+                    if (consumed == 0 && produced == 0) {
+                        return new SSLEngineResult(Status.BUFFER_UNDERFLOW,
+                                getHandshakeStatus(), 0, 0);
+                    }
+                    break;
+                }
+                if (capacity - produced == 0) {
+                    return new SSLEngineResult(Status.BUFFER_OVERFLOW,
+                            getHandshakeStatus(), consumed, produced);
+                }
+                consumed += putNetworkData(src, recordLength);
+            } else if (capacity - produced == 0) {
+                if (produced == 0) {
+                    return new SSLEngineResult(Status.BUFFER_OVERFLOW,
+                            getHandshakeStatus(), consumed, 0);
+                }
+                break;
+            }
+            int read = readPlaintext(dsts, offset, length);
+            if (read == -1) {
+                peerClosed();
+                break;
+            }
+            produced += read;
+        }
+
+        Status status = isInboundDone ? Status.CLOSED : Status.OK;
+        return new SSLEngineResult(status, getHandshakeStatus(), consumed, produced);
+    }
+
+    /**
+     * Handles the peer's close_notify by answering with our own, as the
+     * SSLEngine contract expects.
+     */
+    private void peerClosed() {
+        isInboundDone = true;
+        closeOutbound();
+        freeIfClosed();
+    }
+
+    /**
+     * Returns the length of the complete record at the start of src, or -1
+     * if src does not hold a complete record yet. Only whole records are
+     * queued so that BUFFER_UNDERFLOW keeps its SSLEngine meaning.
+     */
+    private static int nextRecordLength(ByteBuffer src) {
+        int position = src.position();
+        int available = src.limit() - position;
+        if (available < RECORD_HEADER_LENGTH) {
+            return -1;
+        }
+        int first = src.get(position) & 0xff;
+        int length;
+        if ((first & 0x80) != 0) {
+            // SSLv2-compatible ClientHello: two byte header with the high bit set
+            length = (((first & 0x7f) << 8) | (src.get(position + 1) & 0xff)) + 2;
+        } else {
+            length = (((src.get(position + 3) & 0xff) << 8) | (src.get(position + 4) & 0xff))
+                    + RECORD_HEADER_LENGTH;
+        }
+        return (length <= available) ? length : -1;
+    }
+
+    private int putNetworkData(ByteBuffer src, int length) throws SSLException {
+        int position = src.position();
+        if (src.isDirect()) {
+            NativeCrypto.SSL_put_network_data_direct(sslNativePointer,
+                    NioUtils.getDirectBufferAddress(src) + position, length);
+        } else if (src.hasArray()) {
+            NativeCrypto.SSL_put_network_data(sslNativePointer,
+                    src.array(), src.arrayOffset() + position, length);
+        } else {
+            byte[] bytes = scratch(length);
+            src.get(bytes, 0, length);
+            NativeCrypto.SSL_put_network_data(sslNativePointer, bytes, 0, length);
+            return length;
+        }
+        src.position(position + length);
+        return length;
+    }
+
+    private int drainNetworkData(ByteBuffer dst) {
+        if (sslNativePointer == 0) {
+            return 0;
+        }
+        int pending = NativeCrypto.SSL_pending_network_data(sslNativePointer);
+        int length = Math.min(pending, dst.remaining());
+        if (length == 0) {
+            return 0;
+        }
+        int position = dst.position();
+        int read;
+        if (dst.isDirect()) {
+            read = NativeCrypto.SSL_get_network_data_direct(sslNativePointer,
+                    NioUtils.getDirectBufferAddress(dst) + position, length);
+        } else {
+            read = NativeCrypto.SSL_get_network_data(sslNativePointer,
+                    dst.array(), dst.arrayOffset() + position, length);
+        }
+        dst.position(position + read);
+        freeIfClosed();
+        return read;
+    }
+
+    private int pendingNetworkData() {
+        return (sslNativePointer == 0)
+                ? 0 : NativeCrypto.SSL_pending_network_data(sslNativePointer);
+    }
+
+    private int writePlaintext(ByteBuffer src, int length) throws SSLException {
+        int position = src.position();
+        int written;
+        if (src.isDirect()) {
+            written = NativeCrypto.SSL_write_BIO_direct(sslNativePointer, this,
+                    NioUtils.getDirectBufferAddress(src) + position, length);
+        } else if (src.hasArray()) {
+            written = NativeCrypto.SSL_write_BIO(sslNativePointer, this,
+                    src.array(), src.arrayOffset() + position, length);
+        } else {
+            // read-only heap buffer; peek so that nothing is lost if OpenSSL defers
+            byte[] bytes = scratch(length);
+            src.duplicate().get(bytes, 0, length);
+            written = NativeCrypto.SSL_write_BIO(sslNativePointer, this, bytes, 0, length);
+        }
+        src.position(position + written);
+        return written;
+    }
+
+    /**
+     * Reads decrypted bytes into the first dst with room. Returns the number
+     * of bytes read, 0 if more records are needed, or -1 at end of stream.
+     */
+    private int readPlaintext(ByteBuffer[] dsts, int offset, int length) throws SSLException {
+        for (int i = offset; i < offset + length; i++) {
+            ByteBuffer dst = dsts[i];
+            if (!dst.hasRemaining()) {
+                continue;
+            }
+            int position = dst.position();
+            int read;
+            if (dst.isDirect()) {
+                read = NativeCrypto.SSL_read_BIO_direct(sslNativePointer, this,
+                        NioUtils.getDirectBufferAddress(dst) + position, dst.remaining());
+            } else {
+                read = NativeCrypto.SSL_read_BIO(sslNativePointer, this,
+                        dst.array(), dst.arrayOffset() + position, dst.remaining());
+            }
+            if (read > 0) {
+                dst.position(position + read);
+            }
+            return read;
+        }
+        return 0;
+    }
+
+    private byte[] scratch(int length) {
+        if (scratch == null || scratch.length < length) {
+            scratch = new byte[Math.max(length, SSLRecordProtocol.MAX_SSL_PACKET_SIZE)];
+        }
+        return scratch;
+    }
+
+    private static void checkBuffers(ByteBuffer[] buffers, int offset, int length) {
+        if (buffers == null) {
+            throw new IllegalArgumentException("buffers == null");
+        }
+        if ((offset | length) < 0 || length > buffers.length - offset) {
+            throw new IndexOutOfBoundsException("buffers.length=" + buffers.length
+                    + " offset=" + offset + " length=" + length);
+        }
+        for (int i = offset; i < offset + length; i++) {
+            if (buffers[i] == null) {
+                throw new IllegalArgumentException("buffers[" + i + "] == null");
+            }
+        }
+    }
+
+    private void throwHandshakeException() throws SSLException {
+        SSLException e = handshakeException;
+        handshakeException = null;
+        throw e;
+    }
+
+    private boolean isHandshaking() {
+        return handshakeStarted && !handshakeDone && sslNativePointer != 0;
+    }
+
+    /**
+     * Returns the handshake status to report in a result, which is FINISHED
+     * exactly once: for the call that sends or receives the last handshake
+     * record.
+     */
+    private HandshakeStatus resultStatus() {
+        HandshakeStatus status = getHandshakeStatus();
+        if (status == HandshakeStatus.NOT_HANDSHAKING && handshakeDone && !finishedReported) {
+            finishedReported = true;
+            return HandshakeStatus.FINISHED;
+        }
+        return status;
+    }
+
+    @Override public synchronized HandshakeStatus getHandshakeStatus() {
+        if (handshakeException != null) {
+            // the handshake is over; any alert is sent by the wrap that
+            // precedes the exception
+            return HandshakeStatus.NOT_HANDSHAKING;
+        }
+        if (pendingNetworkData() > 0) {
+            return HandshakeStatus.NEED_WRAP;
+        }
+        if (isHandshaking()) {
+            return HandshakeStatus.NEED_UNWRAP;
+        }
+        return HandshakeStatus.NOT_HANDSHAKING;
+    }
+
+    @Override public Runnable getDelegatedTask() {
+        return null;
+    }
+
+    @Override public synchronized void closeInbound() throws SSLException {
+        if (isInboundDone) {
+            return;
+        }
+        isInboundDone = true;
+        if (handshakeStarted) {
+            boolean received = sslNativePointer != 0
+                    && (NativeCrypto.SSL_get_shutdown(sslNativePointer)
+                        & NativeCrypto.SSL_RECEIVED_SHUTDOWN) != 0;
+            if (!received) {
+                if (sslSession != null) {
+                    sslSession.invalidate();
+                }
+                closeOutbound();
+                throw new SSLException("Inbound is closed before close_notify "
+                        + "alert has been received.");
+            }
+        }
+        freeIfClosed();
+    }
+
+    @Override public synchronized void closeOutbound() {
+        if (closeOutboundCalled) {
+            return;
+        }
+        closeOutboundCalled = true;
+        if (sslNativePointer == 0) {
+            return;
+        }
+        if (handshakeDone) {
+            try {
+                NativeCrypto.SSL_shutdown_BIO(sslNativePointer, this);
+            } catch (SSLException ignored) {
+                // as with sockets, failing to queue close_notify is not reported
+            }
+        }
+        freeIfClosed();
+    }
+
+    @Override public synchronized boolean isInboundDone() {
+        return isInboundDone;
+    }
+
+    @Override public synchronized boolean isOutboundDone() {
+        return closeOutboundCalled && pendingNetworkData() == 0;
+    }
+
+    /**
+     * Frees the native state once nothing more can be sent or received.
+     */
+    private void freeIfClosed() {
+        if (isInboundDone && closeOutboundCalled && pendingNetworkData() == 0) {
+            free();
+        }
+    }
+
+    private void free() {
+        if (sslNativePointer == 0) {
+            return;
+        }
+        NativeCrypto.SSL_free(sslNativePointer);
+        sslNativePointer = 0;
+        guard.close();
+    }
+
+    @Override protected void finalize() throws Throwable {
+        try {
+            if (guard != null) {
+                guard.warnIfOpen();
+            }
+            free();
+        } finally {
+            super.finalize();
+        }
+    }
+
+    @Override public synchronized SSLSession getSession() {
+        return (sslSession != null) ? sslSession : SSLSessionImpl.NULL_SESSION;
+    }
+
+    @Override public boolean getEnableSessionCreation() {
+        return sslParameters.getEnableSessionCreation();
+    }
+
+    @Override public void setEnableSessionCreation(boolean flag) {
+        sslParameters.setEnableSessionCreation(flag);
+    }
+
+    @Override public String[] getSupportedCipherSuites() {
+        return SUPPORTED_CIPHER_SUITES.clone();
+    }
+
+    @Override public String[] getEnabledCipherSuites() {
+        return enabledCipherSuites.clone();
+    }
+
+    @Override public void setEnabledCipherSuites(String[] suites) {
+        NativeCrypto.checkEnabledCipherSuites(suites);
+        for (String suite : suites) {
+            if (!isEngineCipherSuite(suite)) {
+                throw new IllegalArgumentException("cipherSuite " + suite + " is not supported.");
+            }
+        }
+        enabledCipherSuites = suites;
+    }
+
+    private static String[] engineCipherSuites(String[] suites) {
+        List<String> result = new ArrayList<String>(suites.length);
+        for (String suite : suites) {
+            if (isEngineCipherSuite(suite)) {
+                result.add(suite);
+            }
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    private static boolean isEngineCipherSuite(String suite) {
+        return !suite.startsWith("TLS_EC")
+                && !suite.equals(NativeCrypto.TLS_EMPTY_RENEGOTIATION_INFO_SCSV);
+    }
+
+    @Override public String[] getSupportedProtocols() {
+        return NativeCrypto.getSupportedProtocols();
+    }
+
+    @Override public String[] getEnabledProtocols() {
+        return enabledProtocols.clone();
+    }
+
+    @Override public void setEnabledProtocols(String[] protocols) {
+        enabledProtocols = NativeCrypto.checkEnabledProtocols(protocols);
+    }
+
+    /**
+     * The names of the compression methods that may be used on this SSL
+     * connection.
+     * @return an array of compression methods
+     */
+    public String[] getSupportedCompressionMethods() {
+        return NativeCrypto.getSupportedCompressionMethods();
+    }
+
+    /**
+     * The names of the compression methods versions that are in use
+     * on this SSL connection.
+     *
+     * @return an array of compression methods
+     */
+    public String[] getEnabledCompressionMethods() {
+        return enabledCompressionMethods.clone();
+    }
+
+    /**
+     * Enables compression methods listed by getSupportedCompressionMethods().
+     *
+     * @throws IllegalArgumentException when one or more of the names in the
+     *             array are not supported, or when the array is null.
+     */
+    public void setEnabledCompressionMethods(String[] methods) {
+        enabledCompressionMethods = NativeCrypto.checkEnabledCompressionMethods(methods);
+    }
+
+    @Override public boolean getUseClientMode() {
+        return sslParameters.getUseClientMode();
+    }
+
+    @Override public synchronized void setUseClientMode(boolean mode) {
+        if (handshakeStarted) {
+            throw new IllegalArgumentException(
+                    "Could not change the mode after the initial handshake has begun.");
+        }
+        peerModeWasSet = true;
+        sslParameters.setUseClientMode(mode);
+    }
+
+    @Override public boolean getWantClientAuth() {
+        return sslParameters.getWantClientAuth();
+    }
+
+    @Override public boolean getNeedClientAuth() {
+        return sslParameters.getNeedClientAuth();
+    }
+
+    @Override public void setNeedClientAuth(boolean need) {
+        sslParameters.setNeedClientAuth(need);
+    }
+
+    @Override public void setWantClientAuth(boolean want) {
+        sslParameters.setWantClientAuth(want);
+    }
+
+    @Override public void clientCertificateRequested(byte[] keyTypeBytes,
+            byte[][] asn1DerEncodedPrincipals) throws CertificateEncodingException, SSLException {
+        String[] keyTypes = new String[keyTypeBytes.length];
+        for (int i = 0; i < keyTypeBytes.length; i++) {
+            keyTypes[i] = CipherSuite.getClientKeyType(keyTypeBytes[i]);
+        }
+
+        X500Principal[] issuers;
+        if (asn1DerEncodedPrincipals == null) {
+            issuers = null;
+        } else {
+            issuers = new X500Principal[asn1DerEncodedPrincipals.length];
+            for (int i = 0; i < asn1DerEncodedPrincipals.length; i++) {
+                issuers[i] = new X500Principal(asn1DerEncodedPrincipals[i]);
+            }
+        }
+        X509KeyManager keyManager = sslParameters.getKeyManager();
+        String alias = (keyManager instanceof X509ExtendedKeyManager)
+                ? ((X509ExtendedKeyManager) keyManager)
+                        .chooseEngineClientAlias(keyTypes, issuers, this)
+                : keyManager.chooseClientAlias(keyTypes, issuers, null);
+        setCertificate(alias);
+    }
+
+    @Override public void handshakeCompleted() {
+        handshakeCompleted = true;
+
+        // If sslSession is null, the handshake was completed during
+        // the call to NativeCrypto.SSL_do_handshake_bio and not during
+        // a later unwrap. doHandshake will update the session cache.
+        if (sslSession == null) {
+            return;
+        }
+
+        // reset session id from the native pointer and update the
+        // appropriate cache.
+        sslSession.resetId();
+        AbstractSessionContext sessionContext =
+            (sslParameters.getUseClientMode())
+            ? sslParameters.getClientSessionContext()
+                : sslParameters.getServerSessionContext();
+        sessionContext.putSession(sslSession);
+    }
+
+    @Override public void verifyCertificateChain(byte[][] bytes, String authMethod)
+            throws CertificateException {
+        try {
+            if (bytes == null || bytes.length == 0) {
+                throw new SSLException("Peer sent no certificate");
+            }
+            X509Certificate[] peerCertificateChain = new X509Certificate[bytes.length];
+            for (int i = 0; i < bytes.length; i++) {
+                peerCertificateChain[i] = new X509CertImpl(bytes[i]);
+            }
+            boolean client = sslParameters.getUseClientMode();
+            if (client) {
+                sslParameters.getTrustManager().checkServerTrusted(peerCertificateChain,
+                                                                   authMethod);
+            } else {
+                String authType = peerCertificateChain[0].getPublicKey().getAlgorithm();
+                sslParameters.getTrustManager().checkClientTrusted(peerCertificateChain,
+                                                                   authType);
+            }
+
+        } catch (CertificateException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.xnet.provider.jsse;
+
+import java.nio.ByteBuffer;
+import java.nio.NioUtils;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.spec.AlgorithmParameterSpec;
+import javax.crypto.MacSpi;
+
+/**
+ * Implements the JDK MacSpi interface for HMAC using OpenSSL's HMAC API.
+ * The key is only processed once per init: {@code doFinal} and {@code reset}
+ * restart the MAC from the existing native key state.
+ */
+public class OpenSSLMac extends MacSpi {
+
+    /**
+     * Holds a pointer to the native HMAC context, or 0 before the first
+     * call to init.
+     */
+    private int ctx;
+
+    /**
+     * Holds the EVP_MD for the hashing algorithm, e.g. EVP_get_digestbyname("sha1");
+     */
+    private final int evp_md;
+
+    /**
+     * Holds the output size of the MAC.
+     */
+    private final int size;
+
+    /**
+     * Holds a dummy buffer for writing single bytes to the MAC. Each clone
+     * gets its own so that clones can be updated concurrently.
+     */
+    private byte[] singleByte = new byte[1];
+
+    private OpenSSLMac(int evp_md, int size) {
+        this.evp_md = evp_md;
+        this.size = size;
+    }
+
+    @Override
+    protected int engineGetMacLength() {
+        return size;
+    }
+
+    @Override
+    protected void engineInit(Key key, AlgorithmParameterSpec params)
+            throws InvalidKeyException, InvalidAlgorithmParameterException {
+        if (key == null) {
+            throw new InvalidKeyException("key == null");
+        }
+        if (params != null) {
+            throw new InvalidAlgorithmParameterException("HMAC does not take parameters");
+        }
+        byte[] keyBytes = key.getEncoded();
+        if (keyBytes == null) {
+            throw new InvalidKeyException("key.getEncoded() == null");
+        }
+        if (ctx == 0) {
+            ctx = NativeCrypto.HMAC_CTX_new();
+        }
+        NativeCrypto.HMAC_Init_ex(ctx, keyBytes, evp_md);
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        singleByte[0] = input;
+        engineUpdate(singleByte, 0, 1);
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+        NativeCrypto.HMAC_Update(getCtx(), input, offset, len);
+    }
+
+    @Override
+    protected void engineUpdate(ByteBuffer input) {
+        if (!input.isDirect()) {
+            super.engineUpdate(input);
+            return;
+        }
+        int position = input.position();
+        int length = input.limit() - position;
+        NativeCrypto.HMAC_UpdateDirect(getCtx(),
+                NioUtils.getDirectBufferAddress(input) + position, length);
+        input.position(input.limit());
+    }
+
+    @Override
+    protected byte[] engineDoFinal() {
+        byte[] result = NativeCrypto.HMAC_Final(getCtx());
+        engineReset();
+        return result;
+    }
+
+    @Override
+    protected void engineReset() {
+        if (ctx != 0) {
+            NativeCrypto.HMAC_Init_ex(ctx, null, 0);
+        }
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        OpenSSLMac m = (OpenSSLMac) super.clone();
+        m.singleByte = new byte[1];
+        if (ctx != 0) {
+            m.ctx = NativeCrypto.HMAC_CTX_copy(ctx);
+        }
+        return m;
+    }
+
+    private int getCtx() {
+        if (ctx == 0) {
+            throw new IllegalStateException("Mac not initialized");
+        }
+        return ctx;
+    }
+
+    private void free() {
+        if (ctx != 0) {
+            NativeCrypto.HMAC_CTX_free(ctx);
+            ctx = 0;
+        }
+    }
+
+    @Override protected void finalize() throws Throwable {
+        try {
+            free();
+        } finally {
+            super.finalize();
+        }
+    }
+
+    public static class HmacMD5 extends OpenSSLMac {
+        private static final int EVP_MD = NativeCrypto.EVP_get_digestbyname("md5");
+        private static final int SIZE = NativeCrypto.EVP_MD_size(EVP_MD);
+        public HmacMD5() {
+            super(EVP_MD, SIZE);
+        }
+    }
+
+    public static class HmacSHA1 extends OpenSSLMac {
+        private static final int EVP_MD = NativeCrypto.EVP_get_digestbyname("sha1");
+        private static final int SIZE = NativeCrypto.EVP_MD_size(EVP_MD);
+        public HmacSHA1() {
+            super(EVP_MD, SIZE);
+        }
+    }
+
+    public static class HmacSHA256 extends OpenSSLMac {
+        private static final int EVP_MD = NativeCrypto.EVP_get_digestbyname("sha256");
+        private static final int SIZE = NativeCrypto.EVP_MD_size(EVP_MD);
+        public HmacSHA256() {
+            super(EVP_MD, SIZE);
+        }
+    }
+
+    public static class HmacSHA384 extends OpenSSLMac {
+        private static final int EVP_MD = NativeCrypto.EVP_get_digestbyname("sha384");
+        private static final int SIZE = NativeCrypto.EVP_MD_size(EVP_MD);
+        public HmacSHA384() {
+            super(EVP_MD, SIZE);
+        }
+    }
+
+    public static class HmacSHA512 extends OpenSSLMac {
+        private static final int EVP_MD = NativeCrypto.EVP_get_digestbyname("sha512");
+        private static final int SIZE = NativeCrypto.EVP_MD_size(EVP_MD);
+        public HmacSHA512() {
+            super(EVP_MD, SIZE);
+        }
+    }
+}
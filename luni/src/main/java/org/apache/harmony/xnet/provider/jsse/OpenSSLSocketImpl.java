@@ -404,6 +404,7 @@ public class OpenSSLSocketImpl
             }
             byte[] sessionId = NativeCrypto.SSL_SESSION_session_id(sslSessionNativePointer);
             sslSession = (OpenSSLSessionImpl) sessionContext.getSession(sessionId);
+            sessionContext.recordHandshake(sslSession != null);
             if (sslSession != null) {
                 sslSession.lastAccessedTime = System.currentTimeMillis();
                 NativeCrypto.SSL_SESSION_free(sslSessionNativePointer);
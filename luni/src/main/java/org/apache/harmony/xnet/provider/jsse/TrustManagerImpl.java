@@ -32,7 +32,9 @@ import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.net.ssl.X509TrustManager;
 
@@ -77,6 +79,44 @@ public final class TrustManagerImpl implements X509TrustManager {
     private final Exception err;
     private final CertificateFactory factory;
 
+    /**
+     * The maximum number of entries in validatedChains.
+     */
+    private static final int MAX_VALIDATED_CHAINS = 64;
+
+    /**
+     * Leaf certificates, by encoding, whose chains recently passed
+     * validation. Servers present the same chain on every handshake, so this
+     * lets repeated checks skip the CertPathValidator. Protect from
+     * concurrent access by holding a lock on validatedChains.
+     */
+    private final Map<ByteArray, ValidatedChain> validatedChains
+            = new LinkedHashMap<ByteArray, ValidatedChain>(16, 0.75f, true /* access order */) {
+        @Override protected boolean removeEldestEntry(Map.Entry<ByteArray, ValidatedChain> e) {
+            return size() > MAX_VALIDATED_CHAINS;
+        }
+    };
+
+    /**
+     * The trust anchors of a validated chain and the times between which
+     * every certificate of the chain, including its trust anchors, is valid.
+     */
+    private static final class ValidatedChain {
+        final X509Certificate[] anchors;
+        final long notBefore;
+        final long notAfter;
+
+        ValidatedChain(X509Certificate[] anchors, long notBefore, long notAfter) {
+            this.anchors = anchors;
+            this.notBefore = notBefore;
+            this.notAfter = notAfter;
+        }
+
+        boolean contains(long time) {
+            return notBefore <= time && time <= notAfter;
+        }
+    }
+
     /**
      * Creates X509TrustManager based on a keystore
      *
@@ -169,6 +209,13 @@ public final class TrustManagerImpl implements X509TrustManager {
         } else {
             trustedCertificateIndex.reset(trustAnchors(acceptedIssuers));
         }
+        if (trustedCertificateStore != null) {
+            trustedCertificateStore.invalidateIndex();
+        }
+        // A removed CA may have anchored one of the cached chains.
+        synchronized (validatedChains) {
+            validatedChains.clear();
+        }
     }
 
     private void checkTrusted(X509Certificate[] chain, String authType)
@@ -180,6 +227,16 @@ public final class TrustManagerImpl implements X509TrustManager {
             throw new CertificateException(err);
         }
 
+        ByteArray leaf = new ByteArray(chain[0].getEncoded());
+        ValidatedChain validated;
+        synchronized (validatedChains) {
+            validated = validatedChains.get(leaf);
+        }
+        if (validated != null && validated.contains(System.currentTimeMillis())
+                && isStillTrusted(validated)) {
+            return;
+        }
+
         Set<TrustAnchor> trustAnchors = new HashSet<TrustAnchor>();
         X509Certificate[] newChain = cleanupCertChainAndFindTrustAnchors(chain, trustAnchors);
         if (newChain.length == 0) {
@@ -197,6 +254,10 @@ public final class TrustManagerImpl implements X509TrustManager {
             PKIXParameters params = new PKIXParameters(trustAnchors);
             params.setRevocationEnabled(false);
             validator.validate(certPath, params);
+            validated = validatedChain(newChain, trustAnchors);
+            synchronized (validatedChains) {
+                validatedChains.put(leaf, validated);
+            }
             // Add intermediate CAs to the index to tolerate sites
             // that assume that the browser will have cached these.
             // The server certificate is skipped by skipping the
@@ -213,6 +274,50 @@ public final class TrustManagerImpl implements X509TrustManager {
         }
     }
 
+    /**
+     * Returns the certificates of {@code trustAnchors} together with the
+     * period in which all of them and {@code chain} are valid.
+     */
+    private static ValidatedChain validatedChain(X509Certificate[] chain,
+                                                 Set<TrustAnchor> trustAnchors) {
+        long notBefore = Long.MIN_VALUE;
+        long notAfter = Long.MAX_VALUE;
+        List<X509Certificate> anchors = new ArrayList<X509Certificate>(trustAnchors.size());
+        for (TrustAnchor trustAnchor : trustAnchors) {
+            if (trustAnchor.getTrustedCert() != null) {
+                anchors.add(trustAnchor.getTrustedCert());
+            }
+        }
+        List<X509Certificate> certs = new ArrayList<X509Certificate>(Arrays.asList(chain));
+        certs.addAll(anchors);
+        for (X509Certificate cert : certs) {
+            notBefore = Math.max(notBefore, cert.getNotBefore().getTime());
+            notAfter = Math.min(notAfter, cert.getNotAfter().getTime());
+        }
+        return new ValidatedChain(anchors.toArray(new X509Certificate[anchors.size()]),
+                                  notBefore, notAfter);
+    }
+
+    /**
+     * Returns true if the trust anchors of {@code validated} are still
+     * trusted. The TrustedCertificateStore is asked on every cache hit, as
+     * it notices CAs that were removed or distrusted since the chain was
+     * validated, even for instances that never see
+     * handleTrustStorageUpdate.
+     */
+    private boolean isStillTrusted(ValidatedChain validated) {
+        if (trustedCertificateStore == null) {
+            // the anchors came from a fixed KeyStore
+            return true;
+        }
+        for (X509Certificate anchor : validated.anchors) {
+            if (!trustedCertificateStore.isTrustAnchor(anchor)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Clean up the certificate chain, returning a cleaned up chain,
      * which may be a new array instance if elements were removed.
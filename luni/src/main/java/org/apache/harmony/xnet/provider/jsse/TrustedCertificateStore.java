@@ -30,10 +30,15 @@ import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import javax.security.auth.x500.X500Principal;
 import libcore.io.IoUtils;
 
@@ -61,7 +66,8 @@ import libcore.io.IoUtils;
  * TrustedCertificateStore} also provides the additional public
  * methods {@link #isTrustAnchor} and {@link #findIssuer} to allow
  * efficient lookup operations for CAs again based on the file naming
- * convention.
+ * convention. These two lookups are answered from an in-memory index of
+ * each directory, which is rebuilt when the directory is modified.
  *
  * <p>The KeyChainService users the {@link installCertificate} and
  * {@link #deleteCertificateEntry} to install user CAs as well as
@@ -323,18 +329,12 @@ public final class TrustedCertificateStore {
                 return ca.getPublicKey().equals(c.getPublicKey());
             }
         };
-        boolean user = findCert(addedDir,
-                                c.getSubjectX500Principal(),
-                                selector,
-                                Boolean.class);
-        if (user) {
+        X500Principal subject = c.getSubjectX500Principal();
+        if (findIndexedCert(addedIndex, subject, selector) != null) {
             return true;
         }
-        X509Certificate system = findCert(systemDir,
-                                          c.getSubjectX500Principal(),
-                                          selector,
-                                          X509Certificate.class);
-        return system != null && !isDeletedSystemCertificate(system);
+        X509Certificate system = findIndexedCert(systemIndex, subject, selector);
+        return system != null && !isIndexedDeletedSystemCertificate(system);
     }
 
     /**
@@ -355,17 +355,127 @@ public final class TrustedCertificateStore {
             }
         };
         X500Principal issuer = c.getIssuerX500Principal();
-        X509Certificate user = findCert(addedDir, issuer, selector, X509Certificate.class);
+        X509Certificate user = findIndexedCert(addedIndex, issuer, selector);
         if (user != null) {
             return user;
         }
-        X509Certificate system = findCert(systemDir, issuer, selector, X509Certificate.class);
-        if (system != null && !isDeletedSystemCertificate(system)) {
+        X509Certificate system = findIndexedCert(systemIndex, issuer, selector);
+        if (system != null && !isIndexedDeletedSystemCertificate(system)) {
             return system;
         }
         return null;
     }
 
+    /**
+     * Like {@code findCert} for an {@code X509Certificate}, but consults the
+     * in-memory index of the directory instead of reading its files.
+     */
+    private X509Certificate findIndexedCert(
+            CertificateDirectory index, X500Principal subject, CertSelector selector) {
+        for (X509Certificate cert : index.certificates(hash(subject))) {
+            if (selector.match(cert)) {
+                return cert;
+            }
+        }
+        return null;
+    }
+
+    private boolean isIndexedDeletedSystemCertificate(X509Certificate x) {
+        return deletedIndex.certificates(hash(x.getSubjectX500Principal())).contains(x);
+    }
+
+    /**
+     * Discards the in-memory indexes so that they are rebuilt from disk on
+     * the next lookup. Directory modification times catch files being added
+     * or removed, but not a file being rewritten in place, such as when
+     * another process turns a user certificate into a tombstone.
+     */
+    public void invalidateIndex() {
+        systemIndex.invalidate();
+        addedIndex.invalidate();
+        deletedIndex.invalidate();
+    }
+
+    /**
+     * An in-memory copy of the certificates in one directory, grouped by
+     * subject hash in file index order. The copy is rebuilt when the
+     * directory's modification time changes. Since modification times can
+     * be as coarse as two seconds, a copy made within that long of the last
+     * modification is not trusted and is rebuilt on the next lookup.
+     */
+    private final class CertificateDirectory {
+        private static final long MODIFICATION_TIME_GRANULARITY_MILLIS = 2000;
+
+        private final File dir;
+
+        /** Certificates by subject hash, or null if not yet built. Guarded by this. */
+        private Map<String, List<X509Certificate>> certificates;
+        private long lastModified;
+        private boolean racy;
+
+        CertificateDirectory(File dir) {
+            this.dir = dir;
+        }
+
+        synchronized List<X509Certificate> certificates(String hash) {
+            long lastModified = dir.lastModified();
+            if (certificates == null || racy || lastModified != this.lastModified) {
+                long now = System.currentTimeMillis();
+                certificates = read();
+                this.lastModified = lastModified;
+                this.racy = now - lastModified < MODIFICATION_TIME_GRANULARITY_MILLIS;
+            }
+            List<X509Certificate> result = certificates.get(hash);
+            return (result != null) ? result : Collections.<X509Certificate>emptyList();
+        }
+
+        synchronized void invalidate() {
+            certificates = null;
+        }
+
+        private Map<String, List<X509Certificate>> read() {
+            Map<String, TreeMap<Integer, X509Certificate>> byHash
+                    = new HashMap<String, TreeMap<Integer, X509Certificate>>();
+            String[] files = dir.list();
+            if (files != null) {
+                for (String filename : files) {
+                    int dotIndex = filename.lastIndexOf('.');
+                    if (dotIndex == -1) {
+                        continue;
+                    }
+                    int index;
+                    try {
+                        index = Integer.parseInt(filename.substring(dotIndex + 1));
+                    } catch (NumberFormatException e) {
+                        continue;
+                    }
+                    File file = new File(dir, filename);
+                    if (isTombstone(file)) {
+                        continue;
+                    }
+                    X509Certificate cert = readCertificate(file);
+                    if (cert == null) {
+                        // skip problem certificates
+                        continue;
+                    }
+                    String hash = filename.substring(0, dotIndex);
+                    TreeMap<Integer, X509Certificate> certs = byHash.get(hash);
+                    if (certs == null) {
+                        certs = new TreeMap<Integer, X509Certificate>();
+                        byHash.put(hash, certs);
+                    }
+                    certs.put(index, cert);
+                }
+            }
+            Map<String, List<X509Certificate>> result
+                    = new HashMap<String, List<X509Certificate>>(byHash.size());
+            for (Map.Entry<String, TreeMap<Integer, X509Certificate>> entry : byHash.entrySet()) {
+                result.put(entry.getKey(), new ArrayList<X509Certificate>(entry.getValue().values()));
+            }
+            return result;
+        }
+    }
+
     // like java.security.cert.CertSelector but with X509Certificate and without cloning
     private static interface CertSelector {
         public boolean match(X509Certificate cert);
@@ -432,6 +542,15 @@ public final class TrustedCertificateStore {
         if (cert == null) {
             throw new NullPointerException("cert == null");
         }
+        try {
+            installCertificateInternal(cert);
+        } finally {
+            invalidateIndex();
+        }
+    }
+
+    private void installCertificateInternal(X509Certificate cert)
+            throws IOException, CertificateException {
         File system = getCertificateFile(systemDir, cert);
         if (system.exists()) {
             File deleted = getCertificateFile(deletedDir, cert);
@@ -467,6 +586,15 @@ public final class TrustedCertificateStore {
         if (alias == null) {
             return;
         }
+        try {
+            deleteCertificateEntryInternal(alias);
+        } finally {
+            invalidateIndex();
+        }
+    }
+
+    private void deleteCertificateEntryInternal(String alias)
+            throws IOException, CertificateException {
         File file = fileForAlias(alias);
         if (file == null) {
             return;
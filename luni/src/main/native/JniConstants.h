@@ -66,7 +66,6 @@ struct JniConstants {
     static jclass mutableLongClass;
     static jclass parsePositionClass;
     static jclass patternSyntaxExceptionClass;
-    static jclass realToStringClass;
     static jclass socketClass;
     static jclass socketImplClass;
     static jclass stringArrayClass;
@@ -40,7 +40,6 @@ int JNI_OnLoad(JavaVM* vm, void*) {
     REGISTER(register_java_lang_Character);
     REGISTER(register_java_lang_Math);
     REGISTER(register_java_lang_ProcessManager);
-    REGISTER(register_java_lang_RealToString);
     REGISTER(register_java_lang_StrictMath);
     REGISTER(register_java_lang_StringToReal);
     REGISTER(register_java_lang_System);
@@ -31,14 +31,13 @@ static jlong Adler32_updateImpl(JNIEnv* env, jobject, jbyteArray byteArray, int
     return adler32(crc, reinterpret_cast<const Bytef*>(bytes.get() + off), len);
 }
 
-static jlong Adler32_updateByteImpl(JNIEnv*, jobject, jint val, jlong crc) {
-    Bytef bytefVal = val;
-    return adler32(crc, reinterpret_cast<const Bytef*>(&bytefVal), 1);
+static jlong Adler32_updateByteBufferImpl(JNIEnv*, jobject, jint address, jint len, jlong crc) {
+    return adler32(crc, reinterpret_cast<const Bytef*>(static_cast<uintptr_t>(address)), len);
 }
 
 static JNINativeMethod gMethods[] = {
     NATIVE_METHOD(Adler32, updateImpl, "([BIIJ)J"),
-    NATIVE_METHOD(Adler32, updateByteImpl, "(IJ)J"),
+    NATIVE_METHOD(Adler32, updateByteBufferImpl, "(IIJ)J"),
 };
 void register_java_util_zip_Adler32(JNIEnv* env) {
     jniRegisterNativeMethods(env, "java/util/zip/Adler32", gMethods, NELEM(gMethods));
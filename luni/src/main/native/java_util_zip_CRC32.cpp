@@ -32,13 +32,13 @@ static jlong CRC32_updateImpl(JNIEnv* env, jobject, jbyteArray byteArray, int of
     return result;
 }
 
-static jlong CRC32_updateByteImpl(JNIEnv*, jobject, jbyte val, jlong crc) {
-    return crc32(crc, reinterpret_cast<const Bytef*>(&val), 1);
+static jlong CRC32_updateByteBufferImpl(JNIEnv*, jobject, jint address, jint len, jlong crc) {
+    return crc32(crc, reinterpret_cast<const Bytef*>(static_cast<uintptr_t>(address)), len);
 }
 
 static JNINativeMethod gMethods[] = {
     NATIVE_METHOD(CRC32, updateImpl, "([BIIJ)J"),
-    NATIVE_METHOD(CRC32, updateByteImpl, "(BJ)J"),
+    NATIVE_METHOD(CRC32, updateByteBufferImpl, "(IIJ)J"),
 };
 void register_java_util_zip_CRC32(JNIEnv* env) {
     jniRegisterNativeMethods(env, "java/util/zip/CRC32", gMethods, NELEM(gMethods));
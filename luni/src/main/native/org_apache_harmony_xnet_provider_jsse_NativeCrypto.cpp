@@ -31,6 +31,7 @@
 #include <openssl/engine.h>
 #include <openssl/err.h>
 #include <openssl/evp.h>
+#include <openssl/hmac.h>
 #include <openssl/rand.h>
 #include <openssl/rsa.h>
 #include <openssl/ssl.h>
@@ -107,7 +108,7 @@ typedef UniquePtr<EVP_MD_CTX, EVP_MD_CTX_Delete> Unique_EVP_MD_CTX;
 
 struct EVP_CIPHER_CTX_Delete {
     void operator()(EVP_CIPHER_CTX* p) const {
-        EVP_CIPHER_CTX_cleanup(p);
+        EVP_CIPHER_CTX_free(p);
     }
 };
 typedef UniquePtr<EVP_CIPHER_CTX, EVP_CIPHER_CTX_Delete> Unique_EVP_CIPHER_CTX;
@@ -1668,58 +1669,123 @@ static jint NativeCrypto_EVP_get_cipherbyname(JNIEnv* env, jclass, jstring algor
 }
 
 /*
- * public static native int EVP_CipherInit_ex(int cipherNid, byte[] key, byte[] iv,
- *          boolean encrypting);
+ * public static native int EVP_CIPHER_iv_length(int evpCipher);
+ */
+static jint NativeCrypto_EVP_CIPHER_iv_length(JNIEnv* env, jclass, jint evpCipherRef) {
+    const EVP_CIPHER* evp_cipher = reinterpret_cast<const EVP_CIPHER*>(evpCipherRef);
+    JNI_TRACE("EVP_CIPHER_iv_length(%p)", evp_cipher);
+
+    if (evp_cipher == NULL) {
+        jniThrowNullPointerException(env, "evpCipher == null");
+        return 0;
+    }
+
+    int ivLength = EVP_CIPHER_iv_length(evp_cipher);
+    JNI_TRACE("EVP_CIPHER_iv_length(%p) => %d", evp_cipher, ivLength);
+    return ivLength;
+}
+
+/*
+ * public static native int EVP_CIPHER_CTX_new();
  */
-static jint NativeCrypto_EVP_CipherInit_ex(JNIEnv* env, jclass, jint cipherRef, jbyteArray keyArray,
-        jbyteArray ivArray, jboolean encrypting) {
-    const EVP_CIPHER* evp_cipher = reinterpret_cast<const EVP_CIPHER*>(cipherRef);
-    JNI_TRACE("EVP_CipherInit_ex(%p, %p, %p, %d)", evp_cipher, keyArray, ivArray, encrypting ? 1 : 0);
+static jint NativeCrypto_EVP_CIPHER_CTX_new(JNIEnv* env, jclass) {
+    JNI_TRACE("EVP_CIPHER_CTX_new()");
 
-    ScopedByteArrayRO keyBytes(env, keyArray);
-    if (keyBytes.get() == NULL) {
+    Unique_EVP_CIPHER_CTX ctx(EVP_CIPHER_CTX_new());
+    if (ctx.get() == NULL) {
+        jniThrowOutOfMemoryError(env, "Unable to allocate cipher context");
+        JNI_TRACE("EVP_CIPHER_CTX_new => context allocation error");
         return 0;
     }
 
+    JNI_TRACE("EVP_CIPHER_CTX_new() => %p", ctx.get());
+    return static_cast<jint>(reinterpret_cast<uintptr_t>(ctx.release()));
+}
+
+/*
+ * public static native void EVP_CipherInit_ex(int ctx, int evpCipher, byte[] key, byte[] iv,
+ *          boolean encrypting);
+ *
+ * A zero evpCipher or null key keeps the cipher or key schedule already set up
+ * in ctx, so that a context can be rewound to a new IV without rekeying.
+ */
+static void NativeCrypto_EVP_CipherInit_ex(JNIEnv* env, jclass, jint ctxRef, jint evpCipherRef,
+        jbyteArray keyArray, jbyteArray ivArray, jboolean encrypting) {
+    EVP_CIPHER_CTX* ctx = reinterpret_cast<EVP_CIPHER_CTX*>(ctxRef);
+    const EVP_CIPHER* evp_cipher = reinterpret_cast<const EVP_CIPHER*>(evpCipherRef);
+    JNI_TRACE("EVP_CipherInit_ex(%p, %p, %p, %p, %d)", ctx, evp_cipher, keyArray, ivArray,
+            encrypting ? 1 : 0);
+
+    if (ctx == NULL) {
+        jniThrowNullPointerException(env, "ctx == null");
+        JNI_TRACE("EVP_CipherInit_ex => ctx == null");
+        return;
+    }
+
+    if (evp_cipher != NULL) {
+        if (!EVP_CipherInit_ex(ctx, evp_cipher, NULL, NULL, NULL, encrypting ? 1 : 0)) {
+            throwExceptionIfNecessary(env, "EVP_CipherInit_ex");
+            JNI_TRACE("EVP_CipherInit_ex => error setting cipher");
+            return;
+        }
+    }
+
+    UniquePtr<unsigned char[]> keyPtr;
+    if (keyArray != NULL) {
+        ScopedByteArrayRO keyBytes(env, keyArray);
+        if (keyBytes.get() == NULL) {
+            return;
+        }
+        // Variable key length ciphers such as RC4 must be told the key size first.
+        if (keyBytes.size() != size_t(EVP_CIPHER_CTX_key_length(ctx))
+                && !EVP_CIPHER_CTX_set_key_length(ctx, keyBytes.size())) {
+            throwExceptionIfNecessary(env, "EVP_CIPHER_CTX_set_key_length");
+            JNI_TRACE("EVP_CipherInit_ex => invalid key length %d", keyBytes.size());
+            return;
+        }
+        keyPtr.reset(new unsigned char[keyBytes.size()]);
+        memcpy(keyPtr.get(), keyBytes.get(), keyBytes.size());
+    }
+
     // The IV can be null if we're using ECB.
     UniquePtr<unsigned char[]> ivPtr;
     if (ivArray != NULL) {
         ScopedByteArrayRO ivBytes(env, ivArray);
         if (ivBytes.get() == NULL) {
-            return 0;
+            return;
         }
-
         ivPtr.reset(new unsigned char[ivBytes.size()]);
         memcpy(ivPtr.get(), ivBytes.get(), ivBytes.size());
     }
 
-    Unique_EVP_CIPHER_CTX ctx(EVP_CIPHER_CTX_new());
-    if (ctx.get() == NULL) {
-        jniThrowOutOfMemoryError(env, "Unable to allocate cipher context");
-        JNI_TRACE("ctx=%p EVP_CipherInit_ex => context allocation error", evp_cipher);
-        return 0;
-    }
-
-    const unsigned char* key = reinterpret_cast<const unsigned char*>(keyBytes.get());
-    if (!EVP_CipherInit_ex(ctx.get(), evp_cipher, NULL, key, ivPtr.get(), encrypting ? 1 : 0)) {
+    if (!EVP_CipherInit_ex(ctx, NULL, NULL, keyPtr.get(), ivPtr.get(), encrypting ? 1 : 0)) {
         throwExceptionIfNecessary(env, "EVP_CipherInit_ex");
         JNI_TRACE("EVP_CipherInit_ex => error initializing cipher");
-        return 0;
+        return;
     }
 
-    JNI_TRACE("EVP_CipherInit_ex(%p, %p, %p, %d) => %p", evp_cipher, keyArray, ivArray,
-            encrypting ? 1 : 0, ctx.get());
-    return static_cast<jint>(reinterpret_cast<uintptr_t>(ctx.release()));
+    JNI_TRACE("EVP_CipherInit_ex(%p, %p, %p, %p, %d) => success", ctx, evp_cipher, keyArray,
+            ivArray, encrypting ? 1 : 0);
+}
+
+/*
+ * The most EVP_CipherUpdate can write for inLength bytes of input: whole
+ * blocks of the input plus anything buffered from earlier calls.
+ */
+static size_t maxCipherUpdateOutput(EVP_CIPHER_CTX* ctx, jint inLength) {
+    int blockSize = EVP_CIPHER_CTX_block_size(ctx);
+    return size_t(inLength) + (blockSize > 1 ? blockSize : 0);
 }
 
 /*
  *  public static native int EVP_CipherUpdate(int ctx, byte[] out, int outOffset, byte[] in,
- *          int inOffset);
+ *          int inOffset, int inLength);
  */
 static jint NativeCrypto_EVP_CipherUpdate(JNIEnv* env, jclass, jint ctxRef, jbyteArray outArray,
-        jint outOffset, jbyteArray inArray, jint inOffset) {
+        jint outOffset, jbyteArray inArray, jint inOffset, jint inLength) {
     EVP_CIPHER_CTX* ctx = reinterpret_cast<EVP_CIPHER_CTX*>(ctxRef);
-    JNI_TRACE("EVP_CipherUpdate(%p, %p, %d, %p, %d)", ctx, outArray, outOffset, inArray, inOffset);
+    JNI_TRACE("EVP_CipherUpdate(%p, %p, %d, %p, %d, %d)", ctx, outArray, outOffset, inArray,
+            inOffset, inLength);
 
     if (ctx == NULL) {
         jniThrowNullPointerException(env, "ctx == null");
@@ -1732,7 +1798,8 @@ static jint NativeCrypto_EVP_CipherUpdate(JNIEnv* env, jclass, jint ctxRef, jbyt
         return 0;
     }
     const size_t inSize = inBytes.size();
-    if (size_t(inOffset + EVP_CIPHER_CTX_block_size(ctx)) > inSize) {
+    if (inOffset < 0 || inLength < 0 || size_t(inOffset) > inSize
+            || size_t(inLength) > inSize - inOffset) {
         jniThrowException(env, "java/lang/IndexOutOfBoundsException", NULL);
         return 0;
     }
@@ -1742,7 +1809,8 @@ static jint NativeCrypto_EVP_CipherUpdate(JNIEnv* env, jclass, jint ctxRef, jbyt
         return 0;
     }
     const size_t outSize = outBytes.size();
-    if (size_t(outOffset + EVP_CIPHER_CTX_block_size(ctx)) > outSize) {
+    if (outOffset < 0 || size_t(outOffset) > outSize
+            || maxCipherUpdateOutput(ctx, inLength) > outSize - outOffset) {
         jniThrowException(env, "java/lang/IndexOutOfBoundsException", NULL);
         return 0;
     }
@@ -1751,19 +1819,55 @@ static jint NativeCrypto_EVP_CipherUpdate(JNIEnv* env, jclass, jint ctxRef, jbyt
     const unsigned char* in = reinterpret_cast<const unsigned char*>(inBytes.get());
 
     int outl;
-    if (!EVP_CipherUpdate(ctx, out + outOffset, &outl, in+inOffset, inSize - inOffset)) {
-        throwExceptionIfNecessary(env, "EVP_CipherInit_ex");
+    if (!EVP_CipherUpdate(ctx, out + outOffset, &outl, in + inOffset, inLength)) {
+        throwExceptionIfNecessary(env, "EVP_CipherUpdate");
         JNI_TRACE("ctx=%p EVP_CipherUpdate => threw error", ctx);
         return 0;
     }
 
-    JNI_TRACE("EVP_CipherUpdate(%p, %p, %d, %p, %d) => %d", ctx, outArray, outOffset, inArray,
-            inOffset, outl);
+    JNI_TRACE("EVP_CipherUpdate(%p, %p, %d, %p, %d, %d) => %d", ctx, outArray, outOffset,
+            inArray, inOffset, inLength, outl);
     return outl;
 }
 
 /*
- *  public static native int EVP_CipherFinal(int ctx, byte[] out, int outOffset);
+ *  public static native int EVP_CipherUpdateDirect(int ctx, int outAddress, int outLength,
+ *          int inAddress, int inLength);
+ */
+static jint NativeCrypto_EVP_CipherUpdateDirect(JNIEnv* env, jclass, jint ctxRef,
+        jint outAddress, jint outLength, jint inAddress, jint inLength) {
+    EVP_CIPHER_CTX* ctx = reinterpret_cast<EVP_CIPHER_CTX*>(ctxRef);
+    unsigned char* out = reinterpret_cast<unsigned char*>(static_cast<uintptr_t>(outAddress));
+    const unsigned char* in =
+            reinterpret_cast<const unsigned char*>(static_cast<uintptr_t>(inAddress));
+    JNI_TRACE("EVP_CipherUpdateDirect(%p, %p, %d, %p, %d)", ctx, out, outLength, in, inLength);
+
+    if (ctx == NULL) {
+        jniThrowNullPointerException(env, "ctx == null");
+        JNI_TRACE("ctx=%p EVP_CipherUpdateDirect => ctx == null", ctx);
+        return 0;
+    }
+
+    if (inLength < 0 || outLength < 0 || maxCipherUpdateOutput(ctx, inLength) > size_t(outLength)) {
+        jniThrowException(env, "java/lang/IndexOutOfBoundsException", NULL);
+        return 0;
+    }
+
+    int outl;
+    if (!EVP_CipherUpdate(ctx, out, &outl, in, inLength)) {
+        throwExceptionIfNecessary(env, "EVP_CipherUpdateDirect");
+        JNI_TRACE("ctx=%p EVP_CipherUpdateDirect => threw error", ctx);
+        return 0;
+    }
+
+    JNI_TRACE("EVP_CipherUpdateDirect(%p, %p, %d, %p, %d) => %d", ctx, out, outLength, in,
+            inLength, outl);
+    return outl;
+}
+
+/*
+ *  public static native int EVP_CipherFinal_ex(int ctx, byte[] out, int outOffset)
+ *          throws BadPaddingException, IllegalBlockSizeException;
  */
 static jint NativeCrypto_EVP_CipherFinal_ex(JNIEnv* env, jclass, jint ctxRef, jbyteArray outArray,
         jint outOffset) {
@@ -1780,28 +1884,247 @@ static jint NativeCrypto_EVP_CipherFinal_ex(JNIEnv* env, jclass, jint ctxRef, jb
     if (outBytes.get() == NULL) {
         return 0;
     }
+    const size_t outSize = outBytes.size();
+    if (outOffset < 0 || size_t(outOffset) > outSize
+            || size_t(EVP_CIPHER_CTX_block_size(ctx)) > outSize - outOffset) {
+        jniThrowException(env, "java/lang/IndexOutOfBoundsException", NULL);
+        return 0;
+    }
 
     unsigned char* out = reinterpret_cast<unsigned char*>(outBytes.get());
 
     int outl;
     if (!EVP_CipherFinal_ex(ctx, out + outOffset, &outl)) {
-        throwExceptionIfNecessary(env, "EVP_CipherInit_ex");
-        JNI_TRACE("ctx=%p EVP_CipherUpdate => threw error", ctx);
+        // Decryption fails on bad padding, encryption on input that isn't a
+        // whole number of blocks when padding is disabled.
+        char message[256];
+        ERR_error_string_n(ERR_get_error(), message, sizeof(message));
+        freeOpenSslErrorState();
+        jniThrowException(env, ctx->encrypt ? "javax/crypto/IllegalBlockSizeException"
+                                            : "javax/crypto/BadPaddingException", message);
+        JNI_TRACE("ctx=%p EVP_CipherFinal_ex => threw error", ctx);
         return 0;
     }
 
-    JNI_TRACE("EVP_CipherFinal(%p, %p, %d) => %d", ctx, outArray, outOffset, outl);
+    JNI_TRACE("EVP_CipherFinal_ex(%p, %p, %d) => %d", ctx, outArray, outOffset, outl);
     return outl;
 }
 
 /*
- * public static native void EVP_CIPHER_CTX_cleanup(int ctx);
+ * public static native int EVP_CIPHER_CTX_block_size(int ctx);
+ */
+static jint NativeCrypto_EVP_CIPHER_CTX_block_size(JNIEnv* env, jclass, jint ctxRef) {
+    EVP_CIPHER_CTX* ctx = reinterpret_cast<EVP_CIPHER_CTX*>(ctxRef);
+    JNI_TRACE("EVP_CIPHER_CTX_block_size(%p)", ctx);
+
+    if (ctx == NULL) {
+        jniThrowNullPointerException(env, "ctx == null");
+        return 0;
+    }
+
+    int blockSize = EVP_CIPHER_CTX_block_size(ctx);
+    JNI_TRACE("EVP_CIPHER_CTX_block_size(%p) => %d", ctx, blockSize);
+    return blockSize;
+}
+
+/*
+ * public static native void EVP_CIPHER_CTX_set_padding(int ctx, boolean enablePadding);
+ */
+static void NativeCrypto_EVP_CIPHER_CTX_set_padding(JNIEnv* env, jclass, jint ctxRef,
+        jboolean enablePadding) {
+    EVP_CIPHER_CTX* ctx = reinterpret_cast<EVP_CIPHER_CTX*>(ctxRef);
+    JNI_TRACE("EVP_CIPHER_CTX_set_padding(%p, %d)", ctx, enablePadding ? 1 : 0);
+
+    if (ctx == NULL) {
+        jniThrowNullPointerException(env, "ctx == null");
+        return;
+    }
+
+    EVP_CIPHER_CTX_set_padding(ctx, enablePadding ? 1 : 0);
+}
+
+/*
+ * public static native void EVP_CIPHER_CTX_free(int ctx);
  */
-static void NativeCrypto_EVP_CIPHER_CTX_cleanup(JNIEnv*, jclass, jint ctxRef) {
+static void NativeCrypto_EVP_CIPHER_CTX_free(JNIEnv*, jclass, jint ctxRef) {
     EVP_CIPHER_CTX* ctx = reinterpret_cast<EVP_CIPHER_CTX*>(ctxRef);
+    JNI_TRACE("EVP_CIPHER_CTX_free(%p)", ctx);
 
     if (ctx != NULL) {
-        EVP_CIPHER_CTX_cleanup(ctx);
+        EVP_CIPHER_CTX_free(ctx);
+    }
+}
+
+/*
+ * public static native int HMAC_CTX_new();
+ */
+static jint NativeCrypto_HMAC_CTX_new(JNIEnv* env, jclass) {
+    JNI_TRACE("HMAC_CTX_new()");
+
+    HMAC_CTX* ctx = reinterpret_cast<HMAC_CTX*>(OPENSSL_malloc(sizeof(HMAC_CTX)));
+    if (ctx == NULL) {
+        jniThrowOutOfMemoryError(env, "Unable to allocate HMAC_CTX");
+        return 0;
+    }
+    HMAC_CTX_init(ctx);
+
+    JNI_TRACE("HMAC_CTX_new() => %p", ctx);
+    return static_cast<jint>(reinterpret_cast<uintptr_t>(ctx));
+}
+
+/*
+ * public static native int HMAC_CTX_copy(int ctx);
+ */
+static jint NativeCrypto_HMAC_CTX_copy(JNIEnv* env, jclass, jint ctxRef) {
+    HMAC_CTX* ctx = reinterpret_cast<HMAC_CTX*>(ctxRef);
+    JNI_TRACE("HMAC_CTX_copy(%p)", ctx);
+
+    if (ctx == NULL) {
+        jniThrowNullPointerException(env, "ctx == null");
+        return 0;
+    }
+
+    HMAC_CTX* copy = reinterpret_cast<HMAC_CTX*>(OPENSSL_malloc(sizeof(HMAC_CTX)));
+    if (copy == NULL) {
+        jniThrowOutOfMemoryError(env, "Unable to allocate copy of HMAC_CTX");
+        return 0;
+    }
+    HMAC_CTX_init(copy);
+    if (!HMAC_CTX_copy(copy, ctx)) {
+        HMAC_CTX_cleanup(copy);
+        OPENSSL_free(copy);
+        jniThrowRuntimeException(env, "Unable to copy HMAC_CTX");
+        return 0;
+    }
+
+    JNI_TRACE("HMAC_CTX_copy(%p) => %p", ctx, copy);
+    return static_cast<jint>(reinterpret_cast<uintptr_t>(copy));
+}
+
+/*
+ * public static native void HMAC_Init_ex(int ctx, byte[] key, int evpMd);
+ *
+ * A null key with a zero evpMd restarts the MAC with the current key.
+ */
+static void NativeCrypto_HMAC_Init_ex(JNIEnv* env, jclass, jint ctxRef, jbyteArray keyArray,
+        jint evpMdRef) {
+    HMAC_CTX* ctx = reinterpret_cast<HMAC_CTX*>(ctxRef);
+    const EVP_MD* evp_md = reinterpret_cast<const EVP_MD*>(evpMdRef);
+    JNI_TRACE("HMAC_Init_ex(%p, %p, %p)", ctx, keyArray, evp_md);
+
+    if (ctx == NULL) {
+        jniThrowNullPointerException(env, "ctx == null");
+        return;
+    }
+
+    int ok;
+    if (keyArray == NULL) {
+        ok = HMAC_Init_ex(ctx, NULL, 0, evp_md, NULL);
+    } else {
+        ScopedByteArrayRO keyBytes(env, keyArray);
+        if (keyBytes.get() == NULL) {
+            return;
+        }
+        ok = HMAC_Init_ex(ctx, keyBytes.get(), keyBytes.size(), evp_md, NULL);
+    }
+    if (!ok) {
+        throwExceptionIfNecessary(env, "HMAC_Init_ex");
+        JNI_TRACE("HMAC_Init_ex(%p, %p, %p) => threw error", ctx, keyArray, evp_md);
+    }
+}
+
+/*
+ * public static native void HMAC_Update(int ctx, byte[] in, int offset, int length);
+ */
+static void NativeCrypto_HMAC_Update(JNIEnv* env, jclass, jint ctxRef, jbyteArray inArray,
+        jint offset, jint length) {
+    HMAC_CTX* ctx = reinterpret_cast<HMAC_CTX*>(ctxRef);
+    JNI_TRACE("HMAC_Update(%p, %p, %d, %d)", ctx, inArray, offset, length);
+
+    if (ctx == NULL || inArray == NULL) {
+        jniThrowNullPointerException(env, NULL);
+        return;
+    }
+
+    ScopedByteArrayRO inBytes(env, inArray);
+    if (inBytes.get() == NULL) {
+        return;
+    }
+    if (offset < 0 || length < 0 || size_t(offset) > inBytes.size()
+            || size_t(length) > inBytes.size() - offset) {
+        jniThrowException(env, "java/lang/IndexOutOfBoundsException", NULL);
+        return;
+    }
+
+    const unsigned char* in = reinterpret_cast<const unsigned char*>(inBytes.get());
+    if (!HMAC_Update(ctx, in + offset, length)) {
+        throwExceptionIfNecessary(env, "HMAC_Update");
+    }
+}
+
+/*
+ * public static native void HMAC_UpdateDirect(int ctx, int inAddress, int length);
+ */
+static void NativeCrypto_HMAC_UpdateDirect(JNIEnv* env, jclass, jint ctxRef, jint inAddress,
+        jint length) {
+    HMAC_CTX* ctx = reinterpret_cast<HMAC_CTX*>(ctxRef);
+    const unsigned char* in =
+            reinterpret_cast<const unsigned char*>(static_cast<uintptr_t>(inAddress));
+    JNI_TRACE("HMAC_UpdateDirect(%p, %p, %d)", ctx, in, length);
+
+    if (ctx == NULL) {
+        jniThrowNullPointerException(env, "ctx == null");
+        return;
+    }
+    if (length < 0) {
+        jniThrowException(env, "java/lang/IndexOutOfBoundsException", NULL);
+        return;
+    }
+
+    if (!HMAC_Update(ctx, in, length)) {
+        throwExceptionIfNecessary(env, "HMAC_UpdateDirect");
+    }
+}
+
+/*
+ * public static native byte[] HMAC_Final(int ctx);
+ */
+static jbyteArray NativeCrypto_HMAC_Final(JNIEnv* env, jclass, jint ctxRef) {
+    HMAC_CTX* ctx = reinterpret_cast<HMAC_CTX*>(ctxRef);
+    JNI_TRACE("HMAC_Final(%p)", ctx);
+
+    if (ctx == NULL) {
+        jniThrowNullPointerException(env, "ctx == null");
+        return NULL;
+    }
+
+    unsigned char result[EVP_MAX_MD_SIZE];
+    unsigned int len;
+    if (!HMAC_Final(ctx, result, &len)) {
+        throwExceptionIfNecessary(env, "HMAC_Final");
+        return NULL;
+    }
+
+    jbyteArray resultArray = env->NewByteArray(len);
+    if (resultArray == NULL) {
+        return NULL;
+    }
+    env->SetByteArrayRegion(resultArray, 0, len, reinterpret_cast<const jbyte*>(result));
+
+    JNI_TRACE("HMAC_Final(%p) => %d", ctx, len);
+    return resultArray;
+}
+
+/*
+ * public static native void HMAC_CTX_free(int ctx);
+ */
+static void NativeCrypto_HMAC_CTX_free(JNIEnv*, jclass, jint ctxRef) {
+    HMAC_CTX* ctx = reinterpret_cast<HMAC_CTX*>(ctxRef);
+    JNI_TRACE("HMAC_CTX_free(%p)", ctx);
+
+    if (ctx != NULL) {
+        HMAC_CTX_cleanup(ctx);
+        OPENSSL_free(ctx);
     }
 }
 
@@ -2081,6 +2404,19 @@ class AppData {
         return appData.release();
     }
 
+    /**
+     * Creates the application data context for an SSL* whose I/O goes
+     * through memory BIOs. No thread ever blocks in select() on such a
+     * connection, so the emergency pipe is not needed.
+     */
+    static AppData* createForMemoryBios() {
+        UniquePtr<AppData> appData(new AppData());
+        if (MUTEX_SETUP(appData.get()->mutex) == -1) {
+            return NULL;
+        }
+        return appData.release();
+    }
+
     ~AppData() {
         aliveAndKicking = 0;
         if (fdsEmergency[0] != -1) {
@@ -2098,6 +2434,7 @@ class AppData {
             waitingThreads(0),
             env(NULL),
             sslHandshakeCallbacks(NULL),
+            fileDescriptor(NULL),
             npnProtocolsArray(NULL),
             npnProtocolsData(NULL),
             npnProtocolsLength(-1),
@@ -2125,9 +2462,20 @@ class AppData {
         if (netFd.isClosed()) {
             return false;
         }
+        if (!setCallbackState(e, shc, npnProtocols)) {
+            return false;
+        }
+        fileDescriptor = fd;
+        return true;
+    }
+
+    /**
+     * Like the above, for connections using memory BIOs that have no
+     * FileDescriptor.
+     */
+    bool setCallbackState(JNIEnv* e, jobject shc, jbyteArray npnProtocols) {
         env = e;
         sslHandshakeCallbacks = shc;
-        fileDescriptor = fd;
         if (npnProtocols != NULL) {
             npnProtocolsArray = npnProtocols;
             npnProtocolsLength = e->GetArrayLength(npnProtocols);
@@ -4037,6 +4385,453 @@ static void NativeCrypto_SSL_shutdown(JNIEnv* env, jclass, jint ssl_address,
     freeOpenSslErrorState();
 }
 
+/*
+ * The SSL_*_BIO functions below drive an SSL* whose records are exchanged
+ * through a pair of memory BIOs rather than a socket. They never block: where
+ * the socket variants would select() on the file descriptor, these return to
+ * the caller, which moves records between the BIOs and its own buffers with
+ * the SSL_*_network_data functions. The Java layer guarantees that at most
+ * one thread uses the SSL* at a time.
+ */
+
+/**
+ * Attaches a fresh pair of memory BIOs and the application data to the SSL*
+ * and puts it in client or server mode.
+ */
+static void NativeCrypto_SSL_set_memory_bios(JNIEnv* env, jclass, jint ssl_address,
+                                             jboolean client_mode)
+{
+    SSL* ssl = to_SSL(env, ssl_address, true);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_set_memory_bios client_mode=%d", ssl, client_mode);
+    if (ssl == NULL) {
+        return;
+    }
+
+    Unique_BIO networkIn(BIO_new(BIO_s_mem()));
+    Unique_BIO networkOut(BIO_new(BIO_s_mem()));
+    if (networkIn.get() == NULL || networkOut.get() == NULL) {
+        throwSSLExceptionStr(env, "Unable to create memory BIOs");
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_set_memory_bios BIO_new => threw exception", ssl);
+        return;
+    }
+
+    AppData* appData = AppData::createForMemoryBios();
+    if (appData == NULL) {
+        throwSSLExceptionStr(env, "Unable to create application data");
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_set_memory_bios appData => threw exception", ssl);
+        return;
+    }
+
+    // The SSL* takes ownership of both BIOs.
+    SSL_set_bio(ssl, networkIn.release(), networkOut.release());
+    SSL_set_app_data(ssl, reinterpret_cast<char*>(appData));
+    JNI_TRACE("ssl=%p AppData::createForMemoryBios => %p", ssl, appData);
+
+    if (client_mode) {
+        SSL_set_connect_state(ssl);
+    } else {
+        SSL_set_accept_state(ssl);
+    }
+}
+
+/**
+ * Advances the handshake as far as the records already in the network input
+ * BIO allow. Returns the negotiated SSL_SESSION once the handshake completes,
+ * or 0 if it needs more records from the peer or has records to send.
+ */
+static jint NativeCrypto_SSL_do_handshake_bio(JNIEnv* env, jclass, jint ssl_address,
+                                              jobject shc)
+{
+    SSL* ssl = to_SSL(env, ssl_address, true);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_do_handshake_bio shc=%p", ssl, shc);
+    if (ssl == NULL) {
+        return 0;
+    }
+    if (shc == NULL) {
+        jniThrowNullPointerException(env, "sslHandshakeCallbacks == null");
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_do_handshake_bio sslHandshakeCallbacks == null => 0",
+                  ssl);
+        return 0;
+    }
+
+    AppData* appData = toAppData(ssl);
+    if (appData == NULL) {
+        throwSSLExceptionStr(env, "Memory BIOs not set");
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_do_handshake_bio appData == NULL => 0", ssl);
+        return 0;
+    }
+
+    errno = 0;
+    appData->setCallbackState(env, shc, NULL);
+    int ret = SSL_do_handshake(ssl);
+    appData->clearCallbackState();
+    // cert_verify_callback threw exception
+    if (env->ExceptionCheck()) {
+        freeOpenSslErrorState();
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_do_handshake_bio exception => 0", ssl);
+        return 0;
+    }
+    if (ret == 1) {
+        SSL_SESSION* ssl_session = SSL_get1_session(ssl);
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_do_handshake_bio => ssl_session=%p", ssl, ssl_session);
+        return static_cast<jint>(reinterpret_cast<uintptr_t>(ssl_session));
+    }
+
+    int sslError = SSL_get_error(ssl, ret);
+    if (sslError == SSL_ERROR_WANT_READ || sslError == SSL_ERROR_WANT_WRITE) {
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_do_handshake_bio sslError=%d => 0", ssl, sslError);
+        return 0;
+    }
+    if (ret == 0 && (sslError == SSL_ERROR_NONE
+                     || (sslError == SSL_ERROR_SYSCALL && errno == 0))) {
+        throwSSLExceptionStr(env, "Connection closed by peer");
+    } else {
+        throwSSLExceptionWithSslErrors(env, ssl, sslError,
+                                       (ret == 0) ? "SSL handshake terminated"
+                                                  : "SSL handshake aborted");
+    }
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_do_handshake_bio error => 0", ssl);
+    return 0;
+}
+
+/**
+ * Throws ArrayIndexOutOfBoundsException and returns true if offset and len
+ * do not describe a range within an array of the given size.
+ */
+static bool throwIfOutOfBounds(JNIEnv* env, size_t size, jint offset, jint len) {
+    if (offset < 0 || len < 0 || size_t(offset) > size || size_t(len) > size - offset) {
+        jniThrowException(env, "java/lang/ArrayIndexOutOfBoundsException", NULL);
+        return true;
+    }
+    return false;
+}
+
+/**
+ * Decrypts into buf. Returns the number of bytes read, 0 if more records are
+ * needed from the peer, or -1 once the peer's close_notify has been read.
+ */
+static int sslReadBio(JNIEnv* env, SSL* ssl, jobject shc, char* buf, jint len) {
+    JNI_TRACE("ssl=%p sslReadBio buf=%p len=%d", ssl, buf, len);
+    if (len == 0) {
+        return 0;
+    }
+    AppData* appData = toAppData(ssl);
+    if (appData == NULL) {
+        throwSSLExceptionStr(env, "Memory BIOs not set");
+        return -1;
+    }
+
+    errno = 0;
+    appData->setCallbackState(env, shc, NULL);
+    int result = SSL_read(ssl, buf, len);
+    appData->clearCallbackState();
+    // callbacks can happen if the peer requests renegotiation
+    if (env->ExceptionCheck()) {
+        freeOpenSslErrorState();
+        JNI_TRACE("ssl=%p sslReadBio => exception", ssl);
+        return -1;
+    }
+    if (result > 0) {
+        JNI_TRACE("ssl=%p sslReadBio => %d", ssl, result);
+        return result;
+    }
+
+    int sslError = SSL_get_error(ssl, result);
+    switch (sslError) {
+        case SSL_ERROR_WANT_READ:
+        case SSL_ERROR_WANT_WRITE:
+            freeOpenSslErrorState();
+            return 0;
+        case SSL_ERROR_ZERO_RETURN:
+            freeOpenSslErrorState();
+            return -1;
+        default:
+            throwSSLExceptionWithSslErrors(env, ssl, sslError, "Read error");
+            JNI_TRACE("ssl=%p sslReadBio sslError=%d => threw exception", ssl, sslError);
+            return -1;
+    }
+}
+
+static jint NativeCrypto_SSL_read_BIO(JNIEnv* env, jclass, jint ssl_address, jobject shc,
+                                      jbyteArray b, jint offset, jint len)
+{
+    SSL* ssl = to_SSL(env, ssl_address, true);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_read_BIO shc=%p b=%p offset=%d len=%d",
+              ssl, shc, b, offset, len);
+    if (ssl == NULL) {
+        return -1;
+    }
+    if (shc == NULL) {
+        jniThrowNullPointerException(env, "sslHandshakeCallbacks == null");
+        return -1;
+    }
+    ScopedByteArrayRW bytes(env, b);
+    if (bytes.get() == NULL) {
+        return -1;
+    }
+    if (throwIfOutOfBounds(env, bytes.size(), offset, len)) {
+        return -1;
+    }
+    return sslReadBio(env, ssl, shc, reinterpret_cast<char*>(bytes.get() + offset), len);
+}
+
+static jint NativeCrypto_SSL_read_BIO_direct(JNIEnv* env, jclass, jint ssl_address,
+                                             jobject shc, jint address, jint len)
+{
+    SSL* ssl = to_SSL(env, ssl_address, true);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_read_BIO_direct shc=%p address=%x len=%d",
+              ssl, shc, address, len);
+    if (ssl == NULL) {
+        return -1;
+    }
+    if (shc == NULL) {
+        jniThrowNullPointerException(env, "sslHandshakeCallbacks == null");
+        return -1;
+    }
+    char* buf = reinterpret_cast<char*>(static_cast<uintptr_t>(address));
+    return sslReadBio(env, ssl, shc, buf, len);
+}
+
+/**
+ * Encrypts buf into the network output BIO. Returns the number of bytes
+ * consumed, which is 0 if a renegotiation needs records from the peer first.
+ */
+static int sslWriteBio(JNIEnv* env, SSL* ssl, jobject shc, const char* buf, jint len) {
+    JNI_TRACE("ssl=%p sslWriteBio buf=%p len=%d", ssl, buf, len);
+    if (len == 0) {
+        return 0;
+    }
+    AppData* appData = toAppData(ssl);
+    if (appData == NULL) {
+        throwSSLExceptionStr(env, "Memory BIOs not set");
+        return 0;
+    }
+
+    errno = 0;
+    appData->setCallbackState(env, shc, NULL);
+    int result = SSL_write(ssl, buf, len);
+    appData->clearCallbackState();
+    // callbacks can happen if the peer requests renegotiation
+    if (env->ExceptionCheck()) {
+        freeOpenSslErrorState();
+        JNI_TRACE("ssl=%p sslWriteBio => exception", ssl);
+        return 0;
+    }
+    if (result > 0) {
+        JNI_TRACE("ssl=%p sslWriteBio => %d", ssl, result);
+        return result;
+    }
+
+    int sslError = SSL_get_error(ssl, result);
+    if (sslError == SSL_ERROR_WANT_READ || sslError == SSL_ERROR_WANT_WRITE) {
+        freeOpenSslErrorState();
+        return 0;
+    }
+    throwSSLExceptionWithSslErrors(env, ssl, sslError, "Write error");
+    JNI_TRACE("ssl=%p sslWriteBio sslError=%d => threw exception", ssl, sslError);
+    return 0;
+}
+
+static jint NativeCrypto_SSL_write_BIO(JNIEnv* env, jclass, jint ssl_address, jobject shc,
+                                       jbyteArray b, jint offset, jint len)
+{
+    SSL* ssl = to_SSL(env, ssl_address, true);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_write_BIO shc=%p b=%p offset=%d len=%d",
+              ssl, shc, b, offset, len);
+    if (ssl == NULL) {
+        return 0;
+    }
+    if (shc == NULL) {
+        jniThrowNullPointerException(env, "sslHandshakeCallbacks == null");
+        return 0;
+    }
+    ScopedByteArrayRO bytes(env, b);
+    if (bytes.get() == NULL) {
+        return 0;
+    }
+    if (throwIfOutOfBounds(env, bytes.size(), offset, len)) {
+        return 0;
+    }
+    return sslWriteBio(env, ssl, shc, reinterpret_cast<const char*>(bytes.get() + offset), len);
+}
+
+static jint NativeCrypto_SSL_write_BIO_direct(JNIEnv* env, jclass, jint ssl_address,
+                                              jobject shc, jint address, jint len)
+{
+    SSL* ssl = to_SSL(env, ssl_address, true);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_write_BIO_direct shc=%p address=%x len=%d",
+              ssl, shc, address, len);
+    if (ssl == NULL) {
+        return 0;
+    }
+    if (shc == NULL) {
+        jniThrowNullPointerException(env, "sslHandshakeCallbacks == null");
+        return 0;
+    }
+    const char* buf = reinterpret_cast<const char*>(static_cast<uintptr_t>(address));
+    return sslWriteBio(env, ssl, shc, buf, len);
+}
+
+/**
+ * Queues records received from the peer in the network input BIO.
+ */
+static void NativeCrypto_SSL_put_network_data(JNIEnv* env, jclass, jint ssl_address,
+                                              jbyteArray b, jint offset, jint len)
+{
+    SSL* ssl = to_SSL(env, ssl_address, true);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_put_network_data b=%p offset=%d len=%d",
+              ssl, b, offset, len);
+    if (ssl == NULL) {
+        return;
+    }
+    ScopedByteArrayRO bytes(env, b);
+    if (bytes.get() == NULL) {
+        return;
+    }
+    if (throwIfOutOfBounds(env, bytes.size(), offset, len)) {
+        return;
+    }
+    if (BIO_write(SSL_get_rbio(ssl), bytes.get() + offset, len) != len) {
+        throwSSLExceptionWithSslErrors(env, ssl, SSL_ERROR_NONE, "Error queueing network data");
+    }
+}
+
+static void NativeCrypto_SSL_put_network_data_direct(JNIEnv* env, jclass, jint ssl_address,
+                                                     jint address, jint len)
+{
+    SSL* ssl = to_SSL(env, ssl_address, true);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_put_network_data_direct address=%x len=%d",
+              ssl, address, len);
+    if (ssl == NULL) {
+        return;
+    }
+    const void* buf = reinterpret_cast<const void*>(static_cast<uintptr_t>(address));
+    if (BIO_write(SSL_get_rbio(ssl), buf, len) != len) {
+        throwSSLExceptionWithSslErrors(env, ssl, SSL_ERROR_NONE, "Error queueing network data");
+    }
+}
+
+/**
+ * Moves up to len bytes of records waiting in the network output BIO into
+ * the caller's buffer. Returns the number of bytes moved.
+ */
+static jint NativeCrypto_SSL_get_network_data(JNIEnv* env, jclass, jint ssl_address,
+                                              jbyteArray b, jint offset, jint len)
+{
+    SSL* ssl = to_SSL(env, ssl_address, true);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_get_network_data b=%p offset=%d len=%d",
+              ssl, b, offset, len);
+    if (ssl == NULL) {
+        return 0;
+    }
+    ScopedByteArrayRW bytes(env, b);
+    if (bytes.get() == NULL) {
+        return 0;
+    }
+    if (throwIfOutOfBounds(env, bytes.size(), offset, len)) {
+        return 0;
+    }
+    int result = BIO_read(SSL_get_wbio(ssl), bytes.get() + offset, len);
+    return (result > 0) ? result : 0;
+}
+
+static jint NativeCrypto_SSL_get_network_data_direct(JNIEnv* env, jclass, jint ssl_address,
+                                                     jint address, jint len)
+{
+    SSL* ssl = to_SSL(env, ssl_address, true);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_get_network_data_direct address=%x len=%d",
+              ssl, address, len);
+    if (ssl == NULL) {
+        return 0;
+    }
+    void* buf = reinterpret_cast<void*>(static_cast<uintptr_t>(address));
+    int result = BIO_read(SSL_get_wbio(ssl), buf, len);
+    return (result > 0) ? result : 0;
+}
+
+/**
+ * Returns the number of bytes of records waiting in the network output BIO.
+ */
+static jint NativeCrypto_SSL_pending_network_data(JNIEnv* env, jclass, jint ssl_address)
+{
+    SSL* ssl = to_SSL(env, ssl_address, true);
+    if (ssl == NULL) {
+        return 0;
+    }
+    int result = BIO_ctrl_pending(SSL_get_wbio(ssl));
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_pending_network_data => %d", ssl, result);
+    return result;
+}
+
+/**
+ * Returns the number of decrypted bytes buffered in the SSL* that can be read
+ * without queueing more records.
+ */
+static jint NativeCrypto_SSL_pending_readable_bytes(JNIEnv* env, jclass, jint ssl_address)
+{
+    SSL* ssl = to_SSL(env, ssl_address, true);
+    if (ssl == NULL) {
+        return 0;
+    }
+    int result = SSL_pending(ssl);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_pending_readable_bytes => %d", ssl, result);
+    return result;
+}
+
+/**
+ * Queues a close_notify alert in the network output BIO. Unlike
+ * SSL_shutdown, this does not wait for the peer's close_notify.
+ */
+static void NativeCrypto_SSL_shutdown_BIO(JNIEnv* env, jclass, jint ssl_address, jobject shc)
+{
+    SSL* ssl = to_SSL(env, ssl_address, true);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_shutdown_BIO shc=%p", ssl, shc);
+    if (ssl == NULL) {
+        return;
+    }
+    if (shc == NULL) {
+        jniThrowNullPointerException(env, "sslHandshakeCallbacks == null");
+        return;
+    }
+    AppData* appData = toAppData(ssl);
+    if (appData == NULL) {
+        return;
+    }
+
+    appData->setCallbackState(env, shc, NULL);
+    int ret = SSL_shutdown(ssl);
+    appData->clearCallbackState();
+    if (env->ExceptionCheck()) {
+        freeOpenSslErrorState();
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_shutdown_BIO => exception", ssl);
+        return;
+    }
+    // 0 means our close_notify was queued but the peer's has not been read
+    // yet, which is the normal case here.
+    if (ret < 0) {
+        int sslError = SSL_get_error(ssl, ret);
+        if (sslError != SSL_ERROR_WANT_READ && sslError != SSL_ERROR_WANT_WRITE) {
+            throwSSLExceptionWithSslErrors(env, ssl, sslError, "SSL shutdown failed");
+            return;
+        }
+    }
+    freeOpenSslErrorState();
+}
+
+/**
+ * Returns the SSL_SENT_SHUTDOWN and SSL_RECEIVED_SHUTDOWN flags of the SSL*.
+ */
+static jint NativeCrypto_SSL_get_shutdown(JNIEnv* env, jclass, jint ssl_address)
+{
+    SSL* ssl = to_SSL(env, ssl_address, true);
+    if (ssl == NULL) {
+        return 0;
+    }
+    int result = SSL_get_shutdown(ssl);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_get_shutdown => %d", ssl, result);
+    return result;
+}
+
 /**
  * public static native void SSL_free(int ssl);
  */
@@ -4263,10 +5058,22 @@ static JNINativeMethod sNativeCryptoMethods[] = {
     NATIVE_METHOD(NativeCrypto, EVP_VerifyUpdate, "(I[BII)V"),
     NATIVE_METHOD(NativeCrypto, EVP_VerifyFinal, "(I[BIII)I"),
     NATIVE_METHOD(NativeCrypto, EVP_get_cipherbyname, "(Ljava/lang/String;)I"),
-    NATIVE_METHOD(NativeCrypto, EVP_CipherInit_ex, "(I[B[BZ)I"),
-    NATIVE_METHOD(NativeCrypto, EVP_CipherUpdate, "(I[BI[BI)I"),
+    NATIVE_METHOD(NativeCrypto, EVP_CIPHER_iv_length, "(I)I"),
+    NATIVE_METHOD(NativeCrypto, EVP_CIPHER_CTX_new, "()I"),
+    NATIVE_METHOD(NativeCrypto, EVP_CipherInit_ex, "(II[B[BZ)V"),
+    NATIVE_METHOD(NativeCrypto, EVP_CipherUpdate, "(I[BI[BII)I"),
+    NATIVE_METHOD(NativeCrypto, EVP_CipherUpdateDirect, "(IIIII)I"),
     NATIVE_METHOD(NativeCrypto, EVP_CipherFinal_ex, "(I[BI)I"),
-    NATIVE_METHOD(NativeCrypto, EVP_CIPHER_CTX_cleanup, "(I)V"),
+    NATIVE_METHOD(NativeCrypto, EVP_CIPHER_CTX_block_size, "(I)I"),
+    NATIVE_METHOD(NativeCrypto, EVP_CIPHER_CTX_set_padding, "(IZ)V"),
+    NATIVE_METHOD(NativeCrypto, EVP_CIPHER_CTX_free, "(I)V"),
+    NATIVE_METHOD(NativeCrypto, HMAC_CTX_new, "()I"),
+    NATIVE_METHOD(NativeCrypto, HMAC_CTX_copy, "(I)I"),
+    NATIVE_METHOD(NativeCrypto, HMAC_Init_ex, "(I[BI)V"),
+    NATIVE_METHOD(NativeCrypto, HMAC_Update, "(I[BII)V"),
+    NATIVE_METHOD(NativeCrypto, HMAC_UpdateDirect, "(III)V"),
+    NATIVE_METHOD(NativeCrypto, HMAC_Final, "(I)[B"),
+    NATIVE_METHOD(NativeCrypto, HMAC_CTX_free, "(I)V"),
     NATIVE_METHOD(NativeCrypto, RAND_seed, "([B)V"),
     NATIVE_METHOD(NativeCrypto, RAND_load_file, "(Ljava/lang/String;J)I"),
     NATIVE_METHOD(NativeCrypto, SSL_CTX_new, "()I"),
@@ -4298,6 +5105,20 @@ static JNINativeMethod sNativeCryptoMethods[] = {
     NATIVE_METHOD(NativeCrypto, SSL_write, "(I" FILE_DESCRIPTOR SSL_CALLBACKS "[BII)V"),
     NATIVE_METHOD(NativeCrypto, SSL_interrupt, "(I)V"),
     NATIVE_METHOD(NativeCrypto, SSL_shutdown, "(I" FILE_DESCRIPTOR SSL_CALLBACKS ")V"),
+    NATIVE_METHOD(NativeCrypto, SSL_set_memory_bios, "(IZ)V"),
+    NATIVE_METHOD(NativeCrypto, SSL_do_handshake_bio, "(I" SSL_CALLBACKS ")I"),
+    NATIVE_METHOD(NativeCrypto, SSL_read_BIO, "(I" SSL_CALLBACKS "[BII)I"),
+    NATIVE_METHOD(NativeCrypto, SSL_read_BIO_direct, "(I" SSL_CALLBACKS "II)I"),
+    NATIVE_METHOD(NativeCrypto, SSL_write_BIO, "(I" SSL_CALLBACKS "[BII)I"),
+    NATIVE_METHOD(NativeCrypto, SSL_write_BIO_direct, "(I" SSL_CALLBACKS "II)I"),
+    NATIVE_METHOD(NativeCrypto, SSL_put_network_data, "(I[BII)V"),
+    NATIVE_METHOD(NativeCrypto, SSL_put_network_data_direct, "(III)V"),
+    NATIVE_METHOD(NativeCrypto, SSL_get_network_data, "(I[BII)I"),
+    NATIVE_METHOD(NativeCrypto, SSL_get_network_data_direct, "(III)I"),
+    NATIVE_METHOD(NativeCrypto, SSL_pending_network_data, "(I)I"),
+    NATIVE_METHOD(NativeCrypto, SSL_pending_readable_bytes, "(I)I"),
+    NATIVE_METHOD(NativeCrypto, SSL_shutdown_BIO, "(I" SSL_CALLBACKS ")V"),
+    NATIVE_METHOD(NativeCrypto, SSL_get_shutdown, "(I)I"),
     NATIVE_METHOD(NativeCrypto, SSL_free, "(I)V"),
     NATIVE_METHOD(NativeCrypto, SSL_SESSION_session_id, "(I)[B"),
     NATIVE_METHOD(NativeCrypto, SSL_SESSION_get_time, "(I)J"),
@@ -16,7 +16,6 @@ LOCAL_SRC_FILES := \
 	java_lang_Character.cpp \
 	java_lang_Math.cpp \
 	java_lang_ProcessManager.cpp \
-	java_lang_RealToString.cpp \
 	java_lang_StrictMath.cpp \
 	java_lang_StringToReal.cpp \
 	java_lang_System.cpp \
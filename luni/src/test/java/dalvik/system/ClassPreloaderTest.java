@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dalvik.system;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import junit.framework.TestCase;
+
+public final class ClassPreloaderTest extends TestCase {
+    private File file;
+
+    @Override protected void setUp() throws Exception {
+        file = File.createTempFile("ClassPreloaderTest", ".trace");
+    }
+
+    @Override protected void tearDown() throws Exception {
+        file.delete();
+    }
+
+    public void testTraceRoundTrip() throws Exception {
+        List<String> names = Arrays.asList("java.util.ArrayList", "java.util.HashMap",
+                "java.util.concurrent.ConcurrentHashMap", "Default", "java.lang.String");
+        ClassPreloader.writeTrace(file, names);
+        assertEquals(names, ClassPreloader.readTrace(file));
+
+        ClassPreloader.writeTrace(file, Collections.<String>emptyList());
+        assertEquals(Collections.<String>emptyList(), ClassPreloader.readTrace(file));
+    }
+
+    public void testTraceSharesPrefixes() throws Exception {
+        List<String> names = new ArrayList<String>();
+        for (int i = 0; i < 1000; i++) {
+            names.add("com.example.app.feature.SomeLongClassName" + i);
+        }
+        ClassPreloader.writeTrace(file, names);
+        assertEquals(names, ClassPreloader.readTrace(file));
+        assertTrue(file.length() < 10000);
+    }
+
+    public void testReadTraceRejectsOtherFiles() throws Exception {
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("java.lang.String\n".getBytes("US-ASCII"));
+        out.close();
+        try {
+            ClassPreloader.readTrace(file);
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    public void testPreload() throws Exception {
+        List<String> names = Arrays.asList("java.util.ArrayList", "java.util.LinkedList",
+                "java.util.concurrent.ConcurrentHashMap", "no.such.Class", "java.lang.String");
+        ClassPreloader.Preload preload = ClassPreloader.preload(
+                ClassPreloaderTest.class.getClassLoader(), names, 2);
+        preload.await();
+        assertEquals(4, preload.getLoadedCount());
+        assertEquals(1, preload.getFailedCount());
+        assertTrue(preload.getElapsedNanos() >= 0);
+    }
+
+    public void testStopTraceWithoutStart() throws Exception {
+        assertEquals(Collections.<String>emptyList(), ClassPreloader.stopTrace());
+    }
+}
@@ -22,6 +22,10 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import libcore.io.Streams;
 import junit.framework.TestCase;
 
@@ -484,4 +488,80 @@ public class DexClassLoaderTest extends TestCase {
             Configuration.TWO_JAR, "test.TestMethods",
             "test_diff_getResourceAsStream");
     }
+
+    /**
+     * Check that classes missing from every element aren't found, whether
+     * or not another class in the same package exists.
+     */
+    public void test_twoJar_missingClass() throws Exception {
+        DexClassLoader dcl = createInstance(Configuration.TWO_JAR);
+        assertNotNull(dcl.loadClass("test.Test1"));
+        for (String name : new String[] { "test.NoSuchClass", "nosuchpackage.Test1", "Test1" }) {
+            try {
+                dcl.loadClass(name);
+                fail(name);
+            } catch (ClassNotFoundException expected) {
+            }
+        }
+    }
+
+    /**
+     * Check that resources missing from every element aren't found, and
+     * that directories are found with or without a trailing slash.
+     */
+    public void test_twoJar_missingResource() throws Exception {
+        DexClassLoader dcl = createInstance(Configuration.TWO_JAR);
+        assertNull(dcl.getResource("test/NoSuchResource.txt"));
+        assertNull(dcl.getResource("nosuchdir/Resource1.txt"));
+        assertNull(dcl.getResource("Resource1.txt"));
+        assertNotNull(dcl.getResource("test2/"));
+        assertNotNull(dcl.getResource("test2"));
+    }
+
+    /**
+     * Check that a resource present in both jar files is returned from
+     * each of them, in path order.
+     */
+    public void test_twoJar_getResources() throws Exception {
+        DexClassLoader dcl = createInstance(Configuration.TWO_JAR);
+        List<String> urls = new ArrayList<String>();
+        for (URL url : Collections.list(dcl.getResources("META-INF/MANIFEST.MF"))) {
+            if (url.toString().contains("loading-test")) {
+                urls.add(url.toString());
+            }
+        }
+        assertEquals(urls.toString(), 2, urls.size());
+        assertTrue(urls.get(0), urls.get(0).contains(JAR_NAME + "!"));
+        assertTrue(urls.get(1), urls.get(1).contains(JAR2_NAME + "!"));
+    }
+
+    /**
+     * Check that classes loaded from the jar files are traced, and that
+     * the trace can be preloaded into another instance.
+     */
+    public void test_twoJar_traceAndPreload() throws Exception {
+        ClassPreloader.startTrace();
+        List<String> trace;
+        try {
+            createInstanceAndCallStaticMethod(
+                Configuration.TWO_JAR, "test.Test1", "test");
+        } finally {
+            trace = ClassPreloader.stopTrace();
+        }
+        assertTrue(trace.toString(), trace.contains("test.Test1"));
+        assertFalse(trace.toString(), trace.contains("java.lang.String"));
+
+        // Other class loaders may have been busy too.
+        List<String> fromJars = new ArrayList<String>();
+        for (String name : trace) {
+            if (name.startsWith("test.")) {
+                fromJars.add(name);
+            }
+        }
+        ClassPreloader.Preload preload =
+            ClassPreloader.preload(createInstance(Configuration.TWO_JAR), fromJars, 2);
+        preload.await();
+        assertEquals(fromJars.size(), preload.getLoadedCount());
+        assertEquals(0, preload.getFailedCount());
+    }
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package libcore.io;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import junit.framework.TestCase;
+
+/**
+ * Counts the system calls made to open and close files and sockets.
+ */
+public final class BlockGuardOsTest extends TestCase {
+    private InstrumentedOs os;
+    private InstrumentedOs.Snapshot before;
+
+    @Override protected void setUp() throws Exception {
+        os = InstrumentedOs.install();
+    }
+
+    @Override protected void tearDown() throws Exception {
+        InstrumentedOs.uninstall();
+    }
+
+    private void startCounting() {
+        before = os.snapshotCurrentThread();
+    }
+
+    private InstrumentedOs.Snapshot calls() {
+        return os.snapshotCurrentThread().minus(before);
+    }
+
+    public void testFileOpenAndClose() throws Exception {
+        File file = File.createTempFile("BlockGuardOsTest", null);
+        try {
+            startCounting();
+            new FileOutputStream(file).close();
+            new FileInputStream(file).close();
+            InstrumentedOs.Snapshot calls = calls();
+            assertEquals(2, calls.getCount("open"));
+            assertEquals(2, calls.getCount("close"));
+            // Just the checks for directories in IoBridge.open.
+            assertEquals(2, calls.getCount("fstat"));
+            assertEquals(0, calls.getCount("getsockoptLinger"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testPipeClose() throws Exception {
+        FileDescriptor[] fds = Libcore.os.pipe();
+        startCounting();
+        IoUtils.close(fds[0]);
+        IoUtils.close(fds[1]);
+        assertEquals(2, calls().getCount("close"));
+        assertEquals(0, calls().getCount("fstat"));
+    }
+
+    public void testSocketClose() throws Exception {
+        ServerSocket server = new ServerSocket(0, 1, InetAddress.getLocalHost());
+        Socket client = new Socket(server.getInetAddress(), server.getLocalPort());
+        Socket accepted = server.accept();
+        startCounting();
+        client.close();
+        accepted.close();
+        server.close();
+        InstrumentedOs.Snapshot calls = calls();
+        assertEquals(3, calls.getCount("close"));
+        assertEquals(0, calls.getCount("fstat"));
+        assertEquals(0, calls.getCount("getsockoptLinger"));
+    }
+
+    public void testLingerSocketClose() throws Exception {
+        ServerSocket server = new ServerSocket(0, 1, InetAddress.getLocalHost());
+        Socket client = new Socket(server.getInetAddress(), server.getLocalPort());
+        client.setSoLinger(true, 5);
+        startCounting();
+        client.close();
+        server.close();
+        assertEquals(0, calls().getCount("getsockoptLinger"));
+    }
+
+    public void testUnknownDescriptorClose() throws Exception {
+        File file = File.createTempFile("BlockGuardOsTest", null);
+        try {
+            FileDescriptor fd = Libcore.os.open(file.getPath(), OsConstants.O_RDONLY, 0);
+            FileDescriptor copy = new FileDescriptor();
+            copy.setInt$(fd.getInt$());
+            startCounting();
+            // Nothing is known about copy, so close asks the kernel.
+            IoUtils.close(copy);
+            assertEquals(1, calls().getCount("fstat"));
+        } finally {
+            file.delete();
+        }
+    }
+}
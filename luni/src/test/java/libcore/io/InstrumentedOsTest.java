@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package libcore.io;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+public final class InstrumentedOsTest extends TestCase {
+    /** Reads return the requested byte count without doing any I/O. */
+    private static final Os FAKE = new ForwardingOs(null) {
+        @Override public int read(FileDescriptor fd, byte[] bytes, int byteOffset, int byteCount)
+                throws ErrnoException {
+            if (byteCount < 0) {
+                throw new ErrnoException("read", OsConstants.EINVAL);
+            }
+            return byteCount;
+        }
+
+        @Override public StructStat fstat(FileDescriptor fd) {
+            return null;
+        }
+    };
+
+    public void testCountsCallsAndBytes() throws Exception {
+        InstrumentedOs os = new InstrumentedOs(FAKE);
+        for (int i = 0; i < 10; i++) {
+            os.read(null, new byte[8], 0, 8);
+        }
+        try {
+            os.read(null, new byte[8], 0, -1);
+            fail();
+        } catch (ErrnoException expected) {
+        }
+        os.fstat(null);
+
+        InstrumentedOs.Snapshot snapshot = os.snapshot();
+        assertEquals(Arrays.asList("fstat", "read"), snapshot.getCalls());
+        assertEquals(11, snapshot.getCount("read"));
+        assertEquals(80, snapshot.getBytes("read"));
+        assertEquals(1, snapshot.getCount("fstat"));
+        assertEquals(0, snapshot.getBytes("fstat"));
+        assertEquals(0, snapshot.getCount("write"));
+
+        long total = 0;
+        for (long bucket : snapshot.getHistogram("read")) {
+            total += bucket;
+        }
+        assertEquals(11, total);
+        assertTrue(snapshot.getLatencyPercentileNanos("read", 50) >= 1024);
+        assertEquals(0, snapshot.getLatencyPercentileNanos("write", 50));
+    }
+
+    public void testThreadsAreCountedSeparately() throws Exception {
+        final InstrumentedOs os = new InstrumentedOs(FAKE);
+        os.read(null, new byte[1], 0, 1);
+        Thread thread = new Thread() {
+            @Override public void run() {
+                try {
+                    os.read(null, new byte[4], 0, 4);
+                    os.read(null, new byte[4], 0, 4);
+                } catch (ErrnoException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+
+        assertEquals(1, os.snapshotCurrentThread().getCount("read"));
+        assertEquals(3, os.snapshot().getCount("read"));
+        assertEquals(9, os.snapshot().getBytes("read"));
+    }
+
+    public void testExitedThreadsAreFoldedIntoTotals() throws Exception {
+        final InstrumentedOs os = new InstrumentedOs(FAKE);
+        for (int i = 0; i < 50; i++) {
+            Thread thread = new Thread("InstrumentedOsTest-worker") {
+                @Override public void run() {
+                    try {
+                        os.read(null, new byte[2], 0, 2);
+                    } catch (ErrnoException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            };
+            thread.start();
+            thread.join();
+        }
+        assertEquals(50, os.snapshot().getCount("read"));
+        // the exited threads' counts are kept once their counters are dropped
+        assertEquals(100, os.snapshot().getBytes("read"));
+
+        File dump = File.createTempFile("InstrumentedOsTest", ".dump");
+        try {
+            os.dump(dump.getPath());
+            String text = IoUtils.readFileAsString(dump.getPath());
+            assertTrue(text, text.contains("read count=50 bytes=100"));
+            assertFalse(text, text.contains("InstrumentedOsTest-worker"));
+        } finally {
+            dump.delete();
+        }
+    }
+
+    public void testMinus() throws Exception {
+        InstrumentedOs os = new InstrumentedOs(FAKE);
+        os.read(null, new byte[2], 0, 2);
+        InstrumentedOs.Snapshot before = os.snapshot();
+        os.read(null, new byte[3], 0, 3);
+        InstrumentedOs.Snapshot difference = os.snapshot().minus(before);
+        assertEquals(1, difference.getCount("read"));
+        assertEquals(3, difference.getBytes("read"));
+    }
+
+    public void testUnknownCall() throws Exception {
+        try {
+            new InstrumentedOs(FAKE).snapshot().getCount("frobnicate");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testInstall() throws Exception {
+        Os original = Libcore.os;
+        File file = File.createTempFile("InstrumentedOsTest", null);
+        try {
+            InstrumentedOs os = InstrumentedOs.install();
+            assertSame(os, Libcore.os);
+            assertSame(os, InstrumentedOs.install());
+
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(new byte[100]);
+            out.close();
+            FileInputStream in = new FileInputStream(file);
+            assertEquals(100, in.read(new byte[1000]));
+            in.close();
+
+            InstrumentedOs.Snapshot snapshot = os.snapshotCurrentThread();
+            assertEquals(1, snapshot.getCount("write"));
+            assertEquals(100, snapshot.getBytes("write"));
+            assertTrue(snapshot.getCount("read") >= 1);
+            assertEquals(100, snapshot.getBytes("read"));
+            assertTrue(snapshot.getCount("close") >= 2);
+
+            File dump = new File(file.getPath() + ".dump");
+            os.dump(dump.getPath());
+            String text = IoUtils.readFileAsString(dump.getPath());
+            dump.delete();
+            assertTrue(text, text.contains("write count=1 bytes=100"));
+        } finally {
+            InstrumentedOs.uninstall();
+            file.delete();
+        }
+        assertSame(original, Libcore.os);
+    }
+}
@@ -16,8 +16,12 @@
 
 package libcore.java.io;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
 import junit.framework.TestCase;
 
 public final class ObjectOutputStreamTest extends TestCase {
@@ -32,4 +36,127 @@ public final class ObjectOutputStreamTest extends TestCase {
         ObjectOutputStream os = new ObjectOutputStream(new ByteArrayOutputStream());
         os.writeObject(s);
     }
+
+    public void testEndMessageKeepsClassDescriptors() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        Message shared = new Message("shared", null);
+        out.writeObject(new Message("first", shared));
+        out.endMessage();
+        int firstMessageEnd = bytes.size();
+        out.writeObject(new Message("second", shared));
+        out.endMessage();
+        int secondMessageSize = bytes.size() - firstMessageEnd;
+        out.writeObject(shared);
+        out.close();
+
+        // The second message refers to the class descriptor by handle.
+        assertTrue(secondMessageSize < firstMessageEnd / 2);
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Message first = (Message) in.readObject();
+        in.endMessage();
+        Message second = (Message) in.readObject();
+        in.endMessage();
+        Message third = (Message) in.readObject();
+        assertEquals("first", first.text);
+        assertEquals("shared", first.next.text);
+        assertEquals("second", second.text);
+        assertEquals("shared", second.next.text);
+        // Objects are not shared across messages.
+        assertNotSame(first.next, second.next);
+        assertEquals("shared", third.text);
+    }
+
+    public void testManyMessagesWithResets() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        for (int i = 0; i < 1000; i++) {
+            if (i % 100 == 99) {
+                out.reset();
+            }
+            // a class first seen in a later message must keep its handle too
+            Object payload = (i < 500) ? "payload" : new String[] { "payload" };
+            out.writeObject(new Message("message " + i, null));
+            out.writeObject(payload);
+            out.endMessage();
+        }
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("message " + i, ((Message) in.readObject()).text);
+            Object payload = in.readObject();
+            if (i < 500) {
+                assertEquals("payload", payload);
+            } else {
+                assertEquals("payload", ((String[]) payload)[0]);
+            }
+            in.endMessage();
+        }
+    }
+
+    public void testEndMessageRestartsHandles() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        byte[] second = null;
+        byte[] last = null;
+        for (int i = 0; i < 1000; i++) {
+            int start = bytes.size();
+            Message shared = new Message("shared", null);
+            out.writeObject(new Message("a", shared));
+            out.writeObject(new Message("b", shared));
+            out.writeObject(Message.class);
+            out.endMessage();
+            byte[] message = Arrays.copyOfRange(bytes.toByteArray(), start, bytes.size());
+            if (i == 1) {
+                second = message;
+            } else if (i == 999) {
+                last = message;
+            }
+        }
+        out.close();
+        // Back references in later messages use the same handles as in the second.
+        assertTrue(Arrays.equals(second, last));
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (int i = 0; i < 1000; i++) {
+            Message a = (Message) in.readObject();
+            Message b = (Message) in.readObject();
+            assertSame(a.next, b.next);
+            assertSame(Message.class, in.readObject());
+            in.endMessage();
+        }
+    }
+
+    public void testResetReusesHandleTable() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        Message message = new Message("a", null);
+        for (int i = 0; i < 100; i++) {
+            out.writeObject(message);
+            out.reset();
+        }
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Message previous = null;
+        for (int i = 0; i < 100; i++) {
+            Message read = (Message) in.readObject();
+            assertEquals("a", read.text);
+            assertNotSame(previous, read);
+            previous = read;
+        }
+    }
+
+    static class Message implements Serializable {
+        private static final long serialVersionUID = 0L;
+        final String text;
+        final Message next;
+
+        Message(String text, Message next) {
+            this.text = text;
+            this.next = next;
+        }
+    }
 }
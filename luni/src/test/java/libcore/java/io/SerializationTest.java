@@ -19,6 +19,14 @@ package libcore.java.io;
 import java.io.IOException;
 import java.io.InvalidClassException;
 import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import junit.framework.TestCase;
 import libcore.util.SerializationTester;
 
@@ -70,4 +78,119 @@ public final class SerializationTest extends TestCase {
     static class FieldsChanged implements Serializable {
         private int b; // was 'a'
     }
+
+    // The primitive fields are transferred in bulk; this pins down their wire format.
+    public void testAllFieldTypesWireFormat() throws Exception {
+        String s = "aced00057372002b6c6962636f72652e6a6176612e696f2e53657269616c697a6174696f6e546573"
+                + "7424416c6c4669656c6473000000000000000002000a420001624300016344000164460001664900"
+                + "01694a00016a530001735a00017a5b0004696e74737400025b494c0006737472696e677400124c6a"
+                + "6176612f6c616e672f537472696e673b7870fe20acc0020000000000003fc0000012345678012345"
+                + "6789abcdeffffd01757200025b494dba602676eab2a5020000787000000002000000010000000274"
+                + "000568656c6c6f";
+        assertEquals(s, SerializationTester.serializeHex(new AllFields()));
+        AllFields deserialized = (AllFields) SerializationTester.deserializeHex(s);
+        assertEquals(new AllFields(), deserialized);
+    }
+
+    public void testConcurrentSerialization() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] futures = new Future<?>[16];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = executor.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        for (int j = 0; j < 100; j++) {
+                            assertEquals(new AllFields(), SerializationTester.reserialize(new AllFields()));
+                        }
+                        return null;
+                    }
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testConcurrentProxiesAndEnums() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] futures = new Future<?>[16];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = executor.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        for (int j = 0; j < 100; j++) {
+                            Runnable proxy = (Runnable) SerializationTester.reserialize(
+                                    Proxy.newProxyInstance(getClass().getClassLoader(),
+                                            new Class<?>[] { Runnable.class },
+                                            new NamedHandler("handler")));
+                            assertEquals("handler", ((NamedHandler) Proxy.getInvocationHandler(
+                                    proxy)).name);
+                            assertSame(Planet.EARTH, SerializationTester.reserialize(Planet.EARTH));
+                            assertSame(Planet.MARS, SerializationTester.reserialize(Planet.MARS));
+                            assertSame(Planet.class, SerializationTester.reserialize(Planet.class));
+                        }
+                        return null;
+                    }
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    static class NamedHandler implements InvocationHandler, Serializable {
+        private static final long serialVersionUID = 0L;
+        final String name;
+
+        NamedHandler(String name) {
+            this.name = name;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            return null;
+        }
+    }
+
+    enum Planet {
+        EARTH,
+        MARS {
+            @Override public String toString() {
+                return "red";
+            }
+        }
+    }
+
+    static class AllFields implements Serializable {
+        private static final long serialVersionUID = 0L;
+        boolean z = true;
+        byte b = -2;
+        char c = '\u20ac';
+        short s = -3;
+        int i = 0x12345678;
+        float f = 1.5f;
+        long j = 0x123456789abcdefL;
+        double d = -2.25;
+        String string = "hello";
+        int[] ints = { 1, 2 };
+
+        @Override public boolean equals(Object o) {
+            if (!(o instanceof AllFields)) {
+                return false;
+            }
+            AllFields other = (AllFields) o;
+            return z == other.z && b == other.b && c == other.c && s == other.s && i == other.i
+                    && f == other.f && j == other.j && d == other.d
+                    && string.equals(other.string) && Arrays.equals(ints, other.ints);
+        }
+
+        @Override public int hashCode() {
+            return i;
+        }
+    }
 }
@@ -114,6 +114,101 @@ public class DoubleTest extends TestCase {
         assertEquals(-0.0, Double.parseDouble("-1.4e-2147483314"));
     }
 
+    public void testToStringShortest() throws Exception {
+        assertEquals("1.0E23", Double.toString(1e23));
+        assertEquals("1.234123412431233E107", Double.toString(1.234123412431233E107));
+        assertEquals("1.2341234124312331E107", Double.toString(1.2341234124312331E107));
+        assertEquals("0.30000000000000004", Double.toString(0.1 + 0.2));
+        assertEquals("0.3333333333333333", Double.toString(1.0 / 3.0));
+        assertEquals("9.223372036854776E18", Double.toString(9223372036854775808.0));
+        assertEquals("1.7976931348623157E308", Double.toString(Double.MAX_VALUE));
+        assertEquals("2.2250738585072014E-308", Double.toString(Double.MIN_NORMAL));
+        assertEquals("4.9E-324", Double.toString(Double.MIN_VALUE));
+        assertEquals("1.0E-323", Double.toString(1e-323));
+    }
+
+    public void testToStringNotation() throws Exception {
+        assertEquals("100.0", Double.toString(100.0));
+        assertEquals("1234567.0", Double.toString(1234567.0));
+        assertEquals("9999999.999999998", Double.toString(Math.nextAfter(1e7, 0)));
+        assertEquals("1.0E7", Double.toString(1e7));
+        assertEquals("0.001", Double.toString(0.001));
+        assertEquals("9.999999999999998E-4", Double.toString(Math.nextAfter(0.001, 0)));
+        assertEquals("5.0E-5", Double.toString(5e-5));
+        assertEquals("-2.5E-5", Double.toString(-2.5e-5));
+        assertEquals("-0.0", Double.toString(-0.0));
+        assertEquals("-Infinity", Double.toString(Double.NEGATIVE_INFINITY));
+        assertEquals("NaN", Double.toString(Double.NaN));
+    }
+
+    public void testAppend() throws Exception {
+        assertEquals("x=0.30000000000000004;-1.0E-323",
+                new StringBuilder("x=").append(0.1 + 0.2).append(';').append(-1e-323).toString());
+        assertEquals("x=1.7976931348623157E308;NaN",
+                new StringBuffer("x=").append(Double.MAX_VALUE).append(';').append(Double.NaN).toString());
+    }
+
+    public void testToStringRoundTrips() throws Exception {
+        java.util.Random random = new java.util.Random(0);
+        for (int i = 0; i < 100000; i++) {
+            double d = Double.longBitsToDouble(random.nextLong());
+            if (Double.isNaN(d)) {
+                continue;
+            }
+            String s = Double.toString(d);
+            assertEquals(s, Double.doubleToRawLongBits(d),
+                    Double.doubleToRawLongBits(Double.parseDouble(s)));
+        }
+    }
+
+    public void testParseRange() throws Exception {
+        String s = "[1.5,-2.25e3, 7d]";
+        assertEquals(1.5, Double.parseDouble(s, 1, 4));
+        assertEquals(-2250.0, Double.parseDouble(s, 5, 12));
+        assertEquals(7.0, Double.parseDouble(new StringBuilder(s), 13, 16));
+        assertEquals(0.5, Double.parseDouble("x0x1p-1", 1, 7));
+        try {
+            Double.parseDouble(s, 0, 4);
+            fail();
+        } catch (NumberFormatException expected) {
+        }
+        try {
+            Double.parseDouble(s, 4, 1);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+        try {
+            Double.parseDouble(s, 1, s.length() + 1);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+    }
+
+    public void testParseCorrectlyRounded() throws Exception {
+        // Halfway between two doubles; ties go to even.
+        assertEquals(9007199254740992.0, Double.parseDouble("9007199254740993"));
+        assertEquals(9007199254740996.0, Double.parseDouble("9007199254740995"));
+        assertEquals(0.1, Double.parseDouble("0.1000000000000000055511151231257827"));
+        assertEquals(1.0E23, Double.parseDouble("1e23"));
+        assertEquals(8.41E21, Double.parseDouble("8.41e21"));
+        assertEquals(Double.MAX_VALUE, Double.parseDouble("1.7976931348623157e308"));
+        assertEquals(Double.POSITIVE_INFINITY, Double.parseDouble("1.7976931348623159e308"));
+        assertEquals(Double.MIN_VALUE, Double.parseDouble("2.4703282292062328e-324"));
+        assertEquals(0.0, Double.parseDouble("2.4703282292062327e-324"));
+        assertEquals(1.0E19, Double.parseDouble("9999999999999999999"));
+    }
+
+    public void testParseRoundTrips() throws Exception {
+        java.util.Random random = new java.util.Random(0);
+        for (int i = 0; i < 100000; i++) {
+            long bits = random.nextLong();
+            double d = Double.longBitsToDouble(bits);
+            if (!Double.isNaN(d)) {
+                assertEquals(bits, Double.doubleToRawLongBits(Double.parseDouble(Double.toString(d))));
+            }
+        }
+    }
+
     /**
      * This value has been known to cause javac and java to infinite loop.
      * http://www.exploringbinary.com/java-hangs-when-converting-2-2250738585072012e-308/
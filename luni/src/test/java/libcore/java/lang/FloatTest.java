@@ -114,6 +114,87 @@ public class FloatTest extends junit.framework.TestCase {
         assertEquals(-0.0f, Float.parseFloat("-1.4E-2147483314"));
     }
 
+    public void testToStringShortest() throws Exception {
+        assertEquals("0.1", Float.toString(0.1f));
+        assertEquals("0.3", Float.toString(0.3f));
+        assertEquals("0.33333334", Float.toString(1.0f / 3.0f));
+        assertEquals("9.536743E-7", Float.toString(0x1p-20f));
+        assertEquals("3.4028235E38", Float.toString(Float.MAX_VALUE));
+        assertEquals("1.1754944E-38", Float.toString(Float.MIN_NORMAL));
+        // The smallest subnormals keep a second digit.
+        assertEquals("1.4E-45", Float.toString(Float.MIN_VALUE));
+        assertEquals("-2.8E-45", Float.toString(-2 * Float.MIN_VALUE));
+    }
+
+    public void testToStringNotation() throws Exception {
+        assertEquals("0.001", Float.toString(0.001f));
+        assertEquals("9999999.0", Float.toString(9999999f));
+        assertEquals("1.0E7", Float.toString(1e7f));
+        assertEquals("1.6777216E7", Float.toString(16777216f));
+        assertEquals("3.355443E7", Float.toString(33554430f));
+        assertEquals("1.0E10", Float.toString(1e10f));
+        assertEquals("-0.0", Float.toString(-0.0f));
+    }
+
+    public void testAppend() throws Exception {
+        assertEquals("x=0.33333334;1.4E-45",
+                new StringBuilder("x=").append(1.0f / 3.0f).append(';').append(Float.MIN_VALUE).toString());
+        assertEquals("x=-0.1;Infinity",
+                new StringBuffer("x=").append(-0.1f).append(';').append(Float.POSITIVE_INFINITY).toString());
+    }
+
+    public void testToStringRoundTrips() throws Exception {
+        java.util.Random random = new java.util.Random(0);
+        for (int i = 0; i < 100000; i++) {
+            float f = Float.intBitsToFloat(random.nextInt());
+            if (Float.isNaN(f)) {
+                continue;
+            }
+            String s = Float.toString(f);
+            assertEquals(s, Float.floatToRawIntBits(f), Float.floatToRawIntBits(Float.parseFloat(s)));
+        }
+    }
+
+    public void testParseRange() throws Exception {
+        String s = "(0.25f, -1e-3)";
+        assertEquals(0.25f, Float.parseFloat(s, 1, 6));
+        assertEquals(-0.001f, Float.parseFloat(new StringBuilder(s), 8, 13));
+        try {
+            Float.parseFloat(s, 6, 8);
+            fail();
+        } catch (NumberFormatException expected) {
+        }
+        try {
+            Float.parseFloat(s, -1, 2);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+    }
+
+    public void testParseCorrectlyRounded() throws Exception {
+        // Just above halfway between 1.0f and the next float. Rounding to double
+        // first would give the halfway point, and then 1.0f.
+        assertEquals(1.0000001f, Float.parseFloat("1.0000000596046448"));
+        assertEquals(1.0f, Float.parseFloat("1.00000005960464477539"));
+        assertEquals(16777216f, Float.parseFloat("16777217"));
+        assertEquals(16777220f, Float.parseFloat("16777219"));
+        assertEquals(Float.MAX_VALUE, Float.parseFloat("3.4028235e38"));
+        assertEquals(Float.POSITIVE_INFINITY, Float.parseFloat("3.4028236e38"));
+        assertEquals(Float.MIN_VALUE, Float.parseFloat("7.1e-46"));
+        assertEquals(0.0f, Float.parseFloat("7.0e-46"));
+    }
+
+    public void testParseRoundTrips() throws Exception {
+        java.util.Random random = new java.util.Random(0);
+        for (int i = 0; i < 100000; i++) {
+            int bits = random.nextInt();
+            float f = Float.intBitsToFloat(bits);
+            if (!Float.isNaN(f)) {
+                assertEquals(bits, Float.floatToRawIntBits(Float.parseFloat(Float.toString(f))));
+            }
+        }
+    }
+
     public void testVerifierTyping() throws Exception {
       float f1 = 0;
       if (testVerifierTypingBool) {
@@ -24,6 +24,9 @@ import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.Formatter;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class SystemTest extends TestCase {
 
@@ -118,4 +121,81 @@ public class SystemTest extends TestCase {
             assertEquals("dst == null", e.getMessage());
         }
     }
+
+    public void testGetPropertySeesEveryKindOfWrite() {
+        String key = "libcore.SystemTest.key";
+        Properties properties = System.getProperties();
+        try {
+            System.setProperty(key, "a");
+            assertEquals("a", System.getProperty(key));
+            properties.put(key, "b");
+            assertEquals("b", System.getProperty(key));
+            for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+                if (entry.getKey().equals(key)) {
+                    entry.setValue("c");
+                }
+            }
+            assertEquals("c", System.getProperty(key));
+            properties.keySet().remove(key);
+            assertNull(System.getProperty(key));
+            properties.put(key, Integer.valueOf(1));
+            assertEquals("default", System.getProperty(key, "default"));
+            properties.setProperty(key, "d");
+            assertEquals("d", System.clearProperty(key));
+            assertNull(System.getProperty(key));
+        } finally {
+            properties.remove(key);
+        }
+    }
+
+    public void testGetPropertyAfterSetProperties() {
+        Properties original = System.getProperties();
+        try {
+            Properties replacement = new Properties();
+            replacement.setProperty("libcore.SystemTest.key", "a");
+            System.setProperties(replacement);
+            assertEquals("a", System.getProperty("libcore.SystemTest.key"));
+            replacement.setProperty("libcore.SystemTest.key", "b");
+            assertEquals("b", System.getProperty("libcore.SystemTest.key"));
+        } finally {
+            System.setProperties(original);
+        }
+        assertNull(System.getProperty("libcore.SystemTest.key"));
+    }
+
+    public void testConcurrentGetAndSetProperty() throws Exception {
+        final String key = "libcore.SystemTest.counter";
+        final int writes = 2000;
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        System.setProperty(key, "0");
+        Thread[] readers = new Thread[4];
+        try {
+            for (int i = 0; i < readers.length; i++) {
+                readers[i] = new Thread() {
+                    @Override public void run() {
+                        int last = 0;
+                        while (last < writes) {
+                            // Values only increase, so a reader must never see one go backwards.
+                            int value = Integer.parseInt(System.getProperty(key));
+                            if (value < last) {
+                                failure.set(value + " after " + last);
+                                return;
+                            }
+                            last = value;
+                        }
+                    }
+                };
+                readers[i].start();
+            }
+            for (int i = 1; i <= writes; i++) {
+                System.setProperty(key, Integer.toString(i));
+            }
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            assertNull(failure.get());
+        } finally {
+            System.clearProperty(key);
+        }
+    }
 }
@@ -105,4 +105,85 @@ public class CharsetDecoderTest extends junit.framework.TestCase {
         assertEquals(1, cb.position());
         assertEquals('\u2603', cb.get(0));
     }
+
+    public void testUtf8SupplementaryCharacterSplitAcrossMultipleWrites() throws Exception {
+        CharsetDecoder decoder = Charset.forName("UTF-8").newDecoder();
+        CharBuffer cb = CharBuffer.allocate(128);
+        byte[] bytes = { (byte) 'a', (byte) 0xf0, (byte) 0x9f, (byte) 0x98, (byte) 0x80, (byte) 'b' };
+        for (byte b : bytes) {
+            assertEquals(CoderResult.UNDERFLOW, decoder.decode(ByteBuffer.wrap(new byte[] { b }), cb, false));
+        }
+        assertEquals(CoderResult.UNDERFLOW, decoder.decode(ByteBuffer.allocate(0), cb, true));
+        assertEquals(CoderResult.UNDERFLOW, decoder.flush(cb));
+        cb.flip();
+        assertEquals("a\ud83d\ude00b", cb.toString());
+    }
+
+    public void testUtf8MalformedSequences() throws Exception {
+        // Each maximal invalid subsequence is replaced once.
+        assertEquals("\ufffd", decodeUtf8(0x80));
+        assertEquals("\ufffdA", decodeUtf8(0xe2, 0x98, 'A'));
+        assertEquals("\ufffd\ufffd", decodeUtf8(0xc0, 0x80)); // Overlong.
+        assertEquals("\ufffd\ufffd\ufffd", decodeUtf8(0xed, 0xa0, 0x80)); // Surrogate.
+        assertEquals("\ufffd\ufffd\ufffd\ufffd", decodeUtf8(0xf4, 0x90, 0x80, 0x80)); // > U+10FFFF.
+        assertEquals("\ufffd", decodeUtf8(0xf0, 0x9f, 0x98)); // Truncated.
+
+        CharsetDecoder decoder = Charset.forName("UTF-8").newDecoder();
+        CoderResult cr = decoder.decode(ByteBuffer.wrap(new byte[] { (byte) 0xe2, (byte) 0x98, 'A' }),
+                CharBuffer.allocate(8), true);
+        assertTrue(cr.isMalformed());
+        assertEquals(2, cr.length());
+    }
+
+    public void testUtf8WithoutBackingArrays() throws Exception {
+        CharsetDecoder decoder = Charset.forName("UTF-8").newDecoder();
+        ByteBuffer in = ByteBuffer.wrap("h\u00e9llo \u2603".getBytes("UTF-8")).asReadOnlyBuffer();
+        CharBuffer out = ByteBuffer.allocate(32).asCharBuffer();
+        assertFalse(in.hasArray());
+        assertFalse(out.hasArray());
+        assertEquals(CoderResult.UNDERFLOW, decoder.decode(in, out, true));
+        assertFalse(in.hasRemaining());
+        out.flip();
+        assertEquals("h\u00e9llo \u2603", out.toString());
+    }
+
+    public void testUtf8Overflow() throws Exception {
+        CharsetDecoder decoder = Charset.forName("UTF-8").newDecoder();
+        ByteBuffer in = ByteBuffer.wrap(new byte[] { 'a', (byte) 0xf0, (byte) 0x9f, (byte) 0x98, (byte) 0x80 });
+        CharBuffer out = CharBuffer.allocate(2);
+        assertEquals(CoderResult.OVERFLOW, decoder.decode(in, out, true));
+        assertEquals(1, in.position());
+        out.clear();
+        assertEquals(CoderResult.UNDERFLOW, decoder.decode(in, out, true));
+        assertEquals("\ud83d\ude00", out.flip().toString());
+    }
+
+    public void testUsAsciiRejectsHighBytes() throws Exception {
+        CharsetDecoder decoder = Charset.forName("US-ASCII").newDecoder();
+        CoderResult cr = decoder.decode(ByteBuffer.wrap(new byte[] { 'a', (byte) 0x80 }),
+                CharBuffer.allocate(8), true);
+        assertTrue(cr.isMalformed());
+        assertEquals(1, cr.length());
+    }
+
+    public void testIsoLatin1DecodesEveryByte() throws Exception {
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        CharBuffer chars = Charset.forName("ISO-8859-1").newDecoder().decode(ByteBuffer.wrap(bytes));
+        for (int i = 0; i < bytes.length; i++) {
+            assertEquals((char) i, chars.get(i));
+        }
+    }
+
+    private static String decodeUtf8(int... values) throws Exception {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        CharsetDecoder decoder = Charset.forName("UTF-8").newDecoder();
+        decoder.onMalformedInput(CodingErrorAction.REPLACE);
+        return decoder.decode(ByteBuffer.wrap(bytes)).toString();
+    }
 }
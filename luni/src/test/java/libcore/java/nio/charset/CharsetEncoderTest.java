@@ -204,4 +204,67 @@ public class CharsetEncoderTest extends junit.framework.TestCase {
         assertEquals(CoderResult.UNDERFLOW, cr);
         assertEquals(8, bb.position());
     }
+
+    public void testUtf8SurrogatePairSplitAcrossMultipleWrites() throws Exception {
+        CharsetEncoder e = Charset.forName("UTF-8").newEncoder();
+        ByteBuffer bb = ByteBuffer.allocate(128);
+        assertEquals(CoderResult.UNDERFLOW, e.encode(CharBuffer.wrap("a\ud83d"), bb, false));
+        assertEquals(CoderResult.UNDERFLOW, e.encode(CharBuffer.wrap("\ude00"), bb, true));
+        assertEquals(CoderResult.UNDERFLOW, e.flush(bb));
+        assertEquals("[97, -16, -97, -104, -128]",
+                Arrays.toString(Arrays.copyOfRange(bb.array(), 0, bb.position())));
+    }
+
+    public void testUtf8UnpairedSurrogates() throws Exception {
+        CharsetEncoder e = Charset.forName("UTF-8").newEncoder();
+        CoderResult cr = e.encode(CharBuffer.wrap("\ude00"), ByteBuffer.allocate(8), true);
+        assertTrue(cr.isMalformed());
+        assertEquals(1, cr.length());
+
+        e = Charset.forName("UTF-8").newEncoder();
+        e.onMalformedInput(CodingErrorAction.REPLACE);
+        assertEquals("?a?", new String(e.encode(CharBuffer.wrap("\ud83da\ud83d")).array(), 0, 3,
+                "US-ASCII"));
+        assertFalse(e.canEncode('\ud83d'));
+        assertTrue(e.canEncode('\u2603'));
+    }
+
+    public void testUtf8WithoutBackingArrays() throws Exception {
+        CharsetEncoder e = Charset.forName("UTF-8").newEncoder();
+        CharBuffer in = CharBuffer.wrap("h\u00e9llo \u2603");
+        ByteBuffer out = ByteBuffer.allocateDirect(32);
+        assertFalse(in.hasArray());
+        assertEquals(CoderResult.UNDERFLOW, e.encode(in, out, true));
+        out.flip();
+        byte[] bytes = new byte[out.remaining()];
+        out.get(bytes);
+        assertTrue(Arrays.equals("h\u00e9llo \u2603".getBytes("UTF-8"), bytes));
+    }
+
+    public void testIsoLatin1Unmappable() throws Exception {
+        CharsetEncoder e = Charset.forName("ISO-8859-1").newEncoder();
+        ByteBuffer bb = ByteBuffer.allocate(8);
+        CoderResult cr = e.encode(CharBuffer.wrap("\u00ff\u0100"), bb, true);
+        assertTrue(cr.isUnmappable());
+        assertEquals(1, cr.length());
+        assertEquals(1, bb.position());
+
+        // A surrogate pair is one unmappable character, even when split across writes.
+        e = Charset.forName("ISO-8859-1").newEncoder();
+        e.onUnmappableCharacter(CodingErrorAction.REPLACE);
+        bb = ByteBuffer.allocate(8);
+        assertEquals(CoderResult.UNDERFLOW, e.encode(CharBuffer.wrap("a\ud83d"), bb, false));
+        assertEquals(CoderResult.UNDERFLOW, e.encode(CharBuffer.wrap("\ude00b"), bb, true));
+        assertEquals(CoderResult.UNDERFLOW, e.flush(bb));
+        assertEquals("a?b", new String(bb.array(), 0, bb.position(), "ISO-8859-1"));
+    }
+
+    public void testUsAsciiUnmappable() throws Exception {
+        CharsetEncoder e = Charset.forName("US-ASCII").newEncoder();
+        assertTrue(e.canEncode('\u007f'));
+        assertFalse(e.canEncode('\u0080'));
+        CoderResult cr = e.encode(CharBuffer.wrap("\u00e9"), ByteBuffer.allocate(8), true);
+        assertTrue(cr.isUnmappable());
+        assertEquals(1, cr.length());
+    }
 }
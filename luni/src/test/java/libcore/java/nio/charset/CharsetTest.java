@@ -20,7 +20,11 @@ import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
 import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class CharsetTest extends junit.framework.TestCase {
     public void test_guaranteedCharsetsAvailable() throws Exception {
@@ -187,6 +191,82 @@ public class CharsetTest extends junit.framework.TestCase {
         assertEquals("X-UTF-32LE-BOM", Charset.forName("UTF_32LE_BOM").name());
     }
 
+    public void test_forNameReturnsCanonicalInstance() throws Exception {
+        Charset utf8 = Charset.forName("UTF-8");
+        assertSame(utf8, Charset.forName("utf8"));
+        assertSame(utf8, Charset.forName("UTF8"));
+        for (String alias : utf8.aliases()) {
+            assertSame(alias, utf8, Charset.forName(alias));
+        }
+    }
+
+    public void test_forNameUnsupportedIsRepeatable() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            try {
+                Charset.forName("libcore-no-such-charset");
+                fail();
+            } catch (UnsupportedCharsetException expected) {
+            }
+            assertFalse(Charset.isSupported("libcore-no-such-charset"));
+        }
+        // The negative cache is bounded, and must not hide charsets that do exist.
+        for (int i = 0; i < 200; i++) {
+            assertFalse(Charset.isSupported("libcore-no-such-charset-" + i));
+        }
+        assertTrue(Charset.isSupported("ISO-8859-2"));
+    }
+
+    public void test_forNameIllegalNames() throws Exception {
+        try {
+            Charset.forName(null);
+            fail();
+        } catch (IllegalCharsetNameException expected) {
+        }
+        try {
+            Charset.forName("");
+            fail();
+        } catch (IllegalCharsetNameException expected) {
+        }
+        try {
+            Charset.forName("UTF 8");
+            fail();
+        } catch (IllegalCharsetNameException expected) {
+        }
+    }
+
+    public void test_forNameConcurrent() throws Exception {
+        final String[] names = { "UTF-8", "utf-8", "ISO-8859-1", "latin1", "US-ASCII",
+                "ascii", "UTF-16BE", "UnicodeBigUnmarked", "windows-1252", "cp1252" };
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread() {
+                @Override public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < 1000; i++) {
+                            String name = names[(i + offset) % names.length];
+                            Charset cs = Charset.forName(name);
+                            if (cs != Charset.forName(cs.name())) {
+                                throw new AssertionError("not canonical: " + name);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+    }
+
     private byte[] toByteArray(int[] ints) {
         byte[] result = new byte[ints.length];
         for (int i = 0; i < ints.length; ++i) {
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package libcore.java.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ListResourceBundle;
+import java.util.Locale;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import junit.framework.TestCase;
+
+public final class ResourceBundleTest extends TestCase {
+    private final ClassLoader loader = new ClassLoader(getClass().getClassLoader()) {};
+
+    @Override protected void tearDown() throws Exception {
+        ResourceBundle.clearCache(loader);
+        super.tearDown();
+    }
+
+    public void testCandidatesAreLoadedOnce() {
+        CountingControl control = new CountingControl("de", "");
+        ResourceBundle bundle = ResourceBundle.getBundle("test", Locale.GERMANY, loader, control);
+        assertEquals(new Locale("de"), bundle.getLocale());
+        assertEquals("de", bundle.getString("locale"));
+        assertEquals("", bundle.getString("root"));
+        // de_DE, de and the root were each probed once.
+        assertEquals(3, control.loads.size());
+
+        assertSame(bundle, ResourceBundle.getBundle("test", Locale.GERMANY, loader, control));
+        assertEquals(3, control.loads.size());
+
+        // de_AT shares de and the root, and its own absence is cached too.
+        ResourceBundle austria = ResourceBundle.getBundle("test", new Locale("de", "AT"), loader,
+                control);
+        assertSame(bundle, austria);
+        assertEquals(4, control.loads.size());
+        ResourceBundle.getBundle("test", new Locale("de", "AT"), loader, control);
+        assertEquals(4, control.loads.size());
+    }
+
+    public void testMissingBundleIsCached() {
+        CountingControl control = new CountingControl();
+        for (int i = 0; i < 3; i++) {
+            try {
+                ResourceBundle.getBundle("test", Locale.ROOT, loader, control);
+                fail();
+            } catch (MissingResourceException expected) {
+            }
+        }
+        assertEquals(1, control.loads.size());
+    }
+
+    public void testDontCache() {
+        CountingControl control = new CountingControl("");
+        control.timeToLive = ResourceBundle.Control.TTL_DONT_CACHE;
+        ResourceBundle first = ResourceBundle.getBundle("test", Locale.ROOT, loader, control);
+        ResourceBundle second = ResourceBundle.getBundle("test", Locale.ROOT, loader, control);
+        assertNotSame(first, second);
+        assertEquals(2, control.loads.size());
+    }
+
+    public void testExpiredBundleIsKeptUnlessItNeedsReload() {
+        CountingControl control = new CountingControl("");
+        control.timeToLive = 0;
+        ResourceBundle first = ResourceBundle.getBundle("test", Locale.ROOT, loader, control);
+        assertSame(first, ResourceBundle.getBundle("test", Locale.ROOT, loader, control));
+        assertEquals(1, control.loads.size());
+        assertEquals(1, control.reloadChecks);
+
+        control.needsReload = true;
+        ResourceBundle second = ResourceBundle.getBundle("test", Locale.ROOT, loader, control);
+        assertNotSame(first, second);
+        assertEquals(2, control.loads.size());
+        assertEquals(Boolean.TRUE, control.reloads.get(1));
+    }
+
+    public void testExpiredMissingBundleIsProbedAgain() throws Exception {
+        CountingControl control = new CountingControl();
+        control.timeToLive = 0;
+        try {
+            ResourceBundle.getBundle("test", Locale.ROOT, loader, control);
+            fail();
+        } catch (MissingResourceException expected) {
+        }
+        control.available.add("");
+        assertEquals("", ResourceBundle.getBundle("test", Locale.ROOT, loader, control)
+                .getString("root"));
+        assertEquals(2, control.loads.size());
+    }
+
+    public void testClearCache() {
+        CountingControl control = new CountingControl("");
+        ResourceBundle first = ResourceBundle.getBundle("test", Locale.ROOT, loader, control);
+        ResourceBundle.clearCache(loader);
+        assertNotSame(first, ResourceBundle.getBundle("test", Locale.ROOT, loader, control));
+        assertEquals(2, control.loads.size());
+    }
+
+    public void testConcurrentLookups() throws Exception {
+        final CountingControl control = new CountingControl("fr", "de", "ja", "");
+        final Locale[] locales = { Locale.FRANCE, Locale.CANADA_FRENCH, Locale.GERMANY,
+                Locale.JAPAN, Locale.US, Locale.KOREA };
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread() {
+                @Override public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < 1000; i++) {
+                            Locale locale = locales[(i + offset) % locales.length];
+                            ResourceBundle bundle = ResourceBundle.getBundle("test", locale,
+                                    loader, control);
+                            String expected = locale.getLanguage();
+                            if (expected.equals("en") || expected.equals("ko")) {
+                                expected = "";
+                            }
+                            assertEquals(expected, bundle.getString("locale"));
+                            assertEquals("", bundle.getString("root"));
+                        }
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+    }
+
+    /**
+     * Serves a bundle for each locale in {@code available}, and records every
+     * attempt to load one.
+     */
+    static class CountingControl extends ResourceBundle.Control {
+        final List<String> available = new ArrayList<String>();
+        final List<Locale> loads = new ArrayList<Locale>();
+        final List<Boolean> reloads = new ArrayList<Boolean>();
+        volatile long timeToLive = TTL_NO_EXPIRATION_CONTROL;
+        volatile boolean needsReload;
+        int reloadChecks;
+
+        CountingControl(String... available) {
+            for (String locale : available) {
+                this.available.add(locale);
+            }
+        }
+
+        @Override public List<String> getFormats(String baseName) {
+            return Collections.singletonList("java.class");
+        }
+
+        @Override public Locale getFallbackLocale(String baseName, Locale locale) {
+            return null;
+        }
+
+        @Override public synchronized ResourceBundle newBundle(String baseName,
+                final Locale locale, String format, ClassLoader loader, boolean reload) {
+            loads.add(locale);
+            reloads.add(reload);
+            if (!available.contains(locale.toString())) {
+                return null;
+            }
+            return new ListResourceBundle() {
+                @Override protected Object[][] getContents() {
+                    if (locale.toString().isEmpty()) {
+                        return new Object[][] { { "locale", "" }, { "root", "" } };
+                    }
+                    return new Object[][] { { "locale", locale.toString() } };
+                }
+                @Override public Locale getLocale() {
+                    return locale;
+                }
+            };
+        }
+
+        @Override public long getTimeToLive(String baseName, Locale locale) {
+            return timeToLive;
+        }
+
+        @Override public synchronized boolean needsReload(String baseName, Locale locale,
+                String format, ClassLoader loader, ResourceBundle bundle, long loadTime) {
+            reloadChecks++;
+            return needsReload;
+        }
+    }
+}
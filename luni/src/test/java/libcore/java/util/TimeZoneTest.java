@@ -157,4 +157,46 @@ public class TimeZoneTest extends junit.framework.TestCase {
         } catch (NullPointerException expected) {
         }
     }
+
+    public void testGetTimeZoneReturnsIndependentInstances() throws Exception {
+        TimeZone first = TimeZone.getTimeZone("America/Los_Angeles");
+        int rawOffset = first.getRawOffset();
+        first.setRawOffset(rawOffset + 3600000);
+        first.setID("Modified");
+
+        TimeZone second = TimeZone.getTimeZone("America/Los_Angeles");
+        assertNotSame(first, second);
+        assertEquals("America/Los_Angeles", second.getID());
+        assertEquals(rawOffset, second.getRawOffset());
+    }
+
+    public void testOffsetsDontDependOnLookupOrder() throws Exception {
+        // Half-day steps across several years hit each transition interval
+        // repeatedly, first in order and then alternating between distant times.
+        long start = new Date(100, 0, 1).getTime();
+        long step = 12 * 60 * 60 * 1000L;
+        int count = 4 * 730;
+        int[] expected = new int[count];
+        boolean[] expectedDst = new boolean[count];
+        TimeZone ordered = TimeZone.getTimeZone("Europe/London");
+        for (int i = 0; i < count; i++) {
+            expected[i] = ordered.getOffset(start + i * step);
+            expectedDst[i] = ordered.inDaylightTime(new Date(start + i * step));
+        }
+
+        TimeZone scattered = TimeZone.getTimeZone("Europe/London");
+        for (int i = 0; i < count; i++) {
+            int j = (i % 2 == 0) ? i : count - i;
+            assertEquals(expected[j], scattered.getOffset(start + j * step));
+            assertEquals(expectedDst[j], scattered.inDaylightTime(new Date(start + j * step)));
+        }
+    }
+
+    public void testOffsetFollowsRawOffsetChanges() throws Exception {
+        TimeZone tz = TimeZone.getTimeZone("Europe/London");
+        long summer = new Date(110, 6, 1).getTime();
+        assertEquals(3600000, tz.getOffset(summer));
+        tz.setRawOffset(3600000);
+        assertEquals(7200000, tz.getOffset(summer));
+    }
 }
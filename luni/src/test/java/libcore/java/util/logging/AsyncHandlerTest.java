@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package libcore.java.util.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.AsyncHandler;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import junit.framework.TestCase;
+
+public final class AsyncHandlerTest extends TestCase {
+
+    public void testRecordsArePublishedInOrder() throws Exception {
+        RecordingHandler target = new RecordingHandler();
+        AsyncHandler handler = new AsyncHandler(target, 8, Level.ALL);
+        for (int i = 0; i < 100; i++) {
+            handler.publish(new LogRecord(Level.INFO, "message " + i));
+        }
+        handler.flush();
+        List<LogRecord> records = target.records();
+        assertEquals(100, records.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("message " + i, records.get(i).getMessage());
+        }
+        assertEquals(0, handler.getDroppedCount());
+        handler.close();
+    }
+
+    public void testSourceIsInferredOnCallingThread() throws Exception {
+        RecordingHandler target = new RecordingHandler();
+        AsyncHandler handler = new AsyncHandler(target, 8, Level.ALL);
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(handler);
+        logger.info("hello");
+        handler.flush();
+        LogRecord record = target.records().get(0);
+        assertEquals(AsyncHandlerTest.class.getName(), record.getSourceClassName());
+        assertEquals("testSourceIsInferredOnCallingThread", record.getSourceMethodName());
+        handler.close();
+    }
+
+    public void testRecordsBelowBlockLevelAreDroppedWhenFull() throws Exception {
+        RecordingHandler target = new RecordingHandler();
+        target.blockPublishing();
+        AsyncHandler handler = new AsyncHandler(target, 4, Level.SEVERE);
+        // The first record is taken by the drain thread, which then blocks.
+        handler.publish(new LogRecord(Level.INFO, "first"));
+        assertTrue(target.awaitPublishing());
+        for (int i = 0; i < 10; i++) {
+            handler.publish(new LogRecord(Level.INFO, "message " + i));
+        }
+        assertEquals(6, handler.getDroppedCount());
+        target.unblockPublishing();
+        handler.flush();
+        assertEquals(5, target.records().size());
+        handler.close();
+    }
+
+    public void testRecordsAtBlockLevelWaitForSpace() throws Exception {
+        RecordingHandler target = new RecordingHandler();
+        target.blockPublishing();
+        final AsyncHandler handler = new AsyncHandler(target, 2, Level.WARNING);
+        handler.publish(new LogRecord(Level.INFO, "first"));
+        assertTrue(target.awaitPublishing());
+        handler.publish(new LogRecord(Level.INFO, "second"));
+        handler.publish(new LogRecord(Level.INFO, "third"));
+
+        Thread caller = new Thread() {
+            @Override public void run() {
+                handler.publish(new LogRecord(Level.WARNING, "blocked"));
+            }
+        };
+        caller.start();
+        caller.join(200);
+        assertTrue(caller.isAlive());
+
+        target.unblockPublishing();
+        caller.join();
+        handler.flush();
+        assertEquals(4, target.records().size());
+        assertEquals("blocked", target.records().get(3).getMessage());
+        assertEquals(0, handler.getDroppedCount());
+        handler.close();
+    }
+
+    public void testConcurrentCallersLoseNothing() throws Exception {
+        RecordingHandler target = new RecordingHandler();
+        final AsyncHandler handler = new AsyncHandler(target, 16, Level.ALL);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        handler.publish(new LogRecord(Level.INFO, "message"));
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        handler.flush();
+        assertEquals(4000, target.records().size());
+        handler.close();
+    }
+
+    public void testCloseDrainsAndClosesTarget() throws Exception {
+        RecordingHandler target = new RecordingHandler();
+        AsyncHandler handler = new AsyncHandler(target, 64, Level.ALL);
+        for (int i = 0; i < 50; i++) {
+            handler.publish(new LogRecord(Level.INFO, "message"));
+        }
+        handler.close();
+        assertEquals(50, target.records().size());
+        assertTrue(target.closed);
+
+        handler.publish(new LogRecord(Level.SEVERE, "after close"));
+        assertEquals(50, target.records().size());
+    }
+
+    public void testErrorsFromTargetAreReported() throws Exception {
+        RecordingHandler target = new RecordingHandler();
+        target.failOn = "boom";
+        AsyncHandler handler = new AsyncHandler(target, 8, Level.ALL);
+        final List<Exception> errors = new ArrayList<Exception>();
+        handler.setErrorManager(new ErrorManager() {
+            @Override public synchronized void error(String message, Exception e, int code) {
+                errors.add(e);
+            }
+        });
+        handler.publish(new LogRecord(Level.INFO, "boom"));
+        handler.publish(new LogRecord(Level.INFO, "after"));
+        handler.flush();
+        assertEquals(1, target.records().size());
+        assertEquals("after", target.records().get(0).getMessage());
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).getCause() instanceof AssertionError);
+        handler.close();
+    }
+
+    public void testBlockedCallersAreReleasedWhenDrainThreadDies() throws Exception {
+        RecordingHandler target = new RecordingHandler();
+        target.failOn = "boom";
+        final AsyncHandler handler = new AsyncHandler(target, 1, Level.ALL);
+        handler.setErrorManager(new ErrorManager() {
+            @Override public void error(String message, Exception e, int code) {
+                throw new AssertionError(e);
+            }
+        });
+        Thread caller = new Thread() {
+            @Override public void run() {
+                handler.publish(new LogRecord(Level.INFO, "boom"));
+                for (int i = 0; i < 10; i++) {
+                    handler.publish(new LogRecord(Level.INFO, "message " + i));
+                }
+            }
+        };
+        caller.start();
+        caller.join(5000);
+        assertFalse(caller.isAlive());
+        assertTrue(handler.getDroppedCount() > 0);
+        handler.close();
+        assertTrue(target.closed);
+    }
+
+    static class RecordingHandler extends Handler {
+        private final List<LogRecord> records = new ArrayList<LogRecord>();
+        private final CountDownLatch publishing = new CountDownLatch(1);
+        private CountDownLatch unblock = new CountDownLatch(0);
+        volatile boolean closed;
+        volatile String failOn;
+
+        void blockPublishing() {
+            unblock = new CountDownLatch(1);
+        }
+
+        void unblockPublishing() {
+            unblock.countDown();
+        }
+
+        boolean awaitPublishing() throws InterruptedException {
+            return publishing.await(5, TimeUnit.SECONDS);
+        }
+
+        @Override public void publish(LogRecord record) {
+            if (record.getMessage().equals(failOn)) {
+                throw new AssertionError(record.getMessage());
+            }
+            publishing.countDown();
+            try {
+                unblock.await();
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            synchronized (records) {
+                records.add(record);
+            }
+        }
+
+        List<LogRecord> records() {
+            synchronized (records) {
+                return new ArrayList<LogRecord>(records);
+            }
+        }
+
+        @Override public void flush() {
+        }
+
+        @Override public void close() {
+            closed = true;
+        }
+    }
+}
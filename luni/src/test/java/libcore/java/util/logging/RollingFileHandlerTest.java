@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package libcore.java.util.logging;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.RollingFileHandler;
+import java.util.zip.GZIPInputStream;
+import junit.framework.TestCase;
+
+public final class RollingFileHandlerTest extends TestCase {
+
+    private File directory;
+    private File file;
+
+    @Override protected void setUp() throws Exception {
+        directory = File.createTempFile("RollingFileHandlerTest", "");
+        directory.delete();
+        directory.mkdir();
+        file = new File(directory, "test.log");
+    }
+
+    @Override protected void tearDown() throws Exception {
+        for (File f : directory.listFiles()) {
+            f.delete();
+        }
+        directory.delete();
+    }
+
+    public void testOutputIsBufferedUntilFlush() throws Exception {
+        RollingFileHandler handler = newHandler(0, 0, 3);
+        handler.publish(new LogRecord(Level.INFO, "hello"));
+        assertEquals(0, file.length());
+        assertEquals(6, handler.getBytesWritten());
+        handler.flush();
+        assertEquals("hello\n", read(file));
+        handler.close();
+    }
+
+    public void testRotatesOnSizeAndCompressesArchives() throws Exception {
+        RollingFileHandler handler = newHandler(5, 0, 3);
+        for (int i = 0; i < 5; i++) {
+            handler.publish(new LogRecord(Level.INFO, "record " + i));
+        }
+        handler.close();
+
+        assertEquals(5, handler.getRotationCount());
+        assertEquals(45, handler.getBytesWritten());
+        assertEquals("", read(file));
+        assertEquals("record 4\n", gunzip(archive(1)));
+        assertEquals("record 3\n", gunzip(archive(2)));
+        assertEquals("record 2\n", gunzip(archive(3)));
+        assertFalse(archive(4).exists());
+        for (String name : directory.list()) {
+            assertFalse(name, name.endsWith(".pending") || name.endsWith(".tmp"));
+        }
+    }
+
+    public void testAppendsToExistingFile() throws Exception {
+        RollingFileHandler handler = newHandler(0, 0, 1);
+        handler.publish(new LogRecord(Level.INFO, "first"));
+        handler.close();
+        handler = newHandler(0, 0, 1);
+        handler.publish(new LogRecord(Level.INFO, "second"));
+        handler.close();
+        assertEquals("first\nsecond\n", read(file));
+    }
+
+    public void testRotatesOnTimeBoundary() throws Exception {
+        // Start just after a period boundary so the first record can't cross one.
+        long now = System.currentTimeMillis();
+        long local = now + TimeZone.getDefault().getOffset(now);
+        Thread.sleep(200 - local % 200 + 10);
+        RollingFileHandler handler = newHandler(0, 200, 2);
+        handler.publish(new LogRecord(Level.INFO, "before"));
+        Thread.sleep(300);
+        handler.publish(new LogRecord(Level.INFO, "after"));
+        handler.close();
+        assertEquals(1, handler.getRotationCount());
+        assertEquals("before\n", gunzip(archive(1)));
+        assertEquals("after\n", read(file));
+    }
+
+    public void testFailedRotationIsReportedAndLaterRecordsAreDropped() throws Exception {
+        long now = System.currentTimeMillis();
+        long local = now + TimeZone.getDefault().getOffset(now);
+        Thread.sleep(200 - local % 200 + 10);
+        RollingFileHandler handler = newHandler(1000, 200, 1);
+        final List<Integer> errors = new ArrayList<Integer>();
+        handler.setErrorManager(new ErrorManager() {
+            @Override public synchronized void error(String message, Exception e, int code) {
+                errors.add(code);
+            }
+        });
+        handler.publish(new LogRecord(Level.INFO, "before"));
+        // the new file can't be opened once its directory is gone
+        file.delete();
+        directory.delete();
+        Thread.sleep(300);
+        handler.publish(new LogRecord(Level.INFO, "after"));
+        handler.publish(new LogRecord(Level.INFO, "dropped"));
+        handler.flush();
+        handler.close();
+        directory.mkdir();
+        assertTrue(errors.toString(), errors.contains(ErrorManager.OPEN_FAILURE));
+    }
+
+    public void testLargeRecordsBypassBuffer() throws Exception {
+        RollingFileHandler handler = newHandler(0, 0, 1);
+        StringBuilder message = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            message.append((char) ('a' + i % 26));
+        }
+        handler.publish(new LogRecord(Level.INFO, "small"));
+        handler.publish(new LogRecord(Level.INFO, message.toString()));
+        handler.publish(new LogRecord(Level.INFO, "small"));
+        handler.close();
+        assertEquals("small\n" + message + "\nsmall\n", read(file));
+    }
+
+    public void testInvalidArguments() throws Exception {
+        try {
+            new RollingFileHandler(file.getPath(), -1, 0, 1);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            new RollingFileHandler(file.getPath(), 0, 0, 0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private RollingFileHandler newHandler(long limit, long interval, int count)
+            throws IOException {
+        RollingFileHandler handler = new RollingFileHandler(file.getPath(), limit, interval, count);
+        handler.setFormatter(new Formatter() {
+            @Override public String format(LogRecord record) {
+                return record.getMessage() + "\n";
+            }
+        });
+        return handler;
+    }
+
+    private File archive(int generation) {
+        return new File(file.getPath() + "." + generation + ".gz");
+    }
+
+    private static String read(File file) throws IOException {
+        return read(new FileInputStream(file));
+    }
+
+    private static String gunzip(File file) throws IOException {
+        return read(new GZIPInputStream(new FileInputStream(file)));
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package libcore.java.util.zip;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.CRC32;
+import junit.framework.TestCase;
+
+public final class CRC32Test extends TestCase {
+    // Sizes on both sides of the threshold between the Java and native implementations.
+    private static final int[] SIZES = { 0, 1, 7, 8, 9, 127, 128, 129, 1000, 100000 };
+
+    public void testSmallAndLargeUpdatesAgree() {
+        byte[] data = randomBytes(100000);
+        for (int size : SIZES) {
+            CRC32 whole = new CRC32();
+            whole.update(data, 0, size);
+            CRC32 bytewise = new CRC32();
+            for (int i = 0; i < size; i++) {
+                bytewise.update(data[i]);
+            }
+            assertEquals("size=" + size, whole.getValue(), bytewise.getValue());
+        }
+    }
+
+    public void testUpdateByteBuffer() {
+        byte[] data = randomBytes(100000);
+        for (int size : SIZES) {
+            CRC32 expected = new CRC32();
+            expected.update(data, 3, size);
+
+            ByteBuffer heap = ByteBuffer.wrap(data, 3, size);
+            ByteBuffer readOnly = ByteBuffer.wrap(data, 3, size).asReadOnlyBuffer();
+            ByteBuffer direct = ByteBuffer.allocateDirect(size + 3);
+            direct.position(3);
+            direct.put(data, 3, size);
+            direct.position(3);
+
+            for (ByteBuffer buffer : new ByteBuffer[] { heap, readOnly, direct }) {
+                CRC32 actual = new CRC32();
+                actual.update(buffer);
+                assertEquals("size=" + size, expected.getValue(), actual.getValue());
+                assertEquals(0, buffer.remaining());
+            }
+        }
+    }
+
+    public void testCombine() {
+        byte[] data = randomBytes(100000);
+        CRC32 whole = new CRC32();
+        whole.update(data);
+        for (int split : new int[] { 0, 1, 100, 65521, 99999, 100000 }) {
+            CRC32 first = new CRC32();
+            first.update(data, 0, split);
+            CRC32 second = new CRC32();
+            second.update(data, split, data.length - split);
+            assertEquals("split=" + split, whole.getValue(),
+                    CRC32.combine(first.getValue(), second.getValue(), data.length - split));
+        }
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] result = new byte[size];
+        new Random(0).nextBytes(result);
+        return result;
+    }
+}
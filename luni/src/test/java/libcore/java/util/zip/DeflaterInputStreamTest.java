@@ -109,4 +109,15 @@ public final class DeflaterInputStreamTest extends TestCase {
         } catch (IOException expected) {
         }
     }
+
+    public void testDoubleClose() throws IOException {
+        InputStream in = new DeflaterInputStream(new ByteArrayInputStream(new byte[] { 1, 2, 3 }));
+        in.close();
+        in.close();
+        try {
+            in.read();
+            fail();
+        } catch (IOException expected) {
+        }
+    }
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package libcore.java.util.zip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.ParallelGZIPOutputStream;
+import junit.framework.TestCase;
+
+public final class ParallelGZIPOutputStreamTest extends TestCase {
+    private ExecutorService executor;
+
+    @Override protected void setUp() throws Exception {
+        super.setUp();
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @Override protected void tearDown() throws Exception {
+        executor.shutdown();
+        super.tearDown();
+    }
+
+    public void testEmpty() throws IOException {
+        assertEquals(0, GZIPInputStreamTest.gunzip(gzip(new byte[0], 1024)).length);
+    }
+
+    public void testShortMessageMatchesGzipOutputStream() throws IOException {
+        byte[] data = "Hello World".getBytes("UTF-8");
+        assertTrue(Arrays.equals(GZIPOutputStreamTest.gzip(data), gzip(data, 1024)));
+    }
+
+    public void testManyBlocks() throws IOException {
+        byte[] data = compressibleData(1024 * 1024 + 17);
+        assertTrue(Arrays.equals(data, GZIPInputStreamTest.gunzip(gzip(data, 64 * 1024))));
+    }
+
+    public void testRandomData() throws IOException {
+        byte[] data = new byte[300 * 1024];
+        new Random().nextBytes(data);
+        assertTrue(Arrays.equals(data, GZIPInputStreamTest.gunzip(gzip(data, 64 * 1024))));
+    }
+
+    public void testDictionaryPrimingKeepsRatioClose() throws IOException {
+        byte[] data = compressibleData(1024 * 1024);
+        int sequential = GZIPOutputStreamTest.gzip(data).length;
+        int parallel = gzip(data, 64 * 1024).length;
+        assertTrue(parallel + " vs " + sequential, parallel < sequential * 1.02);
+    }
+
+    public void testFlushMidBlock() throws IOException {
+        byte[] data = compressibleData(100 * 1024);
+        ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+        ParallelGZIPOutputStream out = new ParallelGZIPOutputStream(
+                bytesOut, executor, Deflater.BEST_SPEED, 32 * 1024, 3);
+        for (int i = 0; i < data.length; i += 1000) {
+            out.write(data, i, Math.min(1000, data.length - i));
+            if (i % 7000 == 0) {
+                out.flush();
+            }
+        }
+        out.close();
+        assertTrue(Arrays.equals(data, GZIPInputStreamTest.gunzip(bytesOut.toByteArray())));
+    }
+
+    public void testWriteAfterFinish() throws IOException {
+        ParallelGZIPOutputStream out = new ParallelGZIPOutputStream(
+                new ByteArrayOutputStream(), executor);
+        out.finish();
+        try {
+            out.write(1);
+            fail();
+        } catch (IOException expected) {
+        }
+        out.close();
+    }
+
+    public void testRejectedBlockIsReportedAndCloseReturns() throws IOException {
+        ParallelGZIPOutputStream out = new ParallelGZIPOutputStream(
+                new ByteArrayOutputStream(), executor, Deflater.DEFAULT_COMPRESSION, 1024, 4);
+        executor.shutdown();
+        try {
+            out.write(new byte[1024]);
+            fail();
+        } catch (IOException expected) {
+        }
+        // nothing was left pending, so close doesn't wait forever
+        try {
+            out.close();
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    private byte[] gzip(byte[] bytes, int blockSize) throws IOException {
+        ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+        ParallelGZIPOutputStream out = new ParallelGZIPOutputStream(
+                bytesOut, executor, Deflater.DEFAULT_COMPRESSION, blockSize, 4);
+        out.write(bytes);
+        out.close();
+        return bytesOut.toByteArray();
+    }
+
+    private static byte[] compressibleData(int size) {
+        Random random = new Random(0);
+        String words = "the quick brown fox jumps over the lazy dog ";
+        byte[] result = new byte[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = (byte) words.charAt((i + random.nextInt(3)) % words.length());
+        }
+        return result;
+    }
+}
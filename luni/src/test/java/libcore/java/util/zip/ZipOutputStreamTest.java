@@ -48,6 +48,17 @@ public final class ZipOutputStreamTest extends TestCase {
         assertTrue(Arrays.equals(data, ZipInputStreamTest.unzip("r", zip("r", data))));
     }
 
+    public void testDoubleClose() throws IOException {
+        ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+        ZipOutputStream zippedOut = new ZipOutputStream(bytesOut);
+        zippedOut.putNextEntry(new ZipEntry("name"));
+        zippedOut.write(new byte[] { 1, 2, 3 });
+        zippedOut.close();
+        int length = bytesOut.size();
+        zippedOut.close();
+        assertEquals(length, bytesOut.size());
+    }
+
     public static byte[] zip(String name, byte[] bytes) throws IOException {
         ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
         ZipOutputStream zippedOut = new ZipOutputStream(bytesOut);
@@ -16,9 +16,12 @@
 
 package libcore.javax.net.ssl;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Random;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
 import javax.net.ssl.SSLEngineResult.HandshakeStatus;
 import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLHandshakeException;
@@ -377,6 +380,28 @@ public class SSLEngineTest extends TestCase {
         }
     }
 
+    public void test_SSLEngine_setEnableSessionCreation_server_reportsFailure()
+            throws Exception {
+        TestSSLEnginePair p = TestSSLEnginePair.create(new TestSSLEnginePair.Hooks() {
+            @Override
+            void beforeBeginHandshake(SSLEngine client, SSLEngine server) {
+                server.setEnableSessionCreation(false);
+            }
+        });
+        assertNotConnected(p);
+        ByteBuffer application
+                = ByteBuffer.allocate(p.server.getSession().getApplicationBufferSize());
+        try {
+            p.server.unwrap(ByteBuffer.allocate(0), application);
+            fail();
+        } catch (SSLException expected) {
+        }
+        // the failure is reported once, after which the engine is closed
+        SSLEngineResult result = p.server.unwrap(ByteBuffer.allocate(0), application);
+        assertEquals(SSLEngineResult.Status.CLOSED, result.getStatus());
+        assertTrue(p.server.isInboundDone());
+    }
+
     public void test_SSLEngine_getSSLParameters() throws Exception {
         TestSSLContext c = TestSSLContext.create();
         SSLEngine e = c.clientContext.createSSLEngine();
@@ -453,6 +478,99 @@ public class SSLEngineTest extends TestCase {
         c.close();
     }
 
+    public void test_SSLEngine_exchangeData() throws Exception {
+        TestSSLEnginePair p = TestSSLEnginePair.create(null);
+        assertConnected(p);
+        assertTransfer(p.client, p.server, 100000, false);
+        assertTransfer(p.server, p.client, 100000, false);
+    }
+
+    public void test_SSLEngine_exchangeData_directBuffers() throws Exception {
+        TestSSLEnginePair p = TestSSLEnginePair.create(null);
+        assertConnected(p);
+        assertTransfer(p.client, p.server, 100000, true);
+        assertTransfer(p.server, p.client, 100000, true);
+    }
+
+    public void test_SSLEngine_sessionContexts() throws Exception {
+        TestSSLContext c = TestSSLContext.create();
+        TestSSLEnginePair p = TestSSLEnginePair.create(c, null);
+        assertConnected(p);
+        byte[] clientId = p.client.getSession().getId();
+        byte[] serverId = p.server.getSession().getId();
+        assertTrue(Arrays.equals(clientId, serverId));
+        assertSame(p.client.getSession(),
+                   c.clientContext.getClientSessionContext().getSession(clientId));
+        assertSame(p.server.getSession(),
+                   c.serverContext.getServerSessionContext().getSession(serverId));
+        c.close();
+    }
+
+    public void test_SSLEngine_close() throws Exception {
+        TestSSLEnginePair p = TestSSLEnginePair.create(null);
+        SSLSession session = p.client.getSession();
+        ByteBuffer network = ByteBuffer.allocate(session.getPacketBufferSize());
+        ByteBuffer application = ByteBuffer.allocate(session.getApplicationBufferSize());
+
+        p.client.closeOutbound();
+        assertEquals(HandshakeStatus.NEED_WRAP, p.client.getHandshakeStatus());
+        SSLEngineResult result = p.client.wrap(ByteBuffer.allocate(0), network);
+        assertEquals(SSLEngineResult.Status.CLOSED, result.getStatus());
+        assertTrue(p.client.isOutboundDone());
+
+        network.flip();
+        result = p.server.unwrap(network, application);
+        assertEquals(SSLEngineResult.Status.CLOSED, result.getStatus());
+        assertTrue(p.server.isInboundDone());
+        // the server answers with its own close_notify
+        assertEquals(HandshakeStatus.NEED_WRAP, p.server.getHandshakeStatus());
+        network.clear();
+        result = p.server.wrap(ByteBuffer.allocate(0), network);
+        assertEquals(SSLEngineResult.Status.CLOSED, result.getStatus());
+        assertTrue(p.server.isOutboundDone());
+
+        network.flip();
+        result = p.client.unwrap(network, application);
+        assertEquals(SSLEngineResult.Status.CLOSED, result.getStatus());
+        assertTrue(p.client.isInboundDone());
+    }
+
+    /**
+     * Sends {@code size} bytes from {@code sender} to {@code receiver} and
+     * checks that they arrive intact.
+     */
+    private void assertTransfer(SSLEngine sender, SSLEngine receiver, int size, boolean direct)
+            throws Exception {
+        byte[] expected = new byte[size];
+        new Random(0).nextBytes(expected);
+        SSLSession session = sender.getSession();
+        ByteBuffer src = allocate(size, direct);
+        src.put(expected).flip();
+        ByteBuffer network = allocate(session.getPacketBufferSize(), direct);
+        ByteBuffer dst = allocate(size + session.getApplicationBufferSize(), direct);
+
+        while (src.hasRemaining()) {
+            SSLEngineResult result = sender.wrap(src, network);
+            assertEquals(SSLEngineResult.Status.OK, result.getStatus());
+            network.flip();
+            while (network.hasRemaining()) {
+                result = receiver.unwrap(network, dst);
+                assertEquals(SSLEngineResult.Status.OK, result.getStatus());
+                assertTrue(result.bytesConsumed() > 0);
+            }
+            network.clear();
+        }
+        assertEquals(size, dst.position());
+        byte[] actual = new byte[size];
+        dst.flip();
+        dst.get(actual);
+        assertTrue(Arrays.equals(expected, actual));
+    }
+
+    private static ByteBuffer allocate(int capacity, boolean direct) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
     public void test_TestSSLEnginePair_create() throws Exception {
         TestSSLEnginePair test = TestSSLEnginePair.create(null);
         assertNotNull(test.c);
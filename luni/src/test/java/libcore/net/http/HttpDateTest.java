@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package libcore.net.http;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import junit.framework.TestCase;
+
+public final class HttpDateTest extends TestCase {
+    /** Sun, 06 Nov 1994 08:49:37 GMT, the example date from RFC 2616. */
+    private static final long EXAMPLE = 784111777000L;
+
+    public void testParseStandardFormats() {
+        assertEquals(EXAMPLE, HttpDate.parse("Sun, 06 Nov 1994 08:49:37 GMT").getTime());
+        assertEquals(EXAMPLE, HttpDate.parse("Sunday, 06-Nov-94 08:49:37 GMT").getTime());
+        assertEquals(EXAMPLE, HttpDate.parse("Sun Nov  6 08:49:37 1994").getTime());
+    }
+
+    public void testParseBrowserCompatibleFormats() {
+        assertEquals(EXAMPLE, HttpDate.parse("Sun, 06-Nov-1994 08:49:37 GMT").getTime());
+        assertEquals(EXAMPLE, HttpDate.parse("Sun, 06-Nov-1994 08-49-37 GMT").getTime());
+        assertEquals(EXAMPLE, HttpDate.parse("Sun, 06 Nov 94 08:49:37 GMT").getTime());
+        assertEquals(EXAMPLE, HttpDate.parse("Sun 06-Nov-1994 08:49:37 GMT").getTime());
+        assertEquals(EXAMPLE, HttpDate.parse("Sun,06-Nov-94 08:49:37 GMT").getTime());
+        assertEquals(EXAMPLE, HttpDate.parse("Sun, 06-11-1994 08:49:37 GMT").getTime());
+        assertEquals(EXAMPLE, HttpDate.parse("Sun Nov 6 1994 08:49:37 GMT").getTime());
+        assertEquals(EXAMPLE, HttpDate.parse("sun, 06 NOV 1994 08:49:37 utc").getTime());
+    }
+
+    public void testParseZoneOffsets() {
+        assertEquals(EXAMPLE, HttpDate.parse("Sun, 06 Nov 1994 00:49:37 -0800").getTime());
+        assertEquals(EXAMPLE, HttpDate.parse("Sun, 06 Nov 1994 00:49:37 PST").getTime());
+        assertEquals(EXAMPLE, HttpDate.parse("Sun, 06 Nov 1994 04:49:37 EDT").getTime());
+        assertEquals(EXAMPLE, HttpDate.parse("Sun, 06 Nov 1994 09:49:37 GMT+01:00").getTime());
+    }
+
+    public void testParseTwoDigitYears() {
+        assertEquals(2069, yearOf(HttpDate.parse("Tue, 01-Jan-69 00:00:00 GMT")));
+        assertEquals(1970, yearOf(HttpDate.parse("Thu, 01-Jan-70 00:00:00 GMT")));
+    }
+
+    public void testParseIgnoresTrailingText() {
+        assertEquals(EXAMPLE, HttpDate.parse("Sun, 06 Nov 1994 08:49:37 GMT; path=/").getTime());
+    }
+
+    public void testParseRejectsInvalidDates() {
+        assertNull(HttpDate.parse(null));
+        assertNull(HttpDate.parse(""));
+        assertNull(HttpDate.parse("0"));
+        assertNull(HttpDate.parse("Sun, 06 Nov 1994"));
+        assertNull(HttpDate.parse("Sun, 32 Nov 1994 08:49:37 GMT"));
+        assertNull(HttpDate.parse("Sun, 06 Nov 1994 24:49:37 GMT"));
+        assertNull(HttpDate.parse("Sun, 06 Foo 1994 08:49:37 GMT"));
+    }
+
+    public void testFormat() {
+        assertEquals("Sun, 06 Nov 1994 08:49:37 GMT", HttpDate.format(new Date(EXAMPLE)));
+        assertEquals("Thu, 01 Jan 1970 00:00:00 GMT", HttpDate.format(new Date(0)));
+        assertEquals("Wed, 31 Dec 1969 23:59:59 GMT", HttpDate.format(new Date(-1)));
+        assertEquals("Tue, 29 Feb 2000 12:00:00 GMT", HttpDate.format(new Date(951825600000L)));
+        assertEquals("Fri, 31 Dec 9999 23:59:59 GMT", HttpDate.format(new Date(253402300799000L)));
+    }
+
+    public void testFormatCacheDoesNotConfuseSeconds() {
+        // These share a cache slot but differ by 16 seconds.
+        assertEquals("Sun, 06 Nov 1994 08:49:37 GMT", HttpDate.format(new Date(EXAMPLE)));
+        assertEquals("Sun, 06 Nov 1994 08:49:53 GMT", HttpDate.format(new Date(EXAMPLE + 16000)));
+        assertEquals("Sun, 06 Nov 1994 08:49:37 GMT", HttpDate.format(new Date(EXAMPLE + 999)));
+    }
+
+    public void testAgreesWithSimpleDateFormat() {
+        DateFormat rfc1123 = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+        rfc1123.setTimeZone(TimeZone.getTimeZone("UTC"));
+        Random random = new Random(0);
+        for (int i = 0; i < 1000; i++) {
+            // Dates between 1900 and 2100.
+            long millis = -2208988800000L + (long) (random.nextDouble() * 6311347200000L);
+            Date date = new Date(millis);
+            String expected = rfc1123.format(date);
+            assertEquals(expected, HttpDate.format(date));
+            long truncated = millis - ((millis % 1000) + 1000) % 1000;
+            assertEquals(truncated, HttpDate.parse(expected).getTime());
+        }
+    }
+
+    private static int yearOf(Date date) {
+        return Integer.parseInt(HttpDate.format(date).substring(12, 16));
+    }
+}
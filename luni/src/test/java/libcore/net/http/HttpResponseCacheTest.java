@@ -1660,7 +1660,7 @@ public final class HttpResponseCacheTest extends TestCase {
     }
 
     private String formatDate(Date date) {
-        DateFormat rfc1123 = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        DateFormat rfc1123 = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
         rfc1123.setTimeZone(TimeZone.getTimeZone("UTC"));
         return rfc1123.format(date);
     }
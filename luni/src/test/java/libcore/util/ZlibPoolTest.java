@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package libcore.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import junit.framework.TestCase;
+import libcore.io.Streams;
+
+public final class ZlibPoolTest extends TestCase {
+    @Override protected void setUp() throws Exception {
+        super.setUp();
+        ZlibPool.evictAll();
+    }
+
+    @Override protected void tearDown() throws Exception {
+        ZlibPool.evictAll();
+        super.tearDown();
+    }
+
+    public void testRecycledInflaterIsReused() {
+        Inflater first = ZlibPool.obtainInflater();
+        ZlibPool.recycle(first);
+        int hits = ZlibPool.hitCount();
+        assertSame(first, ZlibPool.obtainInflater());
+        assertEquals(hits + 1, ZlibPool.hitCount());
+        ZlibPool.recycle(first);
+    }
+
+    public void testRecycledDeflaterIsResetToDefaults() {
+        Deflater deflater = ZlibPool.obtainDeflater();
+        deflater.setLevel(Deflater.BEST_SPEED);
+        deflater.setStrategy(Deflater.HUFFMAN_ONLY);
+        deflater.setInput(new byte[] { 1, 2, 3 });
+        ZlibPool.recycle(deflater);
+        assertSame(deflater, ZlibPool.obtainDeflater());
+        assertTrue(deflater.needsInput());
+        assertFalse(deflater.finished());
+        assertEquals(0, deflater.getTotalIn());
+        ZlibPool.recycle(deflater);
+    }
+
+    public void testEndedContextsAreNotPooled() {
+        Inflater inflater = ZlibPool.obtainInflater();
+        inflater.end();
+        ZlibPool.recycle(inflater);
+        assertEquals(0, ZlibPool.idleNativeBytes());
+    }
+
+    public void testPoolIsBounded() {
+        Inflater[] inflaters = new Inflater[16];
+        for (int i = 0; i < inflaters.length; i++) {
+            inflaters[i] = ZlibPool.obtainInflater();
+        }
+        int discards = ZlibPool.discardCount();
+        for (Inflater inflater : inflaters) {
+            ZlibPool.recycle(inflater);
+        }
+        assertTrue(ZlibPool.discardCount() > discards);
+        assertTrue(ZlibPool.idleNativeBytes() > 0);
+        ZlibPool.evictAll();
+        assertEquals(0, ZlibPool.idleNativeBytes());
+    }
+
+    public void testGzipRoundTripsShareContexts() throws IOException {
+        byte[] data = "Hello World, Hello World, Hello World".getBytes("UTF-8");
+        gunzip(gzip(data));
+        int misses = ZlibPool.missCount();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(Arrays.equals(data, gunzip(gzip(data))));
+        }
+        assertEquals(misses, ZlibPool.missCount());
+    }
+
+    public void testFailedGzipHeaderRecyclesInflater() throws IOException {
+        gunzip(gzip(new byte[0]));
+        int misses = ZlibPool.missCount();
+        try {
+            new GZIPInputStream(new ByteArrayInputStream(new byte[10]));
+            fail();
+        } catch (IOException expected) {
+        }
+        gunzip(gzip(new byte[0]));
+        assertEquals(misses, ZlibPool.missCount());
+    }
+
+    public void testGzipOutputDoubleCloseLeavesRecycledDeflaterAlone() throws IOException {
+        byte[] data = "Hello World, Hello World, Hello World".getBytes("UTF-8");
+        ByteArrayOutputStream firstBytes = new ByteArrayOutputStream();
+        GZIPOutputStream first = new GZIPOutputStream(firstBytes);
+        first.write(data);
+        first.close();
+        int length = firstBytes.size();
+
+        // The second stream takes over the deflater the first one recycled.
+        ByteArrayOutputStream secondBytes = new ByteArrayOutputStream();
+        GZIPOutputStream second = new GZIPOutputStream(secondBytes);
+        first.close();
+        assertEquals(length, firstBytes.size());
+        second.write(data);
+        second.close();
+        assertTrue(Arrays.equals(data, gunzip(firstBytes.toByteArray())));
+        assertTrue(Arrays.equals(data, gunzip(secondBytes.toByteArray())));
+        try {
+            first.write(data);
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    public void testFinishAfterFailedCloseDoesNotThrowNullPointerException() throws IOException {
+        final boolean[] failing = new boolean[1];
+        OutputStream out = new OutputStream() {
+            @Override public void write(int b) throws IOException {
+                if (failing[0]) {
+                    throw new IOException();
+                }
+            }
+        };
+        GZIPOutputStream gzippedOut = new GZIPOutputStream(out);
+        gzippedOut.write(new byte[1024]);
+        failing[0] = true;
+        try {
+            gzippedOut.close();
+            fail();
+        } catch (IOException expected) {
+        }
+        try {
+            gzippedOut.finish();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        // the recycled deflater is unaffected
+        assertTrue(Arrays.equals(new byte[16], gunzip(gzip(new byte[16]))));
+    }
+
+    public void testGzipInputDoubleCloseLeavesRecycledInflaterAlone() throws IOException {
+        byte[] data = "Hello World, Hello World, Hello World".getBytes("UTF-8");
+        byte[] gzipped = gzip(data);
+        GZIPInputStream first = new GZIPInputStream(new ByteArrayInputStream(gzipped));
+        assertTrue(Arrays.equals(data, Streams.readFully(first)));
+        first.close();
+
+        GZIPInputStream second = new GZIPInputStream(new ByteArrayInputStream(gzipped));
+        first.close();
+        assertTrue(Arrays.equals(data, Streams.readFully(second)));
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+        GZIPOutputStream gzippedOut = new GZIPOutputStream(bytesOut);
+        gzippedOut.write(bytes);
+        gzippedOut.close();
+        return bytesOut.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] bytes) throws IOException {
+        return Streams.readFully(new GZIPInputStream(new ByteArrayInputStream(bytes)));
+    }
+}
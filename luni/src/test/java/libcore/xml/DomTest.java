@@ -1507,6 +1507,75 @@ public class DomTest extends TestCase {
         assertEquals(7, elements.getLength());
     }
 
+    public void testChildNodesIsLive() {
+        NodeList children = item.getChildNodes();
+        int length = children.getLength();
+        Element extra = document.createElement("extra");
+        item.appendChild(extra);
+        assertEquals(length + 1, children.getLength());
+        assertSame(extra, children.item(length));
+        item.removeChild(extra);
+        assertEquals(length, children.getLength());
+        assertNull(children.item(length));
+        assertNull(children.item(-1));
+    }
+
+    public void testGetElementsByTagNameIsLive() {
+        NodeList fromDocument = document.getElementsByTagName("a:option");
+        NodeList fromElement = item.getElementsByTagNameNS("http://addons", "option");
+        assertEquals(2, fromDocument.getLength());
+        assertEquals(2, fromElement.getLength());
+
+        Element option3 = document.createElementNS("http://addons", "a:option");
+        nutrition.appendChild(option3);
+        assertEquals(3, fromDocument.getLength());
+        assertSame(option3, fromDocument.item(2));
+        assertEquals(3, fromElement.getLength());
+        assertSame(option3, fromElement.item(2));
+
+        item.removeChild(option1);
+        assertEquals(2, fromDocument.getLength());
+        assertSame(option2, fromDocument.item(0));
+        assertEquals(2, fromElement.getLength());
+        assertSame(option2, fromElement.item(0));
+    }
+
+    public void testDocumentGetElementsByTagNameNs() {
+        NodeList elements = document.getElementsByTagNameNS("http://usda", "*");
+        assertEquals(2, elements.getLength());
+        assertEquals(vitamins, elements.item(0));
+        assertEquals(vitaminc, elements.item(1));
+        assertEquals(0, document.getElementsByTagNameNS("http://addons", "vitaminc").getLength());
+        assertEquals(9, document.getElementsByTagNameNS("*", "*").getLength());
+    }
+
+    public void testGetElementsByTagNameAfterRename() {
+        assertEquals(1, document.getElementsByTagName("nutrition").getLength());
+        document.renameNode(nutrition, "http://food", "facts");
+        assertEquals(0, document.getElementsByTagName("nutrition").getLength());
+        assertEquals(nutrition, document.getElementsByTagName("facts").item(0));
+    }
+
+    public void testGetElementByIdTracksChanges() {
+        description.setAttribute("sku", "b1");
+        description.setIdAttribute("sku", true);
+        assertEquals(description, document.getElementById("b1"));
+
+        description.setAttribute("sku", "b2");
+        description.setIdAttribute("sku", true);
+        assertNull(document.getElementById("b1"));
+        assertEquals(description, document.getElementById("b2"));
+
+        description.setIdAttribute("sku", false);
+        assertNull(document.getElementById("b2"));
+
+        name.setAttribute("sku", "b3");
+        name.setIdAttribute("sku", true);
+        assertEquals(name, document.getElementById("b3"));
+        item.removeChild(name);
+        assertNull(document.getElementById("b3"));
+    }
+
     /**
      * Documents shouldn't contain document fragments.
      * http://code.google.com/p/android/issues/detail?id=2735
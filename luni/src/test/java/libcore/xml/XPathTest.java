@@ -0,0 +1,381 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package libcore.xml;
+
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import javax.xml.xpath.XPathFunction;
+import javax.xml.xpath.XPathFunctionResolver;
+import javax.xml.xpath.XPathVariableResolver;
+import junit.framework.TestCase;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+public final class XPathTest extends TestCase {
+
+    private static final String XML = "<?xml version='1.0'?>"
+            + "<library xmlns:b='http://books'>"
+            + "<shelf id='s1'>"
+            + "<book year='1998' b:isbn='1'><title>Alpha</title><price>10</price></book>"
+            + "<book year='2004' b:isbn='2'><title>Beta</title><price>25.5</price></book>"
+            + "</shelf>"
+            + "<shelf id='s2'>"
+            + "<book year='2010'><title>Gamma</title><price>7</price><!-- used --></book>"
+            + "<b:book><title>Delta</title></b:book>"
+            + "</shelf>"
+            + "</library>";
+
+    private XPath xpath;
+    private Document document;
+
+    @Override protected void setUp() throws Exception {
+        xpath = XPathFactory.newInstance().newXPath();
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        document = factory.newDocumentBuilder().parse(new InputSource(new StringReader(XML)));
+    }
+
+    public void testChildAndDescendantPaths() throws Exception {
+        assertEquals(3, count("/library/shelf/book"));
+        assertEquals(3, count("//book"));
+        assertEquals(4, count("//title"));
+        assertEquals(2, count("/library/*"));
+        assertEquals(0, count("/book"));
+        assertEquals("Alpha", string("//book/title"));
+        assertEquals("s2", string("//book[title='Gamma']/../@id"));
+    }
+
+    public void testReverseAndSiblingAxes() throws Exception {
+        assertEquals("Beta", string("//book[title='Gamma']/preceding::book[1]/title"));
+        assertEquals("Alpha", string("(//book[title='Gamma']/preceding::book)[1]/title"));
+        assertEquals("Beta", string("//book[1]/following-sibling::book/title"));
+        assertEquals(3, count("//title[.='Alpha']/ancestor::*"));
+        assertEquals("library", string("name(//title[.='Alpha']/ancestor::*[last()])"));
+        assertEquals(4, count("//title[.='Alpha']/ancestor-or-self::*"));
+        assertEquals(3, count("//book[1]/following::title"));
+    }
+
+    public void testResultsAreInDocumentOrder() throws Exception {
+        NodeList nodes = nodes("//price | //title");
+        assertEquals(7, nodes.getLength());
+        assertEquals("Alpha", nodes.item(0).getTextContent());
+        assertEquals("10", nodes.item(1).getTextContent());
+        assertEquals("Delta", nodes.item(6).getTextContent());
+
+        nodes = nodes("//title[.='Gamma']/ancestor::*");
+        assertEquals("library", nodes.item(0).getNodeName());
+        assertEquals("book", nodes.item(2).getNodeName());
+    }
+
+    public void testPositionalPredicates() throws Exception {
+        assertEquals("Beta", string("/library/shelf[1]/book[2]/title"));
+        assertEquals("Beta", string("/library/shelf[1]/book[last()]/title"));
+        assertEquals("Gamma", string("//book[position() = 1]/title[../@year > 2005]"));
+        assertEquals(2, count("//shelf/*[1]"));
+        assertEquals("Alpha", string("(//title)[1]"));
+        assertEquals("Delta", string("(//title)[last()]"));
+        assertEquals(0, count("//book[5]"));
+    }
+
+    public void testAttributes() throws Exception {
+        assertEquals(3, count("//@year"));
+        assertEquals("2004", string("//book[title='Beta']/@year"));
+        assertEquals(2, count("//book[@year < 2005]"));
+        assertEquals(0, count("/library/@*"));
+    }
+
+    public void testNodeTypeTests() throws Exception {
+        assertEquals(1, count("//comment()"));
+        assertEquals(7, count("//text()"));
+        assertEquals(" used ", string("(//book)[3]/comment()"));
+        assertEquals(3, count("/library/shelf[2]/book/node()"));
+    }
+
+    public void testNamespaces() throws Exception {
+        xpath.setNamespaceContext(new SimpleNamespaceContext("x", "http://books"));
+        assertEquals("Delta", string("//x:book/title"));
+        assertEquals(1, count("//x:*"));
+        assertEquals("2", string("//book[2]/@x:isbn"));
+        try {
+            xpath.compile("//y:book");
+            fail();
+        } catch (XPathExpressionException expected) {
+        }
+    }
+
+    public void testStringFunctions() throws Exception {
+        assertEquals("AlphaBeta", string("concat(//book[1]/title, //book[2]/title)"));
+        assertEquals("lph", string("substring(//title, 2, 3)"));
+        assertEquals("234", string("substring('12345', 1.5, 2.6)"));
+        assertEquals("", string("substring('12345', 0 div 0, 3)"));
+        assertEquals("1999", string("substring-before('1999/04/01', '/')"));
+        assertEquals("04/01", string("substring-after('1999/04/01', '/')"));
+        assertEquals("a b c", string("normalize-space('  a  b\tc ')"));
+        assertEquals("BAr", string("translate('bar', 'abc', 'AB')"));
+        assertEquals(5.0, number("string-length('Alpha')"));
+        assertEquals(1.0, number("string-length('\ud83d\ude00')")); // counts characters, not chars
+        assertTrue(bool("starts-with(//title, 'Al')"));
+        assertTrue(bool("contains(//title, 'ph')"));
+    }
+
+    public void testNumberFunctions() throws Exception {
+        assertEquals(42.5, number("sum(//price)"));
+        assertEquals(3.0, number("count(//book)"));
+        assertEquals(3.0, number("round(2.5)"));
+        assertEquals(-2.0, number("round(-2.5)"));
+        assertEquals(2.0, number("floor(2.7)"));
+        assertEquals(-2.0, number("ceiling(-2.7)"));
+        assertTrue(Double.isNaN(number("number('abc')")));
+        assertEquals(1.0, number("7 mod 3"));
+        assertEquals(2.5, number("5 div 2"));
+        assertEquals(-6.0, number("-2 * 3"));
+        assertEquals(Double.POSITIVE_INFINITY, number("1 div 0"));
+    }
+
+    public void testNumberFormatting() throws Exception {
+        assertEquals("3", string("1 + 2"));
+        assertEquals("0.5", string("1 div 2"));
+        assertEquals("-0.25", string("-1 div 4"));
+        assertEquals("1000000", string("1000 * 1000"));
+        assertEquals("0", string("-0"));
+        assertEquals("NaN", string("0 div 0"));
+        assertEquals("Infinity", string("1 div 0"));
+        assertEquals("-Infinity", string("-1 div 0"));
+    }
+
+    public void testBooleanConversions() throws Exception {
+        assertTrue(bool("//book"));
+        assertFalse(bool("//magazine"));
+        assertTrue(bool("'false'"));
+        assertFalse(bool("''"));
+        assertFalse(bool("0 div 0"));
+        assertTrue(bool("//price = 7"));
+        assertTrue(bool("//price != 7"));
+        assertFalse(bool("//magazine = //magazine"));
+        assertTrue(bool("not(//price > 100)"));
+        assertTrue(bool("true() and not(false()) or 1 = 2"));
+    }
+
+    public void testLangAndId() throws Exception {
+        Document document = parse("<a xml:lang='en-US'><b id='x'/><c xml:lang='fr'><d/></c></a>");
+        assertTrue((Boolean) xpath.evaluate("lang('en')", document.getDocumentElement()
+                .getFirstChild(), XPathConstants.BOOLEAN));
+        assertFalse((Boolean) xpath.evaluate("boolean(//d[lang('en')])", document,
+                XPathConstants.BOOLEAN));
+        Element b = (Element) document.getDocumentElement().getFirstChild();
+        b.setIdAttribute("id", true);
+        assertSame(b, xpath.evaluate("id('y x')", document, XPathConstants.NODE));
+    }
+
+    public void testContextNode() throws Exception {
+        Node shelf = (Node) xpath.evaluate("//shelf[2]", document, XPathConstants.NODE);
+        assertEquals("s2", xpath.evaluate("@id", shelf));
+        assertEquals("Gamma", xpath.evaluate("book/title", shelf));
+        assertEquals("Alpha", xpath.evaluate("//title", shelf));
+        assertEquals("s2", xpath.evaluate(".//title[.='Delta']/ancestor::shelf/@id", shelf));
+        assertEquals("2", xpath.evaluate("count(child::node())", shelf));
+    }
+
+    public void testVariables() throws Exception {
+        xpath.setXPathVariableResolver(new XPathVariableResolver() {
+            public Object resolveVariable(QName name) {
+                if (name.getLocalPart().equals("year")) {
+                    return 2000;
+                } else if (name.getLocalPart().equals("title")) {
+                    return "Gamma";
+                }
+                return null;
+            }
+        });
+        assertEquals(2, count("//book[@year > $year]"));
+        assertEquals("2010", string("//book[title = $title]/@year"));
+        try {
+            string("$missing");
+            fail();
+        } catch (XPathExpressionException expected) {
+        }
+    }
+
+    public void testExtensionFunctions() throws Exception {
+        xpath.setNamespaceContext(new SimpleNamespaceContext("f", "http://functions"));
+        xpath.setXPathFunctionResolver(new XPathFunctionResolver() {
+            public XPathFunction resolveFunction(QName name, int arity) {
+                if (name.getNamespaceURI().equals("http://functions")
+                        && name.getLocalPart().equals("twice") && arity == 1) {
+                    return new XPathFunction() {
+                        public Object evaluate(List args) {
+                            return 2 * ((Number) args.get(0)).doubleValue();
+                        }
+                    };
+                }
+                return null;
+            }
+        });
+        assertEquals(20.0, number("f:twice(10)"));
+        assertEquals("Beta", string("//book[price = f:twice(12.75)]/title"));
+        try {
+            string("f:thrice(1)");
+            fail();
+        } catch (XPathExpressionException expected) {
+        }
+    }
+
+    public void testSecureProcessingDisablesExtensionFunctions() throws Exception {
+        XPathFactory factory = XPathFactory.newInstance();
+        factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        XPath secure = factory.newXPath();
+        secure.setNamespaceContext(new SimpleNamespaceContext("f", "http://functions"));
+        secure.setXPathFunctionResolver(new XPathFunctionResolver() {
+            public XPathFunction resolveFunction(QName name, int arity) {
+                return new XPathFunction() {
+                    public Object evaluate(List args) {
+                        return "unsafe";
+                    }
+                };
+            }
+        });
+        try {
+            secure.evaluate("f:twice(1)", document);
+            fail();
+        } catch (XPathExpressionException expected) {
+        }
+    }
+
+    public void testSyntaxErrors() throws Exception {
+        String[] invalid = { "", "//", "/library/", "book[", "count(", "1 +", "foo()",
+                "child::", "bogus::book", "'unterminated", "book book", "$", "@" };
+        for (String expression : invalid) {
+            try {
+                xpath.compile(expression);
+                fail(expression);
+            } catch (XPathExpressionException expected) {
+            }
+        }
+    }
+
+    public void testOperatorNamesAsElementNames() throws Exception {
+        Document document = parse("<div><mod>3</mod><and>4</and><or/></div>");
+        assertEquals(7.0, xpath.evaluate("div/mod + div/and", document, XPathConstants.NUMBER));
+        assertEquals(1.0, xpath.evaluate("count(//or)", document, XPathConstants.NUMBER));
+        assertEquals(0.75, xpath.evaluate("//mod div //and", document, XPathConstants.NUMBER));
+    }
+
+    public void testCompiledExpressionIsReusable() throws Exception {
+        XPathExpression expression = xpath.compile("count(book)");
+        NodeList shelves = nodes("//shelf");
+        assertEquals("2", expression.evaluate(shelves.item(0)));
+        assertEquals("1", expression.evaluate(shelves.item(1)));
+    }
+
+    public void testInputSourceMatchesDocument() throws Exception {
+        String[] expressions = { "/library/shelf/book/title", "//title", "//book/price",
+                "//shelf/@id", "//book//title", "/library//price", "//magazine", "//book/@year",
+                "/library/shelf/*", "//b:book/title", "//@b:isbn", "/library", "//book/@missing",
+                "count(//book)", "//book[2]/title", "sum(//price)" };
+        xpath.setNamespaceContext(new SimpleNamespaceContext("b", "http://books"));
+        QName[] types = { XPathConstants.STRING, XPathConstants.NUMBER, XPathConstants.BOOLEAN };
+        for (String expression : expressions) {
+            XPathExpression compiled = xpath.compile(expression);
+            for (QName type : types) {
+                Object expected = compiled.evaluate(document, type);
+                Object actual = compiled.evaluate(new InputSource(new StringReader(XML)), type);
+                assertEquals(expression + " as " + type, expected, actual);
+            }
+        }
+    }
+
+    public void testInputSourceWithNodeSetResult() throws Exception {
+        NodeList nodes = (NodeList) xpath.evaluate("//title",
+                new InputSource(new StringReader(XML)), XPathConstants.NODESET);
+        assertEquals(4, nodes.getLength());
+        assertEquals("Delta", nodes.item(3).getTextContent());
+    }
+
+    public void testInputSourceStopsAtFirstMatch() throws Exception {
+        // The document is truncated after the first match.
+        String truncated = "<a><b>first</b><b>second";
+        assertEquals("first", xpath.evaluate("/a/b", new InputSource(new StringReader(truncated))));
+        try {
+            xpath.evaluate("count(/a/b)", new InputSource(new StringReader(truncated)));
+            fail();
+        } catch (XPathExpressionException expected) {
+        }
+    }
+
+    private Document parse(String xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+    }
+
+    private NodeList nodes(String expression) throws XPathExpressionException {
+        return (NodeList) xpath.evaluate(expression, document, XPathConstants.NODESET);
+    }
+
+    private int count(String expression) throws XPathExpressionException {
+        return nodes(expression).getLength();
+    }
+
+    private String string(String expression) throws XPathExpressionException {
+        return xpath.evaluate(expression, document);
+    }
+
+    private double number(String expression) throws XPathExpressionException {
+        return (Double) xpath.evaluate(expression, document, XPathConstants.NUMBER);
+    }
+
+    private boolean bool(String expression) throws XPathExpressionException {
+        return (Boolean) xpath.evaluate(expression, document, XPathConstants.BOOLEAN);
+    }
+
+    private static class SimpleNamespaceContext implements NamespaceContext {
+        private final String prefix;
+        private final String namespaceURI;
+
+        SimpleNamespaceContext(String prefix, String namespaceURI) {
+            this.prefix = prefix;
+            this.namespaceURI = namespaceURI;
+        }
+
+        public String getNamespaceURI(String prefix) {
+            return this.prefix.equals(prefix) ? namespaceURI : XMLConstants.NULL_NS_URI;
+        }
+
+        public String getPrefix(String namespaceURI) {
+            return this.namespaceURI.equals(namespaceURI) ? prefix : null;
+        }
+
+        public Iterator getPrefixes(String namespaceURI) {
+            List<String> prefixes = Collections.singletonList(getPrefix(namespaceURI));
+            return prefixes.iterator();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.security.x509;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.List;
+import junit.framework.TestCase;
+
+public final class TBSCertListTest extends TestCase {
+
+    private static final byte[] SHA1_WITH_RSA = {
+            0x06, 0x09, 0x2A, (byte) 0x86, 0x48, (byte) 0x86, (byte) 0xF7, 0x0D, 0x01, 0x01, 0x05 };
+    private static final byte[] COMMON_NAME = { 0x06, 0x03, 0x55, 0x04, 0x03 };
+    private static final byte[] REASON_CODE = { 0x06, 0x03, 0x55, 0x1D, 0x15 };
+
+    public void testContainsSerialNumber() throws Exception {
+        CertificateList crl = (CertificateList) CertificateList.ASN1.decode(crl(
+                entry(new BigInteger("1")),
+                entry(new BigInteger("256")),
+                entry(new BigInteger("-5")),
+                entryWithReason(new BigInteger("123456789012345678901234567890"))));
+        TBSCertList tbs = crl.getTbsCertList();
+
+        assertTrue(tbs.containsSerialNumber(new BigInteger("1")));
+        assertTrue(tbs.containsSerialNumber(new BigInteger("256")));
+        assertTrue(tbs.containsSerialNumber(new BigInteger("-5")));
+        assertTrue(tbs.containsSerialNumber(new BigInteger("123456789012345678901234567890")));
+        assertFalse(tbs.containsSerialNumber(new BigInteger("0")));
+        assertFalse(tbs.containsSerialNumber(new BigInteger("2")));
+        assertFalse(tbs.containsSerialNumber(new BigInteger("65536")));
+
+        // the decoded list agrees with the scan
+        List<TBSCertList.RevokedCertificate> revoked = tbs.getRevokedCertificates();
+        assertEquals(4, revoked.size());
+        assertEquals(new BigInteger("256"), revoked.get(1).getUserCertificate());
+        assertTrue(tbs.containsSerialNumber(new BigInteger("256")));
+        assertFalse(tbs.containsSerialNumber(new BigInteger("2")));
+    }
+
+    public void testNoRevokedCertificates() throws Exception {
+        CertificateList crl = (CertificateList) CertificateList.ASN1.decode(crl());
+        TBSCertList tbs = crl.getTbsCertList();
+        assertNull(tbs.getRevokedCertificates());
+        assertFalse(tbs.containsSerialNumber(BigInteger.ONE));
+    }
+
+    public void testMalformedEntryIsRejectedWhenDecoding() throws Exception {
+        // an entry without its mandatory revocationDate
+        byte[] malformed = der(0x30, integer(BigInteger.ONE));
+        try {
+            CertificateList.ASN1.decode(crl(malformed));
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    public void testNonMinimalSerialNumberIsRejectedWhenDecoding() throws Exception {
+        // 1 encoded with a redundant leading zero octet
+        byte[] nonMinimal = der(0x30, der(0x02, new byte[] { 0x00, 0x01 }), time());
+        try {
+            CertificateList.ASN1.decode(crl(entry(BigInteger.TEN), nonMinimal));
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    private static byte[] crl(byte[]... entries) throws IOException {
+        byte[] algorithm = der(0x30, SHA1_WITH_RSA, new byte[] { 0x05, 0x00 });
+        byte[] issuer = der(0x30, der(0x31, der(0x30, COMMON_NAME, der(0x13, "CA".getBytes()))));
+        byte[] tbs = (entries.length == 0)
+                ? der(0x30, algorithm, issuer, time())
+                : der(0x30, algorithm, issuer, time(), der(0x30, entries));
+        return der(0x30, tbs, algorithm, der(0x03, new byte[] { 0, 1, 2, 3 }));
+    }
+
+    private static byte[] entry(BigInteger serialNumber) throws IOException {
+        return der(0x30, integer(serialNumber), time());
+    }
+
+    private static byte[] entryWithReason(BigInteger serialNumber) throws IOException {
+        byte[] reason = der(0x30, REASON_CODE, der(0x04, new byte[] { 0x0A, 0x01, 0x01 }));
+        return der(0x30, integer(serialNumber), time(), der(0x30, reason));
+    }
+
+    private static byte[] integer(BigInteger value) throws IOException {
+        return der(0x02, value.toByteArray());
+    }
+
+    private static byte[] time() throws IOException {
+        return der(0x17, "120101000000Z".getBytes());
+    }
+
+    private static byte[] der(int tag, byte[]... parts) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            content.write(part);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(tag);
+        int length = content.size();
+        if (length < 0x80) {
+            out.write(length);
+        } else if (length < 0x100) {
+            out.write(0x81);
+            out.write(length);
+        } else {
+            out.write(0x82);
+            out.write(length >> 8);
+            out.write(length);
+        }
+        content.writeTo(out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.security.x509;
+
+import java.io.ByteArrayInputStream;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import junit.framework.TestCase;
+import libcore.java.security.TestKeyStore;
+import org.apache.harmony.security.provider.cert.X509CertImpl;
+
+public final class TBSCertificateTest extends TestCase {
+
+    public void testLazyFields() throws Exception {
+        X509Certificate cert = TestKeyStore.getServer().getRootCertificate("RSA");
+        Certificate decoded = (Certificate) Certificate.ASN1.decode(cert.getEncoded());
+        TBSCertificate tbs = decoded.getTbsCertificate();
+        assertEquals(cert.getSubjectX500Principal(), tbs.getSubject().getX500Principal());
+        assertEquals(cert.getIssuerX500Principal(), tbs.getIssuer().getX500Principal());
+        assertTrue(Arrays.equals(tbs.getEncoded(), TBSCertificate.ASN1.encode(tbs)));
+    }
+
+    public void testMalformedKeyUsageIsRejectedWhenDecoding() throws Exception {
+        // a KeyUsage value must be a BIT STRING, not an OCTET STRING
+        assertRejected(new Extension("2.5.29.15", true, new byte[] { 0x04, 0x00 }));
+    }
+
+    public void testMalformedBasicConstraintsIsRejectedWhenDecoding() throws Exception {
+        // a truncated BasicConstraints SEQUENCE
+        assertRejected(new Extension("2.5.29.19", true, new byte[] { 0x30, 0x03, 0x01, 0x01 }));
+    }
+
+    public void testUnknownExtensionIsNotDecoded() throws Exception {
+        byte[] encoded = withExtension(new Extension("1.2.3.4", false, new byte[] { 0x04, 0x00 }));
+        X509Certificate cert = new X509CertImpl(new ByteArrayInputStream(encoded));
+        byte[] expected = { 0x04, 0x02, 0x04, 0x00 };
+        assertTrue(Arrays.equals(expected, cert.getExtensionValue("1.2.3.4")));
+    }
+
+    private static void assertRejected(Extension extension) throws Exception {
+        byte[] encoded = withExtension(extension);
+        try {
+            new X509CertImpl(new ByteArrayInputStream(encoded));
+            fail();
+        } catch (CertificateException expected) {
+        }
+    }
+
+    /**
+     * Returns the encoding of a copy of a test certificate whose only
+     * extension is {@code extension}.
+     */
+    private static byte[] withExtension(Extension extension) throws Exception {
+        X509Certificate cert = TestKeyStore.getServer().getRootCertificate("RSA");
+        Certificate decoded = (Certificate) Certificate.ASN1.decode(cert.getEncoded());
+        TBSCertificate tbs = decoded.getTbsCertificate();
+        Extensions extensions = new Extensions(Arrays.asList(extension));
+        TBSCertificate modified = new TBSCertificate(2, tbs.getSerialNumber(),
+                tbs.getSignature(), tbs.getIssuer(), tbs.getValidity(), tbs.getSubject(),
+                tbs.getSubjectPublicKeyInfo(), null, null, extensions);
+        return new Certificate(modified, tbs.getSignature(),
+                decoded.getSignatureValue()).getEncoded();
+    }
+}
@@ -19,6 +19,7 @@ package org.apache.harmony.xnet.provider.jsse;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.net.ssl.SSLSession;
 import junit.framework.TestCase;
 import libcore.javax.net.ssl.FakeSSLSession;
@@ -83,12 +84,118 @@ public final class ClientSessionContextTest extends TestCase {
         assertEquals(expected, sessions);
     }
 
+    public void testEvictsLeastRecentlyUsed() {
+        ClientSessionContext context = new ClientSessionContext();
+        context.setSessionCacheSize(3);
+
+        // Spread over enough sessions that several shards are involved.
+        ValidSSLSession[] sessions = new ValidSSLSession[40];
+        for (int i = 0; i < sessions.length; i++) {
+            sessions[i] = new ValidSSLSession("host" + i);
+            context.putSession(sessions[i]);
+            if (i >= 2) {
+                // Keep the first session in use.
+                assertSame(sessions[0], context.getSession(sessions[0].getId()));
+            }
+        }
+
+        assertEquals(3, context.cachedSessionCount());
+        assertEquals(3, context.size());
+        assertSame(sessions[0], context.getSession("host0", 443));
+        assertSame(sessions[38], context.getSession("host38", 443));
+        assertSame(sessions[39], context.getSession("host39", 443));
+        assertNull(context.getSession("host1", 443));
+    }
+
+    public void testGetIdsWhileSessionsAreAccessed() throws Exception {
+        final ClientSessionContext context = new ClientSessionContext();
+        context.setSessionCacheSize(0); // unlimited
+        final ValidSSLSession[] sessions = new ValidSSLSession[200];
+        for (int i = 0; i < sessions.length; i++) {
+            sessions[i] = new ValidSSLSession("host" + i);
+            context.putSession(sessions[i]);
+        }
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread accessor = new Thread() {
+            @Override public void run() {
+                for (int i = 0; !done.get(); i++) {
+                    context.getSession(sessions[i % sessions.length].getId());
+                }
+            }
+        };
+        accessor.start();
+        try {
+            // sorting must not see stamps change under it
+            for (int i = 0; i < 500; i++) {
+                int count = 0;
+                Enumeration ids = context.getIds();
+                while (ids.hasMoreElements()) {
+                    ids.nextElement();
+                    count++;
+                }
+                assertEquals(sessions.length, count);
+            }
+        } finally {
+            done.set(true);
+            accessor.join();
+        }
+    }
+
+    public void testRemoveInvalidSessions() {
+        ClientSessionContext context = new ClientSessionContext();
+
+        ValidSSLSession a = new ValidSSLSession("a");
+        ValidSSLSession b = new ValidSSLSession("b");
+        context.putSession(a);
+        context.putSession(b);
+
+        a.valid = false;
+        context.removeInvalidSessions();
+
+        assertEquals(1, context.cachedSessionCount());
+        assertEquals(1, context.size());
+        assertNull(context.getSession("a", 443));
+        assertSame(b, context.getSession("b", 443));
+    }
+
+    public void testReplacedSessionKeepsHostAndPort() {
+        ClientSessionContext context = new ClientSessionContext();
+        context.setSessionCacheSize(2);
+
+        ValidSSLSession first = new ValidSSLSession("a");
+        context.putSession(first);
+        ValidSSLSession second = new ValidSSLSession("a") {
+            @Override public byte[] getId() {
+                return "a2".getBytes();
+            }
+        };
+        context.putSession(second);
+        // Evicts the first session, which must not unmap its successor.
+        context.putSession(new ValidSSLSession("b"));
+
+        assertSame(second, context.getSession("a", 443));
+    }
+
+    public void testHandshakeCounts() {
+        ClientSessionContext context = new ClientSessionContext();
+        assertEquals(0, context.getFullHandshakeCount());
+        assertEquals(0, context.getResumedHandshakeCount());
+
+        context.recordHandshake(false);
+        context.recordHandshake(true);
+        context.recordHandshake(true);
+
+        assertEquals(1, context.getFullHandshakeCount());
+        assertEquals(2, context.getResumedHandshakeCount());
+    }
+
     static class ValidSSLSession extends FakeSSLSession {
+        volatile boolean valid = true;
         ValidSSLSession(String host) {
             super(host);
         }
         @Override public boolean isValid() {
-            return true;
+            return valid;
         }
     }
 }
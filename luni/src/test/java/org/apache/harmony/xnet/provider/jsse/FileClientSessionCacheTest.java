@@ -18,6 +18,8 @@ package org.apache.harmony.xnet.provider.jsse;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
 import junit.framework.TestCase;
 import libcore.javax.net.ssl.FakeSSLSession;
 
@@ -53,4 +55,90 @@ public class FileClientSessionCacheTest extends TestCase {
         }
         assertEquals(FileClientSessionCache.MAX_SIZE, cacheDir.list().length);
     }
+
+    private File newJournalFile() throws IOException {
+        File file = File.createTempFile(FileClientSessionCacheTest.class.getName(), ".journal");
+        file.delete();
+        file.deleteOnExit();
+        return file;
+    }
+
+    public void testJournalReload() throws IOException {
+        File journal = newJournalFile();
+        FileClientSessionCache.JournalImpl cache
+                = new FileClientSessionCache.JournalImpl(journal, 100);
+        cache.putSessionData(new FakeSSLSession("a"), new byte[] { 1 });
+        cache.putSessionData(new FakeSSLSession("b"), new byte[] { 2, 2 });
+        cache.putSessionData(new FakeSSLSession("a"), new byte[] { 3, 3, 3 });
+
+        FileClientSessionCache.JournalImpl reloaded
+                = new FileClientSessionCache.JournalImpl(journal, 100);
+        assertEquals(2, reloaded.size());
+        assertTrue(Arrays.equals(new byte[] { 3, 3, 3 }, reloaded.getSessionData("a", 443)));
+        assertTrue(Arrays.equals(new byte[] { 2, 2 }, reloaded.getSessionData("b", 443)));
+        assertNull(reloaded.getSessionData("a", 444));
+    }
+
+    public void testJournalMaxSize() throws IOException {
+        File journal = newJournalFile();
+        FileClientSessionCache.JournalImpl cache
+                = new FileClientSessionCache.JournalImpl(journal, 2);
+        cache.putSessionData(new FakeSSLSession("a"), new byte[10]);
+        cache.putSessionData(new FakeSSLSession("b"), new byte[10]);
+        assertNotNull(cache.getSessionData("a", 443));
+        cache.putSessionData(new FakeSSLSession("c"), new byte[10]);
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.getSessionData("a", 443));
+        assertNull(cache.getSessionData("b", 443));
+
+        FileClientSessionCache.JournalImpl reloaded
+                = new FileClientSessionCache.JournalImpl(journal, 2);
+        assertEquals(2, reloaded.size());
+        assertNotNull(reloaded.getSessionData("c", 443));
+    }
+
+    public void testJournalTruncatedTail() throws IOException {
+        File journal = newJournalFile();
+        FileClientSessionCache.JournalImpl cache
+                = new FileClientSessionCache.JournalImpl(journal, 100);
+        cache.putSessionData(new FakeSSLSession("a"), new byte[] { 1 });
+        cache.putSessionData(new FakeSSLSession("b"), new byte[100]);
+
+        RandomAccessFile file = new RandomAccessFile(journal, "rw");
+        file.setLength(file.length() - 50);
+        file.close();
+
+        FileClientSessionCache.JournalImpl reloaded
+                = new FileClientSessionCache.JournalImpl(journal, 100);
+        assertEquals(1, reloaded.size());
+        assertNull(reloaded.getSessionData("b", 443));
+
+        // The damaged record was dropped, so appending works again.
+        reloaded.putSessionData(new FakeSSLSession("c"), new byte[] { 2 });
+        FileClientSessionCache.JournalImpl again
+                = new FileClientSessionCache.JournalImpl(journal, 100);
+        assertEquals(2, again.size());
+        assertNotNull(again.getSessionData("c", 443));
+    }
+
+    public void testJournalCompaction() throws Exception {
+        File journal = newJournalFile();
+        FileClientSessionCache.JournalImpl cache
+                = new FileClientSessionCache.JournalImpl(journal, 100);
+        // The 2010th put makes 2000 of the records redundant.
+        for (int i = 0; i < 2010; i++) {
+            cache.putSessionData(new FakeSSLSession("host" + (i % 10)), new byte[100]);
+        }
+        // Compaction runs in the background; wait for it.
+        long deadline = System.currentTimeMillis() + 10000;
+        while (journal.length() > 10 * 1000 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(journal.length() < 10 * 1000);
+
+        FileClientSessionCache.JournalImpl reloaded
+                = new FileClientSessionCache.JournalImpl(journal, 100);
+        assertEquals(10, reloaded.size());
+    }
 }
@@ -1225,6 +1225,39 @@ public class NativeCryptoTest extends TestCase {
 
     final byte[] BYTES = new byte[] { 2, -3, 5, 127, 0, -128 };
 
+    public void test_SSL_BIO_arrayBounds() throws Exception {
+        int c = NativeCrypto.SSL_CTX_new();
+        int s = NativeCrypto.SSL_new(c);
+        byte[] b = new byte[16];
+        int[][] ranges = { { -1, 1 }, { 0, -1 }, { 17, 0 }, { 8, 9 }, { 1, Integer.MAX_VALUE } };
+        for (int[] range : ranges) {
+            int off = range[0];
+            int len = range[1];
+            try {
+                NativeCrypto.SSL_read_BIO(s, DUMMY_CB, b, off, len);
+                fail();
+            } catch (ArrayIndexOutOfBoundsException expected) {
+            }
+            try {
+                NativeCrypto.SSL_write_BIO(s, DUMMY_CB, b, off, len);
+                fail();
+            } catch (ArrayIndexOutOfBoundsException expected) {
+            }
+            try {
+                NativeCrypto.SSL_put_network_data(s, b, off, len);
+                fail();
+            } catch (ArrayIndexOutOfBoundsException expected) {
+            }
+            try {
+                NativeCrypto.SSL_get_network_data(s, b, off, len);
+                fail();
+            } catch (ArrayIndexOutOfBoundsException expected) {
+            }
+        }
+        NativeCrypto.SSL_free(s);
+        NativeCrypto.SSL_CTX_free(c);
+    }
+
     public void test_SSL_read() throws Exception {
 
         // NULL ssl
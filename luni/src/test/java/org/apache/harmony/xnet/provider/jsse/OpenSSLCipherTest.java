@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.xnet.provider.jsse;
+
+import java.nio.ByteBuffer;
+import java.security.Key;
+import java.util.Arrays;
+import java.util.Random;
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import junit.framework.TestCase;
+
+public class OpenSSLCipherTest extends TestCase {
+    private static final String OPENSSL = OpenSSLProvider.PROVIDER_NAME;
+    private static final String BC = "BC";
+
+    private final Random random = new Random(0);
+
+    public void test_matchesBouncyCastle() throws Exception {
+        assertMatchesBouncyCastle("AES/ECB/NoPadding", 16, 0, true);
+        assertMatchesBouncyCastle("AES/ECB/PKCS5Padding", 24, 0, false);
+        assertMatchesBouncyCastle("AES/CBC/NoPadding", 32, 16, true);
+        assertMatchesBouncyCastle("AES/CBC/PKCS5Padding", 16, 16, false);
+        assertMatchesBouncyCastle("AES/CTR/NoPadding", 16, 16, false);
+        assertMatchesBouncyCastle("DESEDE/CBC/NoPadding", 24, 8, true);
+        assertMatchesBouncyCastle("DESEDE/CBC/PKCS5Padding", 24, 8, false);
+        assertMatchesBouncyCastle("ARC4", 16, 0, false);
+        assertMatchesBouncyCastle("ARC4", 5, 0, false);
+    }
+
+    private void assertMatchesBouncyCastle(String transformation, int keyLength, int ivLength,
+            boolean wholeBlocks) throws Exception {
+        Key key = new SecretKeySpec(randomBytes(keyLength), transformation.split("/")[0]);
+        IvParameterSpec iv = (ivLength == 0) ? null : new IvParameterSpec(randomBytes(ivLength));
+        for (int length : new int[] { 0, 1, 15, 16, 17, 100, 4096, 10000 }) {
+            if (wholeBlocks) {
+                length -= length % 16;
+            }
+            byte[] plaintext = randomBytes(length);
+            byte[] expected = crypt(BC, transformation, Cipher.ENCRYPT_MODE, key, iv, plaintext);
+            Cipher openssl = Cipher.getInstance(transformation, OPENSSL);
+            openssl.init(Cipher.ENCRYPT_MODE, key, iv);
+            assertTrue(transformation + " " + length,
+                    Arrays.equals(expected, openssl.doFinal(plaintext)));
+            // The cipher must be reusable after doFinal without another init.
+            assertTrue(transformation + " " + length + " reused",
+                    Arrays.equals(expected, updateInChunks(openssl, plaintext, 7)));
+
+            openssl.init(Cipher.DECRYPT_MODE, key, iv);
+            assertTrue(Arrays.equals(plaintext, updateInChunks(openssl, expected, 13)));
+            assertTrue(Arrays.equals(plaintext, openssl.doFinal(expected)));
+        }
+    }
+
+    public void test_exactOutputBuffer() throws Exception {
+        Key key = new SecretKeySpec(randomBytes(16), "AES");
+        IvParameterSpec iv = new IvParameterSpec(randomBytes(16));
+        byte[] plaintext = randomBytes(100);
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding", OPENSSL);
+        cipher.init(Cipher.ENCRYPT_MODE, key, iv);
+        byte[] ciphertext = cipher.doFinal(plaintext);
+        assertEquals(112, ciphertext.length);
+
+        byte[] exact = new byte[112];
+        cipher.init(Cipher.ENCRYPT_MODE, key, iv);
+        assertEquals(112, cipher.doFinal(plaintext, 0, plaintext.length, exact, 0));
+        assertTrue(Arrays.equals(ciphertext, exact));
+
+        byte[] updateOutput = new byte[96];
+        cipher.init(Cipher.ENCRYPT_MODE, key, iv);
+        assertEquals(96, cipher.update(plaintext, 0, plaintext.length, updateOutput, 0));
+        try {
+            cipher.update(plaintext, 0, 12, new byte[15], 0);
+            fail();
+        } catch (ShortBufferException expected) {
+        }
+    }
+
+    public void test_directByteBuffers() throws Exception {
+        Key key = new SecretKeySpec(randomBytes(32), "AES");
+        IvParameterSpec iv = new IvParameterSpec(randomBytes(16));
+        byte[] plaintext = randomBytes(5000);
+        byte[] expected = crypt(BC, "AES/CBC/PKCS5Padding", Cipher.ENCRYPT_MODE, key, iv,
+                plaintext);
+
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding", OPENSSL);
+        cipher.init(Cipher.ENCRYPT_MODE, key, iv);
+        ByteBuffer input = ByteBuffer.allocateDirect(plaintext.length);
+        input.put(plaintext).flip();
+        ByteBuffer output = ByteBuffer.allocateDirect(cipher.getOutputSize(plaintext.length));
+        input.limit(1234);
+        assertEquals(1232, cipher.update(input, output));
+        input.limit(plaintext.length);
+        assertEquals(expected.length - 1232, cipher.doFinal(input, output));
+        output.flip();
+        byte[] actual = new byte[output.remaining()];
+        output.get(actual);
+        assertTrue(Arrays.equals(expected, actual));
+    }
+
+    public void test_heapByteBuffers() throws Exception {
+        Key key = new SecretKeySpec(randomBytes(16), "AES");
+        IvParameterSpec iv = new IvParameterSpec(randomBytes(16));
+        byte[] plaintext = randomBytes(1000);
+        byte[] expected = crypt(BC, "AES/CTR/NoPadding", Cipher.ENCRYPT_MODE, key, iv, plaintext);
+
+        Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding", OPENSSL);
+        cipher.init(Cipher.ENCRYPT_MODE, key, iv);
+        ByteBuffer output = ByteBuffer.allocate(1000);
+        assertEquals(1000, cipher.doFinal(ByteBuffer.wrap(plaintext), output));
+        assertTrue(Arrays.equals(expected, output.array()));
+    }
+
+    public void test_heapByteBufferOutputLimit() throws Exception {
+        Key key = new SecretKeySpec(randomBytes(16), "AES");
+        byte[] plaintext = randomBytes(1024);
+        byte[] expected = crypt(BC, "AES/ECB/NoPadding", Cipher.ENCRYPT_MODE, key, null,
+                plaintext);
+
+        Cipher cipher = Cipher.getInstance("AES/ECB/NoPadding", OPENSSL);
+        cipher.init(Cipher.ENCRYPT_MODE, key);
+        byte[] backing = new byte[1100];
+        ByteBuffer tooSmall = ByteBuffer.wrap(backing, 50, 1000);
+        try {
+            cipher.update(ByteBuffer.wrap(plaintext), tooSmall);
+            fail();
+        } catch (ShortBufferException expected) {
+        }
+        assertTrue(Arrays.equals(new byte[backing.length], backing));
+
+        // The output ends at its limit, well before the end of its array.
+        ByteBuffer window = ByteBuffer.wrap(backing, 50, 1024).slice();
+        assertEquals(1024, cipher.update(ByteBuffer.wrap(plaintext), window));
+        assertEquals(1024, window.position());
+        assertTrue(Arrays.equals(expected, Arrays.copyOfRange(backing, 50, 1074)));
+        assertTrue(Arrays.equals(new byte[50], Arrays.copyOfRange(backing, 0, 50)));
+        assertTrue(Arrays.equals(new byte[26], Arrays.copyOfRange(backing, 1074, 1100)));
+    }
+
+    public void test_badPadding() throws Exception {
+        Key key = new SecretKeySpec(randomBytes(16), "AES");
+        // A block ending in a zero byte never carries valid PKCS#5 padding.
+        byte[] badlyPadded = new byte[16];
+        Cipher cipher = Cipher.getInstance("AES/ECB/NoPadding", OPENSSL);
+        cipher.init(Cipher.ENCRYPT_MODE, key);
+        byte[] ciphertext = cipher.doFinal(badlyPadded);
+
+        cipher = Cipher.getInstance("AES/ECB/PKCS5Padding", OPENSSL);
+        cipher.init(Cipher.DECRYPT_MODE, key);
+        try {
+            cipher.doFinal(ciphertext);
+            fail();
+        } catch (BadPaddingException expected) {
+        }
+        try {
+            cipher.doFinal(new byte[15]);
+            fail();
+        } catch (IllegalBlockSizeException expected) {
+        }
+    }
+
+    public void test_noPaddingRequiresWholeBlocks() throws Exception {
+        Key key = new SecretKeySpec(randomBytes(24), "DESede");
+        Cipher cipher = Cipher.getInstance("DESede/CBC/NoPadding", OPENSSL);
+        cipher.init(Cipher.ENCRYPT_MODE, key);
+        assertEquals(8, cipher.getIV().length);
+        try {
+            cipher.doFinal(new byte[9]);
+            fail();
+        } catch (IllegalBlockSizeException expected) {
+        }
+        // A failed doFinal leaves the cipher usable.
+        assertEquals(16, cipher.doFinal(new byte[16]).length);
+    }
+
+    private byte[] updateInChunks(Cipher cipher, byte[] input, int chunkSize) throws Exception {
+        byte[] output = new byte[cipher.getOutputSize(input.length)];
+        int written = 0;
+        for (int i = 0; i < input.length; i += chunkSize) {
+            int count = Math.min(chunkSize, input.length - i);
+            written += cipher.update(input, i, count, output, written);
+        }
+        written += cipher.doFinal(output, written);
+        return Arrays.copyOf(output, written);
+    }
+
+    private byte[] crypt(String provider, String transformation, int mode, Key key,
+            IvParameterSpec iv, byte[] input) throws Exception {
+        Cipher cipher = Cipher.getInstance(transformation, provider);
+        cipher.init(mode, key, iv);
+        return cipher.doFinal(input);
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] result = new byte[length];
+        random.nextBytes(result);
+        return result;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.xnet.provider.jsse;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import junit.framework.TestCase;
+
+public class OpenSSLMacTest extends TestCase {
+    private static final String[] ALGORITHMS = {
+        "HmacMD5", "HmacSHA1", "HmacSHA256", "HmacSHA384", "HmacSHA512"
+    };
+
+    public void test_matchesBouncyCastle() throws Exception {
+        Random random = new Random(0);
+        for (String algorithm : ALGORITHMS) {
+            for (int keyLength : new int[] { 1, 20, 64, 200 }) {
+                byte[] keyBytes = new byte[keyLength];
+                random.nextBytes(keyBytes);
+                SecretKeySpec key = new SecretKeySpec(keyBytes, algorithm);
+                byte[] data = new byte[1000];
+                random.nextBytes(data);
+
+                Mac bc = Mac.getInstance(algorithm, "BC");
+                bc.init(key);
+                byte[] expected = bc.doFinal(data);
+
+                Mac openssl = Mac.getInstance(algorithm, OpenSSLProvider.PROVIDER_NAME);
+                assertEquals(expected.length, openssl.getMacLength());
+                openssl.init(key);
+                assertTrue(algorithm, Arrays.equals(expected, openssl.doFinal(data)));
+
+                // doFinal resets the MAC but keeps the key.
+                openssl.update(data, 0, 10);
+                openssl.update(data[10]);
+                ByteBuffer direct = ByteBuffer.allocateDirect(data.length - 11);
+                direct.put(data, 11, data.length - 11).flip();
+                openssl.update(direct);
+                assertTrue(algorithm, Arrays.equals(expected, openssl.doFinal()));
+            }
+        }
+    }
+
+    public void test_resetAndClone() throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA1", OpenSSLProvider.PROVIDER_NAME);
+        mac.init(new SecretKeySpec(new byte[] { 1, 2, 3 }, "HmacSHA1"));
+        byte[] expected = mac.doFinal(new byte[] { 4, 5, 6 });
+
+        mac.update(new byte[] { 7, 8, 9 });
+        mac.reset();
+        mac.update((byte) 4);
+        Mac clone = (Mac) mac.clone();
+        mac.update(new byte[] { 5, 6 });
+        assertTrue(Arrays.equals(expected, mac.doFinal()));
+        clone.update(new byte[] { 5, 6 });
+        assertTrue(Arrays.equals(expected, clone.doFinal()));
+    }
+
+    public void test_cloneUpdatesSingleBytesIndependently() throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA1", OpenSSLProvider.PROVIDER_NAME);
+        mac.init(new SecretKeySpec(new byte[] { 1, 2, 3 }, "HmacSHA1"));
+        byte[] expectedA = mac.doFinal(new byte[] { 'a', 'a', 'a' });
+        byte[] expectedB = mac.doFinal(new byte[] { 'b', 'b', 'b' });
+
+        Mac clone = (Mac) mac.clone();
+        for (int i = 0; i < 3; i++) {
+            mac.update((byte) 'a');
+            clone.update((byte) 'b');
+        }
+        assertTrue(Arrays.equals(expectedA, mac.doFinal()));
+        assertTrue(Arrays.equals(expectedB, clone.doFinal()));
+    }
+}
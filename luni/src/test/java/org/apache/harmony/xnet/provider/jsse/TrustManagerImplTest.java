@@ -63,6 +63,27 @@ public class TrustManagerImplTest extends TestCase {
         assertValid(chain1, tm);
     }
 
+    public void testHandleTrustStorageUpdateForgetsValidatedChains() throws Exception {
+        KeyStore.PrivateKeyEntry pke = TestKeyStore.getServer().getPrivateKey("RSA", "RSA");
+        X509Certificate[] chain3 = (X509Certificate[])pke.getCertificateChain();
+        X509Certificate root = chain3[2];
+        X509Certificate intermediate = chain3[1];
+        X509Certificate server = chain3[0];
+        X509Certificate[] chain2 =  new X509Certificate[] { server, intermediate };
+        X509Certificate[] chain1 =  new X509Certificate[] { server };
+
+        TrustManagerImpl tm = (TrustManagerImpl) trustManager(root);
+        assertValid(chain2, tm);
+        // repeated checks are answered from the cache
+        assertValid(chain2, tm);
+        assertValid(chain1, tm);
+
+        // the learned intermediate and the cached result are both dropped
+        tm.handleTrustStorageUpdate();
+        assertInvalid(chain1, tm);
+        assertValid(chain2, tm);
+    }
+
     private X509TrustManager trustManager(X509Certificate ca) throws Exception {
         KeyStore keyStore = TestKeyStore.createKeyStore();
         keyStore.setCertificateEntry("alias", ca);
@@ -452,6 +452,19 @@ public class TrustedCertificateStoreTest extends TestCase {
         resetStore();
     }
 
+    public void testIndexSeesDirectoryChanges() throws Exception {
+        assertFalse(store.isTrustAnchor(getCa1()));
+        assertNull(store.findIssuer(getCa1()));
+
+        // Install behind the store's back.
+        install(getCa1(), getAliasSystemCa1());
+        assertTrue(store.isTrustAnchor(getCa1()));
+        assertEquals(getCa1(), store.findIssuer(getCa1()));
+
+        assertTrue(file(getAliasSystemCa1()).delete());
+        assertFalse(store.isTrustAnchor(getCa1()));
+    }
+
     public void testInstallEmpty() throws Exception {
         store.installCertificate(getCa1());
         assertRootCa(getCa1(), getAliasUserCa1());
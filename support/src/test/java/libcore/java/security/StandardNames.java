@@ -338,6 +338,15 @@ public final class StandardNames extends Assert {
             unprovide("KeyGenerator", "ARCFOUR");
             provide("KeyGenerator", "ARC4");
 
+            // AndroidOpenSSL registers full transformations
+            provide("Cipher", "AES/CBC/NOPADDING");
+            provide("Cipher", "AES/CBC/PKCS5PADDING");
+            provide("Cipher", "AES/CTR/NOPADDING");
+            provide("Cipher", "AES/ECB/NOPADDING");
+            provide("Cipher", "AES/ECB/PKCS5PADDING");
+            provide("Cipher", "DESEDE/CBC/NOPADDING");
+            provide("Cipher", "DESEDE/CBC/PKCS5PADDING");
+
             // different case names: Blowfish vs BLOWFISH
             unprovide("AlgorithmParameters", "Blowfish");
             provide("AlgorithmParameters", "BLOWFISH");